@@ -66,6 +66,12 @@ class Topend {
             bool sync,
             bool endOfStream) = 0;
 
+    // Hand any export buffers the topend has held back for batching to Java.
+    // Called at the end of each engine entry point that may commit export data
+    // (fragment batches, binary log apply, tick and quiesce) and before a sync
+    // moves the export stream positions.
+    virtual void flushExportBuffers() {}
+
     virtual int64_t pushDRBuffer(int32_t partitionId, StreamBlock *block) = 0;
 
     virtual int reportDRConflict(int32_t partitionId, int32_t remoteClusterId, int64_t remoteTimestamp, std::string tableName, DRRecordType action,
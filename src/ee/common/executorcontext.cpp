@@ -94,6 +94,7 @@ ExecutorContext::ExecutorContext(int64_t siteId,
     m_engine(engine),
     m_txnId(0),
     m_spHandle(0),
+    m_tableVersion(0),
     m_lastCommittedSpHandle(0),
     m_siteId(siteId),
     m_partitionId(partitionId),
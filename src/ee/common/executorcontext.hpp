@@ -320,6 +320,10 @@ class ExecutorContext {
     NValueArray& getParameterContainer() { return m_staticParams; }
     const NValueArray& getParameterContainer() const { return m_staticParams; }
 
+    /** Persistent tables stamp each change with a value from this counter
+        so that a table version is never reused within the engine */
+    int64_t nextTableVersion() { return ++m_tableVersion; }
+
     void pushNewModifiedTupleCounter() { m_tuplesModifiedStack.push(0); }
     void popModifiedTupleCounter() { m_tuplesModifiedStack.pop(); }
     const int64_t getModifiedTupleCount() const {
@@ -408,6 +412,7 @@ class ExecutorContext {
     int64_t m_uniqueId;
     int64_t m_currentTxnTimestamp;
     int64_t m_currentDRTimestamp;
+    int64_t m_tableVersion;
   public:
     int64_t m_lastCommittedSpHandle;
     int64_t m_siteId;
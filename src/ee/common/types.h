@@ -495,7 +495,10 @@ enum TaskType {
     TASK_TYPE_SP_JAVA_GET_DRID_TRACKER = 4,      // not supported in EE
     TASK_TYPE_SET_DRID_TRACKER = 5,              // not supported in EE
     TASK_TYPE_GENERATE_DR_EVENT = 6,
-    TASK_TYPE_RESET_DR_APPLIED_TRACKER = 7       // not supported in EE
+    TASK_TYPE_RESET_DR_APPLIED_TRACKER = 7,      // not supported in EE
+    TASK_TYPE_DEFER_INDEX_BUILD = 8,
+    TASK_TYPE_BUILD_DEFERRED_INDEXES = 9,
+    TASK_TYPE_GET_TABLE_VERSIONS = 10
 };
 
 // ------------------------------------------------------------------
@@ -24,6 +24,9 @@
 
 using namespace std;
 
+// Most committed export blocks held back before they are pushed to Java in one call
+static const size_t MAX_PENDING_EXPORT_BUFFERS = 16;
+
 namespace voltdb{
 
 // Create an instance of this class on the stack to release all local
@@ -147,6 +150,45 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
+    m_pushExportBuffersMID = m_jniEnv->GetStaticMethodID(
+            m_exportManagerClass,
+            "pushExportBuffers",
+            "([J[I[Ljava/lang/String;[J[J[Ljava/nio/ByteBuffer;)V");
+    if (m_pushExportBuffersMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_pushExportBuffersMID != NULL);
+        throw std::exception();
+    }
+
+    // Element classes of the arrays handed to pushExportBuffers
+    m_stringClass = m_jniEnv->FindClass("java/lang/String");
+    if (m_stringClass == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_stringClass != NULL);
+        throw std::exception();
+    }
+
+    m_stringClass = static_cast<jclass>(m_jniEnv->NewGlobalRef(m_stringClass));
+    if (m_stringClass == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_stringClass != NULL);
+        throw std::exception();
+    }
+
+    m_byteBufferClass = m_jniEnv->FindClass("java/nio/ByteBuffer");
+    if (m_byteBufferClass == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_byteBufferClass != NULL);
+        throw std::exception();
+    }
+
+    m_byteBufferClass = static_cast<jclass>(m_jniEnv->NewGlobalRef(m_byteBufferClass));
+    if (m_byteBufferClass == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_byteBufferClass != NULL);
+        throw std::exception();
+    }
+
     m_getQueuedExportBytesMID = m_jniEnv->GetStaticMethodID(
             m_exportManagerClass,
             "getQueuedExportBytes",
@@ -388,13 +430,18 @@ void JNITopend::crashVoltDB(FatalException e) {
 }
 
 JNITopend::~JNITopend() {
+    // Java never took ownership of the held back blocks
+    deleteExportBuffers(m_pendingExportBuffers);
     m_jniEnv->DeleteGlobalRef(m_javaExecutionEngine);
     m_jniEnv->DeleteGlobalRef(m_exportManagerClass);
+    m_jniEnv->DeleteGlobalRef(m_stringClass);
+    m_jniEnv->DeleteGlobalRef(m_byteBufferClass);
     m_jniEnv->DeleteGlobalRef(m_partitionDRGatewayClass);
     m_jniEnv->DeleteGlobalRef(m_encoderClass);
 }
 
 int64_t JNITopend::getQueuedExportBytes(int32_t partitionId, string signature) {
+    flushExportBuffers();
     jstring signatureString = m_jniEnv->NewStringUTF(signature.c_str());
     int64_t retval = m_jniEnv->CallStaticLongMethod(
             m_exportManagerClass,
@@ -412,6 +459,24 @@ void JNITopend::pushExportBuffer(
         StreamBlock *block,
         bool sync,
         bool endOfStream) {
+    // Plain committed blocks are batched. Empty blocks carry a USO update and,
+    // like syncs and end of stream, must reach Java after the blocks before them.
+    if (block != NULL && !sync && !endOfStream && block->offset() > 0) {
+        PendingExportBuffer pending;
+        pending.m_exportGeneration = exportGeneration;
+        pending.m_partitionId = partitionId;
+        pending.m_signature = signature;
+        pending.m_uso = block->uso();
+        pending.m_rawPtr = block->rawPtr();
+        pending.m_rawLength = block->rawLength();
+        m_pendingExportBuffers.push_back(pending);
+        if (m_pendingExportBuffers.size() >= MAX_PENDING_EXPORT_BUFFERS) {
+            flushExportBuffers();
+        }
+        return;
+    }
+    flushExportBuffers();
+
     jstring signatureString = m_jniEnv->NewStringUTF(signature.c_str());
     if (block != NULL) {
         jobject buffer = m_jniEnv->NewDirectByteBuffer( block->rawPtr(), block->rawLength());
@@ -453,6 +518,103 @@ void JNITopend::pushExportBuffer(
     }
 }
 
+void JNITopend::flushExportBuffers() {
+    if (m_pendingExportBuffers.empty()) {
+        return;
+    }
+    // Take the blocks, they are freed here unless they reach Java
+    std::vector<PendingExportBuffer> pendingBuffers;
+    pendingBuffers.swap(m_pendingExportBuffers);
+    const jsize count = static_cast<jsize>(pendingBuffers.size());
+
+    // One string and one buffer per block plus the six arrays, the element
+    // classes are global refs. The frame is popped on every way out.
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 2 * count + 6);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to push export buffers: jni frame error.");
+        m_jniEnv->ExceptionDescribe();
+        deleteExportBuffers(pendingBuffers);
+        throw std::exception();
+    }
+
+    jlongArray generations = m_jniEnv->NewLongArray(count);
+    jintArray partitionIds = m_jniEnv->NewIntArray(count);
+    jobjectArray signatures = m_jniEnv->NewObjectArray(count, m_stringClass, NULL);
+    jlongArray usos = m_jniEnv->NewLongArray(count);
+    jlongArray bufferPtrs = m_jniEnv->NewLongArray(count);
+    jobjectArray buffers = m_jniEnv->NewObjectArray(count, m_byteBufferClass, NULL);
+    if (generations == NULL || partitionIds == NULL || signatures == NULL ||
+        usos == NULL || bufferPtrs == NULL || buffers == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        deleteExportBuffers(pendingBuffers);
+        throw std::exception();
+    }
+
+    jlong *generationElements = m_jniEnv->GetLongArrayElements(generations, NULL);
+    jint *partitionIdElements = m_jniEnv->GetIntArrayElements(partitionIds, NULL);
+    jlong *usoElements = m_jniEnv->GetLongArrayElements(usos, NULL);
+    jlong *bufferPtrElements = m_jniEnv->GetLongArrayElements(bufferPtrs, NULL);
+    bool filled = (generationElements != NULL && partitionIdElements != NULL &&
+                   usoElements != NULL && bufferPtrElements != NULL);
+    for (jsize ii = 0; filled && ii < count; ii++) {
+        const PendingExportBuffer &pending = pendingBuffers[ii];
+        generationElements[ii] = pending.m_exportGeneration;
+        partitionIdElements[ii] = pending.m_partitionId;
+        usoElements[ii] = pending.m_uso;
+        bufferPtrElements[ii] = reinterpret_cast<jlong>(pending.m_rawPtr);
+
+        jstring signatureString = m_jniEnv->NewStringUTF(pending.m_signature.c_str());
+        jobject buffer = m_jniEnv->NewDirectByteBuffer(pending.m_rawPtr, pending.m_rawLength);
+        if (signatureString == NULL || buffer == NULL) {
+            filled = false;
+            break;
+        }
+        m_jniEnv->SetObjectArrayElement(signatures, ii, signatureString);
+        m_jniEnv->SetObjectArrayElement(buffers, ii, buffer);
+    }
+    // Released arrays must not be touched again, release them before bailing out
+    const jint mode = filled ? 0 : JNI_ABORT;
+    if (generationElements != NULL) {
+        m_jniEnv->ReleaseLongArrayElements(generations, generationElements, mode);
+    }
+    if (partitionIdElements != NULL) {
+        m_jniEnv->ReleaseIntArrayElements(partitionIds, partitionIdElements, mode);
+    }
+    if (usoElements != NULL) {
+        m_jniEnv->ReleaseLongArrayElements(usos, usoElements, mode);
+    }
+    if (bufferPtrElements != NULL) {
+        m_jniEnv->ReleaseLongArrayElements(bufferPtrs, bufferPtrElements, mode);
+    }
+    if (!filled) {
+        m_jniEnv->ExceptionDescribe();
+        deleteExportBuffers(pendingBuffers);
+        throw std::exception();
+    }
+
+    // The blocks belong to Java from here on
+    m_jniEnv->CallStaticVoidMethod(
+            m_exportManagerClass,
+            m_pushExportBuffersMID,
+            generations,
+            partitionIds,
+            signatures,
+            usos,
+            bufferPtrs,
+            buffers);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+}
+
+void JNITopend::deleteExportBuffers(std::vector<PendingExportBuffer> &buffers) {
+    for (size_t ii = 0; ii < buffers.size(); ii++) {
+        delete [] buffers[ii].m_rawPtr;
+    }
+    buffers.clear();
+}
+
 int64_t JNITopend::pushDRBuffer(int32_t partitionId, StreamBlock *block) {
     int64_t retval = -1;
     if (block != NULL) {
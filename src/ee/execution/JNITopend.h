@@ -22,6 +22,7 @@
 #include "common/FatalException.hpp"
 #include "common/Pool.hpp"
 #include <jni.h>
+#include <vector>
 
 namespace voltdb {
 
@@ -48,6 +49,7 @@ public:
             StreamBlock *block,
             bool sync,
             bool endOfStream);
+    void flushExportBuffers();
 
     int64_t pushDRBuffer(int32_t partitionId, StreamBlock *block);
 
@@ -62,7 +64,21 @@ public:
     std::string decodeBase64AndDecompress(const std::string& buffer);
 
 private:
+    // A committed export block held back until the next flush
+    struct PendingExportBuffer {
+        int64_t m_exportGeneration;
+        int32_t m_partitionId;
+        std::string m_signature;
+        int64_t m_uso;
+        char *m_rawPtr;
+        int32_t m_rawLength;
+    };
+
+    // Frees blocks that never made it to Java
+    static void deleteExportBuffers(std::vector<PendingExportBuffer> &buffers);
+
     JNIEnv *m_jniEnv;
+    std::vector<PendingExportBuffer> m_pendingExportBuffers;
 
     /**
      * JNI object corresponding to this engine. for callback functions.
@@ -75,11 +91,14 @@ private:
     jmethodID m_planForFragmentIdMID;
     jmethodID m_crashVoltDBMID;
     jmethodID m_pushExportBufferMID;
+    jmethodID m_pushExportBuffersMID;
     jmethodID m_getQueuedExportBytesMID;
     jmethodID m_pushDRBufferMID;
     jmethodID m_reportDRConflictMID;
     jmethodID m_decodeBase64AndDecompressToBytesMID;
     jclass m_exportManagerClass;
+    jclass m_stringClass;
+    jclass m_byteBufferClass;
     jclass m_partitionDRGatewayClass;
     jclass m_encoderClass;
 };
@@ -119,6 +119,7 @@ typedef std::pair<std::string, catalog::Column*> LabeledColumn;
 typedef std::pair<std::string, catalog::Index*> LabeledIndex;
 typedef std::pair<std::string, catalog::Table*> LabeledTable;
 typedef std::pair<std::string, catalog::MaterializedViewInfo*> LabeledView;
+typedef std::pair<CatalogId, Table*> TableIdPair;
 
 /**
  * The set of plan bytes is explicitly maintained in MRU-first order,
@@ -143,6 +144,7 @@ VoltDBEngine::VoltDBEngine(Topend *topend, LogProxy *logProxy)
       m_partitionId(-1),
       m_hashinator(NULL),
       m_isActiveActiveDREnabled(false),
+      m_hasDeferredIndexBuilds(false),
       m_currentInputDepId(-1),
       m_stringPool(16777216, 2),
       m_numResultDependencies(0),
@@ -361,10 +363,75 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
                                        int64_t lastCommittedSpHandle,
                                        int64_t uniqueId,
                                        int64_t undoToken)
+{
+    // every fragment is a run of its own
+    return executePlanFragmentRuns(numFragments,
+                                   planfragmentIds,
+                                   NULL,
+                                   numFragments,
+                                   inputDependencyIds,
+                                   serialize_in,
+                                   txnId,
+                                   spHandle,
+                                   lastCommittedSpHandle,
+                                   uniqueId,
+                                   undoToken);
+}
+
+/**
+ * Execute runs of the same plan fragment serially and in order.  The
+ * fragment of a run is executed once for each of its parameter sets, which
+ * follow each other in serialize_in.  This is the meat of the JNI call
+ * org.voltdb.jni.ExecutionEngine.nativeExecuteRepeatedPlanFragments, the
+ * results are the same as those of executePlanFragments for the fragment
+ * of each run repeated runLengths times.
+ */
+int VoltDBEngine::executeRepeatedPlanFragments(int32_t numRuns,
+                                               int64_t planfragmentIds[],
+                                               int32_t runLengths[],
+                                               ReferenceSerializeInputBE &serialize_in,
+                                               int64_t txnId,
+                                               int64_t spHandle,
+                                               int64_t lastCommittedSpHandle,
+                                               int64_t uniqueId,
+                                               int64_t undoToken)
+{
+    int32_t numFragments = 0;
+    for (int32_t run = 0; run < numRuns; ++run) {
+        if (runLengths[run] <= 0) {
+            throwFatalException("run %d of plan fragment %jd is empty", run, (intmax_t)planfragmentIds[run]);
+        }
+        numFragments += runLengths[run];
+    }
+    return executePlanFragmentRuns(numRuns,
+                                   planfragmentIds,
+                                   runLengths,
+                                   numFragments,
+                                   NULL,
+                                   serialize_in,
+                                   txnId,
+                                   spHandle,
+                                   lastCommittedSpHandle,
+                                   uniqueId,
+                                   undoToken);
+}
+
+int VoltDBEngine::executePlanFragmentRuns(int32_t numRuns,
+                                          int64_t planfragmentIds[],
+                                          int32_t runLengths[],
+                                          int32_t numFragments,
+                                          int64_t inputDependencyIds[],
+                                          ReferenceSerializeInputBE &serialize_in,
+                                          int64_t txnId,
+                                          int64_t spHandle,
+                                          int64_t lastCommittedSpHandle,
+                                          int64_t uniqueId,
+                                          int64_t undoToken)
 {
     // count failures
     int failures = 0;
 
+    buildDeferredIndexes();
     setUndoToken(undoToken);
 
     // configure the execution context.
@@ -380,43 +447,82 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
     m_executorContext->m_progressStats.resetForNewBatch();
     NValueArray &params = m_executorContext->getParameterContainer();
 
-    for (m_currentIndexInBatch = 0; m_currentIndexInBatch < numFragments; ++m_currentIndexInBatch) {
+    m_currentIndexInBatch = 0;
+    for (int32_t run = 0; run < numRuns && failures == 0; ++run) {
+        const int32_t runLength = runLengths ? runLengths[run] : 1;
 
-        int usedParamcnt = serialize_in.readShort();
-        m_executorContext->setUsedParameterCount(usedParamcnt);
-        if (usedParamcnt < 0) {
-            throwFatalException("parameter count is negative: %d", usedParamcnt);
-        }
-        assert (usedParamcnt < MAX_PARAM_COUNT);
+        // the plan is looked up for the first fragment of the run and
+        // rerun for each of the following parameter sets
+        ExecutorVector *runPlan = NULL;
 
-        for (int j = 0; j < usedParamcnt; ++j) {
-            params[j].deserializeFromAllocateForStorage(serialize_in, &m_stringPool);
-        }
+        for (int32_t i = 0; i < runLength; ++i, ++m_currentIndexInBatch) {
+            int usedParamcnt = serialize_in.readShort();
+            m_executorContext->setUsedParameterCount(usedParamcnt);
+            if (usedParamcnt < 0) {
+                throwFatalException("parameter count is negative: %d", usedParamcnt);
+            }
+            assert (usedParamcnt < MAX_PARAM_COUNT);
 
-        // success is 0 and error is 1.
-        if (executePlanFragment(planfragmentIds[m_currentIndexInBatch],
-                                inputDependencyIds ? inputDependencyIds[m_currentIndexInBatch] : -1,
-                                m_currentIndexInBatch == 0,
-                                m_currentIndexInBatch == (numFragments - 1))) {
-            ++failures;
-            break;
-        }
+            for (int j = 0; j < usedParamcnt; ++j) {
+                params[j].deserializeFromAllocateForStorage(serialize_in, &m_stringPool);
+            }
+
+            // success is 0 and error is 1.
+            if (executePlanFragment(planfragmentIds[run],
+                                    inputDependencyIds ? inputDependencyIds[run] : -1,
+                                    m_currentIndexInBatch == 0,
+                                    m_currentIndexInBatch == (numFragments - 1),
+                                    runPlan)) {
+                ++failures;
+                break;
+            }
 
-        // at the end of each frag, rollup and reset counters
-        m_executorContext->m_progressStats.rollUpForPlanFragment();
+            // at the end of each frag, rollup and reset counters
+            m_executorContext->m_progressStats.rollUpForPlanFragment();
 
-        m_stringPool.purge();
+            m_stringPool.purge();
+        }
     }
 
     m_currentIndexInBatch = -1;
 
+    // hand the export blocks committed during this batch to Java in one call
+    m_topend->flushExportBuffers();
+
     return failures;
 }
 
+int VoltDBEngine::executeTransactionBatch(int32_t numTxns,
+                                          int64_t planfragmentIds[],
+                                          ReferenceSerializeInputBE &serialize_in,
+                                          int64_t txnIds[],
+                                          int64_t spHandles[],
+                                          int64_t lastCommittedSpHandles[],
+                                          int64_t uniqueIds[],
+                                          int64_t undoTokens[])
+{
+    for (int32_t i = 0; i < numTxns; ++i) {
+        // each transaction is a batch of one fragment, so its results get their own header
+        if (executePlanFragments(1,
+                                 &planfragmentIds[i],
+                                 NULL,
+                                 serialize_in,
+                                 txnIds[i],
+                                 spHandles[i],
+                                 lastCommittedSpHandles[i],
+                                 uniqueIds[i],
+                                 undoTokens[i]) > 0) {
+            return 1;
+        }
+    }
+    return 0;
+}
+
 int VoltDBEngine::executePlanFragment(int64_t planfragmentId,
                                       int64_t inputDependencyId,
                                       bool first,
-                                      bool last)
+                                      bool last,
+                                      ExecutorVector *&runPlan)
 {
     assert(planfragmentId != 0);
 
@@ -450,8 +556,15 @@ int VoltDBEngine::executePlanFragment(int64_t planfragmentId,
 
     int64_t tuplesModified = 0;
     try {
-        // execution lists for planfragments are cached by planfragment id
-        setExecutorVectorForFragmentId(planfragmentId);
+        // execution lists for planfragments are cached by planfragment id,
+        // the rest of a run of the same fragment reuses the first lookup
+        if (runPlan == NULL) {
+            setExecutorVectorForFragmentId(planfragmentId);
+            runPlan = m_currExecutorVec;
+        }
+        else {
+            m_currExecutorVec = runPlan;
+        }
         assert(m_currExecutorVec);
 
         executePlanFragment(m_currExecutorVec, &tuplesModified);
@@ -1102,6 +1215,8 @@ VoltDBEngine::updateCatalog(const int64_t timestamp, const std::string &catalogP
 
     assert(m_catalog != NULL); // the engine must be initialized
 
+    buildDeferredIndexes();
+
     VOLT_DEBUG("Updating catalog...");
 
     // apply the diff commands to the existing catalog
@@ -1171,6 +1286,13 @@ VoltDBEngine::loadTable(int32_t tableId,
         return false;
     }
 
+    // Rows loaded without their index entries can neither be undone nor
+    // checked for unique violations
+    if (table->isIndexBuildDeferred() &&
+        (getCurrentUndoQuantum() != NULL || returnUniqueViolations)) {
+        buildDeferredIndexes();
+    }
+
     try {
         table->loadTuplesFrom(serializeIn, NULL, returnUniqueViolations ? &m_resultOutput : NULL, shouldDRStream);
     }
@@ -1480,6 +1602,7 @@ void VoltDBEngine::tick(int64_t timeInMillis, int64_t lastCommittedSpHandle) {
     BOOST_FOREACH (LabeledStream table, m_exportingTables) {
         table.second->flushOldTuples(timeInMillis);
     }
+    m_topend->flushExportBuffers();
     m_executorContext->drStream()->periodicFlush(timeInMillis, lastCommittedSpHandle);
     if (m_executorContext->drReplicatedStream()) {
         m_executorContext->drReplicatedStream()->periodicFlush(timeInMillis, lastCommittedSpHandle);
@@ -1492,6 +1615,7 @@ void VoltDBEngine::quiesce(int64_t lastCommittedSpHandle) {
     BOOST_FOREACH (LabeledStream table, m_exportingTables) {
         table.second->flushOldTuples(-1L);
     }
+    m_topend->flushExportBuffers();
     m_executorContext->drStream()->periodicFlush(-1L, lastCommittedSpHandle);
     if (m_executorContext->drReplicatedStream()) {
         m_executorContext->drReplicatedStream()->periodicFlush(-1L, lastCommittedSpHandle);
@@ -1629,6 +1753,7 @@ bool VoltDBEngine::activateTableStream(
         TableStreamType streamType,
         int64_t undoToken,
         ReferenceSerializeInputBE &serializeIn) {
+    buildDeferredIndexes();
     Table* found = getTable(tableId);
     if (! found) {
         return false;
@@ -1831,6 +1956,8 @@ VoltDBEngine::exportAction(bool syncAction, int64_t ackOffset, int64_t seqNo, st
 
     Table *table_for_el = pos->second;
     if (syncAction) {
+        // blocks held back for batching must reach Java before the positions move
+        m_topend->flushExportBuffers();
         table_for_el->setExportStreamPositions(seqNo, (size_t) ackOffset);
     }
     return 0;
@@ -1855,6 +1982,7 @@ void VoltDBEngine::getUSOForExportTable(size_t &ackOffset, int64_t &seqNo, std::
 }
 
 size_t VoltDBEngine::tableHashCode(int32_t tableId) {
+    buildDeferredIndexes();
     Table* found = getTable(tableId);
     if (! found) {
         throwFatalException("Tried to calculate a hash code for a table that doesn't exist with id %d\n", tableId);
@@ -1929,6 +2057,21 @@ void VoltDBEngine::dispatchValidatePartitioningTask(ReferenceSerializeInputBE &t
     }
 }
 
+void VoltDBEngine::dispatchGetTableVersionsTask(ReferenceSerializeInputBE &taskInfo) {
+    const int32_t numTables = taskInfo.readInt();
+    m_resultOutput.writeInt(static_cast<int32_t>(sizeof(int64_t) * numTables));
+    for (int ii = 0; ii < numTables; ii++) {
+        CatalogId tableId = static_cast<int32_t>(taskInfo.readLong());
+        std::map<CatalogId, Table*>::iterator table = m_tables.find(tableId);
+        PersistentTable *persistentTable = NULL;
+        if (table != m_tables.end()) {
+            persistentTable = dynamic_cast<PersistentTable*>(table->second);
+        }
+        // -1 tells the caller the table has no version to compare
+        m_resultOutput.writeLong(persistentTable ? persistentTable->version() : -1);
+    }
+}
+
 void VoltDBEngine::collectDRTupleStreamStateInfo() {
     std::size_t size = 3 * sizeof(int64_t) + 4 /*drVersion*/ + 1 /*hasReplicatedStream*/;
     if (m_executorContext->drReplicatedStream()) {
@@ -1960,6 +2103,7 @@ int64_t VoltDBEngine::applyBinaryLog(int64_t txnId,
                                   int64_t undoToken,
                                   const char *log) {
     DRTupleStreamDisableGuard guard(m_executorContext, !m_isActiveActiveDREnabled);
+    buildDeferredIndexes();
     setUndoToken(undoToken);
     m_executorContext->setupForPlanFragments(getCurrentUndoQuantum(),
                                              txnId,
@@ -1968,6 +2112,9 @@ int64_t VoltDBEngine::applyBinaryLog(int64_t txnId,
                                              uniqueId);
 
     int64_t rowCount = m_wrapper.apply(log, m_tablesBySignatureHash, &m_stringPool, this, remoteClusterId);
+
+    // conflicts are exported, so hand any blocks they committed to Java now
+    m_topend->flushExportBuffers();
     return rowCount;
 }
 
@@ -1979,6 +2126,9 @@ void VoltDBEngine::executeTask(TaskType taskType, ReferenceSerializeInputBE &tas
     case TASK_TYPE_GET_DR_TUPLESTREAM_STATE:
         collectDRTupleStreamStateInfo();
         break;
+    case TASK_TYPE_GET_TABLE_VERSIONS:
+        dispatchGetTableVersionsTask(taskInfo);
+        break;
     case TASK_TYPE_SET_DR_SEQUENCE_NUMBERS: {
         int64_t partitionSequenceNumber = taskInfo.readLong();
         int64_t mpSequenceNumber = taskInfo.readLong();
@@ -2027,11 +2177,41 @@ void VoltDBEngine::executeTask(TaskType taskType, ReferenceSerializeInputBE &tas
         }
         break;
     }
+    case TASK_TYPE_DEFER_INDEX_BUILD:
+        deferIndexBuilds();
+        m_resultOutput.writeInt(0);
+        break;
+    case TASK_TYPE_BUILD_DEFERRED_INDEXES:
+        buildDeferredIndexes();
+        m_resultOutput.writeInt(0);
+        break;
     default:
         throwFatalException("Unknown task type %d", taskType);
     }
 }
 
+void VoltDBEngine::deferIndexBuilds() {
+    BOOST_FOREACH (TableIdPair tablePair, m_tables) {
+        PersistentTable *table = dynamic_cast<PersistentTable*>(tablePair.second);
+        if (table != NULL && table->deferIndexBuild()) {
+            m_hasDeferredIndexBuilds = true;
+        }
+    }
+}
+
+void VoltDBEngine::buildDeferredIndexes() {
+    if (!m_hasDeferredIndexBuilds) {
+        return;
+    }
+    m_hasDeferredIndexBuilds = false;
+    BOOST_FOREACH (TableIdPair tablePair, m_tables) {
+        PersistentTable *table = dynamic_cast<PersistentTable*>(tablePair.second);
+        if (table != NULL) {
+            table->buildDeferredIndexes();
+        }
+    }
+}
+
 void VoltDBEngine::executePurgeFragment(PersistentTable* table) {
     boost::shared_ptr<ExecutorVector> pev = table->getPurgeExecutorVector();
 
@@ -172,6 +172,38 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                                  int64_t uniqueId,
                                  int64_t undoToken);
 
+        /**
+         * Execute runs of the same plan fragment, each given once with the
+         * number of parameter sets that follow for it. The fragment of a run
+         * is looked up once and executed for each of its parameter sets, with
+         * the results of executePlanFragments for the repeated fragment ids.
+         */
+        int executeRepeatedPlanFragments(int32_t numRuns,
+                                         int64_t planfragmentIds[],
+                                         int32_t runLengths[],
+                                         ReferenceSerializeInputBE &serialize_in,
+                                         int64_t txnId,
+                                         int64_t spHandle,
+                                         int64_t lastCommittedSpHandle,
+                                         int64_t uniqueId,
+                                         int64_t undoToken);
+
+        /**
+         * Execute a batch of single partition transactions that each run one
+         * plan fragment, with their own transaction ids and undo tokens. The
+         * results of each transaction follow each other in the result buffer,
+         * each with the header of a batch of one fragment. Stops at the first
+         * failing transaction, leaving the undo to the caller.
+         */
+        int executeTransactionBatch(int32_t numTxns,
+                                    int64_t planfragmentIds[],
+                                    ReferenceSerializeInputBE &serialize_in,
+                                    int64_t txnIds[],
+                                    int64_t spHandles[],
+                                    int64_t lastCommittedSpHandles[],
+                                    int64_t uniqueIds[],
+                                    int64_t undoTokens[]);
+
         /**
          * Execute a single, top-level plan fragment.  This method is
          * used both internally to execute fragments in a batch, and
@@ -424,9 +456,19 @@ class __attribute__((visibility("default"))) VoltDBEngine {
          * Tasks dispatched by executeTask
          */
         void dispatchValidatePartitioningTask(ReferenceSerializeInputBE &taskInfo);
+        void dispatchGetTableVersionsTask(ReferenceSerializeInputBE &taskInfo);
 
         void collectDRTupleStreamStateInfo();
 
+        void deferIndexBuilds();
+
+        /**
+         * Build the indexes of every table that had index maintenance
+         * deferred by deferIndexBuilds(). Anything that reads or modifies
+         * tables other than a plain load must call this first.
+         */
+        void buildDeferredIndexes();
+
         void setCurrentUndoQuantum(voltdb::UndoQuantum* undoQuantum);
 
         // -------------------------------------------------
@@ -440,12 +482,32 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         void resetDRConflictStreamedTables();
 
         /**
-         * Execute a single plan fragment.
+         * Execute runs of plan fragments, runLengths is NULL when every
+         * fragment is a run of its own. numFragments is the total of the
+         * run lengths.
+         */
+        int executePlanFragmentRuns(int32_t numRuns,
+                                    int64_t planfragmentIds[],
+                                    int32_t runLengths[],
+                                    int32_t numFragments,
+                                    int64_t inputDependencyIds[],
+                                    ReferenceSerializeInputBE &serialize_in,
+                                    int64_t txnId,
+                                    int64_t spHandle,
+                                    int64_t lastCommittedSpHandle,
+                                    int64_t uniqueId,
+                                    int64_t undoToken);
+
+        /**
+         * Execute a single plan fragment. runPlan is NULL for the first
+         * fragment of a run, the plan is then looked up and runPlan set to
+         * it, and the rest of the run executes that plan again.
          */
         int executePlanFragment(int64_t planfragmentId,
                                 int64_t inputDependencyId,
                                 bool first,
-                                bool last);
+                                bool last,
+                                ExecutorVector *&runPlan);
 
         /**
          * Set up the vector of executors for a given fragment id.
@@ -516,6 +578,9 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         catalog::Database *m_database;
         bool m_isActiveActiveDREnabled;
 
+        // True while at least one table has its index build deferred
+        bool m_hasDeferredIndexBuilds;
+
         /** buffer object for result tables. set when the result table is sent out to localsite. */
         FallbackSerializeOutput m_resultOutput;
 
@@ -83,6 +83,31 @@ class CompactingTreeUniqueIndex : public TableIndex
         }
     }
 
+    bool stageBulkEntriesDo(const std::vector<TableTuple> &tuples, TableTuple *conflictTuple)
+    {
+        m_bulkKeys.reserve(m_bulkKeys.size() + tuples.size());
+        m_bulkValues.reserve(m_bulkValues.size() + tuples.size());
+        for (std::vector<TableTuple>::const_iterator it = tuples.begin(); it != tuples.end(); ++it) {
+            m_bulkKeys.push_back(setKeyFromTuple(&(*it)));
+            m_bulkValues.push_back(it->address());
+        }
+        return true;
+    }
+
+    bool finishBulkBuildDo(TableTuple *conflictTuple)
+    {
+        const void* const* conflictEntry = m_entries.bulkInsert(m_bulkKeys, m_bulkValues);
+        const int added = static_cast<int>(m_bulkKeys.size());
+        std::vector<KeyType>().swap(m_bulkKeys);
+        std::vector<const void*>().swap(m_bulkValues);
+        if (conflictEntry != NULL) {
+            conflictTuple->move(const_cast<void*>(*conflictEntry));
+            return false;
+        }
+        m_inserts += added;
+        return true;
+    }
+
     bool deleteEntryDo(const TableTuple *tuple)
     {
         ++m_deletes;
@@ -374,6 +399,10 @@ class CompactingTreeUniqueIndex : public TableIndex
 
     MapType m_entries;
 
+    // keys staged by a bulk build, built into m_entries all at once
+    std::vector<KeyType> m_bulkKeys;
+    std::vector<const void*> m_bulkValues;
+
     // comparison stuff
     KeyComparator m_cmp;
 
@@ -173,6 +173,46 @@ void TableIndex::addEntry(const TableTuple *tuple, TableTuple *conflictTuple)
     addEntryDo(tuple, conflictTuple);
 }
 
+bool TableIndex::stageBulkEntries(const std::vector<TableTuple> &tuples, TableTuple *conflictTuple)
+{
+    if (!isPartialIndex()) {
+        return stageBulkEntriesDo(tuples, conflictTuple);
+    }
+    std::vector<TableTuple> matching;
+    matching.reserve(tuples.size());
+    const AbstractExpression* predicate = getPredicate();
+    for (std::vector<TableTuple>::const_iterator it = tuples.begin(); it != tuples.end(); ++it) {
+        if (predicate->eval(&(*it), NULL).isTrue()) {
+            matching.push_back(*it);
+        }
+    }
+    return stageBulkEntriesDo(matching, conflictTuple);
+}
+
+bool TableIndex::finishBulkBuild(TableTuple *conflictTuple)
+{
+    return finishBulkBuildDo(conflictTuple);
+}
+
+bool TableIndex::stageBulkEntriesDo(const std::vector<TableTuple> &tuples, TableTuple *conflictTuple)
+{
+    for (size_t i = 0; i < tuples.size(); ++i) {
+        addEntryDo(&tuples[i], conflictTuple);
+        if (!conflictTuple->isNullTuple()) {
+            for (size_t j = 0; j < i; ++j) {
+                deleteEntryDo(&tuples[j]);
+            }
+            return false;
+        }
+    }
+    return true;
+}
+
+bool TableIndex::finishBulkBuildDo(TableTuple *conflictTuple)
+{
+    return true;
+}
+
 bool TableIndex::deleteEntry(const TableTuple *tuple)
 {
     if (isPartialIndex() && !getPredicate()->eval(tuple, NULL).isTrue()) {
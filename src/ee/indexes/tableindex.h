@@ -222,6 +222,23 @@ public:
      */
     void addEntry(const TableTuple *tuple, TableTuple *conflictTuple);
 
+    /**
+     * hands the given tuples to the bulk build of an index that had no
+     * entries when the build started. Tree indexes only stage their keys
+     * here, other indexes add the entries right away and return false on a
+     * unique key violation, with conflictTuple set to one of the clashing
+     * tuples and none of the given tuples left in the index.
+     */
+    bool stageBulkEntries(const std::vector<TableTuple> &tuples, TableTuple *conflictTuple);
+
+    /**
+     * ends a bulk build: tree indexes sort every staged key and build their
+     * tree bottom-up in a single pass. On a unique key violation the index
+     * is left empty, conflictTuple is set to one of the clashing tuples and
+     * false is returned.
+     */
+    bool finishBulkBuild(TableTuple *conflictTuple);
+
     /**
      * removes the index entry linked to given value (and tuple
      * pointer, if it's non-unique index).
@@ -546,6 +563,11 @@ protected:
     // Index specific implementations
     virtual void addEntryDo(const TableTuple *tuple, TableTuple *conflictTuple) = 0;
     virtual bool deleteEntryDo(const TableTuple *tuple) = 0;
+    // Default implementations add the entries one at a time, tree indexes
+    // override them to stage their keys and build the tree in a single pass.
+    virtual bool stageBulkEntriesDo(const std::vector<TableTuple> &tuples,
+                                    TableTuple *conflictTuple);
+    virtual bool finishBulkBuildDo(TableTuple *conflictTuple);
     virtual bool replaceEntryNoKeyChangeDo(const TableTuple &destinationTuple,
                                          const TableTuple &originalTuple) = 0;
     virtual bool existsDo(const TableTuple* values) const = 0;
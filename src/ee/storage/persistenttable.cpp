@@ -96,6 +96,10 @@ TableTuple keyTuple;
 
 #define TABLE_BLOCKSIZE 2097152
 
+// Number of tuples handed to the indexes at a time when building deferred
+// indexes, bounds the memory the build needs besides the indexes themselves
+static const size_t DEFERRED_INDEX_BUILD_CHUNK = 256 * 1024;
+
 class SetAndRestorePendingDeleteFlag
 {
 public:
@@ -133,7 +137,9 @@ PersistentTable::PersistentTable(int partitionColumn, const char * signature, bo
     m_pkeyIndex(NULL),
     m_mvHandler(NULL),
     m_deltaTable(NULL),
-    m_deltaTableActive(false)
+    m_deltaTableActive(false),
+    m_indexBuildDeferred(false),
+    m_version(0)
 {
     // this happens here because m_data might not be initialized above
     m_iter.reset(m_data.begin());
@@ -145,6 +151,17 @@ PersistentTable::PersistentTable(int partitionColumn, const char * signature, bo
 
     m_preTruncateTable = NULL;
     ::memcpy(&m_signature, signature, 20);
+    bumpVersion();
+}
+
+void PersistentTable::bumpVersion() {
+    ExecutorContext *ec = ExecutorContext::getExecutorContext();
+    if (ec) {
+        m_version = ec->nextTableVersion();
+    }
+    else {
+        ++m_version;
+    }
 }
 
 void PersistentTable::initializeWithColumns(TupleSchema *schema,
@@ -634,6 +651,7 @@ void PersistentTable::insertPersistentTuple(TableTuple &source, bool fallible, b
 
 void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target,
                                         bool fallible, bool shouldDRStream) {
+    bumpVersion();
     if (fallible) {
         // not null checks at first
         FAIL_IF(!checkNulls(target)) {
@@ -683,10 +701,14 @@ void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target,
         target.setDirtyFalse();
     }
 
-    TableTuple conflict(m_schema);
-    tryInsertOnAllIndexes(&target, &conflict);
-    if (!conflict.isNullTuple()) {
-        throw ConstraintFailureException(this, source, conflict, CONSTRAINT_TYPE_UNIQUE);
+    // While the index build is deferred the tuple is indexed with the rest
+    // of the load in buildDeferredIndexes()
+    if (!m_indexBuildDeferred) {
+        TableTuple conflict(m_schema);
+        tryInsertOnAllIndexes(&target, &conflict);
+        if (!conflict.isNullTuple()) {
+            throw ConstraintFailureException(this, source, conflict, CONSTRAINT_TYPE_UNIQUE);
+        }
     }
 
     // this is skipped for inserts that are never expected to fail,
@@ -727,6 +749,7 @@ void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target,
  * strings or create an UndoAction or update a materialized view.
  */
 void PersistentTable::insertTupleForUndo(char *tuple) {
+    bumpVersion();
     TableTuple target(m_schema);
     target.move(tuple);
     target.setPendingDeleteOnUndoReleaseFalse();
@@ -761,6 +784,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
                                                      std::vector<TableIndex*> const &indexesToUpdate,
                                                      bool fallible,
                                                      bool updateDRTimestamp) {
+    bumpVersion();
     UndoQuantum *uq = NULL;
     char* oldTupleData = NULL;
     int tupleLength = targetTupleToUpdate.tupleLength();
@@ -952,6 +976,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
 void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
                                          char* sourceTupleDataWithNewValues,
                                          bool revertIndexes) {
+    bumpVersion();
     TableTuple matchable(m_schema);
     // Get the address of the tuple in the table from one of the copies on hand.
     // Any TableScan OR a primary key lookup on an already updated index will find the tuple
@@ -1010,6 +1035,7 @@ void PersistentTable::deleteTuple(TableTuple &target, bool fallible) {
 
     // The tempTuple is forever!
     assert(&target != &m_tempTuple);
+    bumpVersion();
 
     // Write to the DR stream before doing anything else to ensure nothing will
     // be left forgotten in case this throws.
@@ -1140,6 +1166,7 @@ void PersistentTable::deleteTupleForSchemaChange(TableTuple &target) {
  *     can be used directly.
  */
 void PersistentTable::deleteTupleForUndo(char* tupleData, bool skipLookup) {
+    bumpVersion();
     TableTuple matchable(tupleData, m_schema);
     TableTuple target(tupleData, m_schema);
     //* enable for debug */ std::cout << "DEBUG: undoing "
@@ -1247,6 +1274,65 @@ void PersistentTable::tryInsertOnAllIndexes(TableTuple *tuple, TableTuple *confl
     }
 }
 
+bool PersistentTable::deferIndexBuild() {
+    if (m_indexBuildDeferred) {
+        return true;
+    }
+    if (m_indexes.empty() || !isPersistentTableEmpty() ||
+        m_isMaterialized || m_mvHandler != NULL ||
+        !m_views.empty() || !m_viewHandlers.empty() || m_deltaTable != NULL ||
+        m_tableStreamer.get() != NULL) {
+        return false;
+    }
+    m_indexBuildDeferred = true;
+    return true;
+}
+
+static void throwDeferredIndexBuildFailure(const std::string &tableName, TableIndex *index, TableTuple &conflict) {
+    // The rows came from a consistent copy of the table, so a violation
+    // here means the load itself was broken.
+    throwFatalException("Failed to build index %s on table %s:"
+                        " unique constraint violation\n%s\n",
+                        index->getName().c_str(), tableName.c_str(),
+                        conflict.debugNoHeader().c_str());
+}
+
+void PersistentTable::buildDeferredIndexes() {
+    if (!m_indexBuildDeferred) {
+        return;
+    }
+    m_indexBuildDeferred = false;
+
+    // Tree indexes only stage the keys of each chunk and build their whole
+    // tree in one pass at the end, so a load larger than a chunk is never
+    // inserted one entry at a time into a non-empty tree.
+    std::vector<TableTuple> chunk;
+    chunk.reserve(std::min(static_cast<size_t>(m_tupleCount), DEFERRED_INDEX_BUILD_CHUNK));
+    TableIterator ti(this, m_data.begin());
+    TableTuple tuple(m_schema);
+    TableTuple conflict(m_schema);
+    bool hasMore = true;
+    while (hasMore) {
+        chunk.clear();
+        while (chunk.size() < DEFERRED_INDEX_BUILD_CHUNK && (hasMore = ti.next(tuple))) {
+            chunk.push_back(tuple);
+        }
+        if (chunk.empty()) {
+            break;
+        }
+        BOOST_FOREACH(TableIndex *index, m_indexes) {
+            if (!index->stageBulkEntries(chunk, &conflict)) {
+                throwDeferredIndexBuildFailure(m_name, index, conflict);
+            }
+        }
+    }
+    BOOST_FOREACH(TableIndex *index, m_indexes) {
+        if (!index->finishBulkBuild(&conflict)) {
+            throwDeferredIndexBuildFailure(m_name, index, conflict);
+        }
+    }
+}
+
 bool PersistentTable::checkUpdateOnUniqueIndexes(TableTuple &targetTupleToUpdate,
                                                  const TableTuple &sourceTupleWithNewValues,
                                                  std::vector<TableIndex*> const &indexesToUpdate) {
@@ -1630,6 +1716,10 @@ bool PersistentTable::doCompactionWithinSubset(TBBucketPtrVector *bucketVector)
 }
 
 void PersistentTable::doIdleCompaction() {
+    // Moving tuples requires their index entries to be in place
+    if (m_indexBuildDeferred) {
+        return;
+    }
     if (!m_blocksNotPendingSnapshot.empty()) {
         doCompactionWithinSubset(&m_blocksNotPendingSnapshotLoad);
     }
@@ -1644,6 +1734,11 @@ bool PersistentTable::doForcedCompaction() {
             "Deferring compaction until recovery is complete.");
         return false;
     }
+    if (m_indexBuildDeferred) {
+        LogManager::getThreadLogger(LOGGERID_SQL)->log(LOGLEVEL_INFO,
+            "Deferring compaction until the deferred index build is complete.");
+        return false;
+    }
     bool hadWork1 = true;
     bool hadWork2 = true;
     int64_t notPendingCompactions = 0;
@@ -304,6 +304,25 @@ public:
 
     void configureIndexStats();
 
+    /**
+     * Stop maintaining indexes on inserts into this table until
+     * buildDeferredIndexes() is called, so that a large load can build its
+     * indexes in bulk. Only applies to empty tables that do not feed or
+     * back a view and are not being streamed. Returns whether index
+     * maintenance is now deferred.
+     */
+    bool deferIndexBuild();
+
+    /**
+     * Build every index from the tuples inserted since deferIndexBuild()
+     * and resume regular index maintenance. The tuples are handed to the
+     * indexes in bounded chunks, tree indexes stage the keys of every chunk
+     * and build their whole tree bottom-up once the table has been read.
+     */
+    void buildDeferredIndexes();
+
+    bool isIndexBuildDeferred() const { return m_indexBuildDeferred; }
+
     // mutating indexes
     void addIndex(TableIndex *index);
     void removeIndex(TableIndex *index);
@@ -527,12 +546,19 @@ public:
     Table* deltaTable() const { return m_deltaTable; }
     bool isDeltaTableActive() { return m_deltaTableActive; }
 
+    /** Returns a value that changes whenever a tuple of this table is
+        inserted, updated or deleted. Versions are never reused within an
+        engine, so a truncated or rebuilt table never repeats an old one. */
+    int64_t version() const { return m_version; }
+
     // STATS
     TableStats* getTableStats() {  return &m_stats; };
 
     std::vector<uint64_t> getBlockAddresses() const;
 
 private:
+    void bumpVersion();
+
     // Zero allocation size uses defaults.
     PersistentTable(int partitionColumn, const char *signature, bool isMaterialized, int tableAllocationTargetSize = 0, int tuplelimit = INT_MAX, bool drEnabled = false);
 
@@ -742,6 +768,12 @@ private:
     // (currently defined in MaterializedViewHandler.h) instead.
     PersistentTable *m_deltaTable;
     bool m_deltaTableActive;
+
+    // Inserted tuples are not added to the indexes until buildDeferredIndexes()
+    bool m_indexBuildDeferred;
+
+    // Changes whenever the table's content does, see bumpVersion()
+    int64_t m_version;
 };
 
 inline PersistentTableSurgeon::PersistentTableSurgeon(PersistentTable &table) :
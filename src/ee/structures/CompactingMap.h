@@ -25,6 +25,8 @@
 #include <utility>
 #include <limits>
 #include <cassert>
+#include <vector>
+#include <algorithm>
 
 typedef u_int32_t NodeCount;
 
@@ -202,6 +204,15 @@ public:
     bool erase(const Key &key);
     bool erase(iterator &iter);
 
+    /**
+     * Fill an empty map from unsorted entries in one pass. The entries are sorted
+     * and the tree is built bottom-up, which is much cheaper than inserting them one
+     * at a time. Ownership of the keys moves into the map. If the map is unique and
+     * two keys collide, nothing is inserted and the data of one colliding entry is
+     * returned, otherwise NULL.
+     */
+    const Data *bulkInsert(std::vector<Key> &keys, const std::vector<Data> &values);
+
     iterator find(const Key &key) const { return iterator(this, lookup(key)); }
     iterator findRank(int64_t ith) const { return iterator(this, lookupRank(ith)); }
     int64_t size() const { return m_count; }
@@ -256,6 +267,9 @@ protected:
     TreeNode *predecessor(const TreeNode *x) const;
 
     // sub functions to make the magic happen
+    TreeNode *buildSubtree(std::vector<Key> &keys, const std::vector<Data> &values,
+                           const std::vector<int64_t> &order, int64_t lo, int64_t hi,
+                           int depth, int redDepth, TreeNode *parent);
     void leftRotate(TreeNode *x);
     void rightRotate(TreeNode *x);
     void insertFixup(TreeNode *z);
@@ -270,6 +284,21 @@ protected:
     int fullCount(const TreeNode *n) const;
 
     inline int compareKeyRegardlessOfPointer(const Key& key, TreeNode *node) const;
+
+    // Orders positions in a key vector by key, ties broken by position so that
+    // duplicates of a non-unique map keep the order they would have been inserted in
+    class KeyPositionLess {
+    public:
+        KeyPositionLess(const std::vector<Key> &keys, const Compare &comper)
+            : m_keys(keys), m_comper(comper) {}
+        bool operator()(int64_t lhs, int64_t rhs) const {
+            int cmp = m_comper(m_keys[lhs], m_keys[rhs]);
+            return cmp < 0 || (cmp == 0 && lhs < rhs);
+        }
+    private:
+        const std::vector<Key> &m_keys;
+        const Compare &m_comper;
+    };
 };
 
 template<typename KeyValuePair, typename Compare, bool hasRank>
@@ -381,6 +410,63 @@ CompactingMap<KeyValuePair, Compare, hasRank>::insert(const Key &key, const Data
     return NULL;
 }
 
+template<typename KeyValuePair, typename Compare, bool hasRank>
+const typename CompactingMap<KeyValuePair, Compare, hasRank>::Data *
+CompactingMap<KeyValuePair, Compare, hasRank>::bulkInsert(std::vector<Key> &keys, const std::vector<Data> &values)
+{
+    assert(m_count == 0);
+    assert(keys.size() == values.size());
+    if (keys.empty()) {
+        return NULL;
+    }
+
+    // Sort positions rather than the keys themselves, keys may own pooled memory
+    // and are only cheap to move once, into their node.
+    std::vector<int64_t> order(keys.size());
+    for (int64_t ii = 0; ii < static_cast<int64_t>(order.size()); ++ii) {
+        order[ii] = ii;
+    }
+    std::sort(order.begin(), order.end(), KeyPositionLess(keys, m_comper));
+
+    if (m_unique) {
+        for (size_t ii = 1; ii < order.size(); ++ii) {
+            if (m_comper(keys[order[ii - 1]], keys[order[ii]]) == 0) {
+                return &values[order[ii - 1]];
+            }
+        }
+    }
+
+    // Every level of the balanced tree is full except possibly the deepest one.
+    // Coloring the nodes on that deepest level red and everything else black
+    // gives every path the same black height.
+    int redDepth = 0;
+    for (int64_t m = static_cast<int64_t>(order.size()) - 1; m >= 0; m = m / 2 - 1) {
+        redDepth++;
+    }
+    m_root = buildSubtree(keys, values, order, 0, static_cast<int64_t>(order.size()) - 1, 0, redDepth, &NIL);
+    m_count = static_cast<int64_t>(order.size());
+    assert(m_allocator.count() == m_count);
+    return NULL;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename CompactingMap<KeyValuePair, Compare, hasRank>::TreeNode *
+CompactingMap<KeyValuePair, Compare, hasRank>::buildSubtree(std::vector<Key> &keys, const std::vector<Data> &values,
+                                                          const std::vector<int64_t> &order, int64_t lo, int64_t hi,
+                                                          int depth, int redDepth, TreeNode *parent)
+{
+    if (lo > hi) {
+        return &NIL;
+    }
+    const int64_t mid = lo + (hi - lo) / 2;
+    TreeNode *z = new (m_allocator) TreeNode(&NIL, parent, static_cast<NodeCount>(hi - lo + 1));
+    z->kv.setKeyValuePair(keys[order[mid]], values[order[mid]]);
+    z->color = (depth == redDepth) ? RED : BLACK;
+    z->left = buildSubtree(keys, values, order, lo, mid - 1, depth + 1, redDepth, z);
+    z->right = buildSubtree(keys, values, order, mid + 1, hi, depth + 1, redDepth, z);
+    return z;
+}
+
 template<typename KeyValuePair, typename Compare, bool hasRank>
 typename CompactingMap<KeyValuePair, Compare, hasRank>::iterator
 CompactingMap<KeyValuePair, Compare, hasRank>::lowerBound(const Key &key) const
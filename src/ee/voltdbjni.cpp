@@ -609,6 +609,135 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecu
     return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
 }
 
+/**
+ * Executes runs of the same plan fragment, each run given once with the number
+ * of parameter sets that follow for it in the parameter buffer.
+ * @param num_runs number of runs in the batch
+ * @param plan_fragment_ids the plan fragment of each run
+ * @param run_lengths the number of parameter sets of each run
+ * @return error code
+ */
+SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecuteRepeatedPlanFragments
+(JNIEnv *env,
+        jobject obj,
+        jlong engine_ptr,
+        jint num_runs,
+        jlongArray plan_fragment_ids,
+        jintArray run_lengths,
+        jlong txnId,
+        jlong spHandle,
+        jlong lastCommittedSpHandle,
+        jlong uniqueId,
+        jlong undoToken)
+{
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    assert(engine);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        updateJNILogProxy(engine); //JNIEnv pointer can change between calls, must be updated
+        engine->resetReusedResultOutputBuffer();
+
+        assert (num_runs <= MAX_BATCH_COUNT);
+        jlong* fragmentIdsBuffer = engine->getBatchFragmentIdsContainer();
+        env->GetLongArrayRegion(plan_fragment_ids, 0, num_runs, fragmentIdsBuffer);
+
+        std::vector<int32_t> runLengths(num_runs);
+        env->GetIntArrayRegion(run_lengths, 0, num_runs, reinterpret_cast<jint*>(&runLengths[0]));
+
+        // all fragments' parameters are in this buffer
+        ReferenceSerializeInputBE serialize_in(engine->getParameterBuffer(), engine->getParameterBufferCapacity());
+
+        int failures = engine->executeRepeatedPlanFragments(num_runs,
+                                                            fragmentIdsBuffer,
+                                                            &runLengths[0],
+                                                            serialize_in,
+                                                            txnId,
+                                                            spHandle,
+                                                            lastCommittedSpHandle,
+                                                            uniqueId,
+                                                            undoToken);
+
+        if (failures > 0) {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+        }
+        else {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
+        }
+    }
+    catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+    return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+}
+
+/**
+ * Executes a batch of single partition transactions that each run one plan
+ * fragment. The parameter sets of all transactions are in the parameter buffer.
+ * @param num_txns number of transactions in the batch
+ * @param plan_fragment_ids the plan fragment of each transaction
+ * @param undo_tokens the undo token of each transaction, MAX_VALUE for reads
+ * @return error code
+ */
+SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecuteTransactionBatch
+(JNIEnv *env,
+        jobject obj,
+        jlong engine_ptr,
+        jint num_txns,
+        jlongArray plan_fragment_ids,
+        jlongArray txn_ids,
+        jlongArray sp_handles,
+        jlongArray last_committed_sp_handles,
+        jlongArray unique_ids,
+        jlongArray undo_tokens)
+{
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    assert(engine);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        updateJNILogProxy(engine); //JNIEnv pointer can change between calls, must be updated
+        engine->resetReusedResultOutputBuffer();
+
+        assert (num_txns <= MAX_BATCH_COUNT);
+        jlong* fragmentIdsBuffer = engine->getBatchFragmentIdsContainer();
+        env->GetLongArrayRegion(plan_fragment_ids, 0, num_txns, fragmentIdsBuffer);
+
+        std::vector<int64_t> txnIds(num_txns);
+        std::vector<int64_t> spHandles(num_txns);
+        std::vector<int64_t> lastCommittedSpHandles(num_txns);
+        std::vector<int64_t> uniqueIds(num_txns);
+        std::vector<int64_t> undoTokens(num_txns);
+        env->GetLongArrayRegion(txn_ids, 0, num_txns, reinterpret_cast<jlong*>(&txnIds[0]));
+        env->GetLongArrayRegion(sp_handles, 0, num_txns, reinterpret_cast<jlong*>(&spHandles[0]));
+        env->GetLongArrayRegion(last_committed_sp_handles, 0, num_txns,
+                                reinterpret_cast<jlong*>(&lastCommittedSpHandles[0]));
+        env->GetLongArrayRegion(unique_ids, 0, num_txns, reinterpret_cast<jlong*>(&uniqueIds[0]));
+        env->GetLongArrayRegion(undo_tokens, 0, num_txns, reinterpret_cast<jlong*>(&undoTokens[0]));
+
+        // all transactions' parameters are in this buffer
+        ReferenceSerializeInputBE serialize_in(engine->getParameterBuffer(), engine->getParameterBufferCapacity());
+
+        int failures = engine->executeTransactionBatch(num_txns,
+                                                       fragmentIdsBuffer,
+                                                       serialize_in,
+                                                       &txnIds[0],
+                                                       &spHandles[0],
+                                                       &lastCommittedSpHandles[0],
+                                                       &uniqueIds[0],
+                                                       &undoTokens[0]);
+
+        if (failures > 0) {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+        }
+        else {
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
+        }
+    }
+    catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+    return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+}
+
 /**
  * Serialize the result temporary table.
  * @param engine_ptr the VoltDBEngine pointer
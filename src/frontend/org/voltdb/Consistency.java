@@ -26,6 +26,15 @@ import org.voltdb.compiler.deploymentfile.ReadlevelType;
  */
 public abstract class Consistency {
 
+    /**
+     * When set, SAFE single partition reads are also served by replicas. A
+     * replica holds each response until the partition leader's truncation
+     * handle covers every write the read could have seen, which gives the
+     * same guarantee as a read on the leader.
+     */
+    public static final boolean SAFE_REPLICA_READS =
+            Boolean.valueOf(System.getProperty("SAFE_REPLICA_READS", "false"));
+
     public enum ReadLevel {
         FAST (0),   // send reads everywhere, no waiting or queue, return response to clients immediately.
         SAFE (1);   // send reads to primary, do not replicate them to replicas, but don't lose them to
@@ -38,6 +38,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONStringer;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.Pair;
+import org.voltdb.client.HashRingLookupTable;
 import org.voltdb.utils.CompressionService;
 
 import sun.misc.Cleaner;
@@ -76,6 +77,17 @@ public class ElasticHashinator extends TheHashinator {
     private final long m_tokens;
     private final int m_tokenCount;
 
+    /*
+     * Routing table indexed by the top bits of a hash. Built on first use so that
+     * the short-lived hashinators created while planning ring changes don't pay for it.
+     */
+    private final Supplier<HashRingLookupTable> m_lookupTable = Suppliers.memoize(new Supplier<HashRingLookupTable>() {
+        @Override
+        public HashRingLookupTable get() {
+            return new HashRingLookupTable(m_tokens, m_tokenCount);
+        }
+    });
+
     // Provide a hook for the GC
     @SuppressWarnings("unused")
     private final Cleaner m_cleaner;
@@ -281,8 +293,7 @@ public class ElasticHashinator extends TheHashinator {
      * it wraps around to the last token in the ring closest to Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_lookupTable.get().partitionForToken(hash);
     }
 
     /**
@@ -580,26 +591,6 @@ public class ElasticHashinator extends TheHashinator {
         return Pair.of(tokens, numEntries);
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_tokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_tokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
-            }
-        }
-        return m_tokens + (min - 1) * 8;
-    }
-
     /**
      * Update from optimized (cooked) wire format.
      *      token-1 token-2 ...
@@ -17,17 +17,24 @@
 
 package org.voltdb;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Pair;
 import org.voltdb.AuthSystem.AuthUser;
+import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.MiscUtils;
 
 /**
@@ -158,6 +165,15 @@ public class InternalConnectionHandler {
             applyBackPressure();
         }
 
+        return submitProcedure(caller, statsCollector, procCallback, proc, catProc, fieldList) == ClientResponse.SUCCESS;
+    }
+
+    /**
+     * @return SUCCESS if the transaction was queued, GRACEFUL_FAILURE if the invocation
+     *         was rejected and SERVER_UNAVAILABLE if it could not be queued
+     */
+    private byte submitProcedure(InternalConnectionContext caller, InternalConnectionStatsCollector statsCollector,
+            ProcedureCallback procCallback, String proc, Procedure catProc, Object... fieldList) {
         StoredProcedureInvocation task = new StoredProcedureInvocation();
 
         task.setProcName(proc);
@@ -169,7 +185,7 @@ public class InternalConnectionHandler {
             String fmt = "Cannot invoke procedure %s from streaming interface %s. failed to create task.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
             m_failedCount.incrementAndGet();
-            return false;
+            return ClientResponse.GRACEFUL_FAILURE;
         }
         int partition = -1;
         try {
@@ -178,7 +194,7 @@ public class InternalConnectionHandler {
             String fmt = "Can not invoke procedure %s from streaming interface %s. Partition not found.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
             m_failedCount.incrementAndGet();
-            return false;
+            return ClientResponse.GRACEFUL_FAILURE;
         }
 
         InternalAdapterTaskAttributes kattrs = new InternalAdapterTaskAttributes(caller,  m_adapter.connectionId());
@@ -187,10 +203,265 @@ public class InternalConnectionHandler {
 
         if (!m_adapter.createTransaction(kattrs, proc, catProc, procCallback, statsCollector, task, user, partition, System.nanoTime())) {
             m_failedCount.incrementAndGet();
-            return false;
+            return ClientResponse.SERVER_UNAVAILABLE;
         }
         m_submitSuccessCount.incrementAndGet();
-        return true;
+        return ClientResponse.SUCCESS;
+    }
+
+    /**
+     * Execute a batch of invocations of one procedure from a streaming interface.
+     *
+     * Invocations of the insert or upsert procedure of a partitioned table are
+     * grouped by partition and each group is loaded by one @LoadSinglepartitionTable
+     * transaction. If a group fails, its rows are retried with one transaction per
+     * row so that a bad row only fails itself. Invocations of any other procedure
+     * are executed one transaction per row.
+     *
+     * The callback receives a single response once every row has completed, even
+     * if no row could be queued. It is the most severe failure of any row, which is
+     * SERVER_UNAVAILABLE if a row never ran, or SUCCESS if every row succeeded.
+     *
+     * @return the number of rows that were queued, the others have already failed
+     */
+    public int callProcedures(InternalConnectionContext caller, InternalConnectionStatsCollector statsCollector,
+            ProcedureCallback procCallback, String proc, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Procedure catProc = InvocationDispatcher.getProcedureFromName(proc, getCatalogContext());
+        if (catProc == null) {
+            String fmt = "Cannot invoke procedure %s from streaming interface %s. Procedure not found.";
+            m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
+            m_failedCount.addAndGet(rows.size());
+            new BatchCallback(procCallback, rows.size()).failed(ClientResponse.GRACEFUL_FAILURE, rows.size());
+            return 0;
+        }
+
+        //Indicate backpressure or not, once for the whole batch.
+        boolean b = hasBackPressure();
+        caller.setBackPressure(b);
+        if (b) {
+            applyBackPressure();
+        }
+
+        final BatchCallback batchCallback = new BatchCallback(procCallback, rows.size());
+        final Table bulkTable = getBulkLoadTable(catProc, proc);
+        int queued = 0;
+        if (bulkTable == null || rows.size() == 1) {
+            for (Object[] row : rows) {
+                byte status = submitProcedure(caller, statsCollector, batchCallback, proc, catProc, row);
+                if (status == ClientResponse.SUCCESS) {
+                    queued++;
+                } else {
+                    batchCallback.failed(status, 1);
+                }
+            }
+            return queued;
+        }
+
+        final List<Column> columns = CatalogUtil.getSortedCatalogItems(bulkTable.getColumns(), "index");
+        final VoltTable.ColumnInfo[] columnInfo = new VoltTable.ColumnInfo[columns.size()];
+        for (int i = 0; i < columnInfo.length; i++) {
+            columnInfo[i] = new VoltTable.ColumnInfo(columns.get(i).getTypeName(),
+                    VoltType.get((byte) columns.get(i).getType()));
+        }
+        final Column partitionColumn = bulkTable.getPartitioncolumn();
+        final int partitionIndex = partitionColumn.getIndex();
+
+        // group the converted rows by partition, remembering the original rows for retries
+        final Map<Integer, Pair<VoltTable, List<Object[]>>> groups = new HashMap<>();
+        for (Object[] row : rows) {
+            try {
+                if (row.length != columnInfo.length) {
+                    throw new VoltTypeException("Expected " + columnInfo.length + " values but got " + row.length);
+                }
+                Object[] converted = new Object[row.length];
+                for (int i = 0; i < row.length; i++) {
+                    converted[i] = ParameterConverter.tryToMakeCompatible(
+                            columnInfo[i].type.classFromType(), row[i]);
+                }
+                int partition = TheHashinator.getPartitionForParameter(partitionColumn.getType(), converted[partitionIndex]);
+                Pair<VoltTable, List<Object[]>> group = groups.get(partition);
+                if (group == null) {
+                    group = Pair.<VoltTable, List<Object[]>>of(new VoltTable(columnInfo), new ArrayList<Object[]>());
+                    groups.put(partition, group);
+                }
+                group.getFirst().addRow(converted);
+                group.getSecond().add(row);
+            } catch (Exception e) {
+                String fmt = "Cannot invoke procedure %s from streaming interface %s. Invalid row.";
+                m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
+                m_failedCount.incrementAndGet();
+                batchCallback.failed(ClientResponse.GRACEFUL_FAILURE, 1);
+            }
+        }
+
+        final byte upsertMode = (byte) (proc.toLowerCase().endsWith(".upsert") ? 1 : 0);
+        for (Map.Entry<Integer, Pair<VoltTable, List<Object[]>>> e : groups.entrySet()) {
+            byte status = submitBulkLoad(caller, statsCollector, batchCallback, proc, catProc, bulkTable.getTypeName(),
+                    upsertMode, e.getKey(), e.getValue().getFirst(), e.getValue().getSecond());
+            if (status == ClientResponse.SUCCESS) {
+                queued += e.getValue().getSecond().size();
+            } else {
+                batchCallback.failed(status, e.getValue().getSecond().size());
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * The table that a batch of invocations of the procedure can be bulk loaded
+     * into, or null if the procedure is not the insert or upsert procedure of a
+     * partitioned persistent table.
+     */
+    private Table getBulkLoadTable(Procedure catProc, String proc) {
+        if (!catProc.getDefaultproc() || !catProc.getSinglepartition() || catProc.getPartitiontable() == null) {
+            return null;
+        }
+        final String action = proc.substring(proc.lastIndexOf('.') + 1).toLowerCase();
+        if (!"insert".equals(action) && !"upsert".equals(action)) {
+            return null;
+        }
+        final Table table = catProc.getPartitiontable();
+        if (CatalogUtil.isTableExportOnly(getCatalogContext().database, table)) {
+            return null;
+        }
+        return table;
+    }
+
+    private byte submitBulkLoad(final InternalConnectionContext caller,
+            final InternalConnectionStatsCollector statsCollector,
+            final BatchCallback batchCallback,
+            final String proc,
+            final Procedure catProc,
+            String tableName,
+            byte upsertMode,
+            int partition,
+            VoltTable table,
+            final List<Object[]> rows) {
+        final String loadProcName = "@LoadSinglepartitionTable";
+        final Procedure loadProc = InvocationDispatcher.getProcedureFromName(loadProcName, getCatalogContext());
+        final int partitionIndex = catProc.getPartitioncolumn().getIndex();
+
+        StoredProcedureInvocation task = new StoredProcedureInvocation();
+        task.setProcName(loadProcName);
+        try {
+            table.advanceToRow(0);
+            final Object partitionParam = table.get(partitionIndex, table.getColumnType(partitionIndex));
+            table.resetRowPosition();
+            task.setParams(VoltType.valueToBytes(partitionParam), tableName, upsertMode, table);
+            task = MiscUtils.roundTripForCL(task);
+            task.setClientHandle(m_adapter.connectionId());
+        } catch (Exception e) {
+            String fmt = "Cannot invoke procedure %s from streaming interface %s. failed to create task.";
+            m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
+            m_failedCount.addAndGet(rows.size());
+            return ClientResponse.GRACEFUL_FAILURE;
+        }
+
+        ProcedureCallback groupCallback = new ProcedureCallback() {
+            @Override
+            public void clientCallback(ClientResponse response) throws Exception {
+                if (response.getStatus() == ClientResponse.SUCCESS
+                        || response.getStatus() == ClientResponse.SERVER_UNAVAILABLE) {
+                    if (statsCollector != null) {
+                        for (int i = 0; i < rows.size(); i++) {
+                            statsCollector.reportCompletion(caller.getName(), proc, response);
+                        }
+                    }
+                    batchCallback.complete(response, rows.size());
+                    return;
+                }
+                // find the bad rows by executing the group one row at a time
+                for (Object[] row : rows) {
+                    byte status = submitProcedure(caller, statsCollector, batchCallback, proc, catProc, row);
+                    if (status != ClientResponse.SUCCESS) {
+                        ClientResponse failure = batchCallback.failed(status, 1);
+                        if (statsCollector != null) {
+                            statsCollector.reportCompletion(caller.getName(), proc, failure);
+                        }
+                    }
+                }
+            }
+        };
+
+        // Loading the table is equivalent to invoking its default procedure for
+        // each row, which the importer user is allowed to do, but the sysproc
+        // itself requires admin permission.
+        final AuthUser user = getCatalogContext().authSystem.getInternalAdminUser();
+        InternalAdapterTaskAttributes kattrs = new InternalAdapterTaskAttributes(caller, m_adapter.connectionId());
+        if (!m_adapter.createTransaction(kattrs, loadProcName, loadProc, groupCallback, null, task, user, partition, System.nanoTime())) {
+            m_failedCount.addAndGet(rows.size());
+            return ClientResponse.SERVER_UNAVAILABLE;
+        }
+        m_submitSuccessCount.addAndGet(rows.size());
+        return ClientResponse.SUCCESS;
+    }
+
+    /**
+     * Collects the responses of the transactions executing a batch and passes a
+     * single response to the callback of the batch once every row completed.
+     * The response is the most severe one of any row: SERVER_UNAVAILABLE means
+     * that some rows never ran, any other failure that some rows ran and failed.
+     */
+    static class BatchCallback implements ProcedureCallback {
+        private final ProcedureCallback m_callback;
+        private final AtomicInteger m_remaining;
+        private ClientResponse m_response = null;
+
+        BatchCallback(ProcedureCallback callback, int rows) {
+            m_callback = callback;
+            m_remaining = new AtomicInteger(rows);
+        }
+
+        @Override
+        public void clientCallback(ClientResponse response) throws Exception {
+            complete(response, 1);
+        }
+
+        void complete(ClientResponse response, int rows) throws Exception {
+            synchronized (this) {
+                if (m_response == null || severity(response) > severity(m_response)) {
+                    m_response = response;
+                }
+            }
+            if (m_remaining.addAndGet(-rows) == 0 && m_callback != null) {
+                final ClientResponse batchResponse;
+                synchronized (this) {
+                    batchResponse = m_response;
+                }
+                m_callback.clientCallback(batchResponse);
+            }
+        }
+
+        /**
+         * Complete rows that were not executed.
+         * @param status  GRACEFUL_FAILURE if the rows were rejected, SERVER_UNAVAILABLE
+         *                if they could not be queued
+         */
+        ClientResponse failed(byte status, int rows) {
+            ClientResponse response = new ClientResponseImpl(status, new VoltTable[0],
+                    status == ClientResponse.SERVER_UNAVAILABLE ?
+                            "Batched invocation could not be queued" : "Batched invocation was rejected");
+            try {
+                complete(response, rows);
+            } catch (Exception e) {
+                m_logger.error("Failed to complete batched invocation", e);
+            }
+            return response;
+        }
+
+        private static int severity(ClientResponse response) {
+            switch (response.getStatus()) {
+            case ClientResponse.SUCCESS:
+                return 0;
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return 2;
+            default:
+                return 1;
+            }
+        }
     }
 
     private boolean hasBackPressure() {
@@ -1836,10 +1836,12 @@ public final class InvocationDispatcher {
          * if there is, send it to the replica as a short circuit read
          *
          * ReadLevel.SAFE:
-         * Send the read to the partition leader only
+         * Send the read to the partition leader only, or to the local replica
+         * if safe replica reads are enabled. The replica holds the response
+         * until the writes it may have seen are committed everywhere.
          */
         if (isSinglePartition && !isEveryPartition) {
-            if (isReadOnly && (m_defaultConsistencyReadLevel == ReadLevel.FAST)) {
+            if (isReadOnly && (m_defaultConsistencyReadLevel == ReadLevel.FAST || Consistency.SAFE_REPLICA_READS)) {
                 initiatorHSId = m_localReplicas.get().get(partition);
             }
             if (initiatorHSId != null) {
@@ -1877,6 +1879,7 @@ public final class InvocationDispatcher {
                     handle,
                     connectionId,
                     isForReplay);
+        workRequest.setDispatchNanos(nowNanos);
 
         Iv2Trace.logCreateTransaction(workRequest);
         m_mailbox.send(initiatorHSId, workRequest);
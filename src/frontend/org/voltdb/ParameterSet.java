@@ -343,6 +343,87 @@ public class ParameterSet implements JSONString {
         return opi.value;
     }
 
+    /**
+     * Check if serialized parameters can go to the EE as they are, in place of
+     * serializing the parameters converted for a statement. That is the case
+     * when there is one parameter per statement parameter, of the statement
+     * parameter's type or, for integers, of a narrower integer type that the
+     * EE widens. Narrowing needs the range check of the parameter conversion
+     * and doesn't pass through. Only scalar types that serialize the same whatever their value qualify.
+     * Nothing is deserialized and the buffer position is left past the
+     * parameters.
+     * @param statementParamTypes  the statement parameter types
+     * @return the size of the serialized parameters, or -1 if they don't
+     *         pass straight through
+     */
+    static int getPassThroughSize(ByteBuffer serializedParams, byte[] statementParamTypes) {
+        final int startPos = serializedParams.position();
+        if (serializedParams.remaining() < 2 || serializedParams.getShort() != statementParamTypes.length) {
+            return -1;
+        }
+        for (byte statementParamType : statementParamTypes) {
+            if (!serializedParams.hasRemaining()) {
+                return -1;
+            }
+            final byte typeByte = serializedParams.get();
+            final VoltType type;
+            if (typeByte == statementParamType) {
+                type = VoltType.get(typeByte);
+            }
+            else if (isWideningIntegerConversion(typeByte, statementParamType)) {
+                type = VoltType.get(typeByte);
+            }
+            else {
+                return -1;
+            }
+
+            int valueSize;
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                valueSize = type.getLengthInBytesForFixedTypes();
+                break;
+            case STRING:
+            case VARBINARY:
+                if (serializedParams.remaining() < 4) {
+                    return -1;
+                }
+                valueSize = serializedParams.getInt();
+                if (valueSize == VoltType.NULL_STRING_LENGTH) {
+                    valueSize = 0;
+                }
+                else if (valueSize < 0) {
+                    return -1;
+                }
+                break;
+            default:
+                return -1;
+            }
+            if (serializedParams.remaining() < valueSize) {
+                return -1;
+            }
+            serializedParams.position(serializedParams.position() + valueSize);
+        }
+        return serializedParams.position() - startPos;
+    }
+
+    private static boolean isIntegerTypeByte(byte typeByte) {
+        return typeByte == VoltType.TINYINT.getValue() ||
+               typeByte == VoltType.SMALLINT.getValue() ||
+               typeByte == VoltType.INTEGER.getValue() ||
+               typeByte == VoltType.BIGINT.getValue();
+    }
+
+    private static boolean isWideningIntegerConversion(byte fromTypeByte, byte toTypeByte) {
+        return isIntegerTypeByte(fromTypeByte) && isIntegerTypeByte(toTypeByte) &&
+               VoltType.get(fromTypeByte).getLengthInBytesForFixedTypes() <
+               VoltType.get(toTypeByte).getLengthInBytesForFixedTypes();
+    }
+
     static Object getAKosherArray(Object[] array) {
         int tables = 0;
         int integers = 0;
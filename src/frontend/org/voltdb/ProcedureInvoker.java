@@ -0,0 +1,208 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Calls the run method of a Java stored procedure.
+ *
+ * By default the invoker is a class generated with javassist at load time,
+ * which casts and unboxes each parameter to the declared type and calls run
+ * directly, instead of going through Method.invoke on every call. The
+ * generated class is defined in the class loader and package of the procedure
+ * and is shared by all sites through a per-class cache, so it is generated
+ * once per procedure class and catalog. If generation fails, or it is turned
+ * off with PROCEDURE_INVOKER_CODEGEN=false, a reflective invoker is used.
+ *
+ * Parameters must already have been converted to the declared types by
+ * {@link ParameterConverter}. Exceptions thrown by the procedure propagate
+ * unwrapped.
+ */
+public abstract class ProcedureInvoker {
+    private static final VoltLogger log = new VoltLogger("HOST");
+
+    public static final boolean CODEGEN_ENABLED =
+            Boolean.valueOf(System.getProperty("PROCEDURE_INVOKER_CODEGEN", "true"));
+
+    private static final AtomicInteger m_generatedCount = new AtomicInteger();
+
+    private static final ClassValue<ProcedureInvoker> m_invokers = new ClassValue<ProcedureInvoker>() {
+        @Override
+        protected ProcedureInvoker computeValue(Class<?> procClass) {
+            for (Method m : procClass.getDeclaredMethods()) {
+                if (m.getName().equals("run") && Modifier.isPublic(m.getModifiers())) {
+                    return create(m);
+                }
+            }
+            return null;
+        }
+    };
+
+    /**
+     * Invoke run on the procedure with parameters of the declared types.
+     * Primitive return values are boxed, void returns null.
+     * @param procedure  the procedure instance, ignored for static run methods
+     * @param params     one argument per run parameter
+     */
+    public abstract Object invoke(Object procedure, Object[] params) throws Throwable;
+
+    /**
+     * Get the invoker for a public run method, reusing the one already
+     * generated for its class when possible.
+     */
+    public static ProcedureInvoker forMethod(Method method) {
+        ProcedureInvoker invoker = m_invokers.get(method.getDeclaringClass());
+        if (invoker != null && invoker.getMethod().equals(method)) {
+            return invoker;
+        }
+        return create(method);
+    }
+
+    /**
+     * Build an invoker without caching it.
+     */
+    public static ProcedureInvoker create(Method method) {
+        if (CODEGEN_ENABLED) {
+            try {
+                return generate(method);
+            } catch (Exception e) {
+                log.warn("Unable to generate an invoker for " + method.getDeclaringClass().getName() +
+                        ", falling back to reflection: " + e.getMessage());
+            }
+        }
+        return new ReflectiveInvoker(method);
+    }
+
+    /**
+     * Build an invoker that always uses Method.invoke.
+     */
+    public static ProcedureInvoker createReflective(Method method) {
+        return new ReflectiveInvoker(method);
+    }
+
+    private Method m_method;
+
+    public Method getMethod() {
+        return m_method;
+    }
+
+    private static final class ReflectiveInvoker extends ProcedureInvoker {
+        ReflectiveInvoker(Method method) {
+            super.m_method = method;
+        }
+
+        @Override
+        public Object invoke(Object procedure, Object[] params) throws Throwable {
+            try {
+                return getMethod().invoke(procedure, params);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static ProcedureInvoker generate(Method method) throws Exception {
+        final Class<?> procClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(procClass.getModifiers())) {
+            throw new IllegalArgumentException("Procedure class is not public");
+        }
+
+        final ClassPool pool = new ClassPool(true);
+        pool.insertClassPath(new ClassClassPath(ProcedureInvoker.class));
+        if (procClass.getClassLoader() != null) {
+            pool.insertClassPath(new LoaderClassPath(procClass.getClassLoader()));
+        }
+
+        // define the invoker next to the procedure so it links against the same classes
+        final String name = procClass.getName() + "$$VoltInvoker" + m_generatedCount.incrementAndGet();
+        final CtClass ctClass = pool.makeClass(name, pool.get(ProcedureInvoker.class.getName()));
+
+        final StringBuilder call = new StringBuilder();
+        if (Modifier.isStatic(method.getModifiers())) {
+            call.append(procClass.getName());
+        } else {
+            call.append("((").append(procClass.getName()).append(")$1)");
+        }
+        call.append(".run(");
+        final Class<?>[] paramTypes = method.getParameterTypes();
+        for (int ii = 0; ii < paramTypes.length; ii++) {
+            if (ii > 0) {
+                call.append(", ");
+            }
+            appendParameter(call, paramTypes[ii], ii);
+        }
+        call.append(")");
+
+        final StringBuilder body = new StringBuilder();
+        body.append("public Object invoke(Object procedure, Object[] params) throws Throwable {\n");
+        if (method.getReturnType() == void.class) {
+            body.append(call).append(";\nreturn null;\n");
+        } else {
+            body.append("return ($w)").append(call).append(";\n");
+        }
+        body.append("}");
+        ctClass.addMethod(CtNewMethod.make(body.toString(), ctClass));
+
+        final Class<?> invokerClass = ctClass.toClass(procClass.getClassLoader(), procClass.getProtectionDomain());
+        ctClass.detach();
+        final ProcedureInvoker invoker = (ProcedureInvoker) invokerClass.newInstance();
+        invoker.m_method = method;
+        return invoker;
+    }
+
+    private static void appendParameter(StringBuilder sb, Class<?> type, int index) {
+        final String param = "$2[" + index + "]";
+        if (type == long.class) {
+            sb.append("((java.lang.Long)").append(param).append(").longValue()");
+        } else if (type == int.class) {
+            sb.append("((java.lang.Integer)").append(param).append(").intValue()");
+        } else if (type == short.class) {
+            sb.append("((java.lang.Short)").append(param).append(").shortValue()");
+        } else if (type == byte.class) {
+            sb.append("((java.lang.Byte)").append(param).append(").byteValue()");
+        } else if (type == double.class) {
+            sb.append("((java.lang.Double)").append(param).append(").doubleValue()");
+        } else if (type == float.class) {
+            sb.append("((java.lang.Float)").append(param).append(").floatValue()");
+        } else if (type == boolean.class) {
+            sb.append("((java.lang.Boolean)").append(param).append(").booleanValue()");
+        } else if (type == char.class) {
+            sb.append("((java.lang.Character)").append(param).append(").charValue()");
+        } else {
+            sb.append("(").append(sourceName(type)).append(")").append(param);
+        }
+    }
+
+    private static String sourceName(Class<?> type) {
+        if (type.isArray()) {
+            return sourceName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+}
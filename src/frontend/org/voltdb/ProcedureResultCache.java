@@ -0,0 +1,204 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Results of a deterministic read-only single partition procedure on one site,
+ * keyed by the serialized parameters of the invocation. Each entry remembers
+ * the versions the EE reported for the tables the procedure reads, and is only
+ * served while all of them are unchanged, so any write to those tables
+ * invalidates it. The least recently used entry is dropped once the cache is
+ * full. Hit rates are returned by @Statistics RESULTCACHE.
+ */
+class ProcedureResultCache extends SiteStatsSource {
+    // Entries kept per procedure on each site, 0 disables result caching
+    static final int CACHE_SIZE = Integer.getInteger("RESULT_CACHE_SIZE", 0);
+    // Larger results are not worth the memory and are never cached
+    static final int MAX_RESULT_BYTES = Integer.getInteger("RESULT_CACHE_MAX_RESULT_BYTES", 1024 * 1024);
+
+    private static class Entry {
+        final long[] m_versions;
+        final VoltTable[] m_results;
+
+        Entry(long[] versions, VoltTable[] results) {
+            m_versions = versions;
+            m_results = results;
+        }
+    }
+
+    private final int m_partitionId;
+    private final String m_procName;
+    private final long[] m_tableIds;
+    private final Map<ByteBuffer, Entry> m_entries;
+
+    private long m_hits = 0;
+    private long m_lastHits = 0;
+    private long m_misses = 0;
+    private long m_lastMisses = 0;
+    private long m_invalidations = 0;
+    private long m_lastInvalidations = 0;
+    private boolean m_interval = false;
+
+    ProcedureResultCache(long siteId, int partitionId, String procName, long[] tableIds, final int maxEntries) {
+        super(siteId, false);
+        m_partitionId = partitionId;
+        m_procName = procName;
+        m_tableIds = tableIds;
+        m_entries = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the catalog ids of the tables whose versions key the results
+     */
+    long[] getTableIds() {
+        return m_tableIds;
+    }
+
+    /**
+     * Look up the results of an earlier invocation with the same parameters.
+     * @param params    serialized parameters, from position to limit
+     * @param versions  the current versions of the tables from {@link #getTableIds}
+     * @return the cached results, or null on a miss
+     */
+    VoltTable[] get(ByteBuffer params, long[] versions) {
+        Entry entry = m_entries.get(params);
+        if (entry == null) {
+            m_misses++;
+            return null;
+        }
+        if (!Arrays.equals(entry.m_versions, versions)) {
+            m_entries.remove(params);
+            m_invalidations++;
+            m_misses++;
+            return null;
+        }
+        m_hits++;
+        return entry.m_results;
+    }
+
+    /**
+     * Remember the results of an invocation that missed. The parameters are
+     * copied, the results are kept as they are and must not change later.
+     * @param versions  the table versions the results were computed at
+     */
+    void put(ByteBuffer params, long[] versions, VoltTable[] results) {
+        int size = 0;
+        for (VoltTable result : results) {
+            size += result.getSerializedSize();
+            if (size > MAX_RESULT_BYTES) {
+                return;
+            }
+        }
+        for (long version : versions) {
+            if (version < 0) {
+                return;
+            }
+        }
+        ByteBuffer key = ByteBuffer.allocate(params.remaining());
+        key.put(params.duplicate());
+        key.flip();
+        m_entries.put(key, new Entry(versions, results));
+    }
+
+    int size() {
+        return m_entries.size();
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("ENTRIES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("HITS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MISSES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("INVALIDATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HIT_RATE", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        super.updateStatsRow(rowKey, rowValues);
+        long hits = m_hits;
+        long misses = m_misses;
+        long invalidations = m_invalidations;
+        if (m_interval) {
+            hits = m_hits - m_lastHits;
+            m_lastHits = m_hits;
+            misses = m_misses - m_lastMisses;
+            m_lastMisses = m_misses;
+            invalidations = m_invalidations - m_lastInvalidations;
+            m_lastInvalidations = m_invalidations;
+        }
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
+        rowValues[columnNameToIndex.get("PROCEDURE")] = m_procName;
+        rowValues[columnNameToIndex.get("ENTRIES")] = m_entries.size();
+        rowValues[columnNameToIndex.get("HITS")] = hits;
+        rowValues[columnNameToIndex.get("MISSES")] = misses;
+        rowValues[columnNameToIndex.get("INVALIDATIONS")] = invalidations;
+        rowValues[columnNameToIndex.get("HIT_RATE")] =
+                hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean givenNext = false;
+            @Override
+            public boolean hasNext() {
+                if (givenNext) {
+                    return false;
+                }
+                if (m_interval) {
+                    return m_hits - m_lastHits + m_misses - m_lastMisses != 0;
+                }
+                return m_hits + m_misses != 0;
+            }
+
+            @Override
+            public Object next() {
+                if (!givenNext) {
+                    givenNext = true;
+                    return new Object();
+                }
+                return null;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -32,17 +32,20 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.CatalogContext.ProcedurePartitionInfo;
 import org.voltdb.VoltProcedure.VoltAbortException;
+import org.voltdb.catalog.Database;
 import org.voltdb.catalog.PlanFragment;
 import org.voltdb.catalog.ProcParameter;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Statement;
 import org.voltdb.catalog.StmtParameter;
+import org.voltdb.catalog.Table;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.compiler.AdHocPlannedStatement;
@@ -61,6 +64,7 @@ import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.planner.ActivePlanRepository;
 import org.voltdb.sysprocs.AdHocBase;
 import org.voltdb.types.TimestampType;
+import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.MiscUtils;
 
@@ -102,6 +106,7 @@ public class ProcedureRunner {
     protected final String m_procedureName;
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
+    protected ProcedureInvoker m_procInvoker;
     protected Class<?>[] m_paramTypes;
 
     // per txn state (are reset after call)
@@ -133,6 +138,26 @@ public class ProcedureRunner {
     protected final int m_partitionColumn;
     protected final VoltType m_partitionColumnType;
     protected final Language m_language;
+    // Statement parameter types of a single statement procedure whose
+    // parameters map one to one to its statement's, null for other procedures
+    private byte[] m_passThroughParamTypes = null;
+
+    // Let the client's serialized parameters of single statement procedures go
+    // straight to the EE when they need no conversion
+    static final boolean PASS_THROUGH_PARAMS =
+            Boolean.valueOf(System.getProperty("PASS_THROUGH_PARAMS", "true"));
+
+    // Whether the single statement writes to a stream or a DR table, whose
+    // binary logs track one open transaction at a time
+    private boolean m_writesLoggedTables = true;
+
+    // Results of a deterministic read-only single statement procedure, null
+    // unless RESULT_CACHE_SIZE is set and the procedure qualifies
+    private ProcedureResultCache m_resultCache = null;
+
+    // Functions whose value changes from one transaction to the next
+    private static final Pattern TIME_FUNCTION =
+            Pattern.compile("\\b(NOW|CURRENT_TIMESTAMP)\\b", Pattern.CASE_INSENSITIVE);
 
     // dependency ids for ad hoc
     protected final static int AGG_DEPID = 1;
@@ -228,6 +253,60 @@ public class ProcedureRunner {
         return m_isSysProc;
     }
 
+    public boolean isReadOnly() {
+        return m_isReadOnly;
+    }
+
+    /**
+     * @return true if this is a single partition procedure with a single statement
+     * and no Java code, whose statement the site may execute ahead of call(...)
+     * together with the statements of other transactions. Procedures with a
+     * result cache are not, the cache must see the table versions as of their
+     * own turn. Neither are statements that write to streams or DR tables, as
+     * the export and DR streams can't interleave several open transactions.
+     */
+    public boolean isBatchableSingleStatement() {
+        return m_resultCache == null &&
+               !m_writesLoggedTables &&
+               !m_hasJava &&
+               !m_isSysProc &&
+               m_isSinglePartition &&
+               m_cachedSingleStmt.stmt != null &&
+               m_cachedSingleStmt.stmt.collector == null &&
+               getNonVoltDBBackendIfExists() == null;
+    }
+
+    public long getSingleStatementFragmentId() {
+        return m_cachedSingleStmt.stmt.aggregator.id;
+    }
+
+    public String getSingleStatementText() {
+        return m_cachedSingleStmt.stmt.getText();
+    }
+
+    /**
+     * Convert the parameters of a batchable single statement procedure the same
+     * way call(...) does, without touching any per-transaction state.
+     * @return the statement parameters, or null if they don't convert, in which
+     * case the transaction should go through call(...) to report the error.
+     */
+    public ParameterSet getSingleStatementParams(Object[] paramListIn) {
+        assert(isBatchableSingleStatement());
+        if (paramListIn.length != m_paramTypes.length) {
+            return null;
+        }
+        final Object[] paramList = new Object[paramListIn.length];
+        try {
+            for (int i = 0; i < m_paramTypes.length; i++) {
+                paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramListIn[i]);
+            }
+            return getCleanParams(m_cachedSingleStmt.stmt, false, paramList);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Note this fails for Sysprocs that use it in non-coordinating fragment work. Don't.
      * @return The transaction id for determinism, not for ordering.
@@ -244,8 +323,37 @@ public class ProcedureRunner {
         return m_cachedRNG;
     }
 
-    @SuppressWarnings("finally")
+    /**
+     * Get the client's serialized parameters of the given invocation if this
+     * procedure can run with them as they are. Only depends on the procedure
+     * and the invocation, so it can be called before the transaction is set up.
+     * @return the parameters to pass to {@link #callWithPassThroughParams}, or
+     *         null if the transaction has to go through {@link #call}
+     */
+    public ByteBuffer getPassThroughParams(StoredProcedureInvocation invocation) {
+        if (m_passThroughParamTypes == null || invocation == null ||
+                getNonVoltDBBackendIfExists() != null) {
+            return null;
+        }
+        return invocation.getPassThroughParams(m_passThroughParamTypes);
+    }
+
+    /**
+     * Run a single statement procedure with the client's serialized parameters,
+     * which are copied into the EE parameter buffer without being deserialized.
+     * @param passThroughParams  as returned by {@link #getPassThroughParams}
+     */
+    public ClientResponseImpl callWithPassThroughParams(ByteBuffer passThroughParams) {
+        assert(passThroughParams != null);
+        return callProcedure(null, passThroughParams);
+    }
+
     public ClientResponseImpl call(Object... paramListIn) {
+        return callProcedure(paramListIn, null);
+    }
+
+    @SuppressWarnings("finally")
+    private ClientResponseImpl callProcedure(Object[] paramListIn, ByteBuffer passThroughParams) {
         // verify per-txn state has been reset
         assert(m_statusCode == ClientResponse.SUCCESS);
         assert(m_statusString == null);
@@ -277,37 +385,40 @@ public class ProcedureRunner {
 
             VoltTable[] results = null;
 
-            // inject sysproc execution context as the first parameter.
-            if (isSystemProcedure()) {
-                final Object[] combinedParams = new Object[paramList.length + 1];
-                combinedParams[0] = m_systemProcedureContext;
-                for (int i=0; i < paramList.length; ++i) {
-                    combinedParams[i+1] = paramList[i];
+            // passed through parameters are known to match the statement
+            if (passThroughParams == null) {
+                // inject sysproc execution context as the first parameter.
+                if (isSystemProcedure()) {
+                    final Object[] combinedParams = new Object[paramList.length + 1];
+                    combinedParams[0] = m_systemProcedureContext;
+                    for (int i=0; i < paramList.length; ++i) {
+                        combinedParams[i+1] = paramList[i];
+                    }
+                    // swap the lists.
+                    paramList = combinedParams;
                 }
-                // swap the lists.
-                paramList = combinedParams;
-            }
 
-            if (paramList.length != m_paramTypes.length) {
-                m_statsCollector.endProcedure(false, true, null, null);
-                String msg = "PROCEDURE " + m_procedureName + " EXPECTS " + String.valueOf(m_paramTypes.length) +
-                    " PARAMS, BUT RECEIVED " + String.valueOf(paramList.length);
-                m_statusCode = ClientResponse.GRACEFUL_FAILURE;
-                return getErrorResponse(m_statusCode, msg, null);
-            }
-
-            for (int i = 0; i < m_paramTypes.length; i++) {
-                try {
-                    paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramList[i]);
-                    // check the result type in an assert
-                    assert(ParameterConverter.verifyParameterConversion(paramList[i], m_paramTypes[i]));
-                } catch (Exception e) {
+                if (paramList.length != m_paramTypes.length) {
                     m_statsCollector.endProcedure(false, true, null, null);
-                    String msg = "PROCEDURE " + m_procedureName + " TYPE ERROR FOR PARAMETER " + i +
-                            ": " + e.toString();
+                    String msg = "PROCEDURE " + m_procedureName + " EXPECTS " + String.valueOf(m_paramTypes.length) +
+                        " PARAMS, BUT RECEIVED " + String.valueOf(paramList.length);
                     m_statusCode = ClientResponse.GRACEFUL_FAILURE;
                     return getErrorResponse(m_statusCode, msg, null);
                 }
+
+                for (int i = 0; i < m_paramTypes.length; i++) {
+                    try {
+                        paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramList[i]);
+                        // check the result type in an assert
+                        assert(ParameterConverter.verifyParameterConversion(paramList[i], m_paramTypes[i]));
+                    } catch (Exception e) {
+                        m_statsCollector.endProcedure(false, true, null, null);
+                        String msg = "PROCEDURE " + m_procedureName + " TYPE ERROR FOR PARAMETER " + i +
+                                ": " + e.toString();
+                        m_statusCode = ClientResponse.GRACEFUL_FAILURE;
+                        return getErrorResponse(m_statusCode, msg, null);
+                    }
+                }
             }
 
             boolean error = false;
@@ -319,14 +430,15 @@ public class ProcedureRunner {
                         if (HOST_TRACE_ENABLED) {
                             log.trace("invoking... procMethod=" + m_procMethod.getName() + ", class=" + m_procMethod.getDeclaringClass().getName());
                         }
+                        Object rawResult;
                         try {
-                            Object rawResult = m_procMethod.invoke(m_procedure, paramList);
-                            results = getResultsFromRawResults(rawResult);
+                            rawResult = m_procInvoker.invoke(m_procedure, paramList);
                         }
-                        catch (IllegalAccessException e) {
-                            // If reflection fails, invoke the same error handling that other exceptions do
-                            throw new InvocationTargetException(e);
+                        catch (Throwable t) {
+                            // Same error handling as when the procedure was called through reflection
+                            throw new InvocationTargetException(t);
                         }
+                        results = getResultsFromRawResults(rawResult);
                     }
                     else if (m_language == Language.GROOVY) {
                         if (HOST_TRACE_ENABLED) {
@@ -367,7 +479,12 @@ public class ProcedureRunner {
             else {
                 assert(m_catProc.getStatements().size() == 1);
                 try {
-                    m_cachedSingleStmt.params = getCleanParams(m_cachedSingleStmt.stmt, false, paramList);
+                    if (passThroughParams != null) {
+                        m_cachedSingleStmt.serialization = passThroughParams;
+                    }
+                    else {
+                        m_cachedSingleStmt.params = getCleanParams(m_cachedSingleStmt.stmt, false, paramList);
+                    }
                     if (getNonVoltDBBackendIfExists() != null) {
                         // Backend handling, such as HSQL or PostgreSQL
                         VoltTable table =
@@ -377,6 +494,9 @@ public class ProcedureRunner {
                                 m_cachedSingleStmt.stmt.statementParamTypes);
                         results = new VoltTable[] { table };
                     }
+                    else if (m_resultCache != null) {
+                        results = executeWithResultCache(passThroughParams);
+                    }
                     else {
                         m_batch.add(m_cachedSingleStmt);
                         results = voltExecuteSQL(true);
@@ -389,8 +509,7 @@ public class ProcedureRunner {
 
             // Record statistics for procedure call.
             StoredProcedureInvocation invoc = (m_txnState != null ? m_txnState.getInvocation() : null);
-            ParameterSet paramSet = (invoc != null ? invoc.getParams() : null);
-            m_statsCollector.endProcedure(abort, error, results, paramSet);
+            m_statsCollector.endProcedure(abort, error, results, invoc);
 
             // don't leave empty handed
             if (results == null) {
@@ -434,6 +553,7 @@ public class ProcedureRunner {
             m_appStatusString = null;
             m_cachedRNG = null;
             m_cachedSingleStmt.params = null;
+            m_cachedSingleStmt.serialization = null;
             m_cachedSingleStmt.expectation = null;
             m_seenFinalBatch = false;
 
@@ -443,6 +563,45 @@ public class ProcedureRunner {
         return retval;
     }
 
+    /**
+     * Run the single statement unless the result cache has its results for the
+     * same parameters at the current versions of the tables it reads.
+     */
+    private VoltTable[] executeWithResultCache(ByteBuffer passThroughParams) {
+        ByteBuffer params = null;
+        if (passThroughParams != null) {
+            // the EE parameter buffer consumes the original
+            params = passThroughParams.duplicate();
+        }
+        else {
+            try {
+                params = ByteBuffer.allocate(m_cachedSingleStmt.params.getSerializedSize());
+                m_cachedSingleStmt.params.flattenToBuffer(params);
+                params.flip();
+            }
+            catch (IOException e) {
+                // run the statement uncached, it will report the bad parameter
+                params = null;
+            }
+        }
+
+        long[] versions = null;
+        if (params != null) {
+            versions = m_site.getTableVersions(m_resultCache.getTableIds());
+            VoltTable[] results = m_resultCache.get(params, versions);
+            if (results != null) {
+                return results;
+            }
+        }
+
+        m_batch.add(m_cachedSingleStmt);
+        VoltTable[] results = voltExecuteSQL(true);
+        if (params != null) {
+            m_resultCache.put(params, versions, results);
+        }
+        return results;
+    }
+
     /**
      * Check if the txn hashes to this partition. If not, it should be restarted.
      * @param txnState
@@ -1020,6 +1179,9 @@ public class ProcedureRunner {
             if (m_procMethod == null && m_language == Language.JAVA) {
                 throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
             }
+            if (m_procMethod != null) {
+                m_procInvoker = ProcedureInvoker.forMethod(m_procMethod);
+            }
             // iterate through the fields and deal with sql statements
             stmtMap = m_language.accept(sqlStatementsRetriever, this);
         }
@@ -1094,6 +1256,100 @@ public class ProcedureRunner {
                 //LOG.fine("Found statement " + name);
             }
         }
+
+        if (PASS_THROUGH_PARAMS && !m_hasJava && !m_isSysProc && m_isSinglePartition &&
+                m_cachedSingleStmt.stmt != null && m_cachedSingleStmt.stmt.collector == null) {
+            m_passThroughParamTypes = getPassThroughParamTypes(m_cachedSingleStmt.stmt);
+        }
+
+        if (!m_hasJava && !m_isSysProc && m_cachedSingleStmt.stmt != null) {
+            m_writesLoggedTables =
+                    writesLoggedTables(m_catProc.getStatements().get(VoltDB.ANON_STMT_NAME));
+        }
+
+        if (ProcedureResultCache.CACHE_SIZE > 0 && m_isReadOnly && !m_hasJava && !m_isSysProc &&
+                m_isSinglePartition && m_cachedSingleStmt.stmt != null &&
+                m_cachedSingleStmt.stmt.collector == null) {
+            long[] tableIds = getResultCacheTableIds(m_catProc.getStatements().get(VoltDB.ANON_STMT_NAME));
+            if (tableIds != null) {
+                m_resultCache = new ProcedureResultCache(
+                        m_site.getCorrespondingSiteId(),
+                        m_site.getCorrespondingPartitionId(),
+                        m_procedureName,
+                        tableIds,
+                        ProcedureResultCache.CACHE_SIZE);
+                VoltDB.instance().getStatsAgent().registerStatsSource(
+                        StatsSelector.RESULTCACHE,
+                        m_site.getCorrespondingSiteId(),
+                        m_resultCache);
+            }
+        }
+    }
+
+    /**
+     * @return true if the statement writes to a stream or a DR table, or if
+     * the tables it writes to are unknown
+     */
+    private boolean writesLoggedTables(Statement statement) {
+        if (statement == null) {
+            return true;
+        }
+        String tablesUpdated = statement.getTablesupdated();
+        if (tablesUpdated == null || tablesUpdated.isEmpty()) {
+            return !statement.getReadonly();
+        }
+        Database db = (Database) m_catProc.getParent();
+        for (String tableName : tablesUpdated.split(",")) {
+            Table table = db.getTables().get(tableName.trim());
+            if (table == null || table.getIsdred() || CatalogUtil.isTableExportOnly(db, table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the catalog ids of the tables the statement reads if its results
+     * only depend on those tables and its parameters, null otherwise
+     */
+    private long[] getResultCacheTableIds(Statement statement) {
+        if (statement == null || !statement.getIscontentdeterministic() ||
+                !statement.getIsorderdeterministic() ||
+                TIME_FUNCTION.matcher(statement.getSqltext()).find()) {
+            return null;
+        }
+        String tablesRead = statement.getTablesread();
+        if (tablesRead == null || tablesRead.isEmpty()) {
+            return null;
+        }
+        Database db = (Database) m_catProc.getParent();
+        String[] tableNames = tablesRead.split(",");
+        long[] tableIds = new long[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            Table table = db.getTables().get(tableNames[i].trim());
+            if (table == null) {
+                return null;
+            }
+            tableIds[i] = table.getRelativeIndex();
+        }
+        return tableIds;
+    }
+
+    /**
+     * @return the statement parameter types if each procedure parameter is the
+     * statement parameter at the same index with the same type, null otherwise
+     */
+    private byte[] getPassThroughParamTypes(SQLStmt stmt) {
+        final byte[] stmtParamTypes = stmt.statementParamTypes;
+        if (stmtParamTypes == null || m_catProc.getParameters().size() != stmtParamTypes.length) {
+            return null;
+        }
+        for (ProcParameter param : m_catProc.getParameters()) {
+            if (param.getIsarray() || (byte) param.getType() != stmtParamTypes[param.getIndex()]) {
+                return null;
+            }
+        }
+        return stmtParamTypes;
     }
 
     private final static Language.Visitor<Class<?>[], ProcedureRunner> parametersTypeRetriever =
@@ -1587,11 +1843,23 @@ public class ProcedureRunner {
        Object[] params = new Object[batchSize];
        long[] fragmentIds = new long[batchSize];
        String[] sqlTexts = new String[batchSize];
+       // a statement queued several times in a row goes to the EE as one
+       // fragment id followed by the parameter sets of each of its runs
+       long[] runFragmentIds = new long[batchSize];
+       int[] runLengths = new int[batchSize];
+       int numRuns = 0;
 
        int i = 0;
        for (final QueuedSQL qs : batch) {
            assert(qs.stmt.collector == null);
            fragmentIds[i] = qs.stmt.aggregator.id;
+           if (numRuns > 0 && runFragmentIds[numRuns - 1] == fragmentIds[i]) {
+               ++runLengths[numRuns - 1];
+           }
+           else {
+               runFragmentIds[numRuns] = fragmentIds[i];
+               runLengths[numRuns++] = 1;
+           }
            // use the pre-serialized params if it exists
            if (qs.serialization != null) {
                params[i] = qs.serialization;
@@ -1605,16 +1873,30 @@ public class ProcedureRunner {
 
        VoltTable[] results = null;
        try {
-           results = m_site.executePlanFragments(
-                   batchSize,
-                   fragmentIds,
-                   null,
-                   params,
-                   sqlTexts,
-                   m_txnState.txnId,
-                   m_txnState.m_spHandle,
-                   m_txnState.uniqueId,
-                   m_isReadOnly);
+           if (numRuns < batchSize) {
+               results = m_site.executeRepeatedPlanFragments(
+                       numRuns,
+                       runFragmentIds,
+                       runLengths,
+                       params,
+                       sqlTexts,
+                       m_txnState.txnId,
+                       m_txnState.m_spHandle,
+                       m_txnState.uniqueId,
+                       m_isReadOnly);
+           }
+           else {
+               results = m_site.executePlanFragments(
+                       batchSize,
+                       fragmentIds,
+                       null,
+                       params,
+                       sqlTexts,
+                       m_txnState.txnId,
+                       m_txnState.m_spHandle,
+                       m_txnState.uniqueId,
+                       m_isReadOnly);
+           }
        } catch (Throwable ex) {
            if (! m_isReadOnly) {
                // roll back the current batch and re-throw the EE exception
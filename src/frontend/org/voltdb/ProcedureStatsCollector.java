@@ -153,7 +153,7 @@ class ProcedureStatsCollector extends SiteStatsSource {
             boolean aborted,
             boolean failed,
             VoltTable[] results,
-            ParameterSet parameterSet) {
+            StoredProcedureInvocation invocation) {
         if (m_currentStartTime > 0) {
             // This is a sampled invocation.
             // Update timings and size statistics.
@@ -192,7 +192,7 @@ class ProcedureStatsCollector extends SiteStatsSource {
                 m_lastMinResultSize = Math.min(resultSize, m_lastMinResultSize);
                 m_lastMaxResultSize = Math.max(resultSize, m_lastMaxResultSize);
                 long parameterSetSize = (
-                        parameterSet != null ? parameterSet.getSerializedSize() : 0);
+                        invocation != null ? invocation.getSerializedParamSize() : 0);
                 m_totalParameterSetSize += parameterSetSize;
                 m_minParameterSetSize = Math.min(parameterSetSize, m_minParameterSetSize);
                 m_maxParameterSetSize = Math.max(parameterSetSize, m_maxParameterSetSize);
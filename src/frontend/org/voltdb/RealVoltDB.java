@@ -140,6 +140,7 @@ import org.voltdb.probe.MeshProber;
 import org.voltdb.processtools.ShellTools;
 import org.voltdb.rejoin.Iv2RejoinCoordinator;
 import org.voltdb.rejoin.JoinCoordinator;
+import org.voltdb.rejoin.StreamSnapshotStats;
 import org.voltdb.settings.ClusterSettings;
 import org.voltdb.settings.ClusterSettingsRef;
 import org.voltdb.settings.DbSettings;
@@ -1143,6 +1144,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
             BalancePartitionsStatistics rebalanceStats = new BalancePartitionsStatistics();
             getStatsAgent().registerStatsSource(StatsSelector.REBALANCE, 0, rebalanceStats);
+            getStatsAgent().registerStatsSource(StatsSelector.REJOIN, 0, new StreamSnapshotStats());
 
             KSafetyStats kSafetyStats = new KSafetyStats();
             getStatsAgent().registerStatsSource(StatsSelector.KSAFETY, 0, kSafetyStats);
@@ -118,6 +118,21 @@ public interface SiteProcedureConnection {
             long uniqueId,
             boolean readOnly) throws EEException;
 
+    /**
+     * Execute runs of the same plan fragment, each given once with the
+     * number of its consecutive parameter sets in runLengths.
+     */
+    public VoltTable[] executeRepeatedPlanFragments(
+            int numRuns,
+            long[] planFragmentIds,
+            int[] runLengths,
+            Object[] parameterSets,
+            String[] sqlTexts,
+            long txnId,
+            long spHandle,
+            long uniqueId,
+            boolean readOnly) throws EEException;
+
     /**
      * Let the EE know which batch of sql is running so it can include this
      * information in any slow query progress log messages.
@@ -208,7 +223,23 @@ public interface SiteProcedureConnection {
     public TheHashinator getCurrentHashinator();
     public void updateHashinator(TheHashinator hashinator);
     public long[] validatePartitioning(long tableIds[], int hashinatorType, byte hashinatorConfig[]);
+    /**
+     * Get the modification versions of the given tables, -1 for a table
+     * that doesn't have one. A version changes whenever the table does.
+     */
+    public long[] getTableVersions(long tableIds[]);
     public void notifyOfSnapshotNonce(String nonce, long snapshotSpHandle);
     public long applyBinaryLog(long txnId, long spHandle, long uniqueId, int remoteClusterId, byte logData[]);
     public void setDRProtocolVersion(int drVersion);
+
+    /**
+     * Stop maintaining indexes on loads into empty tables so that a bulk
+     * load can build each index in a single pass afterwards.
+     */
+    public void deferIndexBuild();
+
+    /**
+     * Build the indexes skipped since {@link #deferIndexBuild()}.
+     */
+    public void buildDeferredIndexes();
 }
@@ -19,11 +19,15 @@ package org.voltdb;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.SingleWriterRecorder;
 import org.voltdb.VoltTable.ColumnInfo;
 
 /**
  * A class to track and generate statistics regarding task starvation.
  * A worker thread can instantiate one of these and report when starvation begins and ends.
+ * It also keeps histograms of the depth of the worker's task queue and of the time
+ * tasks wait in it, recorded by the worker thread as it dequeues.
  */
 public class StarvationTracker extends SiteStatsSource {
 
@@ -52,6 +56,14 @@ public class StarvationTracker extends SiteStatsSource {
 
     private long m_starvationStartTime;
 
+    // Recorded by the worker thread, drained into the totals by the stats thread
+    private final SingleWriterRecorder m_queueDepthRecorder = new SingleWriterRecorder(2);
+    private final SingleWriterRecorder m_queueLatencyRecorder = new SingleWriterRecorder(2);
+    private final Histogram m_queueDepth = new Histogram(2);
+    private final Histogram m_lastQueueDepth = new Histogram(2);
+    private final Histogram m_queueLatency = new Histogram(2);
+    private final Histogram m_lastQueueLatency = new Histogram(2);
+
     private boolean m_interval;
 
     /**
@@ -81,6 +93,38 @@ public class StarvationTracker extends SiteStatsSource {
         m_lastMin = Math.min(m_lastMin, delta);
     }
 
+    /**
+     * Record how long a task waited in the queue, in nanoseconds
+     */
+    public void recordQueueLatency(long nanos) {
+        m_queueLatencyRecorder.recordValue(Math.max(nanos, 0) / 1000);
+    }
+
+    /**
+     * Record a sample of the number of tasks in the queue
+     */
+    public void recordQueueDepth(long depth) {
+        m_queueDepthRecorder.recordValue(depth);
+    }
+
+    private void drainQueueHistograms() {
+        Histogram depth = m_queueDepthRecorder.getIntervalHistogram();
+        m_queueDepth.add(depth);
+        m_lastQueueDepth.add(depth);
+        Histogram latency = m_queueLatencyRecorder.getIntervalHistogram();
+        m_queueLatency.add(latency);
+        m_lastQueueLatency.add(latency);
+    }
+
+    private void setQueueColumns(Object rowValues[], Histogram depth, Histogram latency) {
+        rowValues[columnNameToIndex.get("QUEUE_DEPTH_AVG")] = (long)depth.getMean();
+        rowValues[columnNameToIndex.get("QUEUE_DEPTH_MAX")] = depth.getMaxValue();
+        rowValues[columnNameToIndex.get("QUEUE_LATENCY_AVG")] = (long)latency.getMean();
+        rowValues[columnNameToIndex.get("QUEUE_LATENCY_P50")] = latency.getValueAtPercentile(50.0);
+        rowValues[columnNameToIndex.get("QUEUE_LATENCY_P99")] = latency.getValueAtPercentile(99.0);
+        rowValues[columnNameToIndex.get("QUEUE_LATENCY_MAX")] = latency.getMaxValue();
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
@@ -90,11 +134,21 @@ public class StarvationTracker extends SiteStatsSource {
         columns.add(new ColumnInfo("MIN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("STDDEV", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_DEPTH_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_DEPTH_MAX", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_LATENCY_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_LATENCY_P50", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_LATENCY_P99", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_LATENCY_MAX", VoltType.BIGINT));
     }
 
     @Override
     protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        drainQueueHistograms();
         if (m_interval) {
+            setQueueColumns(rowValues, m_lastQueueDepth, m_lastQueueLatency);
+            m_lastQueueDepth.reset();
+            m_lastQueueLatency.reset();
             final long now = System.nanoTime();
             final long totalTime = now - m_lastStartTime;
             final long count = m_count - m_lastCount;
@@ -123,6 +177,7 @@ public class StarvationTracker extends SiteStatsSource {
                 rowValues[columnNameToIndex.get("STDDEV")] = 0L;
             }
         } else {
+            setQueueColumns(rowValues, m_queueDepth, m_queueLatency);
             final long totalTime = System.nanoTime() - m_startTime;
             if (m_count > 0) {
                 final long uSecs = (m_totalTime / m_count) / 1000;
@@ -190,6 +190,8 @@ public class StatsAgent extends OpsAgent
         m_procInfo = getProcInfoSupplier();
         registeredStatsSources.put(StatsSelector.PROCEDURE,
                                    new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
+        registeredStatsSources.put(StatsSelector.RESULTCACHE,
+                                   new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
     }
 
     @Override
@@ -438,6 +440,21 @@ public class StatsAgent extends OpsAgent
         case IMPORTER:
             stats = collectStats(StatsSelector.IMPORTER, interval);
             break;
+        case REJOIN:
+            stats = collectStats(StatsSelector.REJOIN, interval);
+            break;
+        case EXPORTBACKLOG:
+            stats = collectStats(StatsSelector.EXPORTBACKLOG, interval);
+            break;
+        case TXNPHASES:
+            stats = collectStats(StatsSelector.TXNPHASES, interval);
+            break;
+        case RESULTCACHE:
+            stats = collectStats(StatsSelector.RESULTCACHE, interval);
+            break;
+        case MPQUEUE:
+            stats = collectStats(StatsSelector.MPQUEUE, interval);
+            break;
         case DRROLE:
             stats = collectStats(StatsSelector.DRROLE, false);
             break;
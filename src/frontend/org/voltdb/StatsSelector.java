@@ -56,5 +56,10 @@ public enum StatsSelector {
     CPU,            // Return CPU Stats
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
-    IMPORTER
+    IMPORTER,
+    REJOIN,         // return rejoin stream snapshot progress
+    EXPORTBACKLOG,  // return export stream rates, backlog and ack latency
+    TXNPHASES,      // return sampled per-procedure latency of each phase of SP transactions
+    RESULTCACHE,    // return hit rate of the read-only procedure result caches
+    MPQUEUE         // return read bypass and write wait counters of the MP transaction queue
 }
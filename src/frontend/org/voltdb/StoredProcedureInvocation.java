@@ -241,7 +241,7 @@ public class StoredProcedureInvocation implements JSONString {
                 getSerializedParamSize());
     }
 
-    private int getSerializedParamSize()
+    public int getSerializedParamSize()
     {
         // get params size
         int serializedParamSize = 0;
@@ -540,6 +540,28 @@ public class StoredProcedureInvocation implements JSONString {
         return null;
     }
 
+    /**
+     * Get the client's serialized parameters if they can go straight to the EE
+     * as the parameters of a statement, so they are never deserialized.
+     * @param statementParamTypes  the statement parameter types
+     * @return a view of just the parameter bytes, or null if the parameters
+     *         were not serialized or would need converting
+     */
+    public ByteBuffer getPassThroughParams(byte[] statementParamTypes) {
+        if (serializedParams == null) {
+            return null;
+        }
+        final ByteBuffer dup = serializedParams.duplicate();
+        final int start = dup.position();
+        final int size = ParameterSet.getPassThroughSize(dup, statementParamTypes);
+        if (size < 0) {
+            return null;
+        }
+        dup.limit(start + size);
+        dup.position(start);
+        return dup.slice();
+    }
+
     public void setSerializedParams(ByteBuffer serializedParams) {
         this.serializedParams = serializedParams;
     }
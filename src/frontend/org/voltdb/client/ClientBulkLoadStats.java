@@ -0,0 +1,196 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+/**
+ * Collect the activity of the bulk loaders of a client for a single partition.
+ * Counters cover the batches that completed during the time period of the
+ * {@link ClientStatsContext}, while the batch size and outstanding bytes
+ * describe the state of the loader's flow control when the stats were fetched.
+ * Tables that are not partitioned are reported under the multi-partition
+ * initiator's partition id.
+ */
+public class ClientBulkLoadStats {
+
+    private int m_partitionId;
+    private long m_batches;
+    private long m_rows;
+    private long m_bytes;
+    private long m_totalLatencyNanos;
+    private int m_batchSize;
+    private long m_outstandingBytes;
+    long m_startTS;
+    long m_endTS;
+
+    ClientBulkLoadStats(int partitionId, long batches, long rows, long bytes,
+            long totalLatencyNanos, int batchSize, long outstandingBytes)
+    {
+        m_partitionId = partitionId;
+        m_batches = batches;
+        m_rows = rows;
+        m_bytes = bytes;
+        m_totalLatencyNanos = totalLatencyNanos;
+        m_batchSize = batchSize;
+        m_outstandingBytes = outstandingBytes;
+        m_startTS = Long.MAX_VALUE;
+        m_endTS = Long.MIN_VALUE;
+    }
+
+    /**
+     * Subtract one ClientBulkLoadStats instance from another to produce a third.
+     * The batch size and outstanding bytes are taken from the newer instance.
+     *
+     * @param newer More recent ClientBulkLoadStats instance.
+     * @param older Less recent ClientBulkLoadStats instance.
+     * @return New instance representing the difference.
+     */
+    public static ClientBulkLoadStats diff(ClientBulkLoadStats newer, ClientBulkLoadStats older) {
+        if (newer.m_partitionId != older.m_partitionId) {
+            throw new IllegalArgumentException("Can't diff these ClientBulkLoadStats instances.");
+        }
+
+        ClientBulkLoadStats retval = new ClientBulkLoadStats(older.m_partitionId,
+                newer.m_batches - older.m_batches,
+                newer.m_rows - older.m_rows,
+                newer.m_bytes - older.m_bytes,
+                newer.m_totalLatencyNanos - older.m_totalLatencyNanos,
+                newer.m_batchSize,
+                newer.m_outstandingBytes);
+        return retval;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#clone()
+     */
+    @Override
+    protected Object clone() {
+        ClientBulkLoadStats retval = new ClientBulkLoadStats(m_partitionId, m_batches, m_rows, m_bytes,
+                m_totalLatencyNanos, m_batchSize, m_outstandingBytes);
+        retval.m_startTS = m_startTS;
+        retval.m_endTS = m_endTS;
+        return retval;
+    }
+
+    void addBatch(int rows, long bytes, long latencyNanos, int batchSize, long outstandingBytes)
+    {
+        m_batches++;
+        m_rows += rows;
+        m_bytes += bytes;
+        m_totalLatencyNanos += latencyNanos;
+        m_batchSize = batchSize;
+        m_outstandingBytes = outstandingBytes;
+    }
+
+    /**
+     * Get the partition the batches were sent to.
+     *
+     * @return The partition id.
+     */
+    public int getPartitionId()
+    {
+        return m_partitionId;
+    }
+
+    /**
+     * Get the number of batches that completed for this time period.
+     *
+     * @return The count as a long.
+     */
+    public long getBatches()
+    {
+        return m_batches;
+    }
+
+    /**
+     * Get the number of rows in the batches that completed for this time period.
+     *
+     * @return The count as a long.
+     */
+    public long getRows()
+    {
+        return m_rows;
+    }
+
+    /**
+     * Get the estimated size of the batches that completed for this time period.
+     *
+     * @return The size in bytes as a long.
+     */
+    public long getBytes()
+    {
+        return m_bytes;
+    }
+
+    /**
+     * Get the average round trip time of a batch for this time period.
+     *
+     * @return Average latency in milliseconds as a double.
+     */
+    public double getAverageLatency()
+    {
+        if (m_batches == 0) return 0.0;
+        return (m_totalLatencyNanos / 1000000.0) / m_batches;
+    }
+
+    /**
+     * Get the number of rows per batch the loader currently aims for.
+     *
+     * @return The batch size as an int.
+     */
+    public int getBatchSize()
+    {
+        return m_batchSize;
+    }
+
+    /**
+     * Get the estimated size of the batches still waiting for a response.
+     *
+     * @return The size in bytes as a long.
+     */
+    public long getOutstandingBytes()
+    {
+        return m_outstandingBytes;
+    }
+
+    /**
+     * Get the number of rows loaded per second for this time period.
+     *
+     * @return Rows per second as a long.
+     */
+    public long getRowThroughput()
+    {
+        assert(m_startTS != Long.MAX_VALUE);
+        assert(m_endTS != Long.MIN_VALUE);
+
+        if (m_rows == 0) return 0;
+        if (m_endTS < m_startTS) {
+            m_endTS = m_startTS + 1; // 1 ms duration is sorta cheatin'
+        }
+        long durationMs = m_endTS - m_startTS;
+        return (long) (m_rows / (durationMs / 1000.0));
+    }
+
+    @Override
+    public String toString()
+    {
+        String display = "Partition ID %d:  %d batches, %d rows, %d bytes, %.2f ms average latency, " +
+            "batch size %d, %d bytes outstanding";
+        return String.format(display, m_partitionId, m_batches, m_rows, m_bytes, getAverageLatency(),
+                m_batchSize, m_outstandingBytes);
+    }
+}
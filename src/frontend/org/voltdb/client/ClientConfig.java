@@ -338,8 +338,9 @@ public class ClientConfig {
     /**
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
-     * using FAST reads, enabling this setting will load balance reads amongst
-     * partition replicas, often increasing throughput and decreasing latency.</p>
+     * using FAST reads, or SAFE reads on a cluster started with safe replica reads
+     * enabled, enabling this setting will load balance reads amongst partition
+     * replicas, often increasing throughput and decreasing latency.</p>
      *
      * <p>See section <a href="https://docs.voltdb.com/AdminGuide/HostConfigDBOpts.php">
      * A.3.4 of the Administrators Guide</a> for info on SAFE vs. FAST.</p>
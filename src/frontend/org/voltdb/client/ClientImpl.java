@@ -985,6 +985,12 @@ public final class ClientImpl implements Client {
         return m_distributer.isHashinatorInitialized();
     }
 
+    //Hidden method for the bulk loader to report a completed batch to the client stats.
+    public void logBulkLoadBatch(int partitionId, int rows, long bytes, long latencyNanos,
+            int batchSize, long outstandingBytes) {
+        m_distributer.logBulkLoadBatch(partitionId, rows, bytes, latencyNanos, batchSize, outstandingBytes);
+    }
+
     //Hidden method for getPartitionForParameter
     public long getPartitionForParameter(byte typeValue, Object value) {
         return m_distributer.getPartitionForParameter(typeValue, value);
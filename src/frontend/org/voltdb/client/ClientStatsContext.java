@@ -45,13 +45,16 @@ public class ClientStatsContext {
     Map<Long, ClientIOStats> m_currentIO;
     Map<Integer, ClientAffinityStats> m_baselineAffinity;
     Map<Integer, ClientAffinityStats> m_currentAffinity;
+    Map<Integer, ClientBulkLoadStats> m_baselineBulkLoad;
+    Map<Integer, ClientBulkLoadStats> m_currentBulkLoad;
     long m_baselineTS;
     long m_currentTS;
 
     ClientStatsContext(Distributer distributor,
                        Map<Long, Map<String, ClientStats>> current,
                        Map<Long, ClientIOStats> currentIO,
-                       Map<Integer, ClientAffinityStats> currentAffinity)
+                       Map<Integer, ClientAffinityStats> currentAffinity,
+                       Map<Integer, ClientBulkLoadStats> currentBulkLoad)
     {
         m_distributor = distributor;
         m_baseline = new TreeMap<Long, Map<String, ClientStats>>();
@@ -60,6 +63,8 @@ public class ClientStatsContext {
         m_current = current;
         m_currentIO = currentIO;
         m_currentAffinity = currentAffinity;
+        m_baselineBulkLoad = new HashMap<Integer, ClientBulkLoadStats>();
+        m_currentBulkLoad = currentBulkLoad;
         m_baselineTS = m_currentTS = System.currentTimeMillis();
     }
 
@@ -76,6 +81,7 @@ public class ClientStatsContext {
         m_currentIO = m_distributor.getIOStatsSnapshot();
         m_currentTS = System.currentTimeMillis();
         m_currentAffinity = m_distributor.getAffinityStatsSnapshot();
+        m_currentBulkLoad = m_distributor.getBulkLoadStatsSnapshot();
         return this;
     }
 
@@ -89,16 +95,18 @@ public class ClientStatsContext {
     public ClientStatsContext fetchAndResetBaseline() {
         fetch();
         ClientStatsContext retval = new ClientStatsContext(m_distributor, m_current, m_currentIO,
-                m_currentAffinity);
+                m_currentAffinity, m_currentBulkLoad);
         retval.m_baseline = m_baseline;
         retval.m_baselineIO = m_baselineIO;
         retval.m_baselineTS = m_baselineTS;
         retval.m_baselineAffinity = m_baselineAffinity;
+        retval.m_baselineBulkLoad = m_baselineBulkLoad;
         retval.m_currentTS = m_currentTS;
         m_baseline = m_current;
         m_baselineIO = m_currentIO;
         m_baselineTS = m_currentTS;
         m_baselineAffinity = m_currentAffinity;
+        m_baselineBulkLoad = m_currentBulkLoad;
         return retval;
     }
 
@@ -247,6 +255,30 @@ public class ClientStatsContext {
         return retval;
     }
 
+    /**
+     * Get the stats of the bulk loaders using this client, see
+     * {@link org.voltdb.client.VoltBulkLoader.VoltBulkLoader}.
+     *
+     * @return A map from partition id to a {@link ClientBulkLoadStats} instance.
+     */
+    public Map<Integer, ClientBulkLoadStats> getBulkLoadStats()
+    {
+        Map<Integer, ClientBulkLoadStats> retval = new TreeMap<Integer, ClientBulkLoadStats>();
+        for (Entry<Integer, ClientBulkLoadStats> e : m_currentBulkLoad.entrySet()) {
+            ClientBulkLoadStats stats;
+            if (m_baselineBulkLoad.containsKey(e.getKey())) {
+                stats = ClientBulkLoadStats.diff(e.getValue(), m_baselineBulkLoad.get(e.getKey()));
+            }
+            else {
+                stats = (ClientBulkLoadStats) e.getValue().clone();
+            }
+            stats.m_startTS = m_baselineTS;
+            stats.m_endTS = m_currentTS;
+            retval.put(e.getKey(), stats);
+        }
+        return retval;
+    }
+
     /**
      * Return a {@link ClientStats} instance for a specific procedure
      * name. This will be rolled up across all connections. The
@@ -141,6 +141,8 @@ class Distributer {
     private final long m_connectionResponseTimeoutNanos;
     private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
         new HashMap<>();
+    private final Map<Integer, ClientBulkLoadStats> m_bulkLoadStats =
+        new HashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
@@ -1109,7 +1111,7 @@ class Distributer {
                     }
                     /*
                      * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
+                     * This is probably slower for SAFE consistency unless the cluster serves SAFE reads on replicas.
                      */
                     if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
                         NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
@@ -1254,7 +1256,7 @@ class Distributer {
 
     ClientStatsContext createStatsContext() {
         return new ClientStatsContext(this, getStatsSnapshot(), getIOStatsSnapshot(),
-                getAffinityStatsSnapshot());
+                getAffinityStatsSnapshot(), getBulkLoadStatsSnapshot());
     }
 
     Map<Long, Map<String, ClientStats>> getStatsSnapshot() {
@@ -1311,6 +1313,30 @@ class Distributer {
         return retval;
     }
 
+    Map<Integer, ClientBulkLoadStats> getBulkLoadStatsSnapshot()
+    {
+        Map<Integer, ClientBulkLoadStats> retval = new HashMap<>();
+        synchronized (m_bulkLoadStats) {
+            for (Entry<Integer, ClientBulkLoadStats> e : m_bulkLoadStats.entrySet()) {
+                retval.put(e.getKey(), (ClientBulkLoadStats)e.getValue().clone());
+            }
+        }
+        return retval;
+    }
+
+    void logBulkLoadBatch(int partitionId, int rows, long bytes, long latencyNanos,
+            int batchSize, long outstandingBytes)
+    {
+        synchronized (m_bulkLoadStats) {
+            ClientBulkLoadStats stats = m_bulkLoadStats.get(partitionId);
+            if (stats == null) {
+                stats = new ClientBulkLoadStats(partitionId, 0, 0, 0, 0, 0, 0);
+                m_bulkLoadStats.put(partitionId, stats);
+            }
+            stats.addBatch(rows, bytes, latencyNanos, batchSize, outstandingBytes);
+        }
+    }
+
     public synchronized Object[] getInstanceId() {
         return m_clusterInstanceId;
     }
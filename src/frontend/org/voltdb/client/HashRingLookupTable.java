@@ -0,0 +1,101 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import org.voltcore.utils.Bits;
+
+import com.google_voltpatches.common.base.Preconditions;
+
+/**
+ * Direct-indexed routing table for an elastic hash ring, shared by
+ * ElasticHashinator and HashinatorLite.
+ *
+ * The hash space is split into 2^bits equally sized buckets selected by the
+ * top bits of the hash. A bucket that falls entirely within one token range
+ * stores its partition id, so most lookups are a single array read. A bucket
+ * that contains a token boundary stores the index of the token covering its
+ * first hash, and the lookup walks forward over the few tokens inside the bucket.
+ *
+ * The table reads the off-heap token array of its owner, where even ints are
+ * tokens and odd ints are partition ids, so it must not outlive that memory.
+ */
+public final class HashRingLookupTable {
+    public static final int DEFAULT_BITS = Integer.getInteger("HASHINATOR_LOOKUP_TABLE_BITS", 16);
+
+    private final long m_tokens;
+    private final int m_tokenCount;
+    private final int m_shift;
+    /*
+     * Non-negative entries are partition ids. Negative entries mark buckets
+     * that span tokens and encode the starting token index as -(index + 2),
+     * so that -1 stands for "before the first token".
+     */
+    private final int[] m_buckets;
+
+    public HashRingLookupTable(long tokens, int tokenCount) {
+        this(tokens, tokenCount, DEFAULT_BITS);
+    }
+
+    public HashRingLookupTable(long tokens, int tokenCount, int bits) {
+        Preconditions.checkArgument(tokenCount > 0, "Hash ring has no tokens");
+        Preconditions.checkArgument(bits > 0 && bits <= 24, "Lookup table bits must be between 1 and 24");
+        m_tokens = tokens;
+        m_tokenCount = tokenCount;
+        m_shift = 32 - bits;
+        m_buckets = new int[1 << bits];
+
+        final long bucketSize = 1L << m_shift;
+        int index = -1;
+        for (int ii = 0; ii < m_buckets.length; ii++) {
+            final long bucketStart = Integer.MIN_VALUE + ii * bucketSize;
+            final long bucketEnd = bucketStart + bucketSize - 1;
+            while (index + 1 < tokenCount && tokenAt(index + 1) <= bucketStart) {
+                index++;
+            }
+            if (index + 1 < tokenCount && tokenAt(index + 1) <= bucketEnd) {
+                m_buckets[ii] = -(index + 2);
+            } else {
+                m_buckets[ii] = partitionAt(index < 0 ? tokenCount - 1 : index);
+            }
+        }
+    }
+
+    /**
+     * Find the partition of the first token <= the hash, wrapping around to the
+     * last token on the ring if the hash is below the first token.
+     */
+    public int partitionForToken(int hash) {
+        final int bucket = m_buckets[(hash ^ Integer.MIN_VALUE) >>> m_shift];
+        if (bucket >= 0) {
+            return bucket;
+        }
+        int index = -bucket - 2;
+        while (index + 1 < m_tokenCount && tokenAt(index + 1) <= hash) {
+            index++;
+        }
+        return partitionAt(index < 0 ? m_tokenCount - 1 : index);
+    }
+
+    private int tokenAt(int index) {
+        return Bits.unsafe.getInt(m_tokens + (8L * index));
+    }
+
+    private int partitionAt(int index) {
+        return Bits.unsafe.getInt(m_tokens + (8L * index) + 4);
+    }
+}
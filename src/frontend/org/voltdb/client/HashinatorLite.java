@@ -67,6 +67,7 @@ public class HashinatorLite {
      */
     private long m_etokens = 0;
     private int m_etokenCount;
+    private HashRingLookupTable m_elookupTable;
 
     private final HashinatorLiteType m_type;
 
@@ -85,6 +86,7 @@ public class HashinatorLite {
             Pair<Long, Integer> p = (cooked ? updateCooked(configBytes) : updateRaw(configBytes));
             m_etokens = p.getFirst();
             m_etokenCount = p.getSecond();
+            m_elookupTable = new HashRingLookupTable(m_etokens, m_etokenCount);
         }
         else {
             catalogPartitionCount = ByteBuffer.wrap(configBytes).getInt();
@@ -211,8 +213,7 @@ public class HashinatorLite {
      * Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_elookupTable.partitionForToken(hash);
     }
 
     /**
@@ -232,8 +233,7 @@ public class HashinatorLite {
         if (m_type.equals(HashinatorLiteType.ELASTIC)) {
             ByteBuffer buf = ByteBuffer.wrap(bytes);
             final int hash = MurmurHash3.hash3_x64_128(buf, 0, bytes.length, 0);
-            long token = getTokenPtr(hash);
-            return Bits.unsafe.getInt(token + 4);
+            return partitionForToken(hash);
         } else {
             int hashCode = 0;
             int offset = 0;
@@ -244,26 +244,6 @@ public class HashinatorLite {
         }
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_etokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_etokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
-            }
-        }
-        return m_etokens + (min - 1) * 8;
-    }
-
     /**
      * Given an object, map it to a partition. DON'T EVER MAKE ME PUBLIC
      */
@@ -27,6 +27,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
@@ -38,14 +40,30 @@ import org.voltdb.VoltTypeException;
 import org.voltdb.client.ClientImpl;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.common.Constants;
 
 /**
  * Partition specific table potentially shared by multiple VoltBulkLoader instances,
  * provided that they are all inserting to the same table.
+ *
+ * The number of rows per batch adapts to the round trip time of the batches: it grows while
+ * full batches complete well within the target latency and is halved when they take more than
+ * twice as long, within a factor of BATCH_SIZE_RANGE of the requested batch size. Batches are
+ * held back while the batches awaiting a response for this partition exceed
+ * MAX_OUTSTANDING_BYTES, so that a slow partition does not fill the client's queue and stall
+ * the loading of all others.
  */
 public class PerPartitionTable {
     private static final VoltLogger loaderLog = new VoltLogger("LOADER");
 
+    static final boolean ADAPTIVE_BATCH_SIZE =
+            Boolean.valueOf(System.getProperty("BULKLOADER_ADAPTIVE_BATCH", "true"));
+    static final long TARGET_LATENCY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("BULKLOADER_TARGET_LATENCY_MS", 50));
+    static final long MAX_OUTSTANDING_BYTES =
+            Long.getLong("BULKLOADER_MAX_OUTSTANDING_BYTES", 8L * 1024 * 1024);
+    static final int BATCH_SIZE_RANGE = 8;
+
     // Client we are tied to
     final ClientImpl m_clientImpl;
     //The index in loader tables and the PartitionProcessor number
@@ -68,6 +86,16 @@ public class PerPartitionTable {
     final VoltType[] m_columnTypes;
     //Size of the batches this table submits (minimum of all values provided by VoltBulkLoaders)
     volatile int m_minBatchTriggerSize;
+    //Adapted size of the batches when ADAPTIVE_BATCH_SIZE is on
+    volatile int m_batchSize;
+    //Estimated size of the batches that were submitted and have no response yet
+    final AtomicLong m_outstandingBytes = new AtomicLong(0);
+    //Set while a task draining full batches is queued or running
+    final AtomicBoolean m_drainScheduled = new AtomicBoolean(false);
+    //Estimated size in bytes at which a batch is submitted before it is full, 0 if batches are only limited by rows
+    volatile int m_maxBatchBytes = 0;
+    //Estimated size of the rows in m_partitionRowQueue
+    final AtomicLong m_queuedBytes = new AtomicLong(0);
     //Insert procedure name
     final String m_procName;
     //Name of table
@@ -79,14 +107,30 @@ public class PerPartitionTable {
     // batch of rows to m_failedQueue for row by row processing on m_failureProcessor.
     class PartitionProcedureCallback implements ProcedureCallback {
         final List<VoltBulkLoaderRow> m_batchRowList;
+        final long m_batchBytes;
+        final long m_startNanos = System.nanoTime();
 
-        PartitionProcedureCallback(List<VoltBulkLoaderRow> batchRowList) {
+        PartitionProcedureCallback(List<VoltBulkLoaderRow> batchRowList, long batchBytes) {
             m_batchRowList = batchRowList;
+            m_batchBytes = batchBytes;
         }
 
         // Called by Client to inform us of the status of the bulk insert.
         @Override
         public void clientCallback(ClientResponse response) throws InterruptedException {
+            final long latencyNanos = System.nanoTime() - m_startNanos;
+            final long outstandingBytes = m_outstandingBytes.addAndGet(-m_batchBytes);
+            if (outstandingBytes + m_batchBytes >= MAX_OUTSTANDING_BYTES) {
+                synchronized (m_outstandingBytes) {
+                    m_outstandingBytes.notifyAll();
+                }
+            }
+            if (response.getStatus() == ClientResponse.SUCCESS) {
+                adaptBatchSize(m_batchRowList.size(), latencyNanos);
+            }
+            m_clientImpl.logBulkLoadBatch(m_isMP ? Constants.MP_INIT_PID : m_partitionId,
+                    m_batchRowList.size(), m_batchBytes, latencyNanos, getBatchSize(), outstandingBytes);
+
             if (response.getStatus() != ClientResponse.SUCCESS) {
                 // Queue up all rows for individual processing by originating BulkLoader's FailureProcessor.
                 m_es.execute(new Runnable() {
@@ -114,8 +158,11 @@ public class PerPartitionTable {
         m_isMP = isMP;
         m_procName = firstLoader.m_procName;
         m_upsert = (byte) (firstLoader.m_upsert ? 1:0);
-        m_partitionRowQueue = new LinkedBlockingQueue<VoltBulkLoaderRow>(minBatchTriggerSize*5);
+        // leave room for the largest adapted batch
+        m_partitionRowQueue = new LinkedBlockingQueue<VoltBulkLoaderRow>(
+                ADAPTIVE_BATCH_SIZE ? minBatchTriggerSize * BATCH_SIZE_RANGE * 2 : minBatchTriggerSize*5);
         m_minBatchTriggerSize = minBatchTriggerSize;
+        m_batchSize = minBatchTriggerSize;
         m_columnInfo = firstLoader.m_colInfo;
         m_partitionedColumnIndex = firstLoader.m_partitionedColumnIndex;
         m_columnTypes = firstLoader.m_columnTypes;
@@ -130,6 +177,10 @@ public class PerPartitionTable {
     boolean updateMinBatchTriggerSize(int minBatchTriggerSize) {
         if (m_minBatchTriggerSize >= minBatchTriggerSize) {
             // This will generate a batch of arbitrary length when the next insert is made
+            if (m_minBatchTriggerSize > minBatchTriggerSize) {
+                // adapt again from the smaller size, the size adapted to the larger one is out of its range
+                m_batchSize = minBatchTriggerSize;
+            }
             m_minBatchTriggerSize = minBatchTriggerSize;
             return true;
         }
@@ -143,16 +194,25 @@ public class PerPartitionTable {
      * drain the queue. The task will drain the queue until it doesn't contain a single batch.
      */
     synchronized void insertRowInTable(final VoltBulkLoaderRow nextRow) throws InterruptedException {
+        nextRow.m_estimatedSize = estimateRowSize(nextRow.m_rowData);
+        m_queuedBytes.addAndGet(nextRow.m_estimatedSize);
         m_partitionRowQueue.put(nextRow);
-        if (m_partitionRowQueue.size() == m_minBatchTriggerSize) {
+        // the batch size may change at any time, so check for a full batch rather than for an exact size
+        if (hasFullBatch() && m_drainScheduled.compareAndSet(false, true)) {
             m_es.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        while (m_partitionRowQueue.size() >= m_minBatchTriggerSize) {
-                            loadTable(buildTable(), table);
-                        }
+                        do {
+                            while (hasFullBatch()) {
+                                awaitOutstandingBytes();
+                                loadTable(buildTable(), table);
+                            }
+                            m_drainScheduled.set(false);
+                        // a row inserted after the last check may have completed a batch
+                        } while (hasFullBatch() && m_drainScheduled.compareAndSet(false, true));
                     } catch (Exception e) {
+                        m_drainScheduled.set(false);
                         loaderLog.error("Failed to load batch", e);
                     }
                 }
@@ -160,6 +220,62 @@ public class PerPartitionTable {
         }
     }
 
+    /**
+     * @return The number of rows per batch currently submitted.
+     */
+    int getBatchSize() {
+        final int requested = m_minBatchTriggerSize;
+        if (!ADAPTIVE_BATCH_SIZE) {
+            return requested;
+        }
+        return Math.max(Math.max(1, requested / BATCH_SIZE_RANGE),
+                Math.min(requested * BATCH_SIZE_RANGE, m_batchSize));
+    }
+
+    // Racing callbacks may lose an adjustment, which only slows down the adaptation.
+    void adaptBatchSize(int batchRows, long latencyNanos) {
+        if (!ADAPTIVE_BATCH_SIZE) {
+            return;
+        }
+        final int batchSize = getBatchSize();
+        if (latencyNanos > 2 * TARGET_LATENCY_NANOS) {
+            m_batchSize = batchSize / 2;
+        } else if (latencyNanos < TARGET_LATENCY_NANOS && batchRows >= batchSize
+                && m_outstandingBytes.get() < MAX_OUTSTANDING_BYTES / 2) {
+            m_batchSize = batchSize + Math.max(1, batchSize / 4);
+        }
+    }
+
+    // Wait for responses while too much of this partition's data is in flight
+    private void awaitOutstandingBytes() throws InterruptedException {
+        synchronized (m_outstandingBytes) {
+            while (m_outstandingBytes.get() >= MAX_OUTSTANDING_BYTES) {
+                m_outstandingBytes.wait(10);
+            }
+        }
+    }
+
+    private boolean hasFullBatch() {
+        final int maxBatchBytes = m_maxBatchBytes;
+        return m_partitionRowQueue.size() >= getBatchSize()
+                || (maxBatchBytes > 0 && m_queuedBytes.get() >= maxBatchBytes);
+    }
+
+    // Rough serialized size of a row, strings are counted as one byte per character
+    private static int estimateRowSize(Object[] rowData) {
+        int size = 0;
+        for (Object value : rowData) {
+            if (value instanceof String) {
+                size += 4 + ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 4 + ((byte[]) value).length;
+            } else {
+                size += 8;
+            }
+        }
+        return size;
+    }
+
     /**
      * Flush all queued rows even if they are smaller than the batch size. This does not
      * guarantee that they will be reinserted if any of them fail. To make sure all rows
@@ -222,8 +338,24 @@ public class PerPartitionTable {
     }
 
     private PartitionProcedureCallback buildTable() {
-        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
-        m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
+        final int batchSize = getBatchSize();
+        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(batchSize);
+        final int maxBatchBytes = m_maxBatchBytes;
+        long batchBytes = 0;
+        if (maxBatchBytes > 0) {
+            VoltBulkLoaderRow row;
+            while (buf.size() < batchSize && batchBytes < maxBatchBytes
+                    && (row = m_partitionRowQueue.poll()) != null) {
+                buf.add(row);
+                batchBytes += row.m_estimatedSize;
+            }
+        } else {
+            m_partitionRowQueue.drainTo(buf, batchSize);
+            for (VoltBulkLoaderRow row : buf) {
+                batchBytes += row.m_estimatedSize;
+            }
+        }
+        m_queuedBytes.addAndGet(-batchBytes);
         ListIterator<VoltBulkLoaderRow> it = buf.listIterator();
         while (it.hasNext()) {
             VoltBulkLoaderRow currRow = it.next();
@@ -245,7 +377,14 @@ public class PerPartitionTable {
             table.addRow(row_args);
         }
 
-        return new PartitionProcedureCallback(buf);
+        long sentBytes = 0;
+        for (VoltBulkLoaderRow row : buf) {
+            sentBytes += row.m_estimatedSize;
+        }
+        if (!buf.isEmpty()) {
+            m_outstandingBytes.addAndGet(sentBytes);
+        }
+        return new PartitionProcedureCallback(buf, sentBytes);
     }
 
     private void loadTable(ProcedureCallback callback, VoltTable toSend) throws Exception {
@@ -286,6 +286,19 @@ public class VoltBulkLoader {
         }
     }
 
+    /**
+     * Also submit a batch once the rows queued for a partition reach the given estimated size,
+     * so that tables with wide rows are loaded in requests of bounded size. This applies to
+     * all VoltBulkLoader instances inserting into the same table.
+     *
+     * @param maxBatchBytes Estimated size of a batch in bytes, <code>0</code> to limit batches by row count only
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        for (int i = m_firstPartitionTable; i <= m_lastPartitionTable; i++) {
+            m_partitionTable[i].m_maxBatchBytes = maxBatchBytes;
+        }
+    }
+
     void generateError(Object rowHandle, Object[] objectList, String errMessage) {
         VoltTable[] dummyTable = new VoltTable[1];
         dummyTable[0] = new VoltTable(m_colInfo);
@@ -421,12 +434,14 @@ public class VoltBulkLoader {
 
     /**
      * As other instances of VoltBulkLoader working on the same table could alter the size
-     * of batches, this method provides the means to examine the current batch size.
+     * of batches, and the size adapts to the latency of the batches, this method provides
+     * the means to examine the current batch size. Per partition figures are available
+     * from {@link org.voltdb.client.ClientStatsContext#getBulkLoadStats()}.
      *
      * @return The size of batches currently being submitted for this table
      */
     public int getMaxBatchSize() {
-        return m_partitionTable[m_firstPartitionTable].m_minBatchTriggerSize;
+        return m_partitionTable[m_firstPartitionTable].getBatchSize();
     }
 
     /**
@@ -24,6 +24,8 @@ class VoltBulkLoaderRow {
     final VoltBulkLoader m_loader;
     Object m_rowHandle;
     final Object[] m_rowData;
+    //Estimated size of the row, set when it is queued for its partition.
+    int m_estimatedSize = 0;
 
     VoltBulkLoaderRow(VoltBulkLoader bulkLoader, Object rowHandle, Object... rowData) {
         m_loader = bulkLoader;
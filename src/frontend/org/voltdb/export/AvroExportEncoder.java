@@ -0,0 +1,206 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.voltdb.VoltType;
+
+/**
+ * Encodes export rows as a sequence of Avro binary records, one per row,
+ * reading the values straight out of the export block.
+ *
+ * Every column is a union of null and its value type. Integer types map to
+ * int or long, FLOAT to double, VARCHAR to string and VARBINARY and GEOGRAPHY
+ * to bytes. TIMESTAMP is a long of microseconds since the epoch. DECIMAL is
+ * the 16 byte big-endian unscaled value, annotated as an Avro decimal with
+ * precision 38 and scale 12. GEOGRAPHY_POINT is a record of longitude and
+ * latitude.
+ */
+public class AvroExportEncoder implements ExportEncoder {
+    private static final String POINT_RECORD_NAME = "GEOGRAPHY_POINT";
+
+    private final Schema m_schema;
+    private final VoltType[] m_columnTypes;
+    private final int m_nullArrayLength;
+
+    private BinaryEncoder m_encoder = null;
+    // variable length values are copied through here, avro only writes from heap arrays
+    private byte[] m_scratch = new byte[256];
+
+    public AvroExportEncoder(AdvertisedDataSource source) {
+        this(source.tableName, source.columnNames, source.columnTypes);
+    }
+
+    public AvroExportEncoder(String tableName, List<String> columnNames, List<VoltType> columnTypes) {
+        m_schema = schemaFor(tableName, columnNames, columnTypes);
+        m_columnTypes = columnTypes.toArray(new VoltType[columnTypes.size()]);
+        m_nullArrayLength = (m_columnTypes.length + 7) / 8;
+    }
+
+    /**
+     * Build the Avro record schema of an export table, including the export
+     * metadata columns.
+     */
+    public static Schema schemaFor(String tableName, List<String> columnNames, List<VoltType> columnTypes) {
+        Schema pointSchema = null;
+        final Schema nullSchema = Schema.create(Schema.Type.NULL);
+        final List<Schema.Field> fields = new ArrayList<Schema.Field>(columnNames.size());
+        for (int ii = 0; ii < columnNames.size(); ii++) {
+            final VoltType type = columnTypes.get(ii);
+            Schema valueSchema;
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                valueSchema = Schema.create(Schema.Type.INT);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                valueSchema = Schema.create(Schema.Type.LONG);
+                break;
+            case FLOAT:
+                valueSchema = Schema.create(Schema.Type.DOUBLE);
+                break;
+            case STRING:
+                valueSchema = Schema.create(Schema.Type.STRING);
+                break;
+            case VARBINARY:
+            case GEOGRAPHY:
+                valueSchema = Schema.create(Schema.Type.BYTES);
+                break;
+            case DECIMAL:
+                valueSchema = Schema.create(Schema.Type.BYTES);
+                valueSchema.addProp("logicalType", "decimal");
+                valueSchema.addProp("precision", "38");
+                valueSchema.addProp("scale", "12");
+                break;
+            case GEOGRAPHY_POINT:
+                if (pointSchema == null) {
+                    // a named type may only be defined once per schema
+                    pointSchema = Schema.createRecord(POINT_RECORD_NAME, null, null, false);
+                    pointSchema.setFields(Arrays.asList(
+                            new Schema.Field("LONGITUDE", Schema.create(Schema.Type.DOUBLE), null, null),
+                            new Schema.Field("LATITUDE", Schema.create(Schema.Type.DOUBLE), null, null)));
+                }
+                valueSchema = pointSchema;
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + columnNames.get(ii) +
+                        " has type " + type + " which can not be exported as Avro");
+            }
+            fields.add(new Schema.Field(columnNames.get(ii),
+                                        Schema.createUnion(Arrays.asList(nullSchema, valueSchema)),
+                                        null, null));
+        }
+        final Schema schema = Schema.createRecord(tableName, null, null, false);
+        schema.setFields(fields);
+        return schema;
+    }
+
+    public Schema getSchema() {
+        return m_schema;
+    }
+
+    @Override
+    public int encode(ByteBuffer rows, OutputStream out) throws IOException {
+        final ByteOrder order = rows.order();
+        rows.order(ByteOrder.LITTLE_ENDIAN);
+        m_encoder = EncoderFactory.get().directBinaryEncoder(out, m_encoder);
+        int rowCount = 0;
+        try {
+            while (rows.hasRemaining()) {
+                final int rowLength = rows.getInt();
+                final int nullArrayOffset = rows.position();
+                final int rowEnd = nullArrayOffset + rowLength;
+                rows.position(nullArrayOffset + m_nullArrayLength);
+                for (int ii = 0; ii < m_columnTypes.length; ii++) {
+                    if ((rows.get(nullArrayOffset + (ii >> 3)) & (0x80 >>> (ii & 7))) != 0) {
+                        m_encoder.writeIndex(0);
+                    } else {
+                        m_encoder.writeIndex(1);
+                        encodeValue(m_columnTypes[ii], rows);
+                    }
+                }
+                if (rows.position() != rowEnd) {
+                    throw new IOException("Export row length " + rowLength +
+                            " does not match its columns, read " + (rows.position() - nullArrayOffset));
+                }
+                rowCount++;
+            }
+            m_encoder.flush();
+        } finally {
+            rows.order(order);
+        }
+        return rowCount;
+    }
+
+    private void encodeValue(VoltType type, ByteBuffer rows) throws IOException {
+        switch (type) {
+        case TINYINT:
+            m_encoder.writeInt(rows.get());
+            break;
+        case SMALLINT:
+            m_encoder.writeInt(rows.getShort());
+            break;
+        case INTEGER:
+            m_encoder.writeInt(rows.getInt());
+            break;
+        case BIGINT:
+        case TIMESTAMP:
+            m_encoder.writeLong(rows.getLong());
+            break;
+        case FLOAT:
+            m_encoder.writeDouble(rows.getDouble());
+            break;
+        case STRING:
+        case VARBINARY:
+        case GEOGRAPHY:
+            // avro strings are length prefixed utf-8, the same encoding as bytes
+            encodeBytes(rows, rows.getInt());
+            break;
+        case DECIMAL:
+            rows.get(); // scale, always 12
+            encodeBytes(rows, rows.get());
+            break;
+        case GEOGRAPHY_POINT:
+            m_encoder.writeDouble(rows.getDouble());
+            m_encoder.writeDouble(rows.getDouble());
+            break;
+        default:
+            throw new IOException("Unsupported export column type " + type);
+        }
+    }
+
+    private void encodeBytes(ByteBuffer rows, int length) throws IOException {
+        if (length > m_scratch.length) {
+            m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+        }
+        rows.get(m_scratch, 0, length);
+        m_encoder.writeBytes(m_scratch, 0, length);
+    }
+}
@@ -0,0 +1,193 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.LatencyStats;
+
+/**
+ * Backlog of one export stream of one partition, returned by @Statistics
+ * EXPORTBACKLOG. Each data source registers its own instance with the
+ * StatsAgent for as long as it is open. The row reports how fast rows are
+ * being appended and drained over the last few seconds, how much data is
+ * waiting including the part that overflowed to disk, and how long blocks
+ * wait from being appended to the stream until an ack releases them.
+ */
+public class ExportBacklogStats extends StatsSource {
+    // Seconds covered by the append and drain rates
+    public static final int RATE_WINDOW_SECONDS = Integer.getInteger("EXPORT_BACKLOG_RATE_WINDOW", 10);
+
+    public enum StatName {
+        GENERATION,
+        PARTITION_ID,
+        SOURCE_NAME,
+        BACKLOG_BYTES,
+        APPEND_RATE,
+        DRAIN_RATE,
+        BYTES_APPENDED,
+        BYTES_DRAINED,
+        DISK_BYTES_WRITTEN,
+        DISK_BYTES_READ,
+        ACK_LATENCY_AVG,
+        ACK_LATENCY_P99,
+        ACK_LATENCY_MAX,
+        HISTOGRAM
+    };
+
+    /**
+     * Byte counts per second over the rate window.
+     */
+    private static class RollingRate {
+        private final long[] m_buckets = new long[RATE_WINDOW_SECONDS];
+        private long m_lastSecond = 0;
+
+        void add(long nowSecond, long bytes) {
+            advance(nowSecond);
+            m_buckets[(int) (nowSecond % m_buckets.length)] += bytes;
+        }
+
+        long perSecond(long nowSecond) {
+            advance(nowSecond);
+            long total = 0;
+            for (long bucket : m_buckets) {
+                total += bucket;
+            }
+            return total / m_buckets.length;
+        }
+
+        private void advance(long nowSecond) {
+            final long elapsed = Math.min(nowSecond - m_lastSecond, m_buckets.length);
+            for (long ii = 1; ii <= elapsed; ii++) {
+                m_buckets[(int) ((m_lastSecond + ii) % m_buckets.length)] = 0;
+            }
+            m_lastSecond = Math.max(m_lastSecond, nowSecond);
+        }
+    }
+
+    // Counters updated on the export executor of the data source and read by the stats agent
+    private final long m_generation;
+    private final int m_partitionId;
+    private final String m_tableName;
+    private final StreamBlockQueue m_queue;
+    private final RollingRate m_appendRate = new RollingRate();
+    private final RollingRate m_drainRate = new RollingRate();
+    // End USO and append time of the blocks that have not been released yet
+    private final ArrayDeque<long[]> m_pendingBlocks = new ArrayDeque<long[]>();
+    // Append to release latency of each block in microseconds
+    private final AbstractHistogram m_ackLatency = LatencyStats.constructHistogram(false);
+    private long m_bytesAppended = 0;
+    private long m_bytesDrained = 0;
+    private volatile long m_backlogBytes = 0;
+
+    /**
+     * @param queue  the committed buffers of the stream, for disk I/O counters
+     */
+    public ExportBacklogStats(long generation, int partitionId, String tableName, StreamBlockQueue queue) {
+        super(false);
+        m_generation = generation;
+        m_partitionId = partitionId;
+        m_tableName = tableName;
+        m_queue = queue;
+    }
+
+    /**
+     * A block ending at endUso has been appended to the stream.
+     */
+    synchronized void appended(long endUso, long bytes) {
+        final long now = System.nanoTime();
+        m_appendRate.add(TimeUnit.NANOSECONDS.toSeconds(now), bytes);
+        m_bytesAppended += bytes;
+        m_pendingBlocks.offer(new long[] { endUso, now });
+    }
+
+    /**
+     * An ack released the stream up to releaseOffset. The blocks ending at or
+     * before it are done.
+     */
+    synchronized void released(long releaseOffset, long bytes) {
+        final long now = System.nanoTime();
+        m_drainRate.add(TimeUnit.NANOSECONDS.toSeconds(now), bytes);
+        m_bytesDrained += bytes;
+        while (!m_pendingBlocks.isEmpty() && m_pendingBlocks.peek()[0] <= releaseOffset) {
+            final long micros = TimeUnit.NANOSECONDS.toMicros(now - m_pendingBlocks.poll()[1]);
+            m_ackLatency.recordValue(Math.min(micros, m_ackLatency.getHighestTrackableValue()));
+        }
+    }
+
+    void setBacklogBytes(long bytes) {
+        m_backlogBytes = bytes;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.GENERATION.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.PARTITION_ID.name(), VoltType.INTEGER));
+        columns.add(new ColumnInfo(StatName.SOURCE_NAME.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.BACKLOG_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.APPEND_RATE.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DRAIN_RATE.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.BYTES_APPENDED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.BYTES_DRAINED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DISK_BYTES_WRITTEN.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DISK_BYTES_READ.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.ACK_LATENCY_AVG.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.ACK_LATENCY_P99.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.ACK_LATENCY_MAX.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.HISTOGRAM.name(), VoltType.VARBINARY));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final long nowSecond = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+
+        rowValues[columnNameToIndex.get(StatName.GENERATION.name())] = m_generation;
+        rowValues[columnNameToIndex.get(StatName.PARTITION_ID.name())] = m_partitionId;
+        rowValues[columnNameToIndex.get(StatName.SOURCE_NAME.name())] = m_tableName;
+        rowValues[columnNameToIndex.get(StatName.BACKLOG_BYTES.name())] = m_backlogBytes;
+        rowValues[columnNameToIndex.get(StatName.DISK_BYTES_WRITTEN.name())] = m_queue.getDiskBytesWritten();
+        rowValues[columnNameToIndex.get(StatName.DISK_BYTES_READ.name())] = m_queue.getDiskBytesRead();
+        synchronized (this) {
+            // rates in bytes per second, latencies in microseconds
+            rowValues[columnNameToIndex.get(StatName.APPEND_RATE.name())] = m_appendRate.perSecond(nowSecond);
+            rowValues[columnNameToIndex.get(StatName.DRAIN_RATE.name())] = m_drainRate.perSecond(nowSecond);
+            rowValues[columnNameToIndex.get(StatName.BYTES_APPENDED.name())] = m_bytesAppended;
+            rowValues[columnNameToIndex.get(StatName.BYTES_DRAINED.name())] = m_bytesDrained;
+            rowValues[columnNameToIndex.get(StatName.ACK_LATENCY_AVG.name())] = (long) m_ackLatency.getMean();
+            rowValues[columnNameToIndex.get(StatName.ACK_LATENCY_P99.name())] = m_ackLatency.getValueAtPercentile(99.0);
+            rowValues[columnNameToIndex.get(StatName.ACK_LATENCY_MAX.name())] = m_ackLatency.getMaxValue();
+            rowValues[columnNameToIndex.get(StatName.HISTOGRAM.name())] = m_ackLatency.toUncompressedBytes();
+        }
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // one row for the stream
+        return Collections.<Object>singleton(m_tableName).iterator();
+    }
+}
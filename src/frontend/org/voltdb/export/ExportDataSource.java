@@ -26,10 +26,14 @@ import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.json_voltpatches.JSONArray;
@@ -44,6 +48,8 @@ import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.Pair;
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltType;
 import org.voltdb.catalog.CatalogMap;
@@ -86,10 +92,20 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     public final ArrayList<Integer> m_columnLengths = new ArrayList<Integer>();
     private long m_firstUnpolledUso = 0;
     private final StreamBlockQueue m_committedBuffers;
+    private final ExportBacklogStats m_metrics;
+    // The StatsAgent keeps sources in a set per id and can only drop a whole
+    // set, so each data source registers its backlog stats under its own id
+    private static final AtomicLong s_nextBacklogStatsId = new AtomicLong();
+    private final long m_backlogStatsId = s_nextBacklogStatsId.getAndIncrement();
     private boolean m_endOfStream = false;
     private Runnable m_onDrain;
     private Runnable m_onMastership;
     private SettableFuture<BBContainer> m_pollFuture;
+    // Default for the most polled blocks that may be awaiting acknowledgement at once
+    public static final int MAX_INFLIGHT_BLOCKS = Integer.getInteger("EXPORT_MAX_INFLIGHT_BLOCKS", 1);
+    private final int m_maxInFlightBlocks;
+    // End USO of each polled but not yet released block, mapped to whether it has been acked
+    private final TreeMap<Long, Boolean> m_inFlightBlocks = new TreeMap<Long, Boolean>();
     private final AtomicReference<Pair<Mailbox, ImmutableList<Long>>> m_ackMailboxRefs =
             new AtomicReference<Pair<Mailbox,ImmutableList<Long>>>(Pair.of((Mailbox)null, ImmutableList.<Long>builder().build()));
     private final Semaphore m_bufferPushPermits = new Semaphore(16);
@@ -131,7 +147,26 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             String overflowPath
             ) throws IOException
             {
+        this(onDrain, db, tableName, partitionId, signature, generation, catalogMap, partitionColumn,
+                overflowPath, MAX_INFLIGHT_BLOCKS);
+    }
+
+    /**
+     * Create a new data source that lets the master have up to
+     * maxInFlightBlocks polled blocks awaiting acknowledgement.
+     */
+    ExportDataSource(
+            final Runnable onDrain,
+            String db, String tableName,
+            int partitionId, String signature, long generation,
+            CatalogMap<Column> catalogMap,
+            Column partitionColumn,
+            String overflowPath,
+            int maxInFlightBlocks
+            ) throws IOException
+            {
         checkNotNull( onDrain, "onDrain runnable is null");
+        m_maxInFlightBlocks = maxInFlightBlocks;
         m_format = ExportFormat.FOURDOTFOUR;
         m_generation = generation;
         m_onDrain = new Runnable() {
@@ -220,6 +255,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         // compute the number of bytes necessary to hold one bit per
         // schema column
         m_nullArrayLength = ((m_columnTypes.size() + 7) & -8) >> 3;
+        m_metrics = new ExportBacklogStats(m_generation, m_partitionId, m_tableName, m_committedBuffers);
+        m_metrics.setBacklogBytes(m_committedBuffers.sizeInBytes());
+        registerBacklogStats();
 
         // This is not being loaded from file, so activate immediately
         if (!m_dontActivateForTest) {
@@ -228,6 +266,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     }
 
     public ExportDataSource(final Runnable onDrain, File adFile, boolean isContinueingGeneration) throws IOException {
+        m_maxInFlightBlocks = MAX_INFLIGHT_BLOCKS;
         /*
          * Certainly no more data coming if this is coming off of disk
          */
@@ -303,6 +342,23 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         // compute the number of bytes necessary to hold one bit per
         // schema column
         m_nullArrayLength = ((m_columnTypes.size() + 7) & -8) >> 3;
+        m_metrics = new ExportBacklogStats(m_generation, m_partitionId, m_tableName, m_committedBuffers);
+        m_metrics.setBacklogBytes(m_committedBuffers.sizeInBytes());
+        registerBacklogStats();
+    }
+
+    private void registerBacklogStats() {
+        final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
+        if (statsAgent != null) {
+            statsAgent.registerStatsSource(StatsSelector.EXPORTBACKLOG, m_backlogStatsId, m_metrics);
+        }
+    }
+
+    private void deregisterBacklogStats() {
+        final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
+        if (statsAgent != null) {
+            statsAgent.deregisterStatsSourcesFor(StatsSelector.EXPORTBACKLOG, m_backlogStatsId);
+        }
     }
 
     public void activate() {
@@ -320,6 +376,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
 
         long lastUso = m_firstUnpolledUso;
+        long releasedBytes = 0;
         while (!m_committedBuffers.isEmpty()
                 && releaseOffset >= m_committedBuffers.peek().uso()) {
             StreamBlock sb = m_committedBuffers.peek();
@@ -327,17 +384,41 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 m_committedBuffers.pop();
                 try {
                     lastUso = sb.uso() + sb.totalUso();
+                    releasedBytes += sb.unreleasedSize();
                 } finally {
                     sb.discard();
                 }
             } else if (releaseOffset >= sb.uso()) {
+                final long unreleased = sb.unreleasedSize();
                 sb.releaseUso(releaseOffset);
+                releasedBytes += unreleased - sb.unreleasedSize();
                 lastUso = releaseOffset;
                 break;
             }
         }
+        m_metrics.released(releaseOffset, releasedBytes);
+        m_metrics.setBacklogBytes(m_committedBuffers.sizeInBytes());
         m_lastReleaseOffset = releaseOffset;
         m_firstUnpolledUso = Math.max(m_firstUnpolledUso, lastUso);
+        // blocks released by an ack for a later block or from another replica are no longer in flight
+        m_inFlightBlocks.headMap(releaseOffset, true).clear();
+    }
+
+    /**
+     * Record the ack of a polled block. Blocks may be acked in any order but
+     * are only released in USO order, so the returned release point never
+     * skips a block that is still in flight.
+     * @return the USO up to which data can be released, or 0 if none
+     */
+    private long ackInFlightBlock(long uso) {
+        if (m_inFlightBlocks.containsKey(uso)) {
+            m_inFlightBlocks.put(uso, true);
+        }
+        long releaseUso = 0;
+        while (!m_inFlightBlocks.isEmpty() && m_inFlightBlocks.firstEntry().getValue()) {
+            releaseUso = m_inFlightBlocks.pollFirstEntry().getKey();
+        }
+        return releaseUso;
     }
 
     public String getDatabase() {
@@ -352,6 +433,18 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         return m_signature;
     }
 
+    /**
+     * Create an encoder that turns the rows polled from this source into Avro
+     * records, with a schema derived from the source's columns.
+     */
+    public AvroExportEncoder createAvroEncoder() {
+        ArrayList<VoltType> columnTypes = new ArrayList<VoltType>(m_columnTypes.size());
+        for (Integer type : m_columnTypes) {
+            columnTypes.add(VoltType.get(type.byteValue()));
+        }
+        return new AvroExportEncoder(m_tableName, m_columnNames, columnTypes);
+    }
+
     public final int getPartitionId() {
         return m_partitionId;
     }
@@ -456,12 +549,38 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    /**
+     * Wrap a committed buffer from the EE in a stream block, or discard it and
+     * return null if it has already been acked.
+     */
+    private StreamBlock wrapExportBuffer(long uso, ByteBuffer buffer) {
+        final java.util.concurrent.atomic.AtomicBoolean deleted = new java.util.concurrent.atomic.AtomicBoolean(false);
+        final BBContainer cont = DBBPool.wrapBB(buffer);
+        if (m_lastReleaseOffset > 0 && m_lastReleaseOffset >= (uso + (buffer.capacity() - 8))) {
+            //What ack from future is known?
+            if (exportLog.isDebugEnabled()) {
+                exportLog.debug("Dropping already acked USO: " + m_lastReleaseOffset
+                        + " Buffer info: " + uso + " Size: " + buffer.capacity());
+            }
+            cont.discard();
+            return null;
+        }
+        return new StreamBlock(
+                new BBContainer(buffer) {
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                        cont.discard();
+                        deleted.set(true);
+                    }
+                }, uso, false);
+    }
+
     private void pushExportBufferImpl(
             long uso,
             ByteBuffer buffer,
             boolean sync,
             boolean endOfStream, boolean poll) throws Exception {
-        final java.util.concurrent.atomic.AtomicBoolean deleted = new java.util.concurrent.atomic.AtomicBoolean(false);
         if (endOfStream) {
             assert(!m_endOfStream);
             assert(buffer == null);
@@ -490,26 +609,14 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             //There will be 8 bytes of no data that we can ignore, it is header space for storing
             //the USO in stream block
             if (buffer.capacity() > 8) {
-                final BBContainer cont = DBBPool.wrapBB(buffer);
-                if (m_lastReleaseOffset > 0 && m_lastReleaseOffset >= (uso + (buffer.capacity() - 8))) {
-                    //What ack from future is known?
-                    if (exportLog.isDebugEnabled()) {
-                        exportLog.debug("Dropping already acked USO: " + m_lastReleaseOffset
-                                + " Buffer info: " + uso + " Size: " + buffer.capacity());
-                    }
-                    cont.discard();
+                final StreamBlock block = wrapExportBuffer(uso, buffer);
+                if (block == null) {
                     return;
                 }
                 try {
-                    m_committedBuffers.offer(new StreamBlock(
-                            new BBContainer(buffer) {
-                                @Override
-                                public void discard() {
-                                    checkDoubleFree();
-                                    cont.discard();
-                                    deleted.set(true);
-                                }
-                            }, uso, false));
+                    m_committedBuffers.offer(block);
+                    m_metrics.appended(block.uso() + block.totalUso(), block.totalUso());
+                    m_metrics.setBacklogBytes(m_committedBuffers.sizeInBytes());
                 } catch (IOException e) {
                     VoltDB.crashLocalVoltDB("Unable to write to export overflow.", true, e);
                 }
@@ -588,6 +695,80 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    private void pushExportBuffersImpl(List<Pair<Long, ByteBuffer>> buffers, boolean poll) throws Exception {
+        assert(!m_endOfStream);
+        final ArrayList<StreamBlock> blocks = new ArrayList<StreamBlock>(buffers.size());
+        for (Pair<Long, ByteBuffer> buffer : buffers) {
+            final StreamBlock block = wrapExportBuffer(buffer.getFirst(), buffer.getSecond());
+            if (block != null) {
+                blocks.add(block);
+            }
+        }
+        try {
+            m_committedBuffers.offer(blocks);
+            for (StreamBlock block : blocks) {
+                m_metrics.appended(block.uso() + block.totalUso(), block.totalUso());
+            }
+            m_metrics.setBacklogBytes(m_committedBuffers.sizeInBytes());
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to write to export overflow.", true, e);
+        }
+        if (poll) {
+            pollImpl(m_pollFuture);
+        }
+    }
+
+    /**
+     * Push several committed buffers, each holding data, in USO order. They
+     * are appended to the queue by a single task on the export executor.
+     * @param buffers  pairs of uso and buffer
+     */
+    public void pushExportBuffers(final List<Pair<Long, ByteBuffer>> buffers) {
+        try {
+            m_bufferPushPermits.acquire();
+        } catch (InterruptedException e) {
+            Throwables.propagate(e);
+        }
+        ListeningExecutorService es = getExecutorService();
+        if (es == null) {
+            //If we have not activated lets get the buffers in overflow and dont poll
+            try {
+                pushExportBuffersImpl(buffers, false);
+            } catch (Throwable t) {
+                VoltDB.crashLocalVoltDB("Error pushing export buffers", true, t);
+            } finally {
+                m_bufferPushPermits.release();
+            }
+            return;
+        }
+
+        if (es.isShutdown()) {
+           m_bufferPushPermits.release();
+           return;
+        }
+        try {
+            es.execute((new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!es.isShutdown()) {
+                            //Since we are part of active generation we poll too
+                            pushExportBuffersImpl(buffers, true /* poll */);
+                        }
+                    } catch (Throwable t) {
+                        VoltDB.crashLocalVoltDB("Error pushing export buffers", true, t);
+                    } finally {
+                        m_bufferPushPermits.release();
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException rej) {
+            m_bufferPushPermits.release();
+            //We are shutting down very much rolling generation so dont passup for error reporting.
+            exportLog.info("Error pushing export buffers: ", rej);
+        }
+    }
+
     public long getGeneration() {
         return m_generation;
     }
@@ -652,6 +833,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         RunnableWithES runnable = new RunnableWithES("closeAndDelete") {
             @Override
             public void run() {
+                deregisterBacklogStats();
                 try {
                     m_committedBuffers.closeAndDelete();
                 } catch(IOException e) {
@@ -671,6 +853,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         RunnableWithES runnable = new RunnableWithES("close") {
             @Override
             public void run() {
+                deregisterBacklogStats();
                 try {
                     m_committedBuffers.close();
                 } catch (IOException e) {
@@ -741,6 +924,12 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 }
                 return;
             }
+            //Wait for an ack if the window of polled blocks is full. A replica polls
+            //from the master's ack point, so it only keeps one block in flight.
+            if (m_inFlightBlocks.size() >= (m_isMaster ? m_maxInFlightBlocks : 1)) {
+                m_pollFuture = fut;
+                return;
+            }
             //Assemble a list of blocks to delete so that they can be deleted
             //outside of the m_committedBuffers critical section
             ArrayList<StreamBlock> blocksToDelete = new ArrayList<StreamBlock>();
@@ -757,6 +946,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                         first_unpolled_block = block;
                         m_firstUnpolledUso = (block.uso() + block.totalUso());
                         break;
+                    } else if (m_inFlightBlocks.containsKey(block.uso() + block.totalUso())) {
+                        //Polled but not acked yet, the ack will release it
+                        continue;
                     } else {
                         blocksToDelete.add(block);
                         iter.remove();
@@ -780,9 +972,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 m_pollFuture = fut;
             } else {
                 try {
-                    fut.set(
-                            new AckingContainer(first_unpolled_block.unreleasedContainer(),
-                                    first_unpolled_block.uso() + first_unpolled_block.totalUso()));
+                    final long endUso = first_unpolled_block.uso() + first_unpolled_block.totalUso();
+                    m_inFlightBlocks.put(endUso, false);
+                    fut.set(new AckingContainer(first_unpolled_block.unreleasedContainer(), endUso));
                 } catch (RejectedExecutionException reex) {
                     //We are closing source.
                 }
@@ -810,12 +1002,19 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 public void run() {
                     try {
                         m_backingCont.discard();
+                        final long releaseUso = ackInFlightBlock(m_uso);
+                        if (releaseUso == 0) {
+                            // an earlier block is still in flight
+                            return;
+                        }
                         try {
                             if (!getLocalExecutorService().isShutdown()) {
-                                ackImpl(m_uso);
+                                ackImpl(releaseUso);
+                                //A slot opened in the window, hand out the next block
+                                pollImpl(m_pollFuture);
                             }
                         } finally {
-                            forwardAckToOtherReplicas(m_uso);
+                            forwardAckToOtherReplicas(releaseUso);
                         }
                     } catch (Exception e) {
                         exportLog.error("Error acking export buffer", e);
@@ -877,6 +1076,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 try {
                     if (!getLocalExecutorService().isShutdown()) {
                        ackImpl(uso);
+                       //The ack may have released polled blocks and opened slots in the window
+                       pollImpl(m_pollFuture);
                     }
                 } catch (Exception e) {
                     exportLog.error("Error acking export buffer", e);
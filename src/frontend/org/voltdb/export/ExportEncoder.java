@@ -0,0 +1,44 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the rows of an export block from the EE's export serialization
+ * to another wire format without materializing the rows as Java objects.
+ *
+ * The rows of a block are laid out one after the other, each with a 4 byte
+ * length, a null bit array covering the metadata and table columns, then the
+ * non-null values in native byte order.
+ *
+ * An encoder instance keeps scratch state and is not thread-safe, processors
+ * should create one per data source.
+ */
+public interface ExportEncoder {
+    /**
+     * Encode the rows between the position and the limit of the block.
+     * The position of the block is left at the limit.
+     * @param rows  export row data, as returned by polling an ExportDataSource
+     * @param out   stream the encoded rows are appended to
+     * @return the number of rows encoded
+     */
+    public int encode(ByteBuffer rows, OutputStream out) throws IOException;
+}
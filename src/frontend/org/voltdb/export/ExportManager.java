@@ -20,9 +20,11 @@ package org.voltdb.export;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -736,6 +738,57 @@ public class ExportManager
         }
     }
 
+    /*
+     * Batched form of pushExportBuffer for committed buffers holding data, used
+     * by the EE to hand over the blocks of several streams in one call. The
+     * buffers of each stream are queued on its data source by a single task.
+     */
+    public static void pushExportBuffers(
+            long[] exportGenerations,
+            int[] partitionIds,
+            String[] signatures,
+            long[] usos,
+            long[] bufferPtrs,
+            ByteBuffer[] buffers) {
+        ExportManager instance = instance();
+        Map<ExportDataSource, List<Pair<Long, ByteBuffer>>> buffersBySource =
+                new LinkedHashMap<ExportDataSource, List<Pair<Long, ByteBuffer>>>();
+        for (int ii = 0; ii < buffers.length; ii++) {
+            ExportDataSource source = null;
+            ExportGeneration generation = instance.m_generations.get(exportGenerations[ii]);
+            if (generation != null) {
+                Map<String, ExportDataSource> sources = generation.getDataSourceByPartition().get(partitionIds[ii]);
+                if (sources != null) {
+                    source = sources.get(signatures[ii]);
+                }
+            }
+            if (source == null) {
+                // let the unbatched path report and discard it
+                pushExportBuffer(exportGenerations[ii], partitionIds[ii], signatures[ii], usos[ii],
+                        bufferPtrs[ii], buffers[ii], false, false);
+                continue;
+            }
+
+            //For validating that the memory is released
+            if (bufferPtrs[ii] != 0) DBBPool.registerUnsafeMemory(bufferPtrs[ii]);
+            List<Pair<Long, ByteBuffer>> sourceBuffers = buffersBySource.get(source);
+            if (sourceBuffers == null) {
+                sourceBuffers = new ArrayList<Pair<Long, ByteBuffer>>();
+                buffersBySource.put(source, sourceBuffers);
+            }
+            sourceBuffers.add(Pair.of(usos[ii], buffers[ii]));
+        }
+
+        for (Map.Entry<ExportDataSource, List<Pair<Long, ByteBuffer>>> e : buffersBySource.entrySet()) {
+            try {
+                e.getKey().pushExportBuffers(e.getValue());
+            } catch (Exception ex) {
+                //Don't let anything take down the execution site thread
+                exportLog.error("Error pushing export buffers", ex);
+            }
+        }
+    }
+
     public void truncateExportToTxnId(long snapshotTxnId, long[] perPartitionTxnIds) {
         exportLog.info("Truncating export data after txnId " + snapshotTxnId);
         for (ExportGeneration generation : m_generations.values()) {
@@ -22,6 +22,7 @@ import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
@@ -60,6 +61,10 @@ public class StreamBlockQueue {
     private final String m_nonce;
     private final BinaryDequeReader m_reader;
 
+    // Bytes written to and read back from the persistent deque, for export backlog statistics
+    private volatile long m_diskBytesWritten = 0;
+    private volatile long m_diskBytesRead = 0;
+
     public StreamBlockQueue(String path, String nonce) throws java.io.IOException {
         m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), exportLog);
         m_nonce = nonce;
@@ -93,6 +98,7 @@ public class StreamBlockQueue {
         if (cont == null) {
             return null;
         } else {
+            m_diskBytesRead += cont.b().remaining();
             //If the container is not null, unpack it.
             final BBContainer fcont = cont;
             long uso = cont.b().getLong(0);
@@ -197,12 +203,12 @@ public class StreamBlockQueue {
     public void offer(StreamBlock streamBlock) throws IOException {
         //Already have two blocks, put it in the deque
         if (m_memoryDeque.size() > 1) {
-            m_persistentDeque.offer(streamBlock.asBBContainer());
+            offerPersistentDeque(streamBlock);
         } else {
             //Don't offer into the memory deque if there is anything waiting to be
             //polled out of the persistent deque. Check the persistent deque
             if (pollPersistentDeque(false) != null) {
-               m_persistentDeque.offer( streamBlock.asBBContainer());
+               offerPersistentDeque(streamBlock);
             } else {
             //Persistent deque is empty put this in memory
                m_memoryDeque.offer(streamBlock);
@@ -210,6 +216,28 @@ public class StreamBlockQueue {
         }
     }
 
+    /*
+     * Offer several blocks in order. The persistent deque is checked once for
+     * the whole batch instead of once per block.
+     */
+    public void offer(List<StreamBlock> streamBlocks) throws IOException {
+        int ii = 0;
+        if (m_memoryDeque.size() < 2 && pollPersistentDeque(false) == null) {
+            while (ii < streamBlocks.size() && m_memoryDeque.size() < 2) {
+                m_memoryDeque.offer(streamBlocks.get(ii++));
+            }
+        }
+        for (; ii < streamBlocks.size(); ii++) {
+            offerPersistentDeque(streamBlocks.get(ii));
+        }
+    }
+
+    private void offerPersistentDeque(StreamBlock streamBlock) throws IOException {
+        BBContainer cont = streamBlock.asBBContainer();
+        m_diskBytesWritten += cont.b().remaining();
+        m_persistentDeque.offer(cont);
+    }
+
     /*
      * Push all the buffers that are in memory to disk
      * and then have the persistent deque sync.
@@ -229,6 +257,9 @@ public class StreamBlockQueue {
             }
 
             if (!buffersToPush.isEmpty()) {
+                for (BBContainer cont : buffersToPush) {
+                    m_diskBytesWritten += cont.b().remaining();
+                }
                 m_persistentDeque.push(buffersToPush.toArray(new BBContainer[0]));
             }
             ArrayList<StreamBlock> blocks = new ArrayList<StreamBlock>();
@@ -255,6 +286,14 @@ public class StreamBlockQueue {
         return memoryBlockUsage + m_reader.sizeInBytes() - (8 * m_reader.getNumObjects());
     }
 
+    public long getDiskBytesWritten() {
+        return m_diskBytesWritten;
+    }
+
+    public long getDiskBytesRead() {
+        return m_diskBytesRead;
+    }
+
     public void close() throws IOException {
         sync(true);
         m_persistentDeque.close();
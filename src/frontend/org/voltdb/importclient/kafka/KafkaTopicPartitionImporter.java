@@ -23,7 +23,11 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -34,6 +38,7 @@ import org.voltdb.client.ProcedureCallback;
 import org.voltdb.importclient.kafka.KafkaStreamImporterConfig.HostAndPort;
 import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.Invocation;
+import org.voltdb.importer.formatter.ByteBufferFormatter;
 import org.voltdb.importer.formatter.FormatException;
 import org.voltdb.importer.formatter.Formatter;
 
@@ -80,6 +85,15 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     private final TopicAndPartition m_topicAndPartition;
     private final Gap m_gapTracker = new Gap(Integer.getInteger("KAFKA_IMPORT_GAP_LEAD", 32_768));
     private final int m_gapFullWait = Integer.getInteger("KAFKA_IMPORT_GAP_WAIT", 2_000);
+    //Most messages imported by a single batched invocation.
+    private final int m_batchSize = Math.max(1, Integer.getInteger("KAFKA_IMPORT_BATCH_SIZE", 100));
+    //Fetches buffered ahead of the invoking thread.
+    private final BlockingQueue<FetchedMessages> m_prefetched =
+            new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger("KAFKA_IMPORT_PREFETCH_DEPTH", 4)));
+    //Bumped whenever the fetch offset is reset so that stale prefetched messages are dropped.
+    private final AtomicLong m_fetchEpoch = new AtomicLong(0);
+    //Held while invoking a fetch and while resetting offsets.
+    private final Object m_offsetLock = new Object();
     private final KafkaStreamImporterConfig m_config;
     private HostAndPort m_coordinator;
     private final FetchRequestBuilder m_fetchRequestBuilder;
@@ -87,6 +101,17 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     //Counters for commit policies.
     private long m_lastCommitTime = 0;
 
+    //Messages of one fetch response handed from the fetching thread to the invoking thread.
+    final static class FetchedMessages {
+        final long m_epoch;
+        final List<MessageAndOffset> m_messages;
+
+        FetchedMessages(long epoch, List<MessageAndOffset> messages) {
+            m_epoch = epoch;
+            m_messages = messages;
+        }
+    }
+
     public KafkaTopicPartitionImporter(KafkaStreamImporterConfig config)
     {
         m_config = config;
@@ -347,6 +372,11 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     private void resetLeader() {
         KafkaStreamImporterConfig.closeConsumer(m_consumer);
         m_consumer = null;
+        m_consumer = connectToLeader();
+    }
+
+    //Find the leader of this topic partition and connect a consumer to it.
+    SimpleConsumer connectToLeader() {
         HostAndPort leaderBroker = findNewLeader();
         if (leaderBroker == null) {
             //point to original leader which will fail and we fall back again here.
@@ -358,54 +388,70 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
                 m_config.setPartitionLeader(leaderBroker);
             }
         }
-        m_consumer = new SimpleConsumer(
+        return new SimpleConsumer(
                 leaderBroker.getHost(), leaderBroker.getPort(),
                 m_config.getSocketTimeout(), m_config.getFetchSize(), KafkaStreamImporterConfig.CLIENT_ID
                 );
     }
 
+    //Offset to start fetching from, -1 if the offset coordinator or the topic offsets can't be reached.
+    long findStartingOffset() {
+        getOffsetCoordinator();
+        if (m_offsetManager.get() == null) {
+            return -1L;
+        }
+        return getLastOffset();
+    }
+
     @Override
     protected void accept() {
         info(null, "Starting partition fetcher for " + m_topicAndPartition);
-        long submitCount = 0;
-        AtomicLong cbcnt = new AtomicLong(0);
-        @SuppressWarnings("unchecked")
-        Formatter<String> formatter = (Formatter<String>) m_config.getFormatterBuilder().create();
+        final AtomicLong submitCount = new AtomicLong(0);
+        final AtomicLong cbcnt = new AtomicLong(0);
+        final AtomicBoolean fetching = new AtomicBoolean(true);
+        //Messages are formatted and invoked on their own thread while this one fetches ahead.
+        Thread invoker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                invokeFetched(fetching, submitCount, cbcnt);
+            }
+        }, getTaskThreadName() + " - Invoker");
+        invoker.start();
+        //Next offset to fetch, runs ahead of m_currentOffset by up to the prefetched messages.
+        long fetchOffset = -1;
         try {
             //Start with the starting leader.
             resetLeader();
 
             int sleepCounter = 1;
-            while (shouldRun()) {
-                if (m_currentOffset.get() < 0) {
-                    getOffsetCoordinator();
-                    if (m_offsetManager.get() == null) {
-                        sleepCounter = backoffSleep(sleepCounter);
-                        continue;
-                    }
-
-                    long lastOffset = getLastOffset();
+            while (shouldRun() && invoker.isAlive()) {
+                if (fetchOffset < 0) {
+                    long lastOffset = findStartingOffset();
                     if (lastOffset == -1) {
                         sleepCounter = backoffSleep(sleepCounter);
                         continue;
                     }
 
-                    m_gapTracker.resetTo(lastOffset);
-                    m_lastCommittedOffset = lastOffset;
-
-                    m_currentOffset.set(lastOffset);
-                    if (m_currentOffset.get() < 0) {
+                    //Drop whatever was prefetched from the old offset.
+                    synchronized (m_offsetLock) {
+                        m_fetchEpoch.incrementAndGet();
+                        m_prefetched.clear();
+                        m_gapTracker.resetTo(lastOffset);
+                        m_lastCommittedOffset = lastOffset;
+                        m_currentOffset.set(lastOffset);
+                    }
+                    fetchOffset = lastOffset;
+                    if (fetchOffset < 0) {
                         //If we dont know the offset get it backoff if we fail.
                         sleepCounter = backoffSleep(sleepCounter);
                         info(null, "No valid offset found for " + m_topicAndPartition);
                         continue;
                     }
-                    info(null, "Starting offset for " + m_topicAndPartition + " is " + m_currentOffset.get());
+                    info(null, "Starting offset for " + m_topicAndPartition + " is " + fetchOffset);
                 }
-                long currentFetchCount = 0;
                 //Build fetch request of we have a valid offset and not too many are pending.
                 FetchRequest req = m_fetchRequestBuilder.addFetch(m_topicAndPartition.topic(),
-                                m_topicAndPartition.partition(), m_currentOffset.get(), m_config.getFetchSize())
+                                m_topicAndPartition.partition(), fetchOffset, m_config.getFetchSize())
                                 .build();
                 FetchResponse fetchResponse = null;
                 try {
@@ -434,62 +480,36 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
                     if (code == ErrorMapping.OffsetOutOfRangeCode()) {
                         // We asked for an invalid offset. For simple case ask for the last element to reset
                         info(null, "Invalid offset requested for " + m_topicAndPartition);
-                        getOffsetCoordinator();
-                        m_currentOffset.set(-1L);
+                        fetchOffset = -1L;
                         continue;
                     }
                     resetLeader();
                     continue;
                 }
                 sleepCounter = 1;
+                List<MessageAndOffset> messages = new ArrayList<>();
                 for (MessageAndOffset messageAndOffset : fetchResponse.messageSet(m_topicAndPartition.topic(), m_topicAndPartition.partition())) {
-                    //You may be catchin up so dont sleep.
-                    currentFetchCount++;
-                    long currentOffset = messageAndOffset.offset();
-
-                    //if currentOffset is less means we have already pushed it and also check pending queue.
-                    if (currentOffset < m_currentOffset.get()) {
-                        continue;
+                    //Compressed message sets may start before the requested offset.
+                    if (messageAndOffset.offset() >= fetchOffset) {
+                        messages.add(messageAndOffset);
                     }
+                }
 
-                    if (currentOffset > m_currentOffset.get()) {
-                        if (isDebugEnabled()) {
-                            debug(null, "Kafka messageAndOffset currentOffset %d is ahead of m_currentOffset %d.", currentOffset, m_currentOffset.get());
-                        }
-                    }
-                    ByteBuffer payload = messageAndOffset.message().payload();
-                    String line = new String(payload.array(),payload.arrayOffset(),payload.limit(),StandardCharsets.UTF_8);
+                if (messages.isEmpty()) {
+                    //wait to fetch more if we read nothing last time.
                     try {
-                        m_gapTracker.submit(messageAndOffset.nextOffset());
-                        Invocation invocation = new Invocation(m_config.getProcedure(), formatter.transform(line));
-                        TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(
-                                messageAndOffset.nextOffset(), cbcnt, m_gapTracker, m_dead);
-                         if (!noTransaction && !callProcedure(invocation, cb)) {
-                              if (isDebugEnabled()) {
-                                 debug(null, "Failed to process Invocation possibly bad data: " + line);
-                              }
-                              m_gapTracker.commit(messageAndOffset.nextOffset());
-                         }
-                     } catch (FormatException e) {
-                        rateLimitedLog(Level.WARN, e, "Failed to tranform data: %s" ,line);
-                        m_gapTracker.commit(messageAndOffset.nextOffset());
+                        Thread.sleep(m_waitSleepMs);
+                    } catch (InterruptedException ie) {
                     }
-                    submitCount++;
-                    m_currentOffset.set(messageAndOffset.nextOffset());
-                    if (!shouldRun()) {
-                        break;
-                    }
-                }
-                if (!shouldRun()) {
-                    break;
-                }
-
-                //wait to fetch more if we read nothing last time.
-                if (currentFetchCount == 0) {
-                        try {
-                            Thread.sleep(m_waitSleepMs);
-                        } catch (InterruptedException ie) {
+                } else {
+                    //You may be catchin up so dont sleep, block only when the invoker is prefetchDepth fetches behind.
+                    FetchedMessages fetched = new FetchedMessages(m_fetchEpoch.get(), messages);
+                    while (shouldRun() && invoker.isAlive() && !m_prefetched.offer(fetched, m_waitSleepMs * 100L, TimeUnit.MILLISECONDS)) {
+                        if (shouldCommit()) {
+                            commitOffset();
                         }
+                    }
+                    fetchOffset = messages.get(messages.size() - 1).nextOffset();
                 }
                 if (shouldCommit()) {
                     commitOffset();
@@ -498,6 +518,11 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
         } catch (Exception ex) {
             error(ex, "Failed to start topic partition fetcher for " + m_topicAndPartition);
         } finally {
+            fetching.set(false);
+            try {
+                invoker.join();
+            } catch (InterruptedException ignoreIt) {
+            }
             //Dont care about return as it wil force a commit.
             commitOffset();
             KafkaStreamImporterConfig.closeConsumer(m_consumer);
@@ -511,8 +536,112 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
         info(null, "Partition fetcher stopped for " + m_topicAndPartition
                 + " Last commit point is: " + m_lastCommittedOffset
                 + " Callback Rcvd: " + cbcnt.get()
-                + " Submitted: " + submitCount);
+                + " Submitted: " + submitCount.get());
+
+    }
+
+    //Format and invoke prefetched messages until the fetcher stops.
+    private void invokeFetched(AtomicBoolean fetching, AtomicLong submitCount, AtomicLong cbcnt) {
+        List<Invocation> batch = new ArrayList<>(m_batchSize);
+        List<Long> batchOffsets = new ArrayList<>(m_batchSize);
+        //Formatters that parse bytes get the payload without decoding it into a String.
+        ByteBufferFormatter bufferFormatter = m_config.getFormatterBuilder().createByteBufferFormatter();
+        @SuppressWarnings("unchecked")
+        Formatter<String> formatter =
+                bufferFormatter == null ? (Formatter<String>) m_config.getFormatterBuilder().create() : null;
+        try {
+            while (fetching.get() && shouldRun()) {
+                FetchedMessages fetched = nextFetched();
+                if (fetched == null) {
+                    continue;
+                }
+                synchronized (m_offsetLock) {
+                    //Fetched before the offset was reset.
+                    if (fetched.m_epoch != m_fetchEpoch.get()) {
+                        continue;
+                    }
+                    for (MessageAndOffset messageAndOffset : fetched.m_messages) {
+                        long currentOffset = messageAndOffset.offset();
+
+                        //if currentOffset is less means we have already pushed it and also check pending queue.
+                        if (currentOffset < m_currentOffset.get()) {
+                            continue;
+                        }
+
+                        if (currentOffset > m_currentOffset.get()) {
+                            if (isDebugEnabled()) {
+                                debug(null, "Kafka messageAndOffset currentOffset %d is ahead of m_currentOffset %d.", currentOffset, m_currentOffset.get());
+                            }
+                        }
+                        ByteBuffer payload = messageAndOffset.message().payload();
+                        String line = null;
+                        try {
+                            m_gapTracker.submit(messageAndOffset.nextOffset());
+                            Object[] params;
+                            if (bufferFormatter != null) {
+                                params = bufferFormatter.transform(payload);
+                            } else {
+                                line = new String(payload.array(),payload.arrayOffset(),payload.limit(),StandardCharsets.UTF_8);
+                                params = formatter.transform(line);
+                            }
+                            Invocation invocation = new Invocation(m_config.getProcedure(), params);
+                            if (!noTransaction) {
+                                batch.add(invocation);
+                                batchOffsets.add(messageAndOffset.nextOffset());
+                                if (batch.size() >= m_batchSize) {
+                                    submitBatch(batch, batchOffsets, cbcnt);
+                                }
+                            }
+                         } catch (FormatException e) {
+                            if (line == null) {
+                                line = new String(payload.array(),payload.arrayOffset(),payload.limit(),StandardCharsets.UTF_8);
+                            }
+                            rateLimitedLog(Level.WARN, e, "Failed to tranform data: %s" ,line);
+                            m_gapTracker.commit(messageAndOffset.nextOffset());
+                        }
+                        submitCount.incrementAndGet();
+                        m_currentOffset.set(messageAndOffset.nextOffset());
+                        if (!shouldRun()) {
+                            break;
+                        }
+                    }
+                    //Submit what is left of this fetch so that its offsets can be committed.
+                    submitBatch(batch, batchOffsets, cbcnt);
+                }
+            }
+        } catch (Exception ex) {
+            error(ex, "Failed to invoke procedure for messages of " + m_topicAndPartition);
+        }
+    }
 
+    //Next prefetched messages, null if none were fetched for a while.
+    FetchedMessages nextFetched() throws InterruptedException {
+        return m_prefetched.poll(m_waitSleepMs * 100L, TimeUnit.MILLISECONDS);
+    }
+
+    //Invoke the procedure for a batch of messages, their offsets are committed once all of them are done.
+    private void submitBatch(List<Invocation> batch, List<Long> batchOffsets, AtomicLong cbcnt) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long[] offsets = new long[batchOffsets.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = batchOffsets.get(i);
+        }
+        TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(
+                offsets, cbcnt, m_gapTracker, m_dead);
+        //The callback has the outcome of the batch unless it was rejected before any row was submitted.
+        boolean queued = batch.size() == 1 ? callProcedure(batch.get(0), cb) : callProcedures(batch, cb);
+        if (!queued) {
+            if (isDebugEnabled()) {
+                debug(null, "Failed to process %d Invocations possibly bad data at offset %d", offsets.length, offsets[0]);
+            }
+            for (long offset : offsets) {
+                m_gapTracker.commit(offset);
+            }
+        }
+        batch.clear();
+        batchOffsets.clear();
     }
 
     //Based on commit policy
@@ -532,51 +661,9 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     }
 
     public boolean commitOffset() {
-        final short version = 1;
         final long safe = m_gapTracker.commit(-1L);
         if (safe > m_lastCommittedOffset) {
-            long now = System.currentTimeMillis();
-            OffsetCommitResponse offsetCommitResponse = null;
-            try {
-                BlockingChannel channel = null;
-                int retries = 3;
-                while (channel == null && --retries >= 0) {
-                    if ((channel = m_offsetManager.get()) == null) {
-                        getOffsetCoordinator();
-                        rateLimitedLog(Level.ERROR, null, "Commit Offset Failed to get offset coordinator for " + m_topicAndPartition);
-                        continue;
-                    }
-                    OffsetCommitRequest offsetCommitRequest = new OffsetCommitRequest(
-                            m_config.getGroupId(),
-                            singletonMap(m_topicAndPartition, new OffsetAndMetadata(safe, "commit", now)),
-                            nextCorrelationId(),
-                            KafkaStreamImporterConfig.CLIENT_ID,
-                            version
-                            );
-                    channel.send(offsetCommitRequest.underlying());
-                    offsetCommitResponse = OffsetCommitResponse.readFrom(channel.receive().buffer());
-                    final short code = ((Short)offsetCommitResponse.errors().get(m_topicAndPartition)).shortValue();
-                    if (code == ErrorMapping.NotCoordinatorForConsumerCode() || code == ErrorMapping.ConsumerCoordinatorNotAvailableCode()) {
-                        info(null, "Not coordinator for committing offset for " + m_topicAndPartition + " Updating coordinator.");
-                        getOffsetCoordinator();
-                        channel = null;
-                        continue;
-                    }
-                }
-                if (retries < 0 || offsetCommitResponse == null) {
-                    return false;
-                }
-            } catch (Exception e) {
-                rateLimitedLog(Level.ERROR, e, "Failed to commit Offset for " + m_topicAndPartition);
-                if (e instanceof IOException) {
-                    getOffsetCoordinator();
-                }
-                return false;
-            }
-            final short code = ((Short) offsetCommitResponse.errors().get(m_topicAndPartition)).shortValue();
-            if (code != ErrorMapping.NoError()) {
-                final String msg = "Commit Offset Failed to commit for " + m_topicAndPartition;
-                rateLimitedLog(Level.ERROR, ErrorMapping.exceptionFor(code), msg);
+            if (!sendOffsetCommit(safe)) {
                 return false;
             }
             m_lastCommittedOffset = safe;
@@ -587,6 +674,56 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
         return false;
     }
 
+    //Commit the offset to the offset coordinator of the consumer group.
+    boolean sendOffsetCommit(long safe) {
+        final short version = 1;
+        long now = System.currentTimeMillis();
+        OffsetCommitResponse offsetCommitResponse = null;
+        try {
+            BlockingChannel channel = null;
+            int retries = 3;
+            while (channel == null && --retries >= 0) {
+                if ((channel = m_offsetManager.get()) == null) {
+                    getOffsetCoordinator();
+                    rateLimitedLog(Level.ERROR, null, "Commit Offset Failed to get offset coordinator for " + m_topicAndPartition);
+                    continue;
+                }
+                OffsetCommitRequest offsetCommitRequest = new OffsetCommitRequest(
+                        m_config.getGroupId(),
+                        singletonMap(m_topicAndPartition, new OffsetAndMetadata(safe, "commit", now)),
+                        nextCorrelationId(),
+                        KafkaStreamImporterConfig.CLIENT_ID,
+                        version
+                        );
+                channel.send(offsetCommitRequest.underlying());
+                offsetCommitResponse = OffsetCommitResponse.readFrom(channel.receive().buffer());
+                final short code = ((Short)offsetCommitResponse.errors().get(m_topicAndPartition)).shortValue();
+                if (code == ErrorMapping.NotCoordinatorForConsumerCode() || code == ErrorMapping.ConsumerCoordinatorNotAvailableCode()) {
+                    info(null, "Not coordinator for committing offset for " + m_topicAndPartition + " Updating coordinator.");
+                    getOffsetCoordinator();
+                    channel = null;
+                    continue;
+                }
+            }
+            if (retries < 0 || offsetCommitResponse == null) {
+                return false;
+            }
+        } catch (Exception e) {
+            rateLimitedLog(Level.ERROR, e, "Failed to commit Offset for " + m_topicAndPartition);
+            if (e instanceof IOException) {
+                getOffsetCoordinator();
+            }
+            return false;
+        }
+        final short code = ((Short) offsetCommitResponse.errors().get(m_topicAndPartition)).shortValue();
+        if (code != ErrorMapping.NoError()) {
+            final String msg = "Commit Offset Failed to commit for " + m_topicAndPartition;
+            rateLimitedLog(Level.ERROR, ErrorMapping.exceptionFor(code), msg);
+            return false;
+        }
+        return true;
+    }
+
     final class Gap {
         long c = 0;
         long s = -1L;
@@ -670,20 +807,20 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     }
 
     //Per topic per partition that we are responsible for.
-    //Callback for each invocation we have submitted.
+    //Callback for each batch of invocations we have submitted.
     private final static class TopicPartitionInvocationCallback implements ProcedureCallback
     {
-        private final long m_offset;
+        private final long[] m_offsets;
         private final AtomicLong m_cbcnt;
         private final Gap m_tracker;
         private final AtomicBoolean m_dontCommit;
 
         public TopicPartitionInvocationCallback(
-                final long offset,
+                final long[] offsets,
                 final AtomicLong cbcnt,
                 final Gap tracker,
                 final AtomicBoolean dontCommit) {
-            m_offset = offset;
+            m_offsets = offsets;
             m_cbcnt = cbcnt;
             m_tracker = tracker;
             m_dontCommit = dontCommit;
@@ -692,9 +829,12 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
         @Override
         public void clientCallback(ClientResponse response) throws Exception {
 
-            m_cbcnt.incrementAndGet();
+            m_cbcnt.addAndGet(m_offsets.length);
+            //A batch response is SERVER_UNAVAILABLE if any of its messages never ran.
             if (!m_dontCommit.get() && response.getStatus() != ClientResponse.SERVER_UNAVAILABLE) {
-                m_tracker.commit(m_offset);
+                for (long offset : m_offsets) {
+                    m_tracker.commit(offset);
+                }
             }
         }
     }
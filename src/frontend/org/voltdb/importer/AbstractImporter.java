@@ -18,6 +18,8 @@
 package org.voltdb.importer;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.Level;
@@ -113,6 +115,47 @@ public abstract class AbstractImporter
         }
     }
 
+    /**
+     * This should be used by importer implementations to execute a stored procedure for many
+     * rows at once. All the invocations must be of the same procedure. Rows of the insert or
+     * upsert procedure of a partitioned table are loaded with one transaction per partition,
+     * other procedures are executed one transaction per row.
+     *
+     * @param invocations Invocation objects with the procedure name and the parameters of each row
+     * @param callback the callback that will receive a single status once all rows completed,
+     * which is the most severe failure of any row, SERVER_UNAVAILABLE if some rows never ran
+     * @return returns true if the callback will receive the status of the batch, even if no row
+     * could be queued; false if the batch was rejected and the callback will not be called
+     */
+    protected final boolean callProcedures(List<Invocation> invocations, ProcedureCallback callback)
+    {
+        if (invocations.isEmpty()) {
+            return false;
+        }
+        final String procName = invocations.get(0).getProcedure();
+        try {
+            List<Object[]> rows = new ArrayList<Object[]>(invocations.size());
+            for (Invocation invocation : invocations) {
+                if (!procName.equals(invocation.getProcedure())) {
+                    throw new IllegalArgumentException("All invocations of a batch must use the same procedure");
+                }
+                rows.add(invocation.getParams());
+            }
+            int queued = m_importServerAdapter.callProcedures(this, callback, procName, rows);
+            for (int i = 0; i < invocations.size(); i++) {
+                reportStat(i < queued, procName);
+            }
+            applyBackPressureAsNeeded();
+            return true;
+        } catch (Exception ex) {
+            rateLimitedLog(Level.ERROR, ex, "%s: Error trying to import", getName());
+            for (int i = 0; i < invocations.size(); i++) {
+                reportFailureStat(procName);
+            }
+            return false;
+        }
+    }
+
     private void applyBackPressureAsNeeded()
     {
         int count = m_backPressureCount.get();
@@ -17,6 +17,8 @@
 
 package org.voltdb.importer;
 
+import java.util.List;
+
 import org.voltdb.client.ProcedureCallback;
 
 
@@ -52,6 +54,20 @@ public interface ImporterServerAdapter {
      */
     public boolean callProcedure(AbstractImporter importer, ProcedureCallback callback, String proc, Object... fieldList);
 
+    /**
+     * This is used by importers to execute a procedure for many rows with as few
+     * transactions as possible.
+     *
+     * @param importer the calling importer instance. This may be used by the importer framework
+     * to report back pressure.
+     * @param callback the callback object that will receive a single execution status for all the rows,
+     * also when none of them could be queued
+     * @param proc the name of the procedure that is to be executed
+     * @param rows the parameters to be passed in to the procedure, one array per row
+     * @return returns the number of rows whose execution was queued successfully.
+     */
+    public int callProcedures(AbstractImporter importer, ProcedureCallback callback, String proc, List<Object[]> rows);
+
     /**
      * This should be used by importers to report failure while trying to execute a procedure.
      *
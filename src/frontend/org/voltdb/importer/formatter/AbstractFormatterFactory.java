@@ -49,4 +49,16 @@ public abstract class AbstractFormatterFactory implements BundleActivator {
      * @return formatter instance created with the importer id
      */
     public abstract Formatter<?> create(String  formatName, Properties props);
+
+    /**
+     * Construct a formatter that parses the raw bytes of a record, for importers
+     * that receive their data in buffers. Factories that have no such formatter
+     * for the given properties return null and the importer uses {@link #create}.
+     * @param formatName  the type of the formatter
+     * @param props - the properties used for the construction of formatter.
+     * @return formatter instance, or null
+     */
+    public ByteBufferFormatter createByteBufferFormatter(String formatName, Properties props) {
+        return null;
+    }
 }
@@ -0,0 +1,29 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A formatter that parses the raw bytes of a record, so importers that receive
+ * data in buffers do not have to decode it into a String first. The formatter
+ * reads the buffer between its position and limit and must not keep a
+ * reference to it or to its content in the returned values.
+ */
+public interface ByteBufferFormatter extends Formatter<ByteBuffer> {
+}
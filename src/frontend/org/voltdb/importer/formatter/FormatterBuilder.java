@@ -47,6 +47,14 @@ public class FormatterBuilder<T> {
         return m_formatterFcatory.create(m_formatterName, m_formatterProps);
     }
 
+    /**
+     * @return formatter instance that parses record bytes, or null if the
+     *         factory has none for this import configuration
+     */
+    public ByteBufferFormatter createByteBufferFormatter(){
+        return m_formatterFcatory.createByteBufferFormatter(m_formatterName, m_formatterProps);
+    }
+
     public void setFormatterFactory(AbstractFormatterFactory  formatterFcatory){
         m_formatterFcatory = formatterFcatory;
     }
@@ -0,0 +1,220 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter.builtin;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Reusable holder for one parsed CSV record. Integers, floats and timestamps are
+ * kept as primitives, other values as slices of the source buffer, so parsing a
+ * record into a row does not allocate. The slices are only valid until the
+ * source buffer is reused; {@link #toArray()} copies the row into parameters.
+ */
+public class CSVRow {
+    private final VoltType[] m_types;
+    private final boolean[] m_nulls;
+    // integers and timestamps in microseconds
+    private final long[] m_longs;
+    private final double[] m_doubles;
+    // slices of strings, decimals and varbinaries in the source buffer
+    private final int[] m_offsets;
+    private final int[] m_lengths;
+    // the slice contains escaped or doubled quotes
+    private final boolean[] m_escaped;
+    private ByteBuffer m_source;
+    private char m_quote;
+    private char m_escape;
+
+    public CSVRow(VoltType[] types) {
+        m_types = types.clone();
+        m_nulls = new boolean[types.length];
+        m_longs = new long[types.length];
+        m_doubles = new double[types.length];
+        m_offsets = new int[types.length];
+        m_lengths = new int[types.length];
+        m_escaped = new boolean[types.length];
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public VoltType getColumnType(int column) {
+        return m_types[column];
+    }
+
+    public boolean isNull(int column) {
+        return m_nulls[column];
+    }
+
+    /**
+     * Value of an integer column, or the microseconds since the epoch of a timestamp column.
+     */
+    public long getLong(int column) {
+        return m_longs[column];
+    }
+
+    public double getDouble(int column) {
+        return m_doubles[column];
+    }
+
+    /**
+     * The buffer holding the slices of the last parsed record.
+     */
+    public ByteBuffer getSource() {
+        return m_source;
+    }
+
+    public int getSliceOffset(int column) {
+        return m_offsets[column];
+    }
+
+    public int getSliceLength(int column) {
+        return m_lengths[column];
+    }
+
+    void reset(ByteBuffer source, char quote, char escape) {
+        m_source = source;
+        m_quote = quote;
+        m_escape = escape;
+    }
+
+    void setNull(int column) {
+        m_nulls[column] = true;
+    }
+
+    void setLong(int column, long value) {
+        m_nulls[column] = false;
+        m_longs[column] = value;
+    }
+
+    void setDouble(int column, double value) {
+        m_nulls[column] = false;
+        m_doubles[column] = value;
+    }
+
+    void setSlice(int column, int offset, int length, boolean escaped) {
+        m_nulls[column] = false;
+        m_offsets[column] = offset;
+        m_lengths[column] = length;
+        m_escaped[column] = escaped;
+    }
+
+    /**
+     * Copy the row into procedure parameters, using the Java class of each column type.
+     */
+    public Object[] toArray() {
+        Object[] params = new Object[m_types.length];
+        for (int ii = 0; ii < params.length; ii++) {
+            if (m_nulls[ii]) {
+                continue;
+            }
+            switch (m_types[ii]) {
+            case TINYINT:
+                params[ii] = (byte) m_longs[ii];
+                break;
+            case SMALLINT:
+                params[ii] = (short) m_longs[ii];
+                break;
+            case INTEGER:
+                params[ii] = (int) m_longs[ii];
+                break;
+            case BIGINT:
+                params[ii] = m_longs[ii];
+                break;
+            case FLOAT:
+                params[ii] = m_doubles[ii];
+                break;
+            case TIMESTAMP:
+                params[ii] = new TimestampType(m_longs[ii]);
+                break;
+            case DECIMAL:
+                params[ii] = new BigDecimal(getString(ii));
+                break;
+            case VARBINARY:
+                params[ii] = getVarbinary(ii);
+                break;
+            default:
+                params[ii] = getString(ii);
+                break;
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Decode a slice as a string, undoing quote escapes.
+     */
+    public String getString(int column) {
+        final int offset = m_offsets[column];
+        final int length = m_lengths[column];
+        if (!m_escaped[column]) {
+            if (m_source.hasArray()) {
+                return new String(m_source.array(), m_source.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[length];
+            for (int ii = 0; ii < length; ii++) {
+                bytes[ii] = m_source.get(offset + ii);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        int count = 0;
+        for (int ii = 0; ii < length; ii++) {
+            byte b = m_source.get(offset + ii);
+            if ((b == m_escape || b == m_quote) && ii + 1 < length) {
+                byte next = m_source.get(offset + ii + 1);
+                if (next == m_quote || next == m_escape) {
+                    b = next;
+                    ii++;
+                }
+            }
+            bytes[count++] = b;
+        }
+        return new String(bytes, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a hex slice.
+     */
+    public byte[] getVarbinary(int column) {
+        final int offset = m_offsets[column];
+        byte[] bytes = new byte[m_lengths[column] / 2];
+        for (int ii = 0; ii < bytes.length; ii++) {
+            bytes[ii] = (byte) ((hexValue(m_source.get(offset + 2 * ii)) << 4)
+                    | hexValue(m_source.get(offset + 2 * ii + 1)));
+        }
+        return bytes;
+    }
+
+    static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,485 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer.formatter.builtin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.voltdb.VoltType;
+import org.voltdb.importer.formatter.ByteBufferFormatter;
+import org.voltdb.importer.formatter.FormatException;
+
+/**
+ * CSV formatter that parses records straight from their bytes into typed
+ * values, used when the import configuration lists the column types with the
+ * "columntypes" property, for example "bigint,varchar,timestamp".
+ *
+ * Numbers and timestamps are converted while the record is scanned, without
+ * creating a String per field, and the values are kept in a {@link CSVRow}
+ * that is reused for every record. Timestamps are either microseconds since
+ * the epoch or "YYYY-MM-DD[ HH:MM:SS[.ffffff]]" in UTC, and varbinary values
+ * are hex strings. Unquoted NULL or \N and quoted \N are null values.
+ * Floats with more than 15 significant digits or a large exponent are handed
+ * to Double.parseDouble, which does allocate.
+ */
+public class VoltCSVByteBufferFormatter implements ByteBufferFormatter {
+    // powers of ten that are exact doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int ii = 1; ii < POWERS_OF_TEN.length; ii++) {
+            POWERS_OF_TEN[ii] = POWERS_OF_TEN[ii - 1] * 10.0;
+        }
+    }
+
+    private final VoltType[] m_types;
+    private final char m_separator;
+    private final char m_quote;
+    private final char m_escape;
+    private final CSVRow m_row;
+
+    public VoltCSVByteBufferFormatter(String formatName, Properties prop) {
+        if (!("csv".equalsIgnoreCase(formatName) || "tsv".equalsIgnoreCase(formatName))) {
+            throw new IllegalArgumentException("Invalid format " + formatName + ", choices are either \"csv\" or \"tsv\".");
+        }
+        char separator = "csv".equalsIgnoreCase(formatName) ? ',' : '\t';
+        String separatorProp = prop.getProperty("separator", "");
+        if (!separatorProp.isEmpty() && separatorProp.length() == 1) {
+            separator = separatorProp.charAt(0);
+        }
+        char quotechar = '"';
+        String quoteCharProp = prop.getProperty("quotechar", "");
+        if (!quoteCharProp.isEmpty() && quoteCharProp.length() == 1) {
+            quotechar = quoteCharProp.charAt(0);
+        }
+        char escape = '\\';
+        String escapeProp = prop.getProperty("escape", "");
+        if (!escapeProp.isEmpty() && escapeProp.length() == 1) {
+            escape = escapeProp.charAt(0);
+        }
+        m_separator = separator;
+        m_quote = quotechar;
+        m_escape = escape;
+
+        String typesProp = prop.getProperty("columntypes", "").trim();
+        if (typesProp.isEmpty()) {
+            throw new IllegalArgumentException("The columntypes property is required to parse typed CSV records.");
+        }
+        String[] typeNames = typesProp.split(",");
+        m_types = new VoltType[typeNames.length];
+        for (int ii = 0; ii < typeNames.length; ii++) {
+            try {
+                m_types[ii] = VoltType.typeFromString(typeNames[ii].trim());
+            } catch (RuntimeException e) {
+                m_types[ii] = VoltType.INVALID;
+            }
+            if (m_types[ii] == VoltType.NULL || m_types[ii] == VoltType.INVALID) {
+                throw new IllegalArgumentException("Invalid column type " + typeNames[ii]);
+            }
+        }
+        m_row = new CSVRow(m_types);
+    }
+
+    public VoltType[] getColumnTypes() {
+        return m_types.clone();
+    }
+
+    @Override
+    public Object[] transform(ByteBuffer sourceData) throws FormatException {
+        parse(sourceData, m_row);
+        return m_row.toArray();
+    }
+
+    /**
+     * Parse the record between the position and limit of the buffer into the row
+     * without allocating. The position of the buffer is not changed.
+     */
+    public void parse(ByteBuffer buf, CSVRow row) throws FormatException {
+        row.reset(buf, m_quote, m_escape);
+        int end = buf.limit();
+        // ignore the line terminator
+        while (end > buf.position() && (buf.get(end - 1) == '\n' || buf.get(end - 1) == '\r')) {
+            end--;
+        }
+
+        int pos = buf.position();
+        int column = 0;
+        while (true) {
+            if (column >= m_types.length) {
+                throw error(buf, "has more than " + m_types.length + " columns");
+            }
+            int start;
+            int fieldEnd;
+            boolean quoted = false;
+            boolean escaped = false;
+            if (pos < end && buf.get(pos) == m_quote) {
+                quoted = true;
+                start = ++pos;
+                while (true) {
+                    if (pos >= end) {
+                        throw error(buf, "has an unterminated quoted field");
+                    }
+                    byte b = buf.get(pos);
+                    if (b == m_escape && pos + 1 < end
+                            && (buf.get(pos + 1) == m_quote || buf.get(pos + 1) == m_escape)) {
+                        escaped = true;
+                        pos += 2;
+                    } else if (b == m_quote) {
+                        if (pos + 1 < end && buf.get(pos + 1) == m_quote) {
+                            escaped = true;
+                            pos += 2;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        pos++;
+                    }
+                }
+                fieldEnd = pos++;
+                // only blanks may follow the closing quote
+                while (pos < end && buf.get(pos) == ' ') {
+                    pos++;
+                }
+                if (pos < end && buf.get(pos) != m_separator) {
+                    throw error(buf, "has characters after a closing quote");
+                }
+            } else {
+                start = pos;
+                while (pos < end && buf.get(pos) != m_separator) {
+                    pos++;
+                }
+                fieldEnd = pos;
+            }
+
+            parseField(buf, row, column, start, fieldEnd, quoted, escaped);
+            column++;
+
+            if (pos >= end) {
+                break;
+            }
+            // skip the separator
+            pos++;
+        }
+        if (column != m_types.length) {
+            throw error(buf, "has " + column + " columns instead of " + m_types.length);
+        }
+    }
+
+    private void parseField(ByteBuffer buf, CSVRow row, int column, int start, int end,
+                            boolean quoted, boolean escaped) throws FormatException {
+        if (isNull(buf, start, end, quoted)) {
+            row.setNull(column);
+            return;
+        }
+        final VoltType type = m_types[column];
+        if (type == VoltType.STRING || type == VoltType.GEOGRAPHY || type == VoltType.GEOGRAPHY_POINT) {
+            row.setSlice(column, start, end - start, escaped);
+            return;
+        }
+
+        // leading and trailing blanks are not part of other values
+        while (start < end && buf.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buf.get(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            row.setNull(column);
+            return;
+        }
+
+        switch (type) {
+        case TINYINT:
+            row.setLong(column, parseLong(buf, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE));
+            break;
+        case SMALLINT:
+            row.setLong(column, parseLong(buf, start, end, Short.MIN_VALUE, Short.MAX_VALUE));
+            break;
+        case INTEGER:
+            row.setLong(column, parseLong(buf, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            break;
+        case BIGINT:
+            row.setLong(column, parseLong(buf, start, end, Long.MIN_VALUE, Long.MAX_VALUE));
+            break;
+        case FLOAT:
+            row.setDouble(column, parseDouble(buf, start, end));
+            break;
+        case TIMESTAMP:
+            row.setLong(column, parseTimestamp(buf, start, end));
+            break;
+        case DECIMAL:
+            checkDecimal(buf, start, end);
+            row.setSlice(column, start, end - start, false);
+            break;
+        case VARBINARY:
+            if (((end - start) & 1) != 0) {
+                throw error(buf, "has a varbinary value with an odd number of hex digits");
+            }
+            for (int ii = start; ii < end; ii++) {
+                if (CSVRow.hexValue(buf.get(ii)) < 0) {
+                    throw error(buf, "has a varbinary value that is not hex");
+                }
+            }
+            row.setSlice(column, start, end - start, false);
+            break;
+        default:
+            row.setSlice(column, start, end - start, escaped);
+            break;
+        }
+    }
+
+    private static boolean isNull(ByteBuffer buf, int start, int end, boolean quoted) {
+        final int length = end - start;
+        if (length == 2 && buf.get(start) == '\\' && buf.get(start + 1) == 'N') {
+            return true;
+        }
+        return !quoted && length == 4
+                && buf.get(start) == 'N' && buf.get(start + 1) == 'U'
+                && buf.get(start + 2) == 'L' && buf.get(start + 3) == 'L';
+    }
+
+    private long parseLong(ByteBuffer buf, int start, int end, long min, long max) throws FormatException {
+        boolean negative = false;
+        int pos = start;
+        if (buf.get(pos) == '-' || buf.get(pos) == '+') {
+            negative = buf.get(pos) == '-';
+            pos++;
+        }
+        if (pos == end) {
+            throw error(buf, "has an invalid integer value");
+        }
+        // accumulate negatively so that Long.MIN_VALUE can be represented
+        long value = 0;
+        for (; pos < end; pos++) {
+            final int digit = buf.get(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                throw error(buf, "has an invalid integer value");
+            }
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw error(buf, "has an integer value out of range");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw error(buf, "has an integer value out of range");
+            }
+            value = -value;
+        }
+        if (value < min || value > max) {
+            throw error(buf, "has an integer value out of range");
+        }
+        return value;
+    }
+
+    private double parseDouble(ByteBuffer buf, int start, int end) throws FormatException {
+        int pos = start;
+        boolean negative = false;
+        if (buf.get(pos) == '-' || buf.get(pos) == '+') {
+            negative = buf.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean exact = true;
+        for (; pos < end; pos++) {
+            final int digit = buf.get(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            seenDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                exact = false;
+            }
+        }
+        if (pos < end && buf.get(pos) == '.') {
+            for (pos++; pos < end; pos++) {
+                final int digit = buf.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                seenDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+            }
+        }
+        if (!seenDigit) {
+            // NaN, Infinity and other spellings the JDK accepts
+            return slowParseDouble(buf, start, end);
+        }
+        if (pos < end && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+            try {
+                exponent += (int) parseLong(buf, pos + 1, end, -9999, 9999);
+            } catch (FormatException e) {
+                return slowParseDouble(buf, start, end);
+            }
+            pos = end;
+        }
+        if (pos != end) {
+            return slowParseDouble(buf, start, end);
+        }
+        // the result is correctly rounded when both the mantissa and the power of ten are exact
+        if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return slowParseDouble(buf, start, end);
+    }
+
+    private double slowParseDouble(ByteBuffer buf, int start, int end) throws FormatException {
+        try {
+            return Double.parseDouble(slice(buf, start, end));
+        } catch (NumberFormatException e) {
+            throw new FormatException("failed to format %s", e, recordString(buf));
+        }
+    }
+
+    private void checkDecimal(ByteBuffer buf, int start, int end) throws FormatException {
+        int pos = start;
+        if (buf.get(pos) == '-' || buf.get(pos) == '+') {
+            pos++;
+        }
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; pos < end; pos++) {
+            final byte b = buf.get(pos);
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                throw error(buf, "has an invalid decimal value");
+            }
+        }
+        if (!seenDigit) {
+            throw error(buf, "has an invalid decimal value");
+        }
+    }
+
+    private long parseTimestamp(ByteBuffer buf, int start, int end) throws FormatException {
+        // microseconds since the epoch
+        if (end - start != 10 || buf.get(start + 4) != '-') {
+            boolean numeric = true;
+            for (int ii = start; ii < end; ii++) {
+                final byte b = buf.get(ii);
+                if ((b < '0' || b > '9') && !(ii == start && b == '-')) {
+                    numeric = false;
+                    break;
+                }
+            }
+            if (numeric) {
+                return parseLong(buf, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }
+
+        // YYYY-MM-DD[ HH:MM:SS[.fraction]]
+        final int length = end - start;
+        if ((length != 10 && length < 19) || (length > 19 && buf.get(start + 19) != '.') || length > 29
+                || buf.get(start + 4) != '-' || buf.get(start + 7) != '-') {
+            throw error(buf, "has an invalid timestamp value");
+        }
+        final long year = digits(buf, start, 4);
+        final int month = digits(buf, start + 5, 2);
+        final int day = digits(buf, start + 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        long micros = 0;
+        if (length > 10) {
+            if (buf.get(start + 10) != ' ' || buf.get(start + 13) != ':' || buf.get(start + 16) != ':') {
+                throw error(buf, "has an invalid timestamp value");
+            }
+            hour = digits(buf, start + 11, 2);
+            minute = digits(buf, start + 14, 2);
+            second = digits(buf, start + 17, 2);
+            if (length > 20) {
+                long nanos = digits(buf, start + 20, length - 20);
+                for (int ii = length - 20; ii < 9; ii++) {
+                    nanos *= 10;
+                }
+                if (nanos % 1000 != 0) {
+                    throw error(buf, "has a timestamp value with fractional microseconds");
+                }
+                micros = nanos / 1000;
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour > 23 || minute > 59 || second > 59) {
+            throw error(buf, "has an invalid timestamp value");
+        }
+        final long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        return seconds * 1000000L + micros;
+    }
+
+    private int digits(ByteBuffer buf, int start, int count) throws FormatException {
+        int value = 0;
+        for (int ii = start; ii < start + count; ii++) {
+            final int digit = buf.get(ii) - '0';
+            if (digit < 0 || digit > 9) {
+                throw error(buf, "has an invalid timestamp value");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+     */
+    static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        final long era = (year >= 0 ? year : year - 399) / 400;
+        final long yearOfEra = year - era * 400;
+        final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static String slice(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int ii = 0; ii < bytes.length; ii++) {
+            bytes[ii] = buf.get(start + ii);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String recordString(ByteBuffer buf) {
+        return slice(buf, buf.position(), buf.limit());
+    }
+
+    private static FormatException error(ByteBuffer buf, String message) {
+        return new FormatException("failed to format %s: record %s", recordString(buf), message);
+    }
+}
@@ -20,6 +20,7 @@ package org.voltdb.importer.formatter.builtin;
 import java.util.Properties;
 
 import org.voltdb.importer.formatter.AbstractFormatterFactory;
+import org.voltdb.importer.formatter.ByteBufferFormatter;
 import org.voltdb.importer.formatter.Formatter;
 
 public class VoltCSVFormatterFactory extends AbstractFormatterFactory {
@@ -28,13 +29,21 @@ public class VoltCSVFormatterFactory extends AbstractFormatterFactory {
 
 
     @Override
-    public Formatter<String> create(String formatName, Properties props) {
+    public Formatter<?> create(String formatName, Properties props) {
         if(useSuperCsv(props)){
             return new VoltSuperCSVFormatter(formatName, props);
         }
         return  new VoltCSVFormatter(formatName, props);
     }
 
+    @Override
+    public ByteBufferFormatter createByteBufferFormatter(String formatName, Properties props) {
+        if (props.containsKey("columntypes")) {
+            return new VoltCSVByteBufferFormatter(formatName, props);
+        }
+        return null;
+    }
+
     private boolean useSuperCsv(Properties props){
 
         for(String prop : SUPER_CVS_PROPS){
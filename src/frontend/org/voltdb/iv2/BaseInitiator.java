@@ -61,6 +61,8 @@ public abstract class BaseInitiator implements Initiator
     protected Site m_executionSite = null;
     protected Thread m_siteThread = null;
     protected final RepairLog m_repairLog = new RepairLog();
+    // Sampled latency breakdown of SP transactions, null for the MPI
+    protected TxnPhaseTracer m_phaseTracer = null;
 
     public BaseInitiator(String zkMailboxNode, HostMessenger messenger, Integer partition,
             Scheduler scheduler, String whoamiPrefix, StatsAgent agent,
@@ -171,6 +173,7 @@ public abstract class BaseInitiator implements Initiator
                     0); // this has no meaning
             procSet.loadProcedures(catalogContext, backend, csp);
             m_executionSite.setLoadedProcedures(procSet);
+            m_executionSite.setPhaseTracer(m_phaseTracer);
             m_scheduler.setCommandLog(cl);
 
             m_siteThread = new Thread(m_executionSite);
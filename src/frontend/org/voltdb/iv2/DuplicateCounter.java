@@ -52,6 +52,8 @@ public class DuplicateCounter
     final List<Long> m_expectedHSIds;
     final long m_txnId;
     final VoltMessage m_openMessage;
+    // phase trace of the transaction, -1 if it is not sampled
+    long m_traceId = -1;
 
     DuplicateCounter(
             long destinationHSId,
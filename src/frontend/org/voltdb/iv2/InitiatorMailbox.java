@@ -38,6 +38,7 @@ import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.Iv2RepairLogRequestMessage;
 import org.voltdb.messaging.Iv2RepairLogResponseMessage;
+import org.voltdb.messaging.Iv2ReplicationBatchMessage;
 import org.voltdb.messaging.RejoinMessage;
 
 import com.google_voltpatches.common.base.Supplier;
@@ -281,6 +282,14 @@ public class InitiatorMailbox implements Mailbox
 
     protected void deliverInternal(VoltMessage message) {
         assert(lockingVows());
+        if (message instanceof Iv2ReplicationBatchMessage) {
+            // Replicated initiate tasks and their acknowledgements travel in
+            // batches; everything below expects to see them one at a time.
+            for (VoltMessage batched : ((Iv2ReplicationBatchMessage) message).getMessages()) {
+                deliverInternal(batched);
+            }
+            return;
+        }
         logRxMessage(message);
         boolean canDeliver = m_scheduler.sequenceForReplay(message);
         if (message instanceof DumpMessage) {
@@ -305,6 +314,8 @@ public class InitiatorMailbox implements Mailbox
         }
         else if (message instanceof RepairLogTruncationMessage) {
             m_repairLog.deliver(message);
+            // the scheduler releases reads served by this replica
+            m_scheduler.deliver(message);
             return;
         }
         m_repairLog.deliver(message);
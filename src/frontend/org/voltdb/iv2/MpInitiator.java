@@ -34,6 +34,7 @@ import org.voltdb.ProducerDRGateway;
 import org.voltdb.Promotable;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
 import org.voltdb.iv2.RepairAlgo.RepairResult;
@@ -61,6 +62,8 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 "MP",
                 agent,
                 StartAction.CREATE /* never for rejoin */);
+        agent.registerStatsSource(StatsSelector.MPQUEUE, getInitiatorHSId(),
+                new MpQueueStats(getInitiatorHSId(), ((MpScheduler) m_scheduler).getPendingTasks()));
     }
 
     @Override
@@ -93,6 +96,7 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 m_initiatorMailbox,
                 csp);
         sched.setMpRoSitePool(sitePool);
+        sched.updateTableAccess(catalogContext);
 
         // add ourselves to the ephemeral node list which BabySitters will watch for this
         // partition
@@ -0,0 +1,77 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Read bypass and write wait counters of the MP transaction queue, returned
+ * by @Statistics MPQUEUE. MP writes always run one at a time, these columns
+ * show how often reads started ahead of a write waiting for the current
+ * reads to drain and how long writes waited to start.
+ */
+public class MpQueueStats extends SiteStatsSource {
+
+    public enum StatName {
+        READ_BYPASS_LIMIT,
+        BYPASSED_READS,
+        CONFLICTED_READS,
+        BLOCKED_WRITES,
+        AVG_WRITE_WAIT
+    };
+
+    private final MpTransactionTaskQueue m_queue;
+
+    public MpQueueStats(long siteId, MpTransactionTaskQueue queue) {
+        super(siteId, false);
+        m_queue = queue;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.READ_BYPASS_LIMIT.name(), VoltType.INTEGER));
+        columns.add(new ColumnInfo(StatName.BYPASSED_READS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.CONFLICTED_READS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.BLOCKED_WRITES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.AVG_WRITE_WAIT.name(), VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        rowValues[columnNameToIndex.get(StatName.READ_BYPASS_LIMIT.name())] = m_queue.getReadBypassLimit();
+        rowValues[columnNameToIndex.get(StatName.BYPASSED_READS.name())] = m_queue.getBypassedReads();
+        rowValues[columnNameToIndex.get(StatName.CONFLICTED_READS.name())] = m_queue.getConflictedReads();
+        rowValues[columnNameToIndex.get(StatName.BLOCKED_WRITES.name())] = m_queue.getBlockedWrites();
+        // in microseconds
+        rowValues[columnNameToIndex.get(StatName.AVG_WRITE_WAIT.name())] = m_queue.getAverageWriteWaitMicros();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // one row for the MP initiator of this host
+        return Collections.<Object>singleton(m_queue).iterator();
+    }
+}
@@ -580,6 +580,22 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
         throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
     }
 
+    @Override
+    public VoltTable[] executeRepeatedPlanFragments(
+            int numRuns,
+            long[] planFragmentIds,
+            int[] runLengths,
+            Object[] parameterSets,
+            String[] sqlTexts,
+            long txnId,
+            long spHandle,
+            long uniqueId,
+            boolean readOnly)
+            throws EEException
+    {
+        throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
+    }
+
     @Override
     public ProcedureRunner getProcedureRunner(String procedureName) {
         return m_loadedProcedures.getProcByName(procedureName);
@@ -619,6 +635,11 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
         throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
     }
 
+    @Override
+    public long[] getTableVersions(long[] tableIds) {
+        throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
+    }
+
     @Override
     public void setBatch(int batchIndex) {
         // don't need to do anything here
@@ -654,4 +675,14 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
     public void setDRProtocolVersion(int drVersion) {
         throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
     }
+
+    @Override
+    public void deferIndexBuild() {
+        throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
+    }
+
+    @Override
+    public void buildDeferredIndexes() {
+        throw new RuntimeException("RO MP Site doesn't do this, shouldn't be here.");
+    }
 }
@@ -51,7 +51,6 @@ import org.voltdb.sysprocs.BalancePartitionsRequest;
 import org.voltdb.utils.MiscUtils;
 
 import com.google_voltpatches.common.collect.Maps;
-import com.google_voltpatches.common.collect.Sets;
 
 public class MpScheduler extends Scheduler
 {
@@ -90,11 +89,21 @@ public class MpScheduler extends Scheduler
         m_uniqueIdGenerator = new UniqueIdGenerator(partitionId, 0);
     }
 
+    MpTransactionTaskQueue getPendingTasks()
+    {
+        return m_pendingTasks;
+    }
+
     void setMpRoSitePool(MpRoSitePool sitePool)
     {
         m_pendingTasks.setMpRoSitePool(sitePool);
     }
 
+    void updateTableAccess(CatalogContext context)
+    {
+        m_pendingTasks.updateTableAccess(context);
+    }
+
     void updateCatalog(String diffCmds, CatalogContext context, CatalogSpecificPlanner csp)
     {
         m_pendingTasks.updateCatalog(diffCmds, context, csp);
@@ -311,7 +320,7 @@ public class MpScheduler extends Scheduler
     }
 
     /**
-     * Extract the two involved partitions from the @BalancePartitions request.
+     * Extract the involved partitions from all pairs of the @BalancePartitions request.
      */
     private Set<Integer> getBalancePartitions(Iv2InitiateTaskMessage msg)
     {
@@ -319,8 +328,7 @@ public class MpScheduler extends Scheduler
             JSONObject jsObj = new JSONObject((String) msg.getParameters()[0]);
             BalancePartitionsRequest request = new BalancePartitionsRequest(jsObj);
 
-            return Sets.newHashSet(request.partitionPairs.get(0).srcPartition,
-                    request.partitionPairs.get(0).destPartition);
+            return request.getInvolvedPartitions();
         } catch (JSONException e) {
             hostLog.warn("Unable to determine partitions for @BalancePartitions", e);
             return null;
@@ -0,0 +1,166 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.voltdb.CatalogContext;
+import org.voltdb.catalog.MaterializedViewHandlerInfo;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+import org.voltdb.catalog.TableRef;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+
+/**
+ * The tables each user procedure may read and update, gathered from the
+ * catalog statements of the procedure. The MPI uses it to decide whether a
+ * multi-partition read can safely run ahead of a multi-partition write that
+ * arrived before it.
+ *
+ * System procedures and procedures whose statements carry no table usage are
+ * unknown and must be treated as conflicting with everything.
+ */
+final class MpTableAccess
+{
+    static final class Access {
+        final Set<String> m_reads;
+        final Set<String> m_writes;
+
+        Access(Set<String> reads, Set<String> writes)
+        {
+            m_reads = ImmutableSet.copyOf(reads);
+            m_writes = ImmutableSet.copyOf(writes);
+        }
+    }
+
+    private final Map<String, Access> m_procedures = new HashMap<String, Access>();
+
+    MpTableAccess(Map<String, Access> procedures)
+    {
+        m_procedures.putAll(procedures);
+    }
+
+    MpTableAccess(CatalogContext context)
+    {
+        // Updating a table also updates the views defined on it
+        Map<String, Set<String>> viewsBySource = new HashMap<String, Set<String>>();
+        for (Table table : context.tables) {
+            if (table.getMaterializer() != null) {
+                addView(viewsBySource, table.getMaterializer().getTypeName(), table.getTypeName());
+            }
+            for (MaterializedViewHandlerInfo mvInfo : table.getMvhandlerinfo()) {
+                for (TableRef source : mvInfo.getSourcetables()) {
+                    addView(viewsBySource, source.getTable().getTypeName(), table.getTypeName());
+                }
+            }
+        }
+
+        for (Procedure proc : context.procedures) {
+            if (proc.getSystemproc()) {
+                continue;
+            }
+            Set<String> reads = new HashSet<String>();
+            Set<String> writes = new HashSet<String>();
+            boolean known = true;
+            for (Statement stmt : proc.getStatements()) {
+                if (stmt.getReadonly()) {
+                    if (!addTables(reads, stmt.getTablesread())) {
+                        known = false;
+                    }
+                }
+                else {
+                    // an INSERT ... VALUES reads nothing
+                    addTables(reads, stmt.getTablesread());
+                    if (!addTables(writes, stmt.getTablesupdated())) {
+                        known = false;
+                    }
+                }
+            }
+            if (!known) {
+                continue;
+            }
+            for (String table : new HashSet<String>(writes)) {
+                addViews(writes, viewsBySource, table);
+            }
+            m_procedures.put(proc.getTypeName(), new Access(reads, writes));
+        }
+    }
+
+    /**
+     * @return the tables the procedure may touch, or null if they are unknown
+     */
+    Access get(String procName)
+    {
+        if (procName == null) {
+            return null;
+        }
+        return m_procedures.get(procName);
+    }
+
+    /**
+     * Does running the read before the writes change what either of them sees?
+     */
+    static boolean conflicts(Access read, Set<String> writes)
+    {
+        for (String table : read.m_reads) {
+            if (writes.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean addTables(Set<String> tables, String csv)
+    {
+        if (csv == null || csv.isEmpty()) {
+            return false;
+        }
+        for (String table : csv.split(",")) {
+            tables.add(table.trim());
+        }
+        return true;
+    }
+
+    private static void addView(Map<String, Set<String>> viewsBySource, String source, String view)
+    {
+        Set<String> views = viewsBySource.get(source);
+        if (views == null) {
+            views = new HashSet<String>();
+            viewsBySource.put(source, views);
+        }
+        views.add(view);
+    }
+
+    private static void addViews(Set<String> writes, Map<String, Set<String>> viewsBySource, String table)
+    {
+        Set<String> views = viewsBySource.get(table);
+        if (views == null) {
+            return;
+        }
+        for (String view : views) {
+            if (writes.add(view)) {
+                addViews(writes, viewsBySource, view);
+            }
+        }
+    }
+}
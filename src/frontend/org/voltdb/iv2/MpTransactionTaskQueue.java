@@ -20,10 +20,12 @@ package org.voltdb.iv2;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.CatalogContext;
@@ -36,6 +38,14 @@ import org.voltdb.messaging.FragmentTaskMessage;
  * Provide an implementation of the TransactionTaskQueue specifically for the MPI.
  * This class will manage separating the stream of reads and writes to different
  * Sites and block appropriately so that reads and writes never execute concurrently.
+ *
+ * MP writes always run one at a time on the MPI's site. When MP_READ_BYPASS_LIMIT
+ * is set, a read may start ahead of a write that is waiting for the current reads
+ * to drain, as long as it reads none of the tables updated by the writes queued
+ * ahead of it. The table sets come from the catalog statements of each procedure,
+ * so procedures that plan SQL at run time through voltQueueSQLExperimental must
+ * not be used with this setting, which is why it is off by default. The counters
+ * are returned by @Statistics MPQUEUE.
  */
 public class MpTransactionTaskQueue extends TransactionTaskQueue
 {
@@ -49,6 +59,23 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
 
     private MpRoSitePool m_sitePool = null;
 
+    // Max number of reads that may start ahead of the write at the head of the
+    // backlog, so that a stream of reads can't starve it. 0 disables bypassing.
+    static final int READ_BYPASS_LIMIT = Integer.getInteger("MP_READ_BYPASS_LIMIT", 0);
+    private int m_readBypassLimit = READ_BYPASS_LIMIT;
+    private MpTableAccess m_tableAccess = null;
+    private boolean m_headWriteBlocked = false;
+    private int m_headWriteBypasses = 0;
+    private final Set<Long> m_headWriteConflicts = new HashSet<Long>();
+
+    // conflict and wait statistics
+    private long m_bypassedReads = 0;
+    private long m_conflictedReads = 0;
+    private long m_startedWrites = 0;
+    private long m_blockedWrites = 0;
+    private long m_writeWaitNanos = 0;
+    private final Map<Long, Long> m_writeOfferNanos = new HashMap<Long, Long>();
+
     MpTransactionTaskQueue(SiteTaskerQueue queue)
     {
         super(queue);
@@ -62,6 +89,21 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     synchronized void updateCatalog(String diffCmds, CatalogContext context, CatalogSpecificPlanner csp)
     {
         m_sitePool.updateCatalog(diffCmds, context, csp);
+        updateTableAccess(context);
+    }
+
+    synchronized void updateTableAccess(CatalogContext context)
+    {
+        if (m_readBypassLimit > 0) {
+            m_tableAccess = new MpTableAccess(context);
+        }
+    }
+
+    // This is for test only
+    synchronized void setTableAccessForTestOnly(MpTableAccess tableAccess, int readBypassLimit)
+    {
+        m_tableAccess = tableAccess;
+        m_readBypassLimit = readBypassLimit;
     }
 
     synchronized void updateSettings(CatalogContext context, CatalogSpecificPlanner csp)
@@ -87,6 +129,9 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     synchronized boolean offer(TransactionTask task)
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
+        if (!task.getTransactionState().isReadOnly()) {
+            m_writeOfferNanos.put(task.getTxnId(), System.nanoTime());
+        }
         m_backlog.addLast(task);
         taskQueueOffer();
         return true;
@@ -190,9 +235,14 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
                 if (m_currentReads.isEmpty() && m_currentWrites.isEmpty()) {
                     task = m_backlog.pollFirst();
                     m_currentWrites.put(task.getTxnId(), task);
+                    startedWrite(task);
                     taskQueueOffer(task);
                     retval = true;
                 }
+                else if (m_currentWrites.isEmpty()) {
+                    m_headWriteBlocked = true;
+                    retval = bypassBlockedWrite();
+                }
             }
             else if (m_currentWrites.isEmpty()) {
                 while (task != null && task.getTransactionState().isReadOnly() &&
@@ -212,6 +262,65 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         return retval;
     }
 
+    private void startedWrite(TransactionTask task)
+    {
+        Long offerNanos = m_writeOfferNanos.remove(task.getTxnId());
+        if (offerNanos != null) {
+            m_writeWaitNanos += System.nanoTime() - offerNanos;
+        }
+        if (m_headWriteBlocked) {
+            m_blockedWrites++;
+        }
+        m_startedWrites++;
+        m_headWriteBlocked = false;
+        m_headWriteBypasses = 0;
+        m_headWriteConflicts.clear();
+    }
+
+    /**
+     * The write at the head of the backlog is waiting for the current reads to
+     * finish. Start the reads queued behind it that read no table updated by
+     * any write ahead of them, up to m_readBypassLimit per blocked write.
+     */
+    private boolean bypassBlockedWrite()
+    {
+        if (m_tableAccess == null || m_headWriteBypasses >= m_readBypassLimit) {
+            return false;
+        }
+
+        boolean retval = false;
+        Set<String> aheadWrites = new HashSet<String>();
+        Iterator<TransactionTask> iter = m_backlog.iterator();
+        while (iter.hasNext() && m_headWriteBypasses < m_readBypassLimit && m_sitePool.canAcceptWork()) {
+            TransactionTask task = iter.next();
+            MpTableAccess.Access access = null;
+            if (task instanceof ProcedureTask) {
+                access = m_tableAccess.get(((ProcedureTask) task).getProcedureName());
+            }
+            if (!task.getTransactionState().isReadOnly()) {
+                if (access == null) {
+                    // nothing can be moved ahead of a write we know nothing about
+                    break;
+                }
+                aheadWrites.addAll(access.m_writes);
+            }
+            else if (access == null || MpTableAccess.conflicts(access, aheadWrites)) {
+                if (m_headWriteConflicts.add(task.getTxnId())) {
+                    m_conflictedReads++;
+                }
+            }
+            else {
+                iter.remove();
+                m_currentReads.put(task.getTxnId(), task);
+                taskQueueOffer(task);
+                m_headWriteBypasses++;
+                m_bypassedReads++;
+                retval = true;
+            }
+        }
+        return retval;
+    }
+
     /**
      * Indicate that the transaction associated with txnId is complete.  Perform
      * management of reads/writes in progress then call taskQueueOffer() to
@@ -273,12 +382,48 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         return m_backlog.size();
     }
 
+    /** Max reads that may start ahead of one blocked write, 0 when bypassing is off */
+    synchronized int getReadBypassLimit()
+    {
+        return m_tableAccess == null ? 0 : m_readBypassLimit;
+    }
+
+    /** Reads started ahead of a blocked write */
+    synchronized long getBypassedReads()
+    {
+        return m_bypassedReads;
+    }
+
+    /** Reads held behind a blocked write because they read a table it updates */
+    synchronized long getConflictedReads()
+    {
+        return m_conflictedReads;
+    }
+
+    /** Writes that had to wait for reads to drain before starting */
+    synchronized long getBlockedWrites()
+    {
+        return m_blockedWrites;
+    }
+
+    /** Average time a write spent queued before it started, in microseconds */
+    synchronized long getAverageWriteWaitMicros()
+    {
+        return m_startedWrites == 0 ? 0 : m_writeWaitNanos / m_startedWrites / 1000;
+    }
+
     @Override
     public String toString()
     {
         StringBuilder sb = new StringBuilder();
         sb.append("MpTransactionTaskQueue:").append("\n");
         sb.append("\tSIZE: ").append(m_backlog.size()).append("\n");
+        sb.append("\tWRITES STARTED: ").append(m_startedWrites)
+          .append(" BLOCKED: ").append(m_blockedWrites)
+          .append(" AVG WAIT US: ").append(m_startedWrites == 0 ? 0 : m_writeWaitNanos / m_startedWrites / 1000)
+          .append("\n");
+        sb.append("\tREADS BYPASSED: ").append(m_bypassedReads)
+          .append(" CONFLICTED: ").append(m_conflictedReads).append("\n");
         if (!m_backlog.isEmpty()) {
             sb.append("\tHEAD: ").append(m_backlog.getFirst()).append("\n");
         }
@@ -20,6 +20,7 @@ package org.voltdb.iv2;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
@@ -51,6 +52,11 @@ abstract public class ProcedureTask extends TransactionTask
         m_procName = procName;
     }
 
+    String getProcedureName()
+    {
+        return m_procName;
+    }
+
     /** Run is invoked by a run-loop to execute this transaction. */
     @Override
     abstract public void run(SiteProcedureConnection siteConnection);
@@ -66,12 +72,18 @@ abstract public class ProcedureTask extends TransactionTask
 
         try {
             Object[] callerParams = null;
+            ProcedureRunner runner = siteConnection.getProcedureRunner(m_procName);
+            // Parameters that need no conversion go to the EE still serialized
+            final ByteBuffer passThroughParams =
+                    (runner != null ? runner.getPassThroughParams(task.getStoredProcedureInvocation()) : null);
             /*
              * Parameters are lazily deserialized. We may not find out until now
              * that the parameter set is corrupt
              */
             try {
-                callerParams = task.getParameters();
+                if (passThroughParams == null) {
+                    callerParams = task.getParameters();
+                }
             } catch (RuntimeException e) {
                 Writer result = new StringWriter();
                 PrintWriter pw = new PrintWriter(result);
@@ -83,12 +95,11 @@ abstract public class ProcedureTask extends TransactionTask
                                 + m_procName + "\n"
                                 + result.toString()));
             }
-            if (callerParams == null) {
+            if (callerParams == null && passThroughParams == null) {
                 return response;
             }
 
             ClientResponseImpl cr = null;
-            ProcedureRunner runner = siteConnection.getProcedureRunner(m_procName);
             if (runner == null) {
                 String error =
                         "Procedure " + m_procName + " is not present in the catalog. "  +
@@ -113,7 +124,12 @@ abstract public class ProcedureTask extends TransactionTask
                 runner.setupTransaction(m_txnState);
 
                 // execute the procedure
-                cr = runner.call(callerParams);
+                if (passThroughParams != null) {
+                    cr = runner.callWithPassThroughParams(passThroughParams);
+                }
+                else {
+                    cr = runner.call(callerParams);
+                }
 
                 m_txnState.setHash(cr.getHash());
                 //Don't pay the cost of returning the result tables for a replicated write
@@ -56,6 +56,11 @@ public class RejoinProducer extends JoinProducerBase {
     // True if we're handling a table-less rejoin.
     boolean m_schemaHasNoTables = false;
 
+    // True once the EE has been told to skip index maintenance while the
+    // snapshot stream loads the empty tables. The indexes are built in
+    // bulk when the stream reaches EOF.
+    private boolean m_indexBuildDeferred = false;
+
     // Get the snapshot nonce from the RejoinCoordinator's INITIATION message.
     // Then register the completion interest.
     //
@@ -263,6 +268,11 @@ public class RejoinProducer extends JoinProducerBase {
             TaskLog m_taskLog) throws IOException
     {
         if (!m_schemaHasNoTables) {
+            if (!m_indexBuildDeferred) {
+                siteConnection.deferIndexBuild();
+                m_indexBuildDeferred = true;
+            }
+
             boolean sourcesReady = false;
             RestoreWork rejoinWork = m_rejoinSiteProcessor.poll(m_snapshotBufferAllocator);
             if (rejoinWork != null) {
@@ -280,6 +290,7 @@ public class RejoinProducer extends JoinProducerBase {
                     VoltDB.instance().getHostMessenger().removeMailbox(m_streamSnapshotMb.getHSId());
                 }
 
+                siteConnection.buildDeferredIndexes();
                 doFinishingTask(siteConnection);
             }
         }
@@ -145,6 +145,15 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     // Manages pending tasks.
     final SiteTaskerQueue m_scheduler;
 
+    // Single statement SP transactions executed by one EE call, null when batching is off
+    private final SpTransactionBatch m_spTxnBatch =
+            SpTransactionBatch.isEnabled() ? new SpTransactionBatch() : null;
+
+    // Samples the latency breakdown of SP transactions, null on the MPI site
+    private TxnPhaseTracer m_phaseTracer = null;
+    // Each transaction's share of the last batched EE call, only kept while tracing
+    private long m_spTxnBatchEeNanos = 0;
+
     /*
      * There is really no legitimate reason to touch the initiator mailbox from the site,
      * but it turns out to be necessary at startup when restoring a snapshot. The snapshot
@@ -643,6 +652,12 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         m_loadedProcedures = loadedProcedure;
     }
 
+    /** Set the tracer that EE time of sampled transactions goes to, before the site starts. */
+    void setPhaseTracer(TxnPhaseTracer tracer)
+    {
+        m_phaseTracer = tracer;
+    }
+
     /** Thread specific initialization */
     void initialize()
     {
@@ -769,6 +784,10 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                 if (m_rejoinState == kStateRunning) {
                     // Normal operation blocks the site thread on the sitetasker queue.
                     SiteTasker task = m_scheduler.take();
+                    if (m_spTxnBatch != null && task instanceof SpProcedureTask) {
+                        runSpTransactionBatch((SpProcedureTask)task);
+                        continue;
+                    }
                     if (task instanceof TransactionTask) {
                         m_currentTxnId = ((TransactionTask)task).getTxnId();
                         m_lastTxnTime = EstTime.currentTimeMillis();
@@ -829,6 +848,49 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             CompressionService.releaseThreadLocal();        }
     }
 
+    /**
+     * Run an SP procedure task along with the single statement SP procedure tasks
+     * queued right behind it. When there are at least two of those, their
+     * statements execute in one EE call first, and each task then picks up its
+     * result in executePlanFragments() as it runs.
+     */
+    private void runSpTransactionBatch(SpProcedureTask first)
+    {
+        final SiteProcedureConnection siteConnection = getSiteProcedureConnection();
+        final SpTransactionBatch batch = m_spTxnBatch;
+        batch.begin(m_latestUndoToken, m_lastCommittedSpHandle);
+        try {
+            if (batch.add(first, siteConnection, m_hashinator)) {
+                SiteTasker next;
+                while ((next = m_scheduler.peek()) instanceof SpProcedureTask &&
+                       batch.add((SpProcedureTask)next, siteConnection, m_hashinator)) {
+                    m_scheduler.poll();
+                }
+            }
+
+            // a single transaction gains nothing, and a failed batch has been undone
+            final long eeStartNanos = m_phaseTracer != null ? System.nanoTime() : 0;
+            final boolean executed = batch.size() > 1 && batch.execute(m_ee);
+            if (executed && eeStartNanos != 0) {
+                m_spTxnBatchEeNanos = (System.nanoTime() - eeStartNanos) / batch.size();
+            }
+            final int count = Math.max(batch.size(), 1);
+            for (int i = 0; i < count; i++) {
+                final SpProcedureTask task = batch.size() == 0 ? first : batch.getTask(i);
+                m_currentTxnId = task.getTxnId();
+                m_lastTxnTime = EstTime.currentTimeMillis();
+                task.run(siteConnection);
+                if (executed && batch.isResultPending(i)) {
+                    VoltDB.crashLocalVoltDB("Batched SP transaction " + task +
+                            " completed without using the result of its statement", true, null);
+                }
+            }
+        }
+        finally {
+            batch.clear();
+        }
+    }
+
     ParticipantTransactionState global_replay_mpTxn = null;
     boolean replayFromTaskLog(MinimumRatioMaintainer mrm) throws IOException
     {
@@ -1115,6 +1177,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         if (beginUndoToken == Site.kInvalidUndoToken) return;
         if (rollback) {
             m_ee.undoUndoToken(beginUndoToken);
+            if (m_spTxnBatch != null) {
+                m_spTxnBatch.discardResults();
+            }
         }
         else {
             assert(m_latestUndoToken != Site.kInvalidUndoToken);
@@ -1418,17 +1483,64 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                             boolean readOnly)
             throws EEException
     {
-        return m_ee.executePlanFragments(
-                numFragmentIds,
-                planFragmentIds,
-                inputDepIds,
-                parameterSets,
-                sqlTexts,
-                txnId,
-                spHandle,
-                m_lastCommittedSpHandle,
-                uniqueId,
-                readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken());
+        if (m_spTxnBatch != null && m_spTxnBatch.hasResultFor(spHandle, numFragmentIds, planFragmentIds)) {
+            // already executed with the rest of its batch, keep the undo tokens in step
+            if (m_phaseTracer != null && m_phaseTracer.isRunning()) {
+                m_phaseTracer.recordBatchedEe(m_spTxnBatchEeNanos);
+            }
+            return new VoltTable[] {
+                    m_spTxnBatch.takeResult(readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken()) };
+        }
+        final long eeStartNanos = m_phaseTracer != null && m_phaseTracer.isRunning() ? System.nanoTime() : 0;
+        try {
+            return m_ee.executePlanFragments(
+                    numFragmentIds,
+                    planFragmentIds,
+                    inputDepIds,
+                    parameterSets,
+                    sqlTexts,
+                    txnId,
+                    spHandle,
+                    m_lastCommittedSpHandle,
+                    uniqueId,
+                    readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken());
+        } finally {
+            if (eeStartNanos != 0) {
+                m_phaseTracer.recordEe(System.nanoTime() - eeStartNanos);
+            }
+        }
+    }
+
+    @Override
+    public VoltTable[] executeRepeatedPlanFragments(int numRuns,
+                                                    long[] planFragmentIds,
+                                                    int[] runLengths,
+                                                    Object[] parameterSets,
+                                                    String[] sqlTexts,
+                                                    long txnId,
+                                                    long spHandle,
+                                                    long uniqueId,
+                                                    boolean readOnly)
+            throws EEException
+    {
+        final long eeStartNanos = m_phaseTracer != null && m_phaseTracer.isRunning() ? System.nanoTime() : 0;
+        try {
+            return m_ee.executeRepeatedPlanFragments(
+                    numRuns,
+                    planFragmentIds,
+                    runLengths,
+                    parameterSets,
+                    sqlTexts,
+                    txnId,
+                    spHandle,
+                    m_lastCommittedSpHandle,
+                    uniqueId,
+                    readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken());
+        } finally {
+            if (eeStartNanos != 0) {
+                m_phaseTracer.recordEe(System.nanoTime() - eeStartNanos);
+            }
+        }
     }
 
     @Override
@@ -1572,6 +1684,22 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         return mispartitionedRows;
     }
 
+    @Override
+    public long[] getTableVersions(long[] tableIds) {
+        ByteBuffer paramBuffer = m_ee.getParamBufferForExecuteTask(4 + (8 * tableIds.length));
+        paramBuffer.putInt(tableIds.length);
+        for (long tableId : tableIds) {
+            paramBuffer.putLong(tableId);
+        }
+
+        ByteBuffer resultBuffer = ByteBuffer.wrap(m_ee.executeTask(TaskType.GET_TABLE_VERSIONS, paramBuffer));
+        long versions[] = new long[tableIds.length];
+        for (int ii = 0; ii < tableIds.length; ii++) {
+            versions[ii] = resultBuffer.getLong();
+        }
+        return versions;
+    }
+
     @Override
     public void setBatch(int batchIndex) {
         m_ee.setBatch(batchIndex);
@@ -1616,6 +1744,18 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         hostLog.info("DR protocol version has been set to " + drVersion);
     }
 
+    @Override
+    public void deferIndexBuild() {
+        m_ee.executeTask(TaskType.DEFER_INDEX_BUILD, m_ee.getParamBufferForExecuteTask(0));
+    }
+
+    @Override
+    public void buildDeferredIndexes() {
+        final long startTime = System.currentTimeMillis();
+        m_ee.executeTask(TaskType.BUILD_DEFERRED_INDEXES, m_ee.getParamBufferForExecuteTask(0));
+        hostLog.info("Built deferred indexes in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
     /**
      * Generate a in-stream DR event which pushes an event buffer to topend
      */
@@ -25,11 +25,32 @@ import org.voltdb.StarvationTracker;
 /** SiteTaskerScheduler orders SiteTaskers for execution. */
 public class SiteTaskerQueue
 {
+    /**
+     * How a site thread waits for work when its queue is empty.
+     * BLOCK parks right away (after QUEUE_SPIN_MICROS of spinning, if set).
+     * SPIN_YIELD_PARK polls, then yields, then parks.
+     * BUSY_SPIN never parks and keeps a core busy per site.
+     */
+    public enum WaitStrategy {
+        BLOCK,
+        SPIN_YIELD_PARK,
+        BUSY_SPIN
+    }
+
+    static final WaitStrategy WAIT_STRATEGY =
+        WaitStrategy.valueOf(System.getProperty("SITE_WAIT_STRATEGY", "BLOCK").toUpperCase());
+    static final int SPIN_ITERATIONS = Integer.getInteger("SITE_WAIT_SPIN_ITERATIONS", 10000);
+    static final int YIELD_ITERATIONS = Integer.getInteger("SITE_WAIT_YIELD_ITERATIONS", 100);
+    // sample the queue depth once every this many dequeues, size() walks the queue
+    private static final int DEPTH_SAMPLE_INTERVAL = 64;
+
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
     private StarvationTracker m_starvationTracker;
+    private int m_dequeuesSinceDepthSample = 0;
 
     public boolean offer(SiteTasker task)
     {
+        task.m_queueOfferNanos = System.nanoTime();
         return m_tasks.offer(task);
     }
 
@@ -39,20 +60,68 @@ public class SiteTaskerQueue
         SiteTasker task = m_tasks.poll();
         if (task == null) {
             m_starvationTracker.beginStarvation();
-        } else {
-            return task;
+            try {
+                task = waitForTask();
+            } finally {
+                m_starvationTracker.endStarvation();
+            }
         }
-        try {
+        dequeued(task);
+        return task;
+    }
+
+    private SiteTasker waitForTask() throws InterruptedException
+    {
+        SiteTasker task;
+        switch (WAIT_STRATEGY) {
+        case BUSY_SPIN:
+            for (;;) {
+                if ((task = m_tasks.poll()) != null) {
+                    return task;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        case SPIN_YIELD_PARK:
+            for (int i = 0; i < SPIN_ITERATIONS; i++) {
+                if ((task = m_tasks.poll()) != null) {
+                    return task;
+                }
+            }
+            for (int i = 0; i < YIELD_ITERATIONS; i++) {
+                if ((task = m_tasks.poll()) != null) {
+                    return task;
+                }
+                Thread.yield();
+            }
+            return m_tasks.take();
+        default:
             return CoreUtils.queueSpinTake(m_tasks);
-        } finally {
-            m_starvationTracker.endStarvation();
+        }
+    }
+
+    private void dequeued(SiteTasker task)
+    {
+        if (m_starvationTracker == null) {
+            return;
+        }
+        m_starvationTracker.recordQueueLatency(System.nanoTime() - task.m_queueOfferNanos);
+        if (++m_dequeuesSinceDepthSample >= DEPTH_SAMPLE_INTERVAL) {
+            m_dequeuesSinceDepthSample = 0;
+            // count the task just taken as well
+            m_starvationTracker.recordQueueDepth(m_tasks.size() + 1);
         }
     }
 
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        return m_tasks.poll();
+        SiteTasker task = m_tasks.poll();
+        if (task != null) {
+            dequeued(task);
+        }
+        return task;
     }
 
     // Non-blocking peek on the site tasker queue.
@@ -35,6 +35,7 @@ import org.voltdb.Promotable;
 import org.voltdb.SnapshotCompletionMonitor;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
 import org.voltdb.export.ExportManager;
@@ -78,6 +79,9 @@ public class SpInitiator extends BaseInitiator implements Promotable
         super(VoltZK.iv2masters, messenger, partition,
                 new SpScheduler(partition, new SiteTaskerQueue(), snapMonitor),
                 "SP", agent, startAction);
+        m_phaseTracer = new TxnPhaseTracer(getInitiatorHSId());
+        ((SpScheduler) m_scheduler).setPhaseTracer(m_phaseTracer);
+        agent.registerStatsSource(StatsSelector.TXNPHASES, getInitiatorHSId(), m_phaseTracer);
         m_leaderCache = new LeaderCache(messenger.getZK(), VoltZK.iv2appointees, m_leadersChangeHandler);
         m_tickProducer = new TickProducer(m_scheduler.m_tasks);
     }
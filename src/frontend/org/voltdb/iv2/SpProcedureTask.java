@@ -49,12 +49,30 @@ public class SpProcedureTask extends ProcedureTask
         HOST_TRACE_ENABLED = hostLog.isTraceEnabled();
     }
 
+    // phase trace of a sampled transaction, -1 if it is not sampled
+    private TxnPhaseTracer m_phaseTracer = null;
+    private long m_traceId = -1;
+    private boolean m_traceCompletesOnRun = false;
+
     public SpProcedureTask(Mailbox initiator, String procName, TransactionTaskQueue queue,
                   Iv2InitiateTaskMessage msg)
     {
        super(initiator, procName, new SpTransactionState(msg), queue);
     }
 
+    /**
+     * Stamp the phases of this transaction into a trace.
+     * @param completesOnRun  true if the transaction is done once its response
+     *                        is delivered, false if the scheduler completes the
+     *                        trace when the replicas have responded
+     */
+    void setPhaseTrace(TxnPhaseTracer tracer, long traceId, boolean completesOnRun)
+    {
+        m_phaseTracer = tracer;
+        m_traceId = traceId;
+        m_traceCompletesOnRun = completesOnRun;
+    }
+
     /** Run is invoked by a run-loop to execute this transaction. */
     @Override
     public void run(SiteProcedureConnection siteConnection)
@@ -62,6 +80,9 @@ public class SpProcedureTask extends ProcedureTask
         LatencyWatchdog.pet();
 
         waitOnDurabilityBackpressureFuture();
+        if (m_traceId >= 0) {
+            m_phaseTracer.startRun(m_traceId, m_queueOfferNanos);
+        }
         if (HOST_DEBUG_ENABLED) {
             hostLog.debug("STARTING: " + this);
         }
@@ -93,7 +114,13 @@ public class SpProcedureTask extends ProcedureTask
         }
         completeInitiateTask(siteConnection);
         response.m_sourceHSId = m_initiator.getHSId();
+        if (m_traceId >= 0) {
+            m_phaseTracer.endRun(m_traceId);
+        }
         m_initiator.deliver(response);
+        if (m_traceId >= 0 && m_traceCompletesOnRun) {
+            m_phaseTracer.complete(m_traceId);
+        }
         if (EXEC_TRACE_ENABLED) {
             execLog.l7dlog( Level.TRACE, LogKeys.org_voltdb_ExecutionSite_SendingCompletedWUToDtxn.name(), null);
         }
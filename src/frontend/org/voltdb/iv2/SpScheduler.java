@@ -30,6 +30,8 @@ import java.util.Queue;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.HostMessenger;
@@ -61,6 +63,7 @@ import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.Iv2LogFaultMessage;
+import org.voltdb.messaging.Iv2ReplicationBatchMessage;
 import org.voltdb.messaging.MultiPartitionParticipantMessage;
 import org.voltdb.messaging.RepairLogTruncationMessage;
 
@@ -164,6 +167,32 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     long m_lastSentTruncationHandle = Long.MIN_VALUE;
     // the max schedule transaction sphandle, multi-fragments mp txn counts one
     long m_maxScheduledTxnSpHandle = Long.MIN_VALUE;
+    // the leader's truncation handle as last heard by this replica, used to
+    // release SAFE reads served by the replica
+    long m_leaderTruncationHandle = Long.MIN_VALUE;
+
+    // Max number of SP initiate tasks the leader sends to its replicas in one
+    // message, and max number of responses a replica acknowledges in one.
+    // 1 replicates and acknowledges every transaction on its own.
+    static final int REPLICATION_BATCH_SIZE =
+        Math.max(Integer.getInteger("SP_REPLICATION_BATCH_SIZE", 1), 1);
+    // Microseconds the leader holds a partial batch before sending it anyway.
+    static final long REPLICATION_BATCH_DELAY_US =
+        Math.max(Long.getLong("SP_REPLICATION_BATCH_DELAY_US", 100), 0);
+    // Sends the partial batches of all the leaders on this host. It runs off
+    // the site thread so a batch never waits for the work queued on the site.
+    private static final ScheduledThreadPoolExecutor s_replicationFlusher = REPLICATION_BATCH_SIZE > 1
+        ? CoreUtils.getScheduledThreadPoolExecutor("SP Replication Flush", 1, CoreUtils.SMALL_STACK_SIZE)
+        : null;
+    // initiate tasks the leader has not yet sent to the replicas
+    private final List<VoltMessage> m_pendingReplication = new ArrayList<VoltMessage>();
+    private boolean m_replicationFlushScheduled = false;
+    // responses the replica has not yet sent back to the leader
+    private final List<VoltMessage> m_pendingReplicaResponses = new ArrayList<VoltMessage>();
+    private long m_pendingReplicaResponseDest = Long.MIN_VALUE;
+    private boolean m_replicaResponseFlushScheduled = false;
+    // samples the latency breakdown of the transactions this site leads
+    private TxnPhaseTracer m_phaseTracer = new TxnPhaseTracer(0, 0, 0);
 
     SpScheduler(int partitionId, SiteTaskerQueue taskQueue, SnapshotCompletionMonitor snapMonitor)
     {
@@ -181,6 +210,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         m_repairLogTruncationHandle = getCurrentTxnId();
         // initialized as current txn id in order to release the initial reads into the system
         m_maxScheduledTxnSpHandle = getCurrentTxnId();
+        m_leaderTruncationHandle = getCurrentTxnId();
     }
 
     @Override
@@ -221,6 +251,8 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     @Override
     public void updateReplicas(List<Long> replicas, Map<Integer, Long> partitionMasters)
     {
+        // Anything still buffered was scheduled against the old replica set
+        flushReplicationBatch();
         // First - correct the official replica set.
         m_replicaHSIds = replicas;
         // Update the list of remote replicas that we'll need to send to
@@ -405,6 +437,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         else if (message instanceof DummyTransactionResponseMessage) {
             handleDummyTransactionResponseMessage((DummyTransactionResponseMessage)message);
         }
+        else if (message instanceof RepairLogTruncationMessage) {
+            advanceLeaderTruncationHandle(((RepairLogTruncationMessage) message).getHandle());
+        }
         else {
             throw new RuntimeException("UNKNOWN MESSAGE TYPE, BOOM!");
         }
@@ -422,8 +457,13 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         final String procedureName = message.getStoredProcedureName();
         long newSpHandle;
         long uniqueId = Long.MIN_VALUE;
+        long traceId = -1;
         Iv2InitiateTaskMessage msg = message;
         if (m_isLeader || message.isReadOnly()) {
+            if (!message.isForReplay()) {
+                traceId = m_phaseTracer.begin(procedureName, message.getDispatchNanos());
+            }
+
             /*
              * A short circuit read is a read where the client interface is local to
              * this node. The CI will let a replica perform a read in this case and
@@ -526,13 +566,14 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                             msg.isForReplay());
                 // Update the handle in the copy since the constructor doesn't set it
                 replmsg.setSpHandle(newSpHandle);
-                m_mailbox.send(m_sendToHSIds, replmsg);
+                replicateInitiateTask(replmsg);
 
                 DuplicateCounter counter = new DuplicateCounter(
                         msg.getInitiatorHSId(),
                         msg.getTxnId(),
                         m_replicaHSIds,
                         msg);
+                counter.m_traceId = traceId;
 
                 safeAddToDuplicateCounterMap(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
             }
@@ -540,6 +581,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         else {
             setMaxSeenTxnId(msg.getSpHandle());
             newSpHandle = msg.getSpHandle();
+            // Reads served by this replica are ordered after this write
+            updateMaxScheduledTransactionSpHandle(newSpHandle);
+            advanceLeaderTruncationHandle(msg.getTruncationHandle());
 
             // Don't update the uniqueID if this is a run-everywhere txn, because it has an MPI unique ID.
             if (UniqueIdGenerator.getPartitionIdFromUniqueId(msg.getUniqueId()) == m_partitionId) {
@@ -547,7 +591,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             }
         }
         Iv2Trace.logIv2InitiateTaskMessage(message, m_mailbox.getHSId(), msg.getTxnId(), newSpHandle);
-        doLocalInitiateOffer(msg);
+        doLocalInitiateOffer(msg, traceId);
         return;
     }
 
@@ -559,6 +603,16 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
      * necessary ID, SpHandles, and replication issues are resolved.
      */
     private void doLocalInitiateOffer(Iv2InitiateTaskMessage msg)
+    {
+        doLocalInitiateOffer(msg, -1);
+    }
+
+    /**
+     * @param traceId  the phase trace of the transaction, or -1 if it is not
+     *                 sampled. The trace completes on the site unless it waits
+     *                 for replicas in a duplicate counter.
+     */
+    private void doLocalInitiateOffer(Iv2InitiateTaskMessage msg, long traceId)
     {
         /**
          * A shortcut read is a read operation sent to any replica and completed with no
@@ -569,6 +623,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         final String procedureName = msg.getStoredProcedureName();
         final SpProcedureTask task =
             new SpProcedureTask(m_mailbox, procedureName, m_pendingTasks, msg);
+        if (traceId >= 0) {
+            final boolean awaitsReplicas = m_duplicateCounters.containsKey(
+                    new DuplicateCounterKey(msg.getTxnId(), msg.getSpHandle()));
+            task.setPhaseTrace(m_phaseTracer, traceId, !awaitsReplicas);
+        }
         if (!shortcutRead) {
             ListenableFuture<Object> durabilityBackpressureFuture =
                     m_cl.log(msg, msg.getSpHandle(), null, m_durabilityListener, task);
@@ -584,9 +643,118 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         }
     }
 
+    /**
+     * Send a replicated initiate task to the replicas, or buffer it so that
+     * consecutive tasks go out in one message. A flush is scheduled on a timer
+     * when the first task is buffered, so a batch waits at most
+     * REPLICATION_BATCH_DELAY_US, however busy the site is.
+     */
+    private void replicateInitiateTask(Iv2InitiateTaskMessage replmsg)
+    {
+        if (REPLICATION_BATCH_SIZE == 1) {
+            m_mailbox.send(m_sendToHSIds, replmsg);
+            return;
+        }
+
+        replmsg.m_sourceHSId = m_mailbox.getHSId();
+        m_pendingReplication.add(replmsg);
+        if (m_pendingReplication.size() >= REPLICATION_BATCH_SIZE) {
+            flushReplicationBatch();
+        }
+        else if (!m_replicationFlushScheduled) {
+            m_replicationFlushScheduled = true;
+            s_replicationFlusher.schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    synchronized (m_lock) {
+                        m_replicationFlushScheduled = false;
+                        flushReplicationBatch();
+                    }
+                }
+            }, REPLICATION_BATCH_DELAY_US, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Send the buffered initiate tasks to the replicas. Must be called before
+     * anything else is sent to the replicas so that they see the transaction
+     * stream in the order the leader sequenced it.
+     */
+    private void flushReplicationBatch()
+    {
+        if (m_pendingReplication.isEmpty()) {
+            return;
+        }
+        if (m_sendToHSIds.length > 0) {
+            if (m_pendingReplication.size() == 1) {
+                m_mailbox.send(m_sendToHSIds, m_pendingReplication.get(0));
+            }
+            else {
+                m_mailbox.send(m_sendToHSIds,
+                        new Iv2ReplicationBatchMessage(new ArrayList<VoltMessage>(m_pendingReplication)));
+            }
+        }
+        m_pendingReplication.clear();
+    }
+
+    /**
+     * Acknowledge a replicated transaction to the leader, batching the
+     * responses the same way the leader batches the initiate tasks.
+     */
+    private void sendReplicaResponse(InitiateResponseMessage message)
+    {
+        final long dest = message.getInitiatorHSId();
+        if (REPLICATION_BATCH_SIZE == 1) {
+            m_mailbox.send(dest, message);
+            return;
+        }
+
+        if (dest != m_pendingReplicaResponseDest) {
+            flushReplicaResponses();
+            m_pendingReplicaResponseDest = dest;
+        }
+        message.m_sourceHSId = m_mailbox.getHSId();
+        m_pendingReplicaResponses.add(message);
+        if (m_pendingReplicaResponses.size() >= REPLICATION_BATCH_SIZE) {
+            flushReplicaResponses();
+        }
+        else if (!m_replicaResponseFlushScheduled) {
+            // The rest of the batch is already queued on the site ahead of this
+            // task, so by the time it runs their responses have been collected.
+            m_replicaResponseFlushScheduled = true;
+            m_tasks.offer(new SiteTaskerRunnable() {
+                @Override
+                void run()
+                {
+                    synchronized (m_lock) {
+                        m_replicaResponseFlushScheduled = false;
+                        flushReplicaResponses();
+                    }
+                }
+            });
+        }
+    }
+
+    private void flushReplicaResponses()
+    {
+        if (m_pendingReplicaResponses.isEmpty()) {
+            return;
+        }
+        if (m_pendingReplicaResponses.size() == 1) {
+            m_mailbox.send(m_pendingReplicaResponseDest, m_pendingReplicaResponses.get(0));
+        }
+        else {
+            m_mailbox.send(m_pendingReplicaResponseDest,
+                    new Iv2ReplicationBatchMessage(new ArrayList<VoltMessage>(m_pendingReplicaResponses)));
+        }
+        m_pendingReplicaResponses.clear();
+    }
+
     @Override
     public void handleMessageRepair(List<Long> needsRepair, VoltMessage message)
     {
+        flushReplicationBatch();
         if (message instanceof Iv2InitiateTaskMessage) {
             handleIv2InitiateTaskMessageRepair(needsRepair, (Iv2InitiateTaskMessage)message);
         }
@@ -701,10 +869,13 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             }
 
             if (m_defaultConsistencyReadLevel == ReadLevel.SAFE) {
-                // InvocationDispatcher routes SAFE reads to SPI only
-                assert(m_isLeader);
+                // InvocationDispatcher routes SAFE reads to SPI only, unless
+                // replica reads are enabled. A replica holds the response
+                // until the leader reports every write it may have seen as
+                // committed on all replicas.
                 assert(m_bufferedReadLog != null);
-                m_bufferedReadLog.offer(m_mailbox, message, m_repairLogTruncationHandle);
+                m_bufferedReadLog.offer(m_mailbox, message,
+                        m_isLeader ? m_repairLogTruncationHandle : m_leaderTruncationHandle);
                 return;
             }
         }
@@ -718,6 +889,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 m_duplicateCounters.remove(dcKey);
                 setRepairLogTruncationHandle(spHandle);
                 m_mailbox.send(counter.m_destinationId, counter.getLastResponse());
+                if (counter.m_traceId >= 0) {
+                    m_phaseTracer.complete(counter.m_traceId);
+                }
             }
             else if (result == DuplicateCounter.MISMATCH) {
                 VoltDB.crashGlobalVoltDB("HASH MISMATCH: replicas produced different results.", true, null);
@@ -728,7 +902,12 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             // this will be on SPI without k-safety or replica only with k-safety
             assert(!message.isReadOnly());
             setRepairLogTruncationHandle(spHandle);
-            m_mailbox.send(message.getInitiatorHSId(), message);
+            if (m_isLeader) {
+                m_mailbox.send(message.getInitiatorHSId(), message);
+            }
+            else {
+                sendReplicaResponse(message);
+            }
         }
     }
 
@@ -785,6 +964,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     // doesn't matter, it isn't going to be used for anything.
     void handleFragmentTaskMessage(FragmentTaskMessage message)
     {
+        // The site may block on this MP transaction; don't hold up the
+        // acknowledgements of the SP transactions that ran before it.
+        flushReplicaResponses();
         FragmentTaskMessage msg = message;
         long newSpHandle;
         if (m_isLeader) {
@@ -823,6 +1005,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 FragmentTaskMessage replmsg =
                     new FragmentTaskMessage(m_mailbox.getHSId(),
                             m_mailbox.getHSId(), msg);
+                flushReplicationBatch();
                 m_mailbox.send(m_sendToHSIds,
                         replmsg);
                 DuplicateCounter counter;
@@ -851,6 +1034,9 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         else {
             newSpHandle = msg.getSpHandle();
             setMaxSeenTxnId(newSpHandle);
+            if (!msg.isReadOnly() && m_outstandingTxns.get(msg.getTxnId()) == null) {
+                updateMaxScheduledTransactionSpHandle(newSpHandle);
+            }
         }
         Iv2Trace.logFragmentTaskMessage(message, m_mailbox.getHSId(), newSpHandle, false);
         doLocalFragmentOffer(msg);
@@ -1025,6 +1211,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             msg.setSpHandle(getCurrentTxnId());
 
             if (m_sendToHSIds.length > 0 && !msg.isReadOnly()) {
+                flushReplicationBatch();
                 m_mailbox.send(m_sendToHSIds, msg);
             }
         } else {
@@ -1149,6 +1336,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (m_isLeader) {
             hostLog.warn(who + ": replicas: " + CoreUtils.hsIdCollectionToString(m_replicaHSIds));
             if (m_sendToHSIds.length > 0) {
+                flushReplicationBatch();
                 m_mailbox.send(m_sendToHSIds, new DumpMessage());
             }
         }
@@ -1176,6 +1364,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             msg = new DummyTransactionTaskMessage(m_mailbox.getHSId(), newSpHandle, uniqueId);
 
             if (m_sendToHSIds.length > 0) {
+                flushReplicationBatch();
                 m_mailbox.send(m_sendToHSIds, msg);
 
                 DuplicateCounter counter = new DuplicateCounter(
@@ -1227,6 +1416,10 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     }
 
 
+    void setPhaseTracer(TxnPhaseTracer tracer) {
+        m_phaseTracer = tracer;
+    }
+
     @Override
     public void setCommandLog(CommandLog cl) {
         m_cl = cl;
@@ -1259,6 +1452,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 written = writeIv2ViableReplayEntryInternal(faultSpHandle);
                 // Generate Iv2LogFault message and send it to replicas
                 Iv2LogFaultMessage faultMsg = new Iv2LogFaultMessage(faultSpHandle, m_uniqueIdGenerator.getLastUniqueId());
+                flushReplicationBatch();
                 m_mailbox.send(m_sendToHSIds,
                         faultMsg);
             }
@@ -1358,6 +1552,22 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         return m_repairLogTruncationHandle;
     }
 
+    /**
+     * Replicas learn the leader's truncation handle from the replicated
+     * initiate tasks and from the standalone truncation messages. Buffered
+     * replica reads at or below it are safe to return.
+     */
+    private void advanceLeaderTruncationHandle(long handle)
+    {
+        if (m_isLeader || handle <= m_leaderTruncationHandle) {
+            return;
+        }
+        m_leaderTruncationHandle = handle;
+        if (m_defaultConsistencyReadLevel == ReadLevel.SAFE) {
+            m_bufferedReadLog.releaseBufferedReads(m_mailbox, m_leaderTruncationHandle);
+        }
+    }
+
     private void setRepairLogTruncationHandle(long newHandle)
     {
         if (newHandle > m_repairLogTruncationHandle) {
@@ -1416,6 +1626,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                         // Also keep the local repair log's truncation point up-to-date
                         // so that it can trigger the callbacks.
                         m_mailbox.deliver(truncMsg);
+                        flushReplicationBatch();
                         m_mailbox.send(m_sendToHSIds, truncMsg);
                     }
                 }
@@ -0,0 +1,210 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.iv2;
+
+import java.nio.ByteBuffer;
+
+import org.voltdb.ProcedureRunner;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable;
+import org.voltdb.client.BatchTimeoutOverrideType;
+import org.voltdb.dtxn.TransactionState;
+import org.voltdb.jni.ExecutionEngine;
+
+/**
+ * Consecutive single statement SP transactions queued at a site, whose
+ * statements the site executes in one EE call before running the tasks.
+ *
+ * Each transaction keeps the transaction ids and undo token it would have had
+ * if it ran on its own, so that the EE state is the same once the tasks have
+ * completed. The tasks then run as usual and the site hands each one its
+ * result instead of calling the EE again. A task is only added if nothing in
+ * its run can fail before the statement executes, and if any statement fails
+ * the EE undoes the whole batch and the tasks run on their own.
+ *
+ * None of the transactions is committed while the batch executes, so they all
+ * see the last committed SP handle from before the batch. Only statements that
+ * don't write to export or DR streams are batched, as those streams commit by
+ * that SP handle and can't roll back committed data if the batch is undone.
+ * If a transaction rolls back after the batch ran, its undo takes the later
+ * transactions of the batch with it and they run again on their own.
+ */
+final class SpTransactionBatch {
+    // Number of transactions executed by one EE call, 1 turns batching off.
+    // Bounded by the EE's MAX_BATCH_COUNT.
+    static final int MAX_TRANSACTIONS = Math.min(Integer.getInteger("SITE_SP_TXN_BATCH_SIZE", 1), 1000);
+
+    private final SpProcedureTask[] m_tasks = new SpProcedureTask[MAX_TRANSACTIONS];
+    private final long[] m_fragmentIds = new long[MAX_TRANSACTIONS];
+    private final Object[] m_params = new Object[MAX_TRANSACTIONS];
+    private final String[] m_sqlTexts = new String[MAX_TRANSACTIONS];
+    private final long[] m_txnIds = new long[MAX_TRANSACTIONS];
+    private final long[] m_spHandles = new long[MAX_TRANSACTIONS];
+    private final long[] m_lastCommittedSpHandles = new long[MAX_TRANSACTIONS];
+    private final long[] m_uniqueIds = new long[MAX_TRANSACTIONS];
+    private final long[] m_undoTokens = new long[MAX_TRANSACTIONS];
+
+    private int m_count = 0;
+    // index of the next result to hand out, results are consumed in order
+    private int m_next = 0;
+    private VoltTable[] m_results = null;
+    // set once a rollback undid the results not yet handed out
+    private boolean m_discarded = false;
+
+    // site state as it will be when the transaction being added runs
+    private long m_latestUndoToken;
+    private long m_lastCommittedSpHandle;
+
+    static boolean isEnabled() {
+        return MAX_TRANSACTIONS > 1;
+    }
+
+    void begin(long latestUndoToken, long lastCommittedSpHandle) {
+        assert(m_count == 0);
+        m_latestUndoToken = latestUndoToken;
+        m_lastCommittedSpHandle = lastCommittedSpHandle;
+    }
+
+    boolean isFull() {
+        return m_count == MAX_TRANSACTIONS;
+    }
+
+    int size() {
+        return m_count;
+    }
+
+    SpProcedureTask getTask(int index) {
+        return m_tasks[index];
+    }
+
+    /**
+     * Add the task to the batch if its statement can be executed ahead of its run.
+     * @return false if the task must run on its own
+     */
+    boolean add(SpProcedureTask task, SiteProcedureConnection siteConnection, TheHashinator hashinator) {
+        if (isFull() || !task.m_durabilityBackpressureFuture.isDone()) {
+            return false;
+        }
+        final TransactionState txnState = task.m_txnState;
+        final StoredProcedureInvocation invocation = txnState.getInvocation();
+        if (invocation == null || BatchTimeoutOverrideType.isUserSetTimeout(invocation.getBatchTimeout())) {
+            return false;
+        }
+        final ProcedureRunner runner = siteConnection.getProcedureRunner(task.m_procName);
+        if (runner == null ||
+            !runner.isBatchableSingleStatement() ||
+            runner.isReadOnly() != txnState.isReadOnly()) {
+            return false;
+        }
+
+        final Object params;
+        try {
+            if (!runner.checkPartition(txnState, hashinator)) {
+                return false;
+            }
+            final ByteBuffer passThroughParams = runner.getPassThroughParams(invocation);
+            params = passThroughParams != null ? passThroughParams :
+                runner.getSingleStatementParams(invocation.getParams().toArray());
+        } catch (RuntimeException e) {
+            // let the task report corrupt parameters
+            return false;
+        }
+        if (params == null) {
+            return false;
+        }
+
+        final int index = m_count++;
+        m_tasks[index] = task;
+        m_fragmentIds[index] = runner.getSingleStatementFragmentId();
+        m_params[index] = params;
+        m_sqlTexts[index] = runner.getSingleStatementText();
+        m_txnIds[index] = txnState.txnId;
+        m_spHandles[index] = txnState.m_spHandle;
+        m_uniqueIds[index] = txnState.uniqueId;
+        m_lastCommittedSpHandles[index] = m_lastCommittedSpHandle;
+        if (txnState.isReadOnly()) {
+            m_undoTokens[index] = Long.MAX_VALUE;
+        } else {
+            // the site hands out one undo token per SP batch and commits the transaction when it completes
+            m_undoTokens[index] = ++m_latestUndoToken;
+        }
+        return true;
+    }
+
+    /**
+     * Execute the statements of all transactions in the batch.
+     * @return false if a statement failed and the work of the batch was undone
+     */
+    boolean execute(ExecutionEngine ee) {
+        m_results = ee.executeTransactionBatch(m_count, m_fragmentIds, m_params, m_sqlTexts,
+                m_txnIds, m_spHandles, m_lastCommittedSpHandles, m_uniqueIds, m_undoTokens);
+        return m_results != null;
+    }
+
+    /**
+     * @return true if the next result of the batch belongs to this fragment batch
+     */
+    boolean hasResultFor(long spHandle, int numFragmentIds, long[] planFragmentIds) {
+        return m_results != null &&
+               !m_discarded &&
+               m_next < m_count &&
+               m_spHandles[m_next] == spHandle &&
+               numFragmentIds == 1 &&
+               m_fragmentIds[m_next] == planFragmentIds[0];
+    }
+
+    VoltTable takeResult(long undoToken) {
+        if (m_undoTokens[m_next] != undoToken) {
+            VoltDB.crashLocalVoltDB("Batched SP transaction executed with undo token " + m_undoTokens[m_next] +
+                    " but the site expected " + undoToken, true, null);
+        }
+        return m_results[m_next++];
+    }
+
+    /**
+     * @return true if the transaction at index has yet to take its result
+     */
+    boolean isResultPending(int index) {
+        return m_results != null && !m_discarded && m_next <= index;
+    }
+
+    /**
+     * Called when a transaction rolls back. Undoing its undo token also undoes
+     * the work of the transactions after it in the batch, which then have to
+     * execute their statements on their own.
+     */
+    void discardResults() {
+        if (m_results != null && m_next < m_count) {
+            m_discarded = true;
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < m_count; i++) {
+            m_tasks[i] = null;
+            m_params[i] = null;
+            m_sqlTexts[i] = null;
+        }
+        m_count = 0;
+        m_next = 0;
+        m_results = null;
+        m_discarded = false;
+    }
+}
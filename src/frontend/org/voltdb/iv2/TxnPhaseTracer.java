@@ -0,0 +1,274 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Sampled latency breakdown of the single partition transactions of one site,
+ * returned by @Statistics TXNPHASES. One in every TXN_TRACE_SAMPLE_RATE
+ * transactions sequenced by the leader is traced. Its phases are stamped into
+ * a slot of a ring that is allocated up front, and once the transaction is
+ * done the phase durations are added to the histograms of its procedure.
+ *
+ * The phases, in microseconds:
+ *   CI_QUEUE     client interface dispatch to arrival at the scheduler, only
+ *                known when the client interface is on this host
+ *   SEQUENCE     arrival at the scheduler to the task being queued to the site,
+ *                includes waiting for the command log or behind MP work
+ *   SITE_QUEUE   waiting in the site task queue
+ *   JAVA         running the procedure, less the time spent in the EE
+ *   EE           executing plan fragments
+ *   REPLICA_ACK  the procedure finishing to every replica having responded
+ */
+public class TxnPhaseTracer extends SiteStatsSource {
+    // Trace one in this many transactions, 0 disables tracing
+    public static final int SAMPLE_RATE = Integer.getInteger("TXN_TRACE_SAMPLE_RATE", 0);
+    // Sampled transactions a site can have in flight before slots get reused
+    public static final int RING_SIZE = Integer.getInteger("TXN_TRACE_RING_SIZE", 256);
+
+    public enum Phase {
+        CI_QUEUE,
+        SEQUENCE,
+        SITE_QUEUE,
+        JAVA,
+        EE,
+        REPLICA_ACK
+    };
+
+    // Stamps kept in each slot of the ring
+    private static final int DISPATCH = 0;
+    private static final int ARRIVE = 1;
+    private static final int QUEUED = 2;
+    private static final int RUN_START = 3;
+    private static final int RUN_END = 4;
+    private static final int EE_NANOS = 5;
+    private static final int STAMPS = 6;
+
+    private final int m_sampleRate;
+    private final long[] m_traceIds;
+    private final String[] m_procNames;
+    private final long[] m_stamps;
+
+    // Only touched by the scheduler
+    private int m_untilNextSample;
+    // Only touched by the site thread, -1 when no traced transaction is running
+    private int m_runningSlot = -1;
+
+    private long m_nextTraceId = 0;
+    private final Map<String, Histogram[]> m_totals = new HashMap<String, Histogram[]>();
+    private final Map<String, Histogram[]> m_intervals = new HashMap<String, Histogram[]>();
+    private boolean m_interval;
+
+    public TxnPhaseTracer(long siteId) {
+        this(siteId, SAMPLE_RATE, RING_SIZE);
+    }
+
+    TxnPhaseTracer(long siteId, int sampleRate, int ringSize) {
+        super(siteId, false);
+        m_sampleRate = sampleRate;
+        m_untilNextSample = sampleRate;
+        final int slots = sampleRate > 0 ? Math.max(ringSize, 1) : 0;
+        m_traceIds = new long[slots];
+        m_procNames = new String[slots];
+        m_stamps = new long[slots * STAMPS];
+    }
+
+    private int slot(long traceId) {
+        return (int) (traceId % m_traceIds.length);
+    }
+
+    /**
+     * Decide whether to trace a transaction the scheduler just received.
+     * @param dispatchNanos  when the client interface dispatched it, 0 if unknown
+     * @return the trace id to stamp the later phases with, or -1 if the
+     *         transaction is not sampled
+     */
+    long begin(String procName, long dispatchNanos) {
+        if (m_sampleRate <= 0 || --m_untilNextSample > 0) {
+            return -1;
+        }
+        m_untilNextSample = m_sampleRate;
+        final long now = System.nanoTime();
+        synchronized (this) {
+            final long traceId = m_nextTraceId++;
+            final int slot = slot(traceId);
+            final int base = slot * STAMPS;
+            m_traceIds[slot] = traceId;
+            m_procNames[slot] = procName;
+            m_stamps[base + DISPATCH] = dispatchNanos;
+            m_stamps[base + ARRIVE] = now;
+            m_stamps[base + QUEUED] = 0;
+            m_stamps[base + RUN_START] = 0;
+            m_stamps[base + RUN_END] = 0;
+            m_stamps[base + EE_NANOS] = 0;
+            return traceId;
+        }
+    }
+
+    /**
+     * The site starts running a traced transaction.
+     * @param queuedNanos  when its task was offered to the site task queue
+     */
+    void startRun(long traceId, long queuedNanos) {
+        m_runningSlot = slot(traceId);
+        final int base = m_runningSlot * STAMPS;
+        m_stamps[base + QUEUED] = queuedNanos;
+        m_stamps[base + RUN_START] = System.nanoTime();
+    }
+
+    /**
+     * Is the site running a traced transaction
+     */
+    boolean isRunning() {
+        return m_runningSlot >= 0;
+    }
+
+    /**
+     * Add time spent in the EE by the traced transaction the site is running
+     */
+    void recordEe(long nanos) {
+        m_stamps[m_runningSlot * STAMPS + EE_NANOS] += nanos;
+    }
+
+    /**
+     * Add the share of a batched EE call taken by the traced transaction the
+     * site is running. The call ran before the transaction started, so its
+     * share is counted as EE time instead of site queue time.
+     */
+    void recordBatchedEe(long nanos) {
+        final int base = m_runningSlot * STAMPS;
+        final long ee = Math.min(nanos, m_stamps[base + RUN_START] - m_stamps[base + QUEUED]);
+        m_stamps[base + EE_NANOS] += ee;
+        m_stamps[base + RUN_START] -= ee;
+    }
+
+    /**
+     * The site has finished running a traced transaction, its response is
+     * about to be delivered to the scheduler.
+     */
+    void endRun(long traceId) {
+        m_stamps[slot(traceId) * STAMPS + RUN_END] = System.nanoTime();
+        m_runningSlot = -1;
+    }
+
+    /**
+     * A traced transaction is done: its response, and every replica's, is in.
+     * The phases are recorded unless a later sample reused the slot.
+     */
+    synchronized void complete(long traceId) {
+        final long now = System.nanoTime();
+        final int slot = slot(traceId);
+        final int base = slot * STAMPS;
+        if (m_traceIds[slot] != traceId || m_stamps[base + RUN_END] == 0) {
+            return;
+        }
+        m_traceIds[slot] = -1;
+
+        final long ee = m_stamps[base + EE_NANOS];
+        final long dispatch = m_stamps[base + DISPATCH];
+        if (dispatch != 0) {
+            record(slot, Phase.CI_QUEUE, m_stamps[base + ARRIVE] - dispatch);
+        }
+        record(slot, Phase.SEQUENCE, m_stamps[base + QUEUED] - m_stamps[base + ARRIVE]);
+        record(slot, Phase.SITE_QUEUE, m_stamps[base + RUN_START] - m_stamps[base + QUEUED]);
+        record(slot, Phase.JAVA, m_stamps[base + RUN_END] - m_stamps[base + RUN_START] - ee);
+        record(slot, Phase.EE, ee);
+        record(slot, Phase.REPLICA_ACK, now - m_stamps[base + RUN_END]);
+    }
+
+    private void record(int slot, Phase phase, long nanos) {
+        final long micros = Math.max(nanos, 0) / 1000;
+        histograms(m_totals, m_procNames[slot])[phase.ordinal()].recordValue(micros);
+        histograms(m_intervals, m_procNames[slot])[phase.ordinal()].recordValue(micros);
+    }
+
+    private static Histogram[] histograms(Map<String, Histogram[]> byProc, String procName) {
+        Histogram[] phases = byProc.get(procName);
+        if (phases == null) {
+            phases = new Histogram[Phase.values().length];
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram(2);
+            }
+            byProc.put(procName, phases);
+        }
+        return phases;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("SAMPLED", VoltType.BIGINT));
+        for (Phase phase : Phase.values()) {
+            columns.add(new ColumnInfo(phase.name() + "_AVG", VoltType.BIGINT));
+            columns.add(new ColumnInfo(phase.name() + "_P99", VoltType.BIGINT));
+            columns.add(new ColumnInfo(phase.name() + "_MAX", VoltType.BIGINT));
+        }
+    }
+
+    @Override
+    protected synchronized void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final Histogram[] phases = histograms(m_interval ? m_intervals : m_totals, (String) rowKey);
+        rowValues[columnNameToIndex.get("PROCEDURE")] = rowKey;
+        rowValues[columnNameToIndex.get("SAMPLED")] = phases[Phase.SITE_QUEUE.ordinal()].getTotalCount();
+        for (Phase phase : Phase.values()) {
+            final Histogram histogram = phases[phase.ordinal()];
+            rowValues[columnNameToIndex.get(phase.name() + "_AVG")] = (long) histogram.getMean();
+            rowValues[columnNameToIndex.get(phase.name() + "_P99")] = histogram.getValueAtPercentile(99.0);
+            rowValues[columnNameToIndex.get(phase.name() + "_MAX")] = histogram.getMaxValue();
+            if (m_interval) {
+                histogram.reset();
+            }
+        }
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final Iterator<String> iter;
+        synchronized (this) {
+            m_interval = interval;
+            iter = new ArrayList<String>(m_totals.keySet()).iterator();
+        }
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
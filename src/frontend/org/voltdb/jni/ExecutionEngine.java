@@ -64,7 +64,10 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
         SP_JAVA_GET_DRID_TRACKER(4),
         SET_DRID_TRACKER(5),
         GENERATE_DR_EVENT(6),
-        RESET_DR_APPLIED_TRACKER(7);
+        RESET_DR_APPLIED_TRACKER(7),
+        DEFER_INDEX_BUILD(8),
+        BUILD_DEFERRED_INDEXES(9),
+        GET_TABLE_VERSIONS(10);
 
         private TaskType(int taskId) {
             this.taskId = taskId;
@@ -645,6 +648,153 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
                                                             long uniqueId,
                                                             long undoQuantumToken) throws EEException;
 
+    /**
+     * Run runs of the same plan fragment, each given once in planFragmentIds
+     * with the number of its consecutive parameter sets in runLengths. The
+     * results are those of {@link #executePlanFragments} with the fragment
+     * of each run repeated, one result table per parameter set.
+     */
+    public VoltTable[] executeRepeatedPlanFragments(int numRuns,
+                                                    long[] planFragmentIds,
+                                                    int[] runLengths,
+                                                    Object[] parameterSets,
+                                                    String[] sqlTexts,
+                                                    long txnId,
+                                                    long spHandle,
+                                                    long lastCommittedSpHandle,
+                                                    long uniqueId,
+                                                    long undoQuantumToken) throws EEException
+    {
+        try {
+            m_fragmentContext = (undoQuantumToken == Long.MAX_VALUE) ? FragmentContext.RO_BATCH : FragmentContext.RW_BATCH;
+
+            // reset context for progress updates
+            m_startTime = 0;
+            m_logDuration = INITIAL_LOG_DURATION;
+            m_sqlTexts = sqlTexts;
+
+            VoltTable[] results = coreExecuteRepeatedPlanFragments(numRuns, planFragmentIds, runLengths,
+                    parameterSets, txnId, spHandle, lastCommittedSpHandle, uniqueId, undoQuantumToken);
+            // the plan cache is only consulted once per run
+            m_plannerStats.updateEECacheStats(m_eeCacheSize, numRuns - m_cacheMisses,
+                    m_cacheMisses, m_partitionId);
+            return results;
+        }
+        finally {
+            m_cacheMisses = 0;
+
+            m_sqlTexts = null;
+
+            m_fragmentContext = FragmentContext.UNKNOWN;
+        }
+    }
+
+    /**
+     * Execute the runs as a batch with the fragment id of each run repeated.
+     * Engines that can take the runs as they are override this.
+     */
+    protected VoltTable[] coreExecuteRepeatedPlanFragments(int numRuns,
+                                                           long[] planFragmentIds,
+                                                           int[] runLengths,
+                                                           Object[] parameterSets,
+                                                           long txnId,
+                                                           long spHandle,
+                                                           long lastCommittedSpHandle,
+                                                           long uniqueId,
+                                                           long undoQuantumToken) throws EEException
+    {
+        final long[] fragmentIds = new long[parameterSets.length];
+        int index = 0;
+        for (int run = 0; run < numRuns; ++run) {
+            for (int i = 0; i < runLengths[run]; ++i) {
+                fragmentIds[index++] = planFragmentIds[run];
+            }
+        }
+        return coreExecutePlanFragments(index, fragmentIds, null, parameterSets,
+                txnId, spHandle, lastCommittedSpHandle, uniqueId, undoQuantumToken);
+    }
+
+    /**
+     * Run a batch of single partition transactions that each execute a single
+     * plan fragment, in order and with their own transaction ids and undo tokens,
+     * as if each had called {@link #executePlanFragments} on its own. The undo
+     * quantum of each transaction is left open for the site to release when
+     * the transaction completes.
+     *
+     * @return The result table of each transaction, or null if any of them
+     * failed, in which case the work of the whole batch has been undone.
+     */
+    public VoltTable[] executeTransactionBatch(int numTxns,
+                                               long[] planFragmentIds,
+                                               Object[] parameterSets,
+                                               String[] sqlTexts,
+                                               long[] txnIds,
+                                               long[] spHandles,
+                                               long[] lastCommittedSpHandles,
+                                               long[] uniqueIds,
+                                               long[] undoTokens)
+    {
+        long firstUndoToken = Long.MAX_VALUE;
+        for (int i = 0; i < numTxns; ++i) {
+            firstUndoToken = Math.min(firstUndoToken, undoTokens[i]);
+        }
+        try {
+            m_fragmentContext = (firstUndoToken == Long.MAX_VALUE) ? FragmentContext.RO_BATCH : FragmentContext.RW_BATCH;
+
+            // reset context for progress updates
+            m_startTime = 0;
+            m_logDuration = INITIAL_LOG_DURATION;
+            m_sqlTexts = sqlTexts;
+
+            VoltTable[] results = coreExecuteTransactionBatch(numTxns, planFragmentIds, parameterSets,
+                    txnIds, spHandles, lastCommittedSpHandles, uniqueIds, undoTokens);
+            if (results == null) {
+                if (firstUndoToken != Long.MAX_VALUE) {
+                    undoUndoToken(firstUndoToken);
+                }
+                return null;
+            }
+            m_plannerStats.updateEECacheStats(m_eeCacheSize, numTxns - m_cacheMisses,
+                    m_cacheMisses, m_partitionId);
+            return results;
+        }
+        finally {
+            m_cacheMisses = 0;
+
+            m_sqlTexts = null;
+
+            m_fragmentContext = FragmentContext.UNKNOWN;
+        }
+    }
+
+    /**
+     * Execute the transactions of a batch one EE call at a time. Engines that
+     * can run the whole batch in one call override this.
+     * @return The result tables, or null if a transaction failed
+     */
+    protected VoltTable[] coreExecuteTransactionBatch(int numTxns,
+                                                      long[] planFragmentIds,
+                                                      Object[] parameterSets,
+                                                      long[] txnIds,
+                                                      long[] spHandles,
+                                                      long[] lastCommittedSpHandles,
+                                                      long[] uniqueIds,
+                                                      long[] undoTokens)
+    {
+        final VoltTable[] results = new VoltTable[numTxns];
+        for (int i = 0; i < numTxns; ++i) {
+            try {
+                results[i] = coreExecutePlanFragments(1, new long[] { planFragmentIds[i] }, null,
+                        new Object[] { parameterSets[i] }, txnIds[i], spHandles[i],
+                        lastCommittedSpHandles[i], uniqueIds[i], undoTokens[i])[0];
+            }
+            catch (EEException e) {
+                return null;
+            }
+        }
+        return results;
+    }
+
     /** Used for test code only (AFAIK jhugg) */
     public abstract VoltTable serializeTable(int tableId) throws EEException;
 
@@ -895,6 +1045,45 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             long uniqueId,
             long undoToken);
 
+    /**
+     * Executes runs of the same plan fragment with the parameter sets of all
+     * of them in the parameter buffer.
+     * @param pointer the VoltDBEngine pointer
+     * @param numRuns number of runs in the batch
+     * @param planFragmentIds ID of the plan fragment of each run
+     * @param runLengths number of parameter sets of each run
+     * @return error code
+     */
+    protected native int nativeExecuteRepeatedPlanFragments(
+            long pointer,
+            int numRuns,
+            long[] planFragmentIds,
+            int[] runLengths,
+            long txnId,
+            long spHandle,
+            long lastCommittedSpHandle,
+            long uniqueId,
+            long undoToken);
+
+    /**
+     * Executes a batch of transactions that each run one plan fragment, with the
+     * parameter sets of all of them in the parameter buffer. Stops at the first
+     * failing transaction.
+     * @param pointer the VoltDBEngine pointer
+     * @param numTxns number of transactions in the batch
+     * @param planFragmentIds ID of the plan fragment of each transaction
+     * @return error code
+     */
+    protected native int nativeExecuteTransactionBatch(
+            long pointer,
+            int numTxns,
+            long[] planFragmentIds,
+            long[] txnIds,
+            long[] spHandles,
+            long[] lastCommittedSpHandles,
+            long[] uniqueIds,
+            long[] undoTokens);
+
     /**
      * Serialize the result temporary table.
      * @param pointer the VoltDBEngine pointer
@@ -246,33 +246,18 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         checkErrorCode(errorCode);
     }
 
+    /** Serialize the parameter sets of a batch into the shared parameter buffer */
+    private void serializeParameterSets(int batchSize, long[] planFragmentIds, Object[] parameterSets) {
+        serializeParameterSets(batchSize, planFragmentIds, null, parameterSets);
+    }
+
     /**
-     * @param undoToken Token identifying undo quantum for generated undo info
+     * Serialize the parameter sets of a batch into the shared parameter buffer.
+     * runLengths is the number of parameter sets of each fragment id, or null
+     * if every fragment id has one.
      */
-    @Override
-    protected VoltTable[] coreExecutePlanFragments(
-            final int numFragmentIds,
-            final long[] planFragmentIds,
-            final long[] inputDepIds,
-            final Object[] parameterSets,
-            final long txnId,
-            final long spHandle,
-            final long lastCommittedSpHandle,
-            long uniqueId,
-            final long undoToken) throws EEException
-    {
-        // plan frag zero is invalid
-        assert((numFragmentIds == 0) || (planFragmentIds[0] != 0));
-
-        if (numFragmentIds == 0) return new VoltTable[0];
-        final int batchSize = numFragmentIds;
-        if (HOST_TRACE_ENABLED) {
-            for (int i = 0; i < batchSize; ++i) {
-                LOG.trace("Batch Executing planfragment:" + planFragmentIds[i] + ", params=" + parameterSets[i].toString());
-            }
-        }
-
-        // serialize the param sets
+    private void serializeParameterSets(int batchSize, long[] planFragmentIds, int[] runLengths,
+                                        Object[] parameterSets) {
         int allPsetSize = 0;
         for (int i = 0; i < batchSize; ++i) {
             if (parameterSets[i] instanceof ByteBuffer) {
@@ -295,13 +280,50 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     pset.flattenToBuffer(psetBuffer);
                 }
                 catch (final IOException exception) {
+                    // find the fragment id the element was given with
+                    int run = i;
+                    if (runLengths != null) {
+                        run = 0;
+                        for (int end = runLengths[0]; end <= i; end += runLengths[run]) {
+                            ++run;
+                        }
+                    }
                     throw new RuntimeException("Error serializing parameters for SQL batch element: " +
-                                               i + " with plan fragment ID: " + planFragmentIds[i] +
+                                               i + " with plan fragment ID: " + planFragmentIds[run] +
                                                " and with params: " +
                                                pset.toJSONString(), exception);
                 }
             }
         }
+    }
+
+    /**
+     * @param undoToken Token identifying undo quantum for generated undo info
+     */
+    @Override
+    protected VoltTable[] coreExecutePlanFragments(
+            final int numFragmentIds,
+            final long[] planFragmentIds,
+            final long[] inputDepIds,
+            final Object[] parameterSets,
+            final long txnId,
+            final long spHandle,
+            final long lastCommittedSpHandle,
+            long uniqueId,
+            final long undoToken) throws EEException
+    {
+        // plan frag zero is invalid
+        assert((numFragmentIds == 0) || (planFragmentIds[0] != 0));
+
+        if (numFragmentIds == 0) return new VoltTable[0];
+        final int batchSize = numFragmentIds;
+        if (HOST_TRACE_ENABLED) {
+            for (int i = 0; i < batchSize; ++i) {
+                LOG.trace("Batch Executing planfragment:" + planFragmentIds[i] + ", params=" + parameterSets[i].toString());
+            }
+        }
+
+        serializeParameterSets(batchSize, planFragmentIds, parameterSets);
         // checkMaxFsSize();
 
         // Execute the plan, passing a raw pointer to the byte buffers for input and output
@@ -321,21 +343,151 @@ public class ExecutionEngineJNI extends ExecutionEngine {
 
         try {
             checkErrorCode(errorCode);
+            return readPlanFragmentResults(batchSize);
+        } finally {
+            fallbackBuffer = null;
+        }
+    }
+
+    @Override
+    protected VoltTable[] coreExecuteRepeatedPlanFragments(
+            final int numRuns,
+            final long[] planFragmentIds,
+            final int[] runLengths,
+            final Object[] parameterSets,
+            final long txnId,
+            final long spHandle,
+            final long lastCommittedSpHandle,
+            final long uniqueId,
+            final long undoToken) throws EEException
+    {
+        if (numRuns == 0) return new VoltTable[0];
+        int batchSize = 0;
+        for (int run = 0; run < numRuns; ++run) {
+            assert(planFragmentIds[run] != 0 && runLengths[run] > 0);
+            if (HOST_TRACE_ENABLED) {
+                for (int i = batchSize; i < batchSize + runLengths[run]; ++i) {
+                    LOG.trace("Batch Executing planfragment:" + planFragmentIds[run] + ", params=" + parameterSets[i].toString());
+                }
+            }
+            batchSize += runLengths[run];
+        }
+
+        serializeParameterSets(batchSize, planFragmentIds, runLengths, parameterSets);
+
+        //Clear is destructive, do it before the native call
+        deserializer.clear();
+        final int errorCode =
+            nativeExecuteRepeatedPlanFragments(
+                    pointer,
+                    numRuns,
+                    planFragmentIds,
+                    runLengths,
+                    txnId,
+                    spHandle,
+                    lastCommittedSpHandle,
+                    uniqueId,
+                    undoToken);
+
+        try {
+            checkErrorCode(errorCode);
+            return readPlanFragmentResults(batchSize);
+        } finally {
+            fallbackBuffer = null;
+        }
+    }
+
+    /**
+     * Read the result tables of a batch of plan fragments, one dependency
+     * per fragment, from the shared result buffer.
+     */
+    private VoltTable[] readPlanFragmentResults(final int batchSize) throws EEException {
+        FastDeserializer fds = fallbackBuffer == null ? deserializer : new FastDeserializer(fallbackBuffer);
+        // get a copy of the result buffers and make the tables
+        // use the copy
+        try {
+            // read the complete size of the buffer used
+            final int totalSize = fds.readInt();
+            // check if anything was changed
+            final boolean dirty = fds.readBoolean();
+            if (dirty)
+                m_dirty = true;
+            // get a copy of the buffer
+            final ByteBuffer fullBacking = fds.readBuffer(totalSize);
+            final VoltTable[] results = new VoltTable[batchSize];
+            for (int i = 0; i < batchSize; ++i) {
+                final int numdeps = fullBacking.getInt(); // number of dependencies for this frag
+                assert(numdeps == 1);
+                @SuppressWarnings("unused")
+                final
+                int depid = fullBacking.getInt(); // ignore the dependency id
+                final int tableSize = fullBacking.getInt();
+                // reasonableness check
+                assert(tableSize < 50000000);
+                final ByteBuffer tableBacking = fullBacking.slice();
+                fullBacking.position(fullBacking.position() + tableSize);
+                tableBacking.limit(tableSize);
+
+                results[i] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
+            }
+            return results;
+        } catch (final IOException ex) {
+            LOG.error("Failed to deserialze result table" + ex);
+            throw new EEException(ERRORCODE_WRONG_SERIALIZED_BYTES);
+        }
+    }
+
+    @Override
+    protected VoltTable[] coreExecuteTransactionBatch(
+            final int numTxns,
+            final long[] planFragmentIds,
+            final Object[] parameterSets,
+            final long[] txnIds,
+            final long[] spHandles,
+            final long[] lastCommittedSpHandles,
+            final long[] uniqueIds,
+            final long[] undoTokens)
+    {
+        if (numTxns == 0) return new VoltTable[0];
+        if (HOST_TRACE_ENABLED) {
+            for (int i = 0; i < numTxns; ++i) {
+                LOG.trace("Batch Executing transaction planfragment:" + planFragmentIds[i] + ", params=" + parameterSets[i].toString());
+            }
+        }
+
+        serializeParameterSets(numTxns, planFragmentIds, parameterSets);
+
+        //Clear is destructive, do it before the native call
+        deserializer.clear();
+        final int errorCode =
+            nativeExecuteTransactionBatch(
+                    pointer,
+                    numTxns,
+                    planFragmentIds,
+                    txnIds,
+                    spHandles,
+                    lastCommittedSpHandles,
+                    uniqueIds,
+                    undoTokens);
+
+        try {
+            try {
+                checkErrorCode(errorCode);
+            }
+            catch (EEException e) {
+                return null;
+            }
             FastDeserializer fds = fallbackBuffer == null ? deserializer : new FastDeserializer(fallbackBuffer);
-            // get a copy of the result buffers and make the tables
-            // use the copy
             try {
-                // read the complete size of the buffer used
-                final int totalSize = fds.readInt();
-                // check if anything was changed
-                final boolean dirty = fds.readBoolean();
-                if (dirty)
-                    m_dirty = true;
-                // get a copy of the buffer
-                final ByteBuffer fullBacking = fds.readBuffer(totalSize);
-                final VoltTable[] results = new VoltTable[batchSize];
-                for (int i = 0; i < batchSize; ++i) {
-                    final int numdeps = fullBacking.getInt(); // number of dependencies for this frag
+                // each transaction has its own result header, as if it ran on its own
+                final VoltTable[] results = new VoltTable[numTxns];
+                for (int i = 0; i < numTxns; ++i) {
+                    final int totalSize = fds.readInt();
+                    final boolean dirty = fds.readBoolean();
+                    if (dirty)
+                        m_dirty = true;
+                    final ByteBuffer fullBacking = fds.readBuffer(totalSize);
+                    final int numdeps = fullBacking.getInt();
                     assert(numdeps == 1);
                     @SuppressWarnings("unused")
                     final
@@ -344,7 +496,6 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     // reasonableness check
                     assert(tableSize < 50000000);
                     final ByteBuffer tableBacking = fullBacking.slice();
-                    fullBacking.position(fullBacking.position() + tableSize);
                     tableBacking.limit(tableSize);
 
                     results[i] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
@@ -0,0 +1,144 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.join;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.sysprocs.BalancePartitionsRequest.PartitionPair;
+
+import com.google_voltpatches.common.base.Preconditions;
+import com.google_voltpatches.common.collect.Lists;
+import com.google_voltpatches.common.collect.Sets;
+
+/**
+ * Decides what each @BalancePartitions call moves during elastic join.
+ *
+ * Pairs of source and destination partitions that share no partition are
+ * moved by the same call, so a call makes progress on several ranges at once
+ * while each involved site still executes only one migration fragment.
+ *
+ * The size of the range moved per pair is adapted to the execution time of
+ * the previous calls on the source sites. The planner estimates how much of
+ * the ring a call can move within the target duration, grows towards that
+ * estimate at most twofold per call, and halves the range as soon as a call
+ * runs well over target, which bounds the latency added to user transactions.
+ */
+public class BalancePartitionsPlanner {
+    public static final int DEFAULT_CONCURRENT_PAIRS =
+            Integer.getInteger("ELASTIC_JOIN_CONCURRENT_PAIRS", 4);
+
+    private final BalancePartitionsStatistics m_stats;
+    private final long m_targetCallNanos;
+    private final long m_minRangeSize;
+    private final long m_maxRangeSize;
+    private final int m_maxConcurrentPairs;
+
+    private long m_rangeSize;
+    // smoothed hash range moved per nanosecond of call time, 0 until the first call
+    private double m_rangePerNano = 0.0;
+
+    /**
+     * @param stats               rebalance statistics to report the plan to, may be null
+     * @param targetCallMillis    desired execution time of each call
+     * @param initialRangeSize    range size for the first call
+     * @param minRangeSize        smallest range moved per pair
+     * @param maxRangeSize        largest range moved per pair
+     * @param maxConcurrentPairs  most pairs moved by one call
+     */
+    public BalancePartitionsPlanner(BalancePartitionsStatistics stats,
+                                    long targetCallMillis,
+                                    long initialRangeSize,
+                                    long minRangeSize,
+                                    long maxRangeSize,
+                                    int maxConcurrentPairs)
+    {
+        Preconditions.checkArgument(targetCallMillis > 0);
+        Preconditions.checkArgument(minRangeSize > 0 && minRangeSize <= maxRangeSize);
+        Preconditions.checkArgument(maxConcurrentPairs > 0);
+        m_stats = stats;
+        m_targetCallNanos = TimeUnit.MILLISECONDS.toNanos(targetCallMillis);
+        m_minRangeSize = minRangeSize;
+        m_maxRangeSize = maxRangeSize;
+        m_maxConcurrentPairs = maxConcurrentPairs;
+        m_rangeSize = clamp(initialRangeSize);
+    }
+
+    /**
+     * Pick the pairs to move in the next call, in order of preference, such
+     * that no partition appears in more than one pair.
+     */
+    public synchronized List<PartitionPair> selectPairs(Collection<PartitionPair> candidates)
+    {
+        List<PartitionPair> selected = Lists.newArrayList();
+        Set<Integer> involved = Sets.newHashSet();
+        for (PartitionPair pair : candidates) {
+            if (selected.size() >= m_maxConcurrentPairs) {
+                break;
+            }
+            if (involved.contains(pair.srcPartition) || involved.contains(pair.destPartition)) {
+                continue;
+            }
+            involved.add(pair.srcPartition);
+            involved.add(pair.destPartition);
+            selected.add(pair);
+        }
+        if (m_stats != null) {
+            m_stats.logBalancePlan(selected.size(), m_rangeSize);
+        }
+        return selected;
+    }
+
+    /**
+     * Range size to move for each pair of the next call.
+     */
+    public synchronized long getRangeSize()
+    {
+        return m_rangeSize;
+    }
+
+    /**
+     * Adapt the range size to a finished call.
+     * @param rangeSizeMoved  range moved per pair by the call
+     * @param callTimeNanos   execution time of the call on the source sites
+     */
+    public synchronized void logCallCompleted(long rangeSizeMoved, long callTimeNanos)
+    {
+        if (rangeSizeMoved <= 0 || callTimeNanos <= 0) {
+            return;
+        }
+
+        final double rangePerNano = rangeSizeMoved / (double) callTimeNanos;
+        m_rangePerNano = m_rangePerNano == 0.0 ? rangePerNano : (0.7 * m_rangePerNano) + (0.3 * rangePerNano);
+
+        if (callTimeNanos > 2 * m_targetCallNanos) {
+            // back off quickly, the sites are busy
+            m_rangeSize = clamp(m_rangeSize / 2);
+        } else {
+            final long estimate = (long) (m_rangePerNano * m_targetCallNanos);
+            m_rangeSize = clamp(Math.min(estimate, m_rangeSize * 2));
+        }
+    }
+
+    private long clamp(long rangeSize)
+    {
+        return Math.max(m_minRangeSize, Math.min(m_maxRangeSize, rangeSize));
+    }
+}
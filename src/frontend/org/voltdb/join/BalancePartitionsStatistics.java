@@ -56,6 +56,10 @@ public class BalancePartitionsStatistics extends StatsSource {
     long throughput = 0;
     long lastTransferTimeNanos = 0;
 
+    // Pairs moved per call and range size per pair, as planned by BalancePartitionsPlanner
+    private volatile int concurrentPairs = 0;
+    private volatile long rangeSize = 0;
+
     private volatile StatsPoint statsPoint;
     private StatsPoint intervalStats;
     private StatsPoint overallStats;
@@ -91,7 +95,13 @@ public class BalancePartitionsStatistics extends StatsSource {
         balanceStart = System.nanoTime();
     }
 
-    public void logBalanceEnds(long rangeSizeMoved, long bytesTransferred, long callTimeNanos, long transferTimeNanos, long rowsTransferred)
+    public void logBalancePlan(int concurrentPairs, long rangeSize)
+    {
+        this.concurrentPairs = concurrentPairs;
+        this.rangeSize = rangeSize;
+    }
+
+    public synchronized void logBalanceEnds(long rangeSizeMoved, long bytesTransferred, long callTimeNanos, long transferTimeNanos, long rowsTransferred)
     {
         final long balanceEnd = System.nanoTime();
         lastBalanceDuration = balanceEnd - balanceStart;
@@ -207,6 +217,8 @@ public class BalancePartitionsStatistics extends StatsSource {
         public final static String CALLS_LATENCY = "CALLS_LATENCY";
         public final static String CALLS_TIME = "CALLS_TIME";
         public final static String CALLS_TRANSFER_TIME = "CALLS_TRANSFER_TIME";
+        public final static String CONCURRENT_PAIRS = "CONCURRENT_PAIRS";
+        public final static String RANGE_SIZE = "RANGE_SIZE";
     }
 
     @Override
@@ -222,6 +234,8 @@ public class BalancePartitionsStatistics extends StatsSource {
         columns.add(new ColumnInfo(Constants.CALLS_LATENCY, VoltType.FLOAT));
         columns.add(new ColumnInfo(Constants.CALLS_TIME, VoltType.FLOAT));
         columns.add(new ColumnInfo(Constants.CALLS_TRANSFER_TIME, VoltType.FLOAT));
+        columns.add(new ColumnInfo(Constants.CONCURRENT_PAIRS, VoltType.INTEGER));
+        columns.add(new ColumnInfo(Constants.RANGE_SIZE, VoltType.BIGINT));
     }
 
     @Override
@@ -239,6 +253,8 @@ public class BalancePartitionsStatistics extends StatsSource {
         rowValues[columnNameToIndex.get(Constants.CALLS_LATENCY)] = point.getAverageInvocationLatency();
         rowValues[columnNameToIndex.get(Constants.CALLS_TIME)] = point.getAverageInvocationTime();
         rowValues[columnNameToIndex.get(Constants.CALLS_TRANSFER_TIME)] = point.getAverageInvocationTransferTime();
+        rowValues[columnNameToIndex.get(Constants.CONCURRENT_PAIRS)] = concurrentPairs;
+        rowValues[columnNameToIndex.get(Constants.RANGE_SIZE)] = rangeSize;
     }
 
     @Override
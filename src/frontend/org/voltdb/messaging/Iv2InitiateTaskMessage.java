@@ -51,6 +51,9 @@ public class Iv2InitiateTaskMessage extends TransactionInfoBaseMessage {
 
     // not serialized.
     AtomicBoolean m_isDurable;
+    // not serialized, when the client interface dispatched the invocation.
+    // Only seen by a scheduler on the same host, which gets this very object.
+    long m_dispatchNanos = 0;
 
     /** Empty constructor for de-serialization */
     Iv2InitiateTaskMessage() {
@@ -140,6 +143,14 @@ public class Iv2InitiateTaskMessage extends TransactionInfoBaseMessage {
         return m_isDurable;
     }
 
+    public void setDispatchNanos(long dispatchNanos) {
+        m_dispatchNanos = dispatchNanos;
+    }
+
+    public long getDispatchNanos() {
+        return m_dispatchNanos;
+    }
+
     public long getConnectionId() {
         return m_connectionId;
     }
@@ -0,0 +1,111 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.voltcore.messaging.VoltMessage;
+
+/**
+ * Carries a run of consecutive messages between an SPI and one of its
+ * replicas in a single network message. The SPI uses it to replicate
+ * several SP initiate tasks at once, and replicas use it to acknowledge
+ * several of them at once. The receiving InitiatorMailbox unpacks the
+ * batch and delivers each message in order, so the repair log and the
+ * scheduler never see the batch itself.
+ */
+public class Iv2ReplicationBatchMessage extends VoltMessage {
+
+    private static final VoltDbMessageFactory s_factory = new VoltDbMessageFactory();
+
+    private List<VoltMessage> m_messages;
+
+    public Iv2ReplicationBatchMessage() {}
+
+    public Iv2ReplicationBatchMessage(List<VoltMessage> messages)
+    {
+        m_messages = messages;
+    }
+
+    public List<VoltMessage> getMessages()
+    {
+        return Collections.unmodifiableList(m_messages);
+    }
+
+    public int size()
+    {
+        return m_messages.size();
+    }
+
+    @Override
+    public int getSerializedSize()
+    {
+        int msgsize = super.getSerializedSize();
+        msgsize += 4; // message count
+        for (VoltMessage message : m_messages) {
+            msgsize += 4 + message.getSerializedSize();
+        }
+        return msgsize;
+    }
+
+    @Override
+    protected void initFromBuffer(ByteBuffer buf) throws IOException
+    {
+        final int count = buf.getInt();
+        m_messages = new ArrayList<VoltMessage>(count);
+        for (int i = 0; i < count; i++) {
+            final int length = buf.getInt();
+            final ByteBuffer messageBuf = buf.slice();
+            messageBuf.limit(length);
+            m_messages.add(s_factory.createMessageFromBuffer(messageBuf, m_sourceHSId));
+            buf.position(buf.position() + length);
+        }
+
+        assert(buf.capacity() == buf.position());
+    }
+
+    @Override
+    public void flattenToBuffer(ByteBuffer buf) throws IOException
+    {
+        buf.put(VoltDbMessageFactory.IV2_REPLICATION_BATCH_ID);
+        buf.putInt(m_messages.size());
+        for (VoltMessage message : m_messages) {
+            final ByteBuffer messageBuf = VoltMessage.toBuffer(message);
+            buf.putInt(messageBuf.remaining());
+            buf.put(messageBuf);
+        }
+
+        assert(buf.capacity() == buf.position());
+        buf.limit(buf.position());
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("IV2_REPLICATION_BATCH (FROM ");
+        sb.append(m_sourceHSId);
+        sb.append(") COUNT ");
+        sb.append(m_messages.size());
+        return sb.toString();
+    }
+}
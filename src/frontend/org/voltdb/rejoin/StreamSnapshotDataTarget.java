@@ -19,8 +19,12 @@ package org.voltdb.rejoin;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -65,6 +69,13 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     public final static long DEFAULT_WRITE_TIMEOUT_MS = m_rejoinDeathTestMode ? 10000 : Long.getLong("REJOIN_WRITE_TIMEOUT_MS", 60000);
     final static long WATCHDOG_PERIOS_S = 5;
 
+    // Number of threads compressing and sending blocks, each serving a subset of the data targets
+    public final static int DEFAULT_SENDER_THREADS = Integer.getInteger("REJOIN_STREAM_SENDER_THREADS",
+            Math.max(1, Math.min(4, CoreUtils.availableProcessors() / 2)));
+    // Bounds of the per data target window of sent, but un-acked blocks
+    final static int INITIAL_SEND_WINDOW = Integer.getInteger("REJOIN_STREAM_INITIAL_WINDOW", 2);
+    final static int MAX_SEND_WINDOW = Integer.getInteger("REJOIN_STREAM_MAX_WINDOW", 16);
+
     // schemas for all the tables on this partition
     private final Map<Integer, byte[]> m_schemas = new HashMap<Integer, byte[]>();
     // HSId of the destination mailbox
@@ -91,6 +102,10 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
     private final AtomicBoolean m_closed = new AtomicBoolean(false);
 
+    // Limits the blocks in flight to what the link to the destination can absorb
+    private final SendWindow m_window = new SendWindow(INITIAL_SEND_WINDOW, MAX_SEND_WINDOW);
+    private final StreamSnapshotStats.Progress m_progress;
+
     public StreamSnapshotDataTarget(long HSId, byte[] hashinatorConfig, Map<Integer, byte[]> schemas,
                                     SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
     {
@@ -108,6 +123,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         m_sender.registerDataTarget(m_targetId);
         m_ackReceiver = ackReceiver;
         m_ackReceiver.setCallback(m_targetId, this);
+        m_progress = StreamSnapshotStats.register(m_targetId, StreamSnapshotStats.ROLE_SOURCE, HSId);
 
         rejoinLog.debug(String.format("Initializing snapshot stream processor " +
                 "for source site id: %s, and with processorid: %d",
@@ -131,32 +147,45 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         final long m_targetId;
         final long m_destHSId;
         final long m_ts;
+        // When the block was handed to the messaging subsystem, for ack latency
+        volatile long m_sentNanos;
 
         final boolean m_isEmpty;
 
         // A listenable future used to notify a listener when this buffer is discarded
         final SettableFuture<Boolean> m_future;
+        final SendWindow m_window;
 
         /**
-         * Creates an empty send work to terminate the sender thread
+         * Creates an empty send work to tell the sender thread that the
+         * given data target is done
          */
-        SendWork() {
+        SendWork(long targetId) {
             m_isEmpty = true;
-            m_targetId = -1;
+            m_targetId = targetId;
             m_destHSId = -1;
             m_ts = -1;
             m_future = null;
+            m_window = null;
         }
 
         SendWork (long targetId, long destHSId,
                   BBContainer message,
                   SettableFuture<Boolean> future) {
+            this(targetId, destHSId, message, future, null);
+        }
+
+        SendWork (long targetId, long destHSId,
+                  BBContainer message,
+                  SettableFuture<Boolean> future,
+                  SendWindow window) {
             m_isEmpty = false;
             m_targetId = targetId;
             m_destHSId = destHSId;
             m_message = message;
             m_ts = System.currentTimeMillis();
             m_future = future;
+            m_window = window;
         }
 
         /**
@@ -210,6 +239,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             }
 
             try {
+                m_sentNanos = System.nanoTime();
                 return send(mb, msgFactory, m_message);
             } finally {
                 // Buffers are only discarded after they are acked. Discarding them here would cause the sender to
@@ -231,6 +261,70 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
     }
 
+    /**
+     * Adaptive limit on the number of blocks a data target may have in flight.
+     *
+     * The ack latency of an idle link is tracked as the smallest latency seen.
+     * While acks come back close to it the link has spare bandwidth and the
+     * window grows by one block per ack. Once acks take several times longer
+     * the blocks are queuing somewhere on the way, and the window is halved,
+     * at most once per window's worth of acks.
+     */
+    static class SendWindow {
+        private final int m_maxSize;
+        private int m_size;
+        private int m_inFlight = 0;
+        private long m_minLatencyNanos = Long.MAX_VALUE;
+        private int m_acksSinceShrink = 0;
+        private boolean m_aborted = false;
+
+        SendWindow(int initialSize, int maxSize) {
+            m_maxSize = Math.max(1, maxSize);
+            m_size = Math.max(1, Math.min(initialSize, m_maxSize));
+        }
+
+        /**
+         * Take room in the window for another block. Always succeeds once the
+         * window is aborted.
+         * @return false if the window is full
+         */
+        synchronized boolean tryAcquire() {
+            if (!m_aborted && m_inFlight >= m_size) {
+                return false;
+            }
+            m_inFlight++;
+            return true;
+        }
+
+        synchronized void release(long latencyNanos) {
+            m_inFlight = Math.max(0, m_inFlight - 1);
+            m_acksSinceShrink++;
+            m_minLatencyNanos = Math.min(m_minLatencyNanos, latencyNanos);
+            if (latencyNanos <= 2 * m_minLatencyNanos) {
+                m_size = Math.min(m_maxSize, m_size + 1);
+            } else if (latencyNanos > 4 * m_minLatencyNanos && m_acksSinceShrink >= m_size) {
+                m_size = Math.max(1, m_size / 2);
+                m_acksSinceShrink = 0;
+            }
+        }
+
+        /**
+         * Stop limiting sends, used when the stream has failed and the
+         * outstanding blocks will never be acked.
+         */
+        synchronized void abort() {
+            m_aborted = true;
+        }
+
+        synchronized int size() {
+            return m_size;
+        }
+
+        synchronized int inFlight() {
+            return m_inFlight;
+        }
+    }
+
     /**
      * Task run every so often to look for writes that haven't been acked
      * in writeTimeout time.
@@ -307,6 +401,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
         m_outstandingWork.clear();
         m_outstandingWorkCount.set(0);
+        // Nothing outstanding will be acked, don't let the sender wait for it
+        m_window.abort();
     }
 
     /**
@@ -319,19 +415,37 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
         m_outstandingWorkCount.decrementAndGet();
         SendWork work = m_outstandingWork.remove(blockIndex);
+        if (work == null) {
+            // already discarded by clearOutstanding()
+            return;
+        }
+
+        m_window.release(System.nanoTime() - work.m_sentNanos);
+        m_progress.update(getBytesWritten(), getWorksWritten(), m_window.size());
 
         // releases the BBContainers and cleans up
         work.discard();
     }
 
     /**
-     * Thread that runs send work (sending snapshot blocks). One per node
+     * Threads that run send work (sending snapshot blocks). One set per node.
+     *
+     * Each data target is assigned to one sender thread so that its blocks
+     * go out in order, while the targets themselves are compressed and sent
+     * in parallel. The blocks of a target whose send window is full are held
+     * aside by its thread, so that a slow destination doesn't hold up the
+     * other targets sharing the thread.
      */
-    public static class SnapshotSender implements Runnable {
+    public static class SnapshotSender {
         private final Mailbox m_mb;
         private final MessageFactory m_msgFactory;
-        private final LinkedBlockingQueue<SendWork> m_workQueue;
-        private final AtomicInteger m_expectedEOFs;
+        private final List<LinkedBlockingQueue<SendWork>> m_workQueues;
+        private final List<AtomicInteger> m_expectedEOFs;
+        private final Map<Long, LinkedBlockingQueue<SendWork>> m_targetQueues;
+        private int m_nextQueue = 0;
+
+        // How often a sender thread retries the blocks held aside for full windows
+        static final long HELD_WORK_RETRY_MS = 1;
 
         final Map<Long, AtomicLong> m_bytesSent;
         final Map<Long, AtomicLong> m_worksSent;
@@ -343,56 +457,110 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
 
         public SnapshotSender(Mailbox mb, MessageFactory msgFactory)
+        {
+            this(mb, msgFactory, DEFAULT_SENDER_THREADS);
+        }
+
+        public SnapshotSender(Mailbox mb, MessageFactory msgFactory, int threadCount)
         {
             Preconditions.checkArgument(mb != null);
+            Preconditions.checkArgument(threadCount > 0);
             m_mb = mb;
             m_msgFactory = msgFactory;
-            m_workQueue = new LinkedBlockingQueue<SendWork>();
-            m_expectedEOFs = new AtomicInteger();
+            m_workQueues = new ArrayList<LinkedBlockingQueue<SendWork>>(threadCount);
+            m_expectedEOFs = new ArrayList<AtomicInteger>(threadCount);
+            for (int ii = 0; ii < threadCount; ii++) {
+                m_workQueues.add(new LinkedBlockingQueue<SendWork>());
+                m_expectedEOFs.add(new AtomicInteger());
+            }
+            m_targetQueues = Collections.synchronizedMap(new HashMap<Long, LinkedBlockingQueue<SendWork>>());
             m_bytesSent = Collections.synchronizedMap(new HashMap<Long, AtomicLong>());
             m_worksSent = Collections.synchronizedMap(new HashMap<Long, AtomicLong>());
         }
 
-        public void registerDataTarget(long targetId)
+        public synchronized void registerDataTarget(long targetId)
         {
-            m_expectedEOFs.incrementAndGet();
+            final int queue = m_nextQueue++ % m_workQueues.size();
+            m_expectedEOFs.get(queue).incrementAndGet();
+            m_targetQueues.put(targetId, m_workQueues.get(queue));
             m_bytesSent.put(targetId, new AtomicLong());
             m_worksSent.put(targetId, new AtomicLong());
         }
 
         public void offer(SendWork work)
         {
-            m_workQueue.offer(work);
+            m_targetQueues.get(work.m_targetId).offer(work);
         }
 
-        @Override
-        public void run() {
+        /**
+         * Start a thread for each work queue that has data targets. Must be
+         * called after all data targets are registered.
+         */
+        public synchronized void start()
+        {
+            for (int ii = 0; ii < m_workQueues.size(); ii++) {
+                if (m_expectedEOFs.get(ii).get() == 0) {
+                    continue;
+                }
+                final LinkedBlockingQueue<SendWork> workQueue = m_workQueues.get(ii);
+                final AtomicInteger expectedEOFs = m_expectedEOFs.get(ii);
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        runSender(workQueue, expectedEOFs);
+                    }
+                }, "Stream Snapshot Sender " + ii).start();
+            }
+        }
+
+        private void runSender(LinkedBlockingQueue<SendWork> workQueue, AtomicInteger expectedEOFs) {
             rejoinLog.trace("Starting stream sender thread");
 
-            while (true) {
+            // blocks of the targets whose window is full, in the order they are to be sent
+            final Map<Long, ArrayDeque<SendWork>> heldWork = new HashMap<Long, ArrayDeque<SendWork>>();
+            boolean allEOFsReceived = false;
+            while (!allEOFsReceived || !heldWork.isEmpty()) {
                 SendWork work;
 
                 try {
+                    sendHeldWork(heldWork);
+
                     rejoinLog.trace("Blocking on sending work queue");
-                    work = m_workQueue.poll(10, TimeUnit.MINUTES);
+                    if (heldWork.isEmpty()) {
+                        work = workQueue.poll(10, TimeUnit.MINUTES);
+                        if (work == null) {
+                            rejoinLog.warn("No stream snapshot send work was produced in the past 10 minutes");
+                            break;
+                        }
+                    } else {
+                        work = workQueue.poll(HELD_WORK_RETRY_MS, TimeUnit.MILLISECONDS);
+                        if (work == null) {
+                            continue;
+                        }
+                    }
 
-                    if (work == null) {
-                        rejoinLog.warn("No stream snapshot send work was produced in the past 10 minutes");
-                        break;
-                    } else if (work.m_isEmpty) {
+                    if (work.m_isEmpty) {
                         // Empty work indicates the end of the queue.
-                        // The sender is shared by multiple data targets, each of them will
+                        // The sender thread is shared by multiple data targets, each of them will
                         // send an end-of-queue work, must wait until all end-of-queue works
-                        // are received before terminating the thread.
-                        if (m_expectedEOFs.decrementAndGet() == 0) {
-                            break;
-                        } else {
-                            continue;
+                        // are received and all held work is sent before terminating the thread.
+                        if (expectedEOFs.decrementAndGet() == 0) {
+                            allEOFsReceived = true;
                         }
+                        continue;
                     }
 
-                    m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
-                    m_worksSent.get(work.m_targetId).incrementAndGet();
+                    final ArrayDeque<SendWork> held = heldWork.get(work.m_targetId);
+                    if (held != null) {
+                        // keep the blocks of the target in order
+                        held.add(work);
+                    } else if (work.m_window == null || work.m_window.tryAcquire()) {
+                        sendWork(work);
+                    } else {
+                        ArrayDeque<SendWork> deque = new ArrayDeque<SendWork>();
+                        deque.add(work);
+                        heldWork.put(work.m_targetId, deque);
+                    }
                 }
                 catch (Exception e) {
                     m_lastException = e;
@@ -402,6 +570,25 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             CompressionService.releaseThreadLocal();
             rejoinLog.trace("Stream sender thread exiting");
         }
+
+        // Send the held blocks of each target while its window has room
+        private void sendHeldWork(Map<Long, ArrayDeque<SendWork>> heldWork) throws Exception {
+            final Iterator<ArrayDeque<SendWork>> iter = heldWork.values().iterator();
+            while (iter.hasNext()) {
+                final ArrayDeque<SendWork> held = iter.next();
+                while (!held.isEmpty() && held.peek().m_window.tryAcquire()) {
+                    sendWork(held.poll());
+                }
+                if (held.isEmpty()) {
+                    iter.remove();
+                }
+            }
+        }
+
+        private void sendWork(SendWork work) throws Exception {
+            m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
+            m_worksSent.get(work.m_targetId).incrementAndGet();
+        }
     }
 
     @Override
@@ -496,7 +683,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
      */
     synchronized ListenableFuture<Boolean> send(int blockIndex, BBContainer chunk) {
         SettableFuture<Boolean> sendFuture = SettableFuture.create();
-        SendWork sendWork = new SendWork(m_targetId, m_destHSId, chunk, sendFuture);
+        SendWork sendWork = new SendWork(m_targetId, m_destHSId, chunk, sendFuture, m_window);
         m_outstandingWork.put(blockIndex, sendWork);
         m_outstandingWorkCount.incrementAndGet();
         m_sender.offer(sendWork);
@@ -532,7 +719,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             sendEOS();
 
             // Terminate the sender thread after the last block
-            m_sender.offer(new SendWork());
+            m_sender.offer(new SendWork(m_targetId));
 
             // locked so m_closed is true when the ack thread dies
             synchronized(this) {
@@ -540,6 +727,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
                 assert(m_outstandingWork.size() == 0);
             }
+            m_progress.complete(getBytesWritten(), getWorksWritten());
 
             rejoinLog.trace("Closed stream snapshot target");
         }
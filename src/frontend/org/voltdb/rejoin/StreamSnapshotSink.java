@@ -58,6 +58,8 @@ public class StreamSnapshotSink {
     // Schemas of the tables
     private final Map<Integer, byte[]> m_schemas = new HashMap<Integer, byte[]>();
     private long m_bytesReceived = 0;
+    private long m_blocksReceived = 0;
+    private StreamSnapshotStats.Progress m_progress = null;
 
     /**
      * A piece of work that can be restored on the site receiving the data.
@@ -131,6 +133,9 @@ public class StreamSnapshotSink {
         m_ackThread = new Thread(m_ack, "Snapshot ack sender");
         m_inThread.start();
         m_ackThread.start();
+        m_progress = StreamSnapshotStats.register(m_mb.getHSId(),
+                                                  StreamSnapshotStats.ROLE_DESTINATION,
+                                                  m_mb.getHSId());
 
         return m_mb.getHSId();
     }
@@ -156,6 +161,10 @@ public class StreamSnapshotSink {
             } catch (InterruptedException e) {}
         }
 
+        if (m_progress != null) {
+            m_progress.complete(m_bytesReceived, m_blocksReceived);
+        }
+
         m_in = null;
         m_ack = null;
     }
@@ -281,6 +290,8 @@ public class StreamSnapshotSink {
                 block.position(StreamSnapshotDataTarget.contentOffset);
                 ByteBuffer nextChunk = getNextChunk(m_schemas.get(tableId), block, resultBufferAllocator);
                 m_bytesReceived += nextChunk.remaining();
+                m_blocksReceived++;
+                m_progress.update(m_bytesReceived, m_blocksReceived, 0);
 
                 restoreWork = new TableRestoreWork(tableId, nextChunk);
             }
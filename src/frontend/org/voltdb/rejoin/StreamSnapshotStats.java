@@ -0,0 +1,173 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.rejoin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Progress of the stream snapshots moving data to rejoining sites, returned
+ * by @Statistics REJOIN. The sending node reports a SOURCE row for each data
+ * target and the rejoining node reports a DESTINATION row for each site it
+ * is loading. Rows of finished streams are kept until a new stream starts.
+ */
+public class StreamSnapshotStats extends StatsSource {
+    public static final String ROLE_SOURCE = "SOURCE";
+    public static final String ROLE_DESTINATION = "DESTINATION";
+
+    public enum StatName {
+        STREAM_ID,
+        ROLE,
+        SITE_ID,
+        STATUS,
+        BYTES_TRANSFERRED,
+        BLOCKS_TRANSFERRED,
+        ELAPSED_TIME,
+        THROUGHPUT,
+        WINDOW_SIZE
+    };
+
+    private static final Map<Long, Progress> m_streams = new ConcurrentSkipListMap<Long, Progress>();
+
+    /**
+     * Counters of a single stream, updated by the stream and read by the stats source.
+     */
+    public static class Progress {
+        final long m_streamId;
+        final String m_role;
+        final long m_siteHSId;
+        final long m_startNanos = System.nanoTime();
+        volatile long m_endNanos = 0;
+        volatile long m_bytes = 0;
+        volatile long m_blocks = 0;
+        volatile int m_windowSize = 0;
+
+        Progress(long streamId, String role, long siteHSId) {
+            m_streamId = streamId;
+            m_role = role;
+            m_siteHSId = siteHSId;
+        }
+
+        public void update(long bytes, long blocks, int windowSize) {
+            m_bytes = bytes;
+            m_blocks = blocks;
+            m_windowSize = windowSize;
+        }
+
+        public void complete(long bytes, long blocks) {
+            m_bytes = bytes;
+            m_blocks = blocks;
+            m_endNanos = System.nanoTime();
+        }
+
+        boolean isComplete() {
+            return m_endNanos != 0;
+        }
+
+        long elapsedMillis() {
+            final long end = isComplete() ? m_endNanos : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - m_startNanos);
+        }
+    }
+
+    /**
+     * Start tracking a new stream. Forgets streams that have already completed.
+     * @param streamId  Unique id of the stream within its role on this node
+     * @param role      {@link #ROLE_SOURCE} or {@link #ROLE_DESTINATION}
+     * @param siteHSId  The site receiving the data
+     */
+    public static Progress register(long streamId, String role, long siteHSId) {
+        Iterator<Progress> iter = m_streams.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().isComplete()) {
+                iter.remove();
+            }
+        }
+        Progress progress = new Progress(streamId, role, siteHSId);
+        // source and destination ids are allocated independently
+        m_streams.put(ROLE_SOURCE.equals(role) ? streamId : ~streamId, progress);
+        return progress;
+    }
+
+    public StreamSnapshotStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.STREAM_ID.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.ROLE.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.SITE_ID.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.STATUS.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.BYTES_TRANSFERRED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.BLOCKS_TRANSFERRED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.ELAPSED_TIME.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.THROUGHPUT.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.WINDOW_SIZE.name(), VoltType.INTEGER));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Progress progress = (Progress) rowKey;
+        final long elapsedMillis = progress.elapsedMillis();
+        final long bytes = progress.m_bytes;
+
+        rowValues[columnNameToIndex.get(StatName.STREAM_ID.name())] = progress.m_streamId;
+        rowValues[columnNameToIndex.get(StatName.ROLE.name())] = progress.m_role;
+        rowValues[columnNameToIndex.get(StatName.SITE_ID.name())] = CoreUtils.hsIdToString(progress.m_siteHSId);
+        rowValues[columnNameToIndex.get(StatName.STATUS.name())] = progress.isComplete() ? "COMPLETE" : "ACTIVE";
+        rowValues[columnNameToIndex.get(StatName.BYTES_TRANSFERRED.name())] = bytes;
+        rowValues[columnNameToIndex.get(StatName.BLOCKS_TRANSFERRED.name())] = progress.m_blocks;
+        rowValues[columnNameToIndex.get(StatName.ELAPSED_TIME.name())] = elapsedMillis;
+        // bytes per second
+        rowValues[columnNameToIndex.get(StatName.THROUGHPUT.name())] =
+                elapsedMillis > 0 ? (bytes * 1000) / elapsedMillis : 0L;
+        rowValues[columnNameToIndex.get(StatName.WINDOW_SIZE.name())] = progress.m_windowSize;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final Iterator<Progress> iter = new ArrayList<Progress>(m_streams.values()).iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
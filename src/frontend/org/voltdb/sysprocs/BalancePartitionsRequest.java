@@ -19,6 +19,7 @@ package org.voltdb.sysprocs;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
@@ -27,6 +28,7 @@ import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
 
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.Sets;
 
 public class BalancePartitionsRequest implements JSONString {
     public static class PartitionPair {
@@ -56,6 +58,20 @@ public class BalancePartitionsRequest implements JSONString {
         partitionPairs = parseRanges(jsObj);
     }
 
+    /**
+     * All source and destination partitions of the request. The pairs of a
+     * request move data in parallel, so they must not share partitions.
+     */
+    public Set<Integer> getInvolvedPartitions()
+    {
+        Set<Integer> partitions = Sets.newHashSet();
+        for (PartitionPair pair : partitionPairs) {
+            partitions.add(pair.srcPartition);
+            partitions.add(pair.destPartition);
+        }
+        return partitions;
+    }
+
     private List<PartitionPair> parseRanges(JSONObject jsObj) throws JSONException
     {
         ImmutableList.Builder<PartitionPair> builder = ImmutableList.builder();
@@ -112,6 +112,13 @@ public class SnapshotUtil {
      */
     public static final String JSON_TERMINUS = "terminus";
 
+    /**
+     * Threads used to check the CRCs of table save files when validating a snapshot
+     */
+    private static final int VALIDATION_DECODER_THREADS =
+            Integer.getInteger("SNAPSHOT_VALIDATION_DECODER_THREADS",
+                               Math.max(1, CoreUtils.availableProcessors() / 2));
+
     public static final ColumnInfo nodeResultsColumns[] =
     new ColumnInfo[] {
         new ColumnInfo(VoltSystemProcedure.CNAME_HOST_ID, VoltSystemProcedure.CTYPE_ID),
@@ -863,7 +870,10 @@ public class SnapshotUtil {
                     }
                 } else {
                     HashSet<Integer> partitionIds = new HashSet<Integer>();
-                    TableSaveFile saveFile = new TableSaveFile(fis, 1, null, true);
+                    // Validation only checks CRCs, so chunks can be decoded in any order
+                    TableSaveFile saveFile = validate ?
+                            new TableSaveFile(fis, 1, null, true, VALIDATION_DECODER_THREADS) :
+                            new TableSaveFile(fis, 1, null, true);
                     try {
                         for (Integer partitionId : saveFile.getPartitionIds()) {
                             partitionIds.add(partitionId);
@@ -193,7 +193,6 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
             Mailbox mb = VoltDB.instance().getHostMessenger().createMailbox();
             StreamSnapshotDataTarget.SnapshotSender sender = new StreamSnapshotDataTarget.SnapshotSender(mb);
             StreamSnapshotAckReceiver ackReceiver = new StreamSnapshotAckReceiver(mb);
-            new Thread(sender, "Stream Snapshot Sender").start();
             new Thread(ackReceiver, "Stream Snapshot Ack Receiver").start();
             // The mailbox will be removed after all snapshot data targets are finished
             SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(createCompletionTask(mb));
@@ -213,6 +212,8 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
                                                                              schemas, sender, ackReceiver)));
                 }
             }
+            // Sender threads are assigned data targets on registration
+            sender.start();
         }
 
         return sdts;
@@ -26,10 +26,13 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Checksum;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
@@ -40,6 +43,7 @@ import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
@@ -91,6 +95,15 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
             org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    /**
+     * Number of decoder threads used when the caller doesn't ask for a specific number.
+     * Half the cores, at most 4, so that decoding one file leaves room for the rest
+     * of the server.
+     */
+    public static final int DEFAULT_DECODER_THREADS =
+            Integer.getInteger("SNAPSHOT_RESTORE_DECODER_THREADS",
+                               Math.max(1, Math.min(4, CoreUtils.availableProcessors() / 2)));
+
     public TableSaveFile(
             FileInputStream fis,
             int readAheadChunks,
@@ -98,12 +111,28 @@ public class TableSaveFile
         this(fis, readAheadChunks, relevantPartitionIds, false);
     }
 
+    public TableSaveFile(
+            FileInputStream fis,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds,
+            boolean continueOnCorruptedChunk) throws IOException {
+        this(fis, readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk, DEFAULT_DECODER_THREADS);
+    }
+
+    /**
+     * @param readAheadChunks  Maximum number of chunks materialized in memory at once. When decoding
+     *                         in parallel this is raised to at least the number of decoder threads.
+     * @param decoderThreads   Number of threads validating and decompressing chunks. Values greater
+     *                         than 1 only apply to version 2 format files and may hand chunks
+     *                         to the consumer out of file order.
+     */
     // XXX maybe consider an IOException subclass at some point
     public TableSaveFile(
             FileInputStream fis,
             int readAheadChunks,
             Integer[] relevantPartitionIds,
-            boolean continueOnCorruptedChunk) throws IOException
+            boolean continueOnCorruptedChunk,
+            int decoderThreads) throws IOException
             {
                 m_fd = fis.getFD();
                 FileChannel dataIn = fis.getChannel();
@@ -117,7 +146,8 @@ public class TableSaveFile
                     m_relevantPartitionIds.add(i);
                 }
             }
-            m_chunkReads = new Semaphore(readAheadChunks);
+            m_decoderThreads = Math.max(1, decoderThreads);
+            m_chunkReads = new Semaphore(Math.max(readAheadChunks, m_decoderThreads));
             m_saveFile = dataIn;
             m_continueOnCorruptedChunk = continueOnCorruptedChunk;
 
@@ -487,7 +517,8 @@ public class TableSaveFile
     private final int m_totalPartitions;
     private final long m_txnId;
     private final long m_timestamp;
-    private boolean m_hasMoreChunks = true;
+    // Cleared by the reader or decoder threads and read by the consumer
+    private volatile boolean m_hasMoreChunks = true;
     private ConcurrentLinkedQueue<BBContainer> m_buffers = new ConcurrentLinkedQueue<BBContainer>();
     private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
     private final HashSet<Integer> m_relevantPartitionIds;
@@ -504,7 +535,8 @@ public class TableSaveFile
      * Maintain a list of corrupted partitions. It is possible for uncorrupted partitions
      * to be recovered from a save file in the future
      */
-    private final HashSet<Integer> m_corruptedPartitions = new HashSet<Integer>();
+    private final Set<Integer> m_corruptedPartitions =
+            Collections.synchronizedSet(new HashSet<Integer>());
 
     /**
      * Ignore corrupted chunks and continue validation of the rest of the chunks.
@@ -516,6 +548,12 @@ public class TableSaveFile
      */
     private final Semaphore m_chunkReads;
 
+    /**
+     * Number of threads validating and decompressing version 2 chunks. With more than one
+     * the chunk reader thread only does disk reads.
+     */
+    private final int m_decoderThreads;
+
     private ChunkReader m_chunkReader = null;
     private Thread m_chunkReaderThread = null;
     private IOException m_chunkReaderException = null;
@@ -525,6 +563,232 @@ public class TableSaveFile
      */
     private class ChunkReader implements Runnable {
 
+        private long m_sinceLastFAdvise = Long.MAX_VALUE;
+        private long m_positionAtLastFAdvise = 0;
+
+        /*
+         * Ask the kernel to read ahead of the current position and drop the pages
+         * that have already been consumed.
+         */
+        private void maybeFAdvise() {
+            if (m_sinceLastFAdvise <= 1024 * 1024 * 48) {
+                return;
+            }
+            m_sinceLastFAdvise = 0;
+            VoltLogger log = new VoltLogger("SNAPSHOT");
+            try {
+                final long position = m_saveFile.position();
+                long retval = PosixAdvise.fadvise(
+                        m_fd,
+                        position,
+                        position + 1024 * 1024 * 64,
+                        PosixAdvise.POSIX_FADV_WILLNEED);
+                if (retval != 0) {
+                    log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                }
+
+                //Get aligned start and end position
+                final long fadviseStart = m_positionAtLastFAdvise;
+                //-1 because we don't want to drop the last page because
+                //We will be reading it soon
+                m_positionAtLastFAdvise = ((position / Bits.pageSize()) - 1) * Bits.pageSize();
+                final long length = m_positionAtLastFAdvise - fadviseStart;
+                if (length > 0) {
+                    retval = PosixAdvise.fadvise(
+                            m_fd,
+                            fadviseStart,
+                            length,
+                            PosixAdvise.POSIX_FADV_DONTNEED);
+                }
+                if (retval != 0) {
+                    log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                }
+                m_positionAtLastFAdvise = position;
+            } catch (Throwable t) {
+                log.info("Exception attempting fadvise", t);
+            }
+        }
+
+        /*
+         * Read the 16 byte chunk header (length, partition id, partition id CRC, data CRC)
+         * and validate the partition id. Returns the header positioned at 0.
+         */
+        private ByteBuffer readChunkHeaderV2() throws IOException {
+            ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
+            while (chunkLengthB.hasRemaining()) {
+                final int read = m_saveFile.read(chunkLengthB);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                m_sinceLastFAdvise += read;
+            }
+
+            /*
+             * Get the partition id and its CRC (CRC now covers length prefix) and validate it. Validating the
+             * partition ID for the chunk separately makes it possible to
+             * continue processing chunks from other partitions if only one partition
+             * has corrupt chunks in the file.
+             */
+            assert(m_checksumType == ChecksumType.CRC32C);
+            final Checksum partitionIdCRC = new PureJavaCrc32C();
+            final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
+
+            partitionIdCRC.update(chunkLengthB.array(), 0, 8);
+            int generatedValue = (int)partitionIdCRC.getValue();
+            if (generatedValue != nextChunkPartitionIdCRC) {
+                chunkLengthB.position(0);
+                for (int partitionId : m_partitionIds) {
+                    m_corruptedPartitions.add(partitionId);
+                }
+                throw new IOException("Chunk partition ID CRC check failed. " +
+                        "This corrupts all partitions in this file");
+            }
+            chunkLengthB.position(0);
+            return chunkLengthB;
+        }
+
+        /*
+         * Go fetch the compressed data for a chunk into the supplied buffer. The buffer is
+         * flipped and ready for decoding on return.
+         */
+        private void readCompressedChunkV2(int nextChunkLength, ByteBuffer fileInputBuffer) throws IOException {
+            /*
+             * Sanity check the length value to ensure there isn't
+             * a runtime exception or OOM.
+             */
+            if (nextChunkLength < 0) {
+                throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
+            }
+
+            if (nextChunkLength > fileInputBuffer.capacity()) {
+                throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
+                        "> DEFAULT_CHUNKSIZE bytes");
+            }
+
+            fileInputBuffer.clear();
+            fileInputBuffer.limit(nextChunkLength);
+            while (fileInputBuffer.hasRemaining()) {
+                final int read = m_saveFile.read(fileInputBuffer);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                m_sinceLastFAdvise += read;
+            }
+            fileInputBuffer.flip();
+        }
+
+        /*
+         * Validate and decompress a chunk that has been read off disk and hand it to the consumer.
+         * Chunks that are skipped (corrupt and ignored, or not relevant) release their read permit
+         * here. This is safe to call from multiple decoder threads at once.
+         */
+        private void decodeChunkV2(ByteBuffer fileInputBuffer,
+                                   int nextChunkPartitionId,
+                                   int nextChunkCRC) throws IOException {
+            /*
+             * The uncompressed size is used by the code ahead that constructs the volt table,
+             * it is producing an uncompressed table
+             */
+            final int nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+
+            /*
+             * Validate the rest of the chunk. This can fail if the data is corrupted
+             * or the length value was corrupted.
+             */
+            final int calculatedCRC =
+                    DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
+            if (calculatedCRC != nextChunkCRC) {
+                m_corruptedPartitions.add(nextChunkPartitionId);
+                if (m_continueOnCorruptedChunk) {
+                    m_chunkReads.release();
+                    return;
+                } else {
+                    throw new IOException("CRC mismatch in saved table chunk");
+                }
+            }
+
+            /*
+             * Now allocate space to store the chunk using the VoltTable serialization representation.
+             * The chunk will contain an integer row count preceding it so it can
+             * be sucked straight in. There is a little funny business to overwrite the
+             * partition id that is not part of the serialization format
+             */
+            Container c = getOutputBuffer(nextChunkPartitionId);
+            try {
+                /*
+                 * If the length value is wrong or not all data made it to disk this read will
+                 * not complete correctly. There could be overflow, underflow etc.
+                 * so use a try finally block to indicate that all partitions are now corrupt.
+                 * The enclosing exception handlers will do the right thing WRT to
+                 * propagating the error and closing the file.
+                 */
+                boolean completedRead = false;
+                try {
+                    final ByteBuffer buf = c.b();
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data. The header is shared by all
+                     * decoders so copy from a duplicate.
+                     */
+                    buf.clear();
+                    buf.limit(nextChunkLength  + m_tableHeader.capacity());
+                    final ByteBuffer tableHeader = m_tableHeader.duplicate();
+                    tableHeader.position(0);
+                    buf.put(tableHeader);
+                    //Doesn't move buffer position, does change the limit
+                    CompressionService.decompressBuffer(fileInputBuffer, buf);
+                    completedRead = true;
+                } finally {
+                    if (!completedRead) {
+                        for (int partitionId : m_partitionIds) {
+                            m_corruptedPartitions.add(partitionId);
+                        }
+                        if (m_continueOnCorruptedChunk) {
+                            m_chunkReads.release();
+                            return;
+                        } else {
+                            throw new IOException("Failed decompression of saved table chunk");
+                        }
+                    }
+                }
+
+                /*
+                 * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+                 * in case it is the length value that is corrupted
+                 */
+                if (m_relevantPartitionIds != null) {
+                    if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
+                        m_chunkReads.release();
+                        return;
+                    }
+                }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b().position(0);
+
+                synchronized (TableSaveFile.this) {
+                    m_availableChunks.offer(c);
+                    c = null;
+                    TableSaveFile.this.notifyAll();
+                }
+            } finally {
+                if (c != null) c.discard();
+            }
+        }
+
+        private void failChunkReader(IOException e) {
+            synchronized (TableSaveFile.this) {
+                m_hasMoreChunks = false;
+                if (m_chunkReaderException == null) {
+                    m_chunkReaderException = e;
+                }
+                TableSaveFile.this.notifyAll();
+            }
+        }
+
         /*
          * The old method was out of hand. Going to start a new one with a different format
          * that should be easier to understand and validate.
@@ -534,44 +798,8 @@ public class TableSaveFile
             final BBContainer fileInputBufferC =
                     DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
             final ByteBuffer fileInputBuffer = fileInputBufferC.b();
-            long sinceLastFAdvise = Long.MAX_VALUE;
-            long positionAtLastFAdvise = 0;
             while (m_hasMoreChunks) {
-                if (sinceLastFAdvise > 1024 * 1024 * 48) {
-                    sinceLastFAdvise = 0;
-                    VoltLogger log = new VoltLogger("SNAPSHOT");
-                    try {
-                        final long position = m_saveFile.position();
-                        long retval = PosixAdvise.fadvise(
-                                m_fd,
-                                position,
-                                position + 1024 * 1024 * 64,
-                                PosixAdvise.POSIX_FADV_WILLNEED);
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
-                        }
-
-                        //Get aligned start and end position
-                        final long fadviseStart = positionAtLastFAdvise;
-                        //-1 because we don't want to drop the last page because
-                        //We will be reading it soon
-                        positionAtLastFAdvise = ((position / Bits.pageSize()) - 1) * Bits.pageSize();
-                        final long length = positionAtLastFAdvise - fadviseStart;
-                        if (length > 0) {
-                            retval = PosixAdvise.fadvise(
-                                    m_fd,
-                                    fadviseStart,
-                                    length,
-                                    PosixAdvise.POSIX_FADV_DONTNEED);
-                        }
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
-                        }
-                        positionAtLastFAdvise = position;
-                    } catch (Throwable t) {
-                        log.info("Exception attempting fadvise", t);
-                    }
-                }
+                maybeFAdvise();
 
                 /*
                  * Limit the number of chunk materialized into memory at one time
@@ -583,202 +811,168 @@ public class TableSaveFile
                     return;
                 }
                 boolean expectedAnotherChunk = false;
-                Container c = null;
                 try {
-
-                    /*
-                     * Get the length of the next chunk, partition id, crc for partition id, and length prefix,
-                     * and then the CRC of the compressed payload
-                     */
-                    ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
-                    while (chunkLengthB.hasRemaining()) {
-                        final int read = m_saveFile.read(chunkLengthB);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                        sinceLastFAdvise += read;
-                    }
-                    int nextChunkLength = chunkLengthB.getInt(0);
+                    final ByteBuffer chunkHeader = readChunkHeaderV2();
                     expectedAnotherChunk = true;
-
-                    /*
-                     * Get the partition id and its CRC (CRC now covers length prefix) and validate it. Validating the
-                     * partition ID for the chunk separately makes it possible to
-                     * continue processing chunks from other partitions if only one partition
-                     * has corrupt chunks in the file.
-                     */
-                    assert(m_checksumType == ChecksumType.CRC32C);
-                    final Checksum partitionIdCRC = new PureJavaCrc32C();
-                    final int nextChunkPartitionId = chunkLengthB.getInt(4);
-                    final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
-
-                    partitionIdCRC.update(chunkLengthB.array(), 0, 8);
-                    int generatedValue = (int)partitionIdCRC.getValue();
-                    if (generatedValue != nextChunkPartitionIdCRC) {
-                        chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
+                    readCompressedChunkV2(chunkHeader.getInt(0), fileInputBuffer);
+                    decodeChunkV2(fileInputBuffer, chunkHeader.getInt(4), chunkHeader.getInt(12));
+                } catch (EOFException eof) {
+                    synchronized (TableSaveFile.this) {
+                        m_hasMoreChunks = false;
+                        if (expectedAnotherChunk) {
+                            m_chunkReaderException = new IOException(
+                                    "Expected to find another chunk but reached end of file instead");
                         }
-                        throw new IOException("Chunk partition ID CRC check failed. " +
-                                "This corrupts all partitions in this file");
-                    }
-
-                    /*
-                     * CRC for the data portion of the chunk
-                     */
-                    final int nextChunkCRC = chunkLengthB.getInt(12);
-
-                    /*
-                     * Sanity check the length value to ensure there isn't
-                     * a runtime exception or OOM.
-                     */
-                    if (nextChunkLength < 0) {
-                        throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
-                    }
-
-                    if (nextChunkLength > fileInputBuffer.capacity()) {
-                        throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
-                                "> DEFAULT_CHUNKSIZE bytes");
+                        TableSaveFile.this.notifyAll();
                     }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    failChunkReader(e);
+                } catch (BufferUnderflowException e) {
+                    failChunkReader(new IOException(e));
+                } catch (BufferOverflowException e) {
+                    failChunkReader(new IOException(e));
+                } catch (IndexOutOfBoundsException e) {
+                    failChunkReader(new IOException(e));
+                }
+            }
+            fileInputBufferC.discard();
+        }
 
-                    /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
-                     */
-                    fileInputBuffer.clear();
-                    fileInputBuffer.limit(nextChunkLength);
-                    while (fileInputBuffer.hasRemaining()) {
-                        final int read = m_saveFile.read(fileInputBuffer);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                        sinceLastFAdvise += read;
-                    }
-                    fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+        /*
+         * Same format as readChunksV2, but this thread only does the disk reads. Validating
+         * and decompressing chunks is handed off to a pool of decoder threads so that restore
+         * is bounded by disk bandwidth instead of a single core doing CRCs and decompression.
+         * Chunks may be handed to the consumer out of file order, which is fine since every
+         * chunk is a self contained set of rows for one partition.
+         */
+        private void readChunksV2Parallel() {
+            final ExecutorService decoders =
+                    CoreUtils.getListeningExecutorService("TableSaveFile decoder", m_decoderThreads);
+            final ConcurrentLinkedQueue<BBContainer> compressedBuffers =
+                    new ConcurrentLinkedQueue<BBContainer>();
+            boolean expectedAnotherChunk = false;
+            boolean reachedEOF = false;
+            try {
+                while (m_hasMoreChunks) {
+                    maybeFAdvise();
 
                     /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
+                     * Limit the number of chunks materialized into memory at one time,
+                     * this also bounds the number of compressed buffers in flight.
                      */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
+                    try {
+                        m_chunkReads.acquire();
+                    } catch (InterruptedException e) {
+                        return;
                     }
-
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
+                    expectedAnotherChunk = false;
+                    BBContainer compressedC = null;
                     try {
-                        final ByteBuffer buf = c.b();
-                        /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
-                         */
-                        buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
+                        final ByteBuffer chunkHeader = readChunkHeaderV2();
+                        expectedAnotherChunk = true;
+                        compressedC = compressedBuffers.poll();
+                        if (compressedC == null) {
+                            compressedC = DBBPool.allocateDirect(
+                                    CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
                         }
-                    }
-
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
+                        readCompressedChunkV2(chunkHeader.getInt(0), compressedC.b());
+                        decoders.execute(new ChunkDecoder(compressedC, compressedBuffers,
+                                chunkHeader.getInt(4), chunkHeader.getInt(12)));
+                        compressedC = null;
+                    } catch (EOFException eof) {
+                        reachedEOF = true;
+                        break;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        failChunkReader(e);
+                    } catch (BufferUnderflowException e) {
+                        failChunkReader(new IOException(e));
+                    } catch (BufferOverflowException e) {
+                        failChunkReader(new IOException(e));
+                    } catch (IndexOutOfBoundsException e) {
+                        failChunkReader(new IOException(e));
+                    } finally {
+                        if (compressedC != null) {
+                            compressedBuffers.offer(compressedC);
                         }
                     }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b().position(0);
-
-                    synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
-                        TableSaveFile.this.notifyAll();
+                }
+            } finally {
+                /*
+                 * Chunks still being decoded have to land before the consumer is told there
+                 * are no more chunks, and before close() drains the available chunks.
+                 */
+                decoders.shutdown();
+                boolean interrupted = false;
+                while (!decoders.isTerminated()) {
+                    try {
+                        decoders.awaitTermination(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
                     }
-                } catch (EOFException eof) {
+                }
+                BBContainer cont;
+                while ((cont = compressedBuffers.poll()) != null) {
+                    cont.discard();
+                }
+                if (reachedEOF) {
                     synchronized (TableSaveFile.this) {
                         m_hasMoreChunks = false;
-                        if (expectedAnotherChunk) {
+                        if (expectedAnotherChunk && m_chunkReaderException == null) {
                             m_chunkReaderException = new IOException(
                                     "Expected to find another chunk but reached end of file instead");
                         }
                         TableSaveFile.this.notifyAll();
                     }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /*
+         * Validates and decompresses one chunk on a decoder thread, then returns the
+         * compressed buffer to the reader for reuse.
+         */
+        private class ChunkDecoder implements Runnable {
+            private final BBContainer m_compressed;
+            private final ConcurrentLinkedQueue<BBContainer> m_compressedBuffers;
+            private final int m_partitionId;
+            private final int m_crc;
+
+            ChunkDecoder(BBContainer compressed,
+                         ConcurrentLinkedQueue<BBContainer> compressedBuffers,
+                         int partitionId,
+                         int crc) {
+                m_compressed = compressed;
+                m_compressedBuffers = compressedBuffers;
+                m_partitionId = partitionId;
+                m_crc = crc;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    if (!m_hasMoreChunks) {
+                        // Reader already failed or the file was closed
+                        return;
+                    }
+                    decodeChunkV2(m_compressed.b(), m_partitionId, m_crc);
                 } catch (IOException e) {
                     e.printStackTrace();
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = e;
-                        TableSaveFile.this.notifyAll();
-                    }
+                    failChunkReader(e);
                 } catch (BufferUnderflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    failChunkReader(new IOException(e));
                 } catch (BufferOverflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    failChunkReader(new IOException(e));
                 } catch (IndexOutOfBoundsException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    failChunkReader(new IOException(e));
                 } finally {
-                    if (c != null) c.discard();
+                    m_compressedBuffers.offer(m_compressed);
                 }
             }
-            fileInputBufferC.discard();
         }
 
         private void readChunks() {
@@ -1063,7 +1257,9 @@ public class TableSaveFile
         @Override
         public void run() {
             try {
-                if (m_hasVersion2FormatChunks) {
+                if (m_hasVersion2FormatChunks && m_decoderThreads > 1) {
+                    readChunksV2Parallel();
+                } else if (m_hasVersion2FormatChunks) {
                     readChunksV2();
                 } else {
                     readChunks();
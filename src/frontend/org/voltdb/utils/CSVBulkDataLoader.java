@@ -50,6 +50,10 @@ public class CSVBulkDataLoader implements CSVDataLoader {
         m_loader.setFlushInterval(delay, seconds);
     }
 
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        m_loader.setMaxBatchBytes(maxBatchBytes);
+    }
+
     @Override
     public void flush() throws ExecutionException, InterruptedException {
         m_loader.flush();
@@ -183,47 +183,59 @@ class CSVFileReader implements Runnable {
 
     private boolean checkHeader() {
         try {
-            String[] firstline = m_listReader.getHeader(false);
-            Set<String> firstset = new HashSet<String>();
-            BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
-            headerlen = firstline.length;
-            // remove duplicate.
-            for (String name : firstline) {
-                if (name != null) {
-                    firstset.add(name.toUpperCase());
-                } else {
-                    return false;
-                }
-            }
-            // whether column num matches.
-            if (headerlen < m_columnCount) {
-                return false;
+            return checkHeader(m_listReader.getHeader(false));
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+        }
+        return true;
+    }
+
+    /**
+     * Check the column names of the csv header against the table and map the file columns to table columns.
+     */
+    boolean checkHeader(String[] firstline) {
+        Set<String> firstset = new HashSet<String>();
+        BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
+        headerlen = firstline.length;
+        // remove duplicate.
+        for (String name : firstline) {
+            if (name != null) {
+                firstset.add(name.toUpperCase());
             } else {
-                // whether column name has according table column.
-                int matchColCount = 0;
-                for (String name : firstset) {
-                    if (colNames.containsValue(name)) {
-                        matchColCount++;
-                    }
-                }
-                if (matchColCount != m_columnCount) {
-                    return false;
+                return false;
+            }
+        }
+        // whether column num matches.
+        if (headerlen < m_columnCount) {
+            return false;
+        } else {
+            // whether column name has according table column.
+            int matchColCount = 0;
+            for (String name : firstset) {
+                if (colNames.containsValue(name)) {
+                    matchColCount++;
                 }
             }
-            // get the mapping from file column num to table column num.
-            order = new Integer[headerlen];
-            for (int fileCol = 0; fileCol < headerlen; fileCol++) {
-                String name = firstline[fileCol];
-                Integer tableCol = colNames.inverse().get(name.toUpperCase());
-                order[fileCol] = tableCol;
+            if (matchColCount != m_columnCount) {
+                return false;
             }
-        } catch (IOException ex) {
-            m_log.error("Failed to read CSV line from file: " + ex);
+        }
+        // get the mapping from file column num to table column num.
+        order = new Integer[headerlen];
+        for (int fileCol = 0; fileCol < headerlen; fileCol++) {
+            String name = firstline[fileCol];
+            Integer tableCol = colNames.inverse().get(name.toUpperCase());
+            order[fileCol] = tableCol;
         }
         return true;
     }
 
-    private String checkparams_trimspace_reorder(String[] lineValues, String[] reorderValues) {
+    /**
+     * Validate the values of a line and place them in table column order.
+     * Only reads the header mapping, so parser threads may share a single reader for validation.
+     * @return null if the line is valid, the error message otherwise
+     */
+    String checkparams_trimspace_reorder(String[] lineValues, String[] reorderValues) {
         if (lineValues.length != m_columnCount && !m_config.header) {
             return String.format(COLUMN_COUNT_ERROR, lineValues.length, m_columnCount);
         }
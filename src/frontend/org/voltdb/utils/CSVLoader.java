@@ -49,6 +49,9 @@ import org.voltdb.client.ClientResponse;
  * For multi-partitioned data it uses a single processor which call
  * @LoadMultipartitionTable
  *
+ * Batches are cut by row count and optionally by size in bytes. With more than one parser
+ * the input is split into chunks of whole records that are parsed in parallel.
+ *
  * The maxerror indicates maximum number of errors it can tolerate.
  * Its a threshold but since processors are processing in parallel we may process rows beyond
  * maxerror and additional errors may occur. Only first maxerror indicated errors will be reported.
@@ -302,6 +305,18 @@ public class CSVLoader implements BulkLoaderErrorHandler {
         @Option(desc = "Batch Size for processing.")
         public int batch = 200;
 
+        /**
+         * Largest estimated size of a batch in bytes.
+         */
+        @Option(desc = "Maximum size of a batch in bytes, 0 to limit batches by --batch only (default: 0)")
+        public int batchbytes = 0;
+
+        /**
+         * Number of threads parsing the input.
+         */
+        @Option(desc = "Number of threads parsing the input, more than 1 does not preserve the order of rows (default: 1)")
+        public int parsers = 1;
+
         @Option(desc = "First line of csv file is column name.", hasArg = false)
         boolean header = DEFAULT_HEADER;
 
@@ -341,6 +356,12 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (batchbytes < 0) {
+                exitWithMessageAndUsage("batch bytes must be >= 0");
+            }
+            if (parsers < 1) {
+                exitWithMessageAndUsage("number of parsers must be >= 1");
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -408,8 +429,13 @@ public class CSVLoader implements BulkLoaderErrorHandler {
         configuration();
         final Tokenizer tokenizer;
         ICsvListReader listReader = null;
+        //Parallel parsers split the raw input and tokenize each chunk on their own.
+        BufferedReader input = null;
         try {
-            if (CSVLoader.standin) {
+            if (config.parsers > 1) {
+                input = CSVLoader.standin ? new BufferedReader(new InputStreamReader(System.in))
+                                          : new BufferedReader(new FileReader(config.file));
+            } else if (CSVLoader.standin) {
                 tokenizer = new Tokenizer(new BufferedReader(new InputStreamReader(System.in)), csvPreference,
                         config.strictquotes, config.escape, config.columnsizelimit,
                         config.skip, config.header);
@@ -457,14 +483,24 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (config.useSuppliedProcedure) {
                 dataLoader = new CSVTupleDataLoader((ClientImpl) csvClient, config.procedure, errHandler);
             } else {
-                dataLoader = new CSVBulkDataLoader((ClientImpl) csvClient, config.table, config.batch, config.update, errHandler);
+                CSVBulkDataLoader bulkLoader = new CSVBulkDataLoader((ClientImpl) csvClient, config.table, config.batch,
+                        config.update, errHandler);
+                if (config.batchbytes > 0) {
+                    bulkLoader.setMaxBatchBytes(config.batchbytes);
+                }
+                dataLoader = bulkLoader;
             }
 
             CSVFileReader.initializeReader(cfg, csvClient, listReader);
 
             CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
+            CSVParallelFileReader parallelReader = null;
+            if (input != null) {
+                parallelReader = new CSVParallelFileReader(csvReader, dataLoader, errHandler,
+                        input, csvPreference, config.parsers);
+            }
 
-            Thread readerThread = new Thread(csvReader);
+            Thread readerThread = new Thread(parallelReader != null ? parallelReader : csvReader);
             readerThread.setName("CSVFileReader");
             readerThread.setDaemon(true);
 
@@ -478,14 +514,18 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            readerTime = (parallelReader != null ? parallelReader.getParsingTime() : csvReader.m_parsingTime) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
 
             //Close the reader.
             try {
-               listReader.close();
+                if (listReader != null) {
+                    listReader.close();
+                } else {
+                    input.close();
+                }
             } catch (Exception ex) {
                 m_log.error("Error closing reader: " + ex);
             } finally {
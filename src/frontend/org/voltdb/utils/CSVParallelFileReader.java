@@ -0,0 +1,311 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.supercsv.exception.SuperCsvException;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltcore.logging.VoltLogger;
+
+/**
+ *
+ * Reader that parses the csv input on several threads. A single thread splits the input
+ * into chunks of whole records, tracking quotes so that records with quoted newlines are
+ * never split, and parser threads tokenize, validate and insert the chunks. Rows are
+ * therefore not inserted in file order.
+ *
+ */
+class CSVParallelFileReader implements Runnable {
+    static final int CHUNK_SIZE = Integer.getInteger("CSVLOADER_CHUNK_SIZE", 1024 * 1024);
+
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+    //Poison chunk telling a parser to stop.
+    private static final Chunk NO_MORE_CHUNKS = new Chunk(null, 0);
+
+    private final CSVLoader.CSVConfig m_config;
+    private final CSVFileReader m_validator;
+    private final CSVDataLoader m_loader;
+    private final BulkLoaderErrorHandler m_errHandler;
+    private final BufferedReader m_input;
+    private final CsvPreference m_csvPreference;
+    private final int m_parserCount;
+    private final char m_quote;
+    private final char m_escape;
+    private final BlockingQueue<Chunk> m_chunks;
+    private final AtomicLong m_parsingTime = new AtomicLong(0);
+    //Physical lines read from the input so far.
+    private long m_lineCount = 0;
+
+    //Text of whole records and the number of lines before them in the input.
+    private static class Chunk {
+        final String m_text;
+        final long m_firstLine;
+
+        Chunk(String text, long firstLine) {
+            m_text = text;
+            m_firstLine = firstLine;
+        }
+    }
+
+    /**
+     * @param validator   Reader used to check the header and validate lines, it does not read the input itself
+     * @param input       The csv input
+     * @param parserCount Number of parser threads
+     */
+    public CSVParallelFileReader(CSVFileReader validator, CSVDataLoader loader, BulkLoaderErrorHandler errorHandler,
+            BufferedReader input, CsvPreference csvPreference, int parserCount) {
+        m_config = CSVFileReader.m_config;
+        m_validator = validator;
+        m_loader = loader;
+        m_errHandler = errorHandler;
+        m_input = input;
+        m_csvPreference = csvPreference;
+        m_parserCount = parserCount;
+        m_quote = m_config.quotechar;
+        m_escape = m_config.escape;
+        m_chunks = new ArrayBlockingQueue<Chunk>(parserCount * 2);
+    }
+
+    /**
+     * @return Time spent tokenizing lines, summed over all parser threads, in nanoseconds.
+     */
+    public long getParsingTime() {
+        return m_parsingTime.get();
+    }
+
+    @Override
+    public void run() {
+        List<Thread> parsers = new ArrayList<Thread>(m_parserCount);
+        for (int i = 0; i < m_parserCount; i++) {
+            Thread parser = new Thread(new Parser());
+            parser.setName("CSVParser-" + i);
+            parser.setDaemon(true);
+            parser.start();
+            parsers.add(parser);
+        }
+
+        try {
+            if (m_config.header) {
+                String[] header = readHeader();
+                if (header == null || !m_validator.checkHeader(header)) {
+                    m_log.error("In the CSV file " + m_config.file + ", the header does not match "
+                            + "an existing column in the table " + m_config.table + ".");
+                    System.exit(-1);
+                }
+            }
+            for (long i = 0; i < m_config.skip; i++) {
+                if (m_input.readLine() == null) {
+                    break;
+                }
+                m_lineCount++;
+            }
+            split();
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        }
+
+        try {
+            for (int i = 0; i < m_parserCount; i++) {
+                m_chunks.put(NO_MORE_CHUNKS);
+            }
+            for (Thread parser : parsers) {
+                parser.join();
+            }
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        }
+        CSVFileReader.m_totalLineCount.set(m_lineCount);
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_loader.close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    //Read the first non blank record as column names.
+    private String[] readHeader() throws IOException {
+        StringBuilder record = new StringBuilder();
+        String line;
+        boolean inQuote = false;
+        while ((line = m_input.readLine()) != null) {
+            m_lineCount++;
+            if (!inQuote && line.trim().isEmpty()) {
+                continue;
+            }
+            record.append(line).append('\n');
+            inQuote = continuesQuote(line, inQuote);
+            if (!inQuote) {
+                ICsvListReader reader = newListReader(record.toString());
+                List<String> columns = reader.read();
+                return columns == null ? null : columns.toArray(new String[0]);
+            }
+        }
+        return null;
+    }
+
+    //Cut the input into chunks of whole records.
+    private void split() throws IOException, InterruptedException {
+        StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 1024);
+        long chunkFirstLine = m_lineCount;
+        boolean inQuote = false;
+        String line;
+        while (!m_errHandler.hasReachedErrorLimit() && (line = m_input.readLine()) != null) {
+            if (!inQuote && !line.trim().isEmpty()) {
+                //Start of a record, blank lines are skipped by the tokenizer.
+                if (m_config.limitrows-- <= 0) {
+                    break;
+                }
+                if (chunk.length() >= CHUNK_SIZE) {
+                    m_chunks.put(new Chunk(chunk.toString(), chunkFirstLine));
+                    chunk.setLength(0);
+                    chunkFirstLine = m_lineCount;
+                }
+            }
+            m_lineCount++;
+            chunk.append(line).append('\n');
+            inQuote = continuesQuote(line, inQuote);
+        }
+        if (chunk.length() > 0) {
+            m_chunks.put(new Chunk(chunk.toString(), chunkFirstLine));
+        }
+    }
+
+    /**
+     * Track quotes the way the tokenizer does.
+     * @return true if a quoted value is still open at the end of the line
+     */
+    private boolean continuesQuote(String line, boolean inQuote) {
+        if (!inQuote && line.indexOf(m_quote) < 0) {
+            return false;
+        }
+        final int length = line.length();
+        for (int i = 0; i < length; i++) {
+            final char c = line.charAt(i);
+            if (inQuote) {
+                if (c == m_quote) {
+                    if (i + 1 < length && line.charAt(i + 1) == m_quote) {
+                        i++;
+                    } else {
+                        inQuote = false;
+                    }
+                }
+            } else if (c == m_escape) {
+                i++;
+            } else if (c == m_quote) {
+                inQuote = true;
+            }
+        }
+        return inQuote;
+    }
+
+    private ICsvListReader newListReader(String text) {
+        Tokenizer tokenizer = new Tokenizer(new StringReader(text), m_csvPreference,
+                m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, false);
+        return new CsvListReader(tokenizer, m_csvPreference);
+    }
+
+    private class Parser implements Runnable {
+        private final int m_columnCount = m_loader.getColumnTypes().length;
+        private long m_parsingNanos = 0;
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk;
+                while ((chunk = m_chunks.take()) != NO_MORE_CHUNKS) {
+                    //Keep taking chunks after reaching the error limit so that the splitter never blocks.
+                    if (!m_errHandler.hasReachedErrorLimit()) {
+                        parse(chunk);
+                    }
+                }
+            } catch (InterruptedException e) {
+                m_log.error("CSVLoader interrupted: " + e);
+            } finally {
+                m_parsingTime.addAndGet(m_parsingNanos);
+            }
+        }
+
+        private void parse(Chunk chunk) throws InterruptedException {
+            ICsvListReader listReader = newListReader(chunk.m_text);
+            List<String> lineList;
+            while (!m_errHandler.hasReachedErrorLimit()) {
+                final long lineNumber = chunk.m_firstLine + listReader.getLineNumber();
+                try {
+                    long st = System.nanoTime();
+                    lineList = listReader.read();
+                    m_parsingNanos += System.nanoTime() - st;
+                    if (lineList == null) {
+                        break;
+                    }
+                    CSVFileReader.m_totalRowCount.incrementAndGet();
+
+                    if (lineList.isEmpty()) {
+                        continue;
+                    }
+
+                    String[] lineValues = lineList.toArray(new String[0]);
+                    String lineCheckResult;
+                    String[] reorderValues = new String[m_columnCount];
+                    if ((lineCheckResult = m_validator.checkparams_trimspace_reorder(lineValues, reorderValues)) != null) {
+                        final RowWithMetaData metaData
+                                = new RowWithMetaData(listReader.getUntokenizedRow(), lineNumber + 1);
+                        if (m_errHandler.handleError(metaData, null, lineCheckResult)) {
+                            break;
+                        }
+                        continue;
+                    }
+
+                    RowWithMetaData lineData
+                            = new RowWithMetaData(listReader.getUntokenizedRow(),
+                                    chunk.m_firstLine + listReader.getLineNumber());
+                    m_loader.insertRow(lineData, reorderValues);
+                } catch (SuperCsvException e) {
+                    //Catch rows that can not be read by superCSV listReader.
+                    // e.g. items without quotes when strictquotes is enabled.
+                    final RowWithMetaData metaData
+                            = new RowWithMetaData(listReader.getUntokenizedRow(), lineNumber + 1);
+                    if (m_errHandler.handleError(metaData, null, e.getMessage())) {
+                        break;
+                    }
+                } catch (IOException ex) {
+                    //Reading from memory, only the tokenizer can fail.
+                    m_log.error("Failed to read CSV line from file: " + ex);
+                    break;
+                }
+            }
+        }
+    }
+}
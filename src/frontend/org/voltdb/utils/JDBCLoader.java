@@ -225,6 +225,13 @@ public class JDBCLoader implements BulkLoaderErrorHandler {
 
         @Option(desc = "Fetch Size for JDBC request (default: 100)")
         int fetchsize = 100;
+
+        @Option(desc = "Number of JDBC connections reading ranges of the source table in parallel (default: 1)")
+        int readers = 1;
+
+        @Option(desc = "Integer column of the source table to split into ranges for --readers (default: the primary key)")
+        String partitioncolumn = "";
+
         /**
          * Batch size for processing batched operations.
          */
@@ -268,6 +275,12 @@ public class JDBCLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (readers < 1) {
+                exitWithMessageAndUsage("number of readers must be >= 1");
+            }
+            if (fetchsize < 0) {
+                exitWithMessageAndUsage("fetch size must be >= 0");
+            }
             if ((procedure != null) && (procedure.trim().length() > 0)) {
                 useSuppliedProcedure = true;
             }
@@ -359,8 +372,14 @@ public class JDBCLoader implements BulkLoaderErrorHandler {
             //Created Source reader
             JDBCStatementReader.initializeReader(cfg, csvClient);
 
-            JDBCStatementReader jdbcReader = new JDBCStatementReader(dataLoader, errHandler);
-            Thread readerThread = new Thread(jdbcReader);
+            JDBCStatementReader jdbcReader = null;
+            JDBCPartitionedReader partitionedReader = null;
+            if (config.readers > 1) {
+                partitionedReader = new JDBCPartitionedReader(dataLoader, errHandler, config.readers);
+            } else {
+                jdbcReader = new JDBCStatementReader(dataLoader, errHandler);
+            }
+            Thread readerThread = new Thread(partitionedReader != null ? partitionedReader : jdbcReader);
             readerThread.setName("JDBCSourceReader");
             readerThread.setDaemon(true);
 
@@ -374,7 +393,7 @@ public class JDBCLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (jdbcReader.m_parsingTime) / 1000000;
+            readerTime = (partitionedReader != null ? partitionedReader.getParsingTime() : jdbcReader.m_parsingTime) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
 
@@ -0,0 +1,185 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ *
+ * Reader that splits the source table into ranges of an integer column and reads
+ * each range on its own connection and thread. The column is the one given with
+ * --partitioncolumn, or else the source table's primary key if it has a single
+ * column. Rows with a null key are read along with the first range.
+ *
+ */
+class JDBCPartitionedReader extends SusceptibleRunnable {
+    private static final VoltLogger m_log = new VoltLogger("JDBCLOADER");
+
+    private final JDBCLoader.JDBCLoaderConfig m_config;
+    private final CSVDataLoader m_loader;
+    private final BulkLoaderErrorHandler m_errHandler;
+    private final int m_readerCount;
+    private final List<JDBCStatementReader> m_readers = new ArrayList<JDBCStatementReader>();
+
+    public JDBCPartitionedReader(CSVDataLoader loader, BulkLoaderErrorHandler errorHandler, int readerCount) {
+        m_config = JDBCStatementReader.m_config;
+        m_loader = loader;
+        m_errHandler = errorHandler;
+        m_readerCount = readerCount;
+    }
+
+    @Override
+    public void susceptibleRun() throws Exception {
+        List<String> conditions;
+        try {
+            conditions = splitRanges();
+        } catch (SQLException ex) {
+            m_log.error("Failed to split the source table into ranges, reading it on a single connection", ex);
+            conditions = null;
+        }
+        if (conditions == null) {
+            JDBCStatementReader reader = new JDBCStatementReader(m_loader, m_errHandler);
+            m_readers.add(reader);
+            reader.susceptibleRun();
+            return;
+        }
+
+        List<Thread> readers = new ArrayList<Thread>(conditions.size());
+        try {
+            for (String condition : conditions) {
+                JDBCStatementReader statementReader = new JDBCStatementReader(m_loader, m_errHandler, condition, false);
+                m_readers.add(statementReader);
+                Thread reader = new Thread(statementReader);
+                reader.setName("JDBCSourceReader-" + readers.size());
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        } finally {
+            try {m_loader.close();} catch (Exception ignoreIt) {}
+        }
+        m_log.debug("JSBCLoader Done.");
+    }
+
+    /**
+     * @return The time in nanoseconds all readers spent converting rows, valid once this reader is done.
+     */
+    long getParsingTime() {
+        long parsingTime = 0;
+        for (JDBCStatementReader reader : m_readers) {
+            parsingTime += reader.m_parsingTime;
+        }
+        return parsingTime;
+    }
+
+    /**
+     * @return The where clause of each reader, or null if the table can not be split.
+     */
+    private List<String> splitRanges() throws SQLException {
+        Connection conn = DriverManager.getConnection(m_config.jdbcurl, m_config.jdbcuser, m_config.jdbcpassword);
+        try {
+            String column = m_config.partitioncolumn.trim();
+            if (column.isEmpty()) {
+                column = findPrimaryKeyColumn(conn.getMetaData());
+                if (column == null) {
+                    m_log.warn("Source table " + m_config.jdbctable + " has no single column primary key, "
+                            + "use --partitioncolumn to read it on several connections.");
+                    return null;
+                }
+            }
+
+            BigInteger min, max;
+            Statement stmt = conn.createStatement();
+            try {
+                ResultSet rslt = stmt.executeQuery(
+                        "select min(" + column + "), max(" + column + ") from " + m_config.jdbctable);
+                rslt.next();
+                min = toBigInteger(rslt.getBigDecimal(1));
+                max = toBigInteger(rslt.getBigDecimal(2));
+            } finally {
+                stmt.close();
+            }
+            if (min == null || max == null) {
+                //Empty table or only null keys
+                return null;
+            }
+
+            BigInteger span = max.subtract(min).add(BigInteger.ONE);
+            int count = span.compareTo(BigInteger.valueOf(m_readerCount)) < 0 ? span.intValue() : m_readerCount;
+            if (count < 2) {
+                return null;
+            }
+            BigInteger width = span.add(BigInteger.valueOf(count - 1)).divide(BigInteger.valueOf(count));
+            List<String> conditions = new ArrayList<String>(count);
+            BigInteger lower = min;
+            for (int i = 0; i < count; i++) {
+                BigInteger upper = lower.add(width);
+                if (i == 0) {
+                    conditions.add("(" + column + " < " + upper + " or " + column + " is null)");
+                } else if (i == count - 1) {
+                    conditions.add(column + " >= " + lower);
+                } else {
+                    conditions.add(column + " >= " + lower + " and " + column + " < " + upper);
+                }
+                lower = upper;
+            }
+            m_log.info("Reading " + m_config.jdbctable + " on " + count + " connections by ranges of "
+                    + column + " between " + min + " and " + max);
+            return conditions;
+        } finally {
+            try {conn.close();} catch (Exception ignoreIt) {}
+        }
+    }
+
+    private static BigInteger toBigInteger(java.math.BigDecimal value) {
+        return value == null ? null : value.toBigInteger();
+    }
+
+    private String findPrimaryKeyColumn(DatabaseMetaData dbmd) throws SQLException {
+        //Identifier case depends on the source database
+        for (String table : new String[] { m_config.jdbctable,
+                m_config.jdbctable.toUpperCase(), m_config.jdbctable.toLowerCase() }) {
+            List<String> columns = new ArrayList<String>();
+            ResultSet rslt = dbmd.getPrimaryKeys(null, null, table);
+            try {
+                while (rslt.next()) {
+                    columns.add(rslt.getString("COLUMN_NAME"));
+                }
+            } finally {
+                rslt.close();
+            }
+            if (!columns.isEmpty()) {
+                return columns.size() == 1 ? columns.get(0) : null;
+            }
+        }
+        return null;
+    }
+}
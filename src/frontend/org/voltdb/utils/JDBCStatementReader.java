@@ -48,7 +48,8 @@ import com.google_voltpatches.common.reflect.TypeToken;
 /**
  *
  * This is a single thread reader which feeds the lines after validating syntax
- * to CSVDataLoader.
+ * to CSVDataLoader. It reads the whole source table, or the rows matching a
+ * condition when several readers load ranges of the table in parallel.
  *
  */
 class JDBCStatementReader extends SusceptibleRunnable {
@@ -57,10 +58,15 @@ class JDBCStatementReader extends SusceptibleRunnable {
     static AtomicLong m_totalRowCount = new AtomicLong(0);
     static JDBCLoader.JDBCLoaderConfig m_config = null;
     static Client m_csvClient = null;
-    long m_parsingTime = 0;
+    //Nanoseconds spent converting rows, read by the starting thread after this reader is joined
+    volatile long m_parsingTime = 0;
     private static final VoltLogger m_log = new VoltLogger("JDBCLOADER");
     private final CSVDataLoader m_loader;
     private final BulkLoaderErrorHandler m_errHandler;
+    //Where clause selecting the rows of this reader, null for the whole table
+    private final String m_condition;
+    //Readers of a range leave closing the loader to the reader that started them
+    private final boolean m_closeLoader;
 
     public static void initializeReader(JDBCLoader.JDBCLoaderConfig config, Client csvClient) {
         m_config = config;
@@ -68,15 +74,22 @@ class JDBCStatementReader extends SusceptibleRunnable {
     }
 
     public JDBCStatementReader(CSVDataLoader loader, BulkLoaderErrorHandler errorHandler) {
+        this(loader, errorHandler, null, true);
+    }
+
+    public JDBCStatementReader(CSVDataLoader loader, BulkLoaderErrorHandler errorHandler,
+            String condition, boolean closeLoader) {
         m_loader = loader;
         m_errHandler = errorHandler;
+        m_condition = condition;
+        m_closeLoader = closeLoader;
     }
 
     private void forceClose(Connection conn, PreparedStatement stmt, ResultSet rslt) {
         if (rslt != null) try {rslt.close();} catch (Exception ignoreIt) {}
         if (stmt != null) try {stmt.close();} catch (Exception ignoreIt) {}
         if (conn != null) try {conn.close();} catch (Exception ignoreIt) {}
-        try {m_loader.close();} catch (Exception ignoreIt) {}
+        if (m_closeLoader) try {m_loader.close();} catch (Exception ignoreIt) {}
     }
 
     @Override
@@ -94,13 +107,15 @@ class JDBCStatementReader extends SusceptibleRunnable {
 
         try {
             conn = DriverManager.getConnection(m_config.jdbcurl, m_config.jdbcuser, m_config.jdbcpassword);
+            //Some drivers, such as PostgreSQL's, only honor the fetch size outside of auto commit.
+            try {conn.setAutoCommit(false);} catch (SQLException ignoreIt) {}
             DatabaseMetaData dbmd = conn.getMetaData();
             int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
             if (!dbmd.supportsResultSetType(resultSetType)) {
                 resultSetType = ResultSet.TYPE_SCROLL_INSENSITIVE;
             }
             stmt = conn.prepareStatement(
-                    "select * from " + m_config.jdbctable,
+                    "select * from " + m_config.jdbctable + (m_condition == null ? "" : " where " + m_condition),
                     resultSetType,
                     ResultSet.CONCUR_READ_ONLY
                     );
@@ -151,6 +166,7 @@ class JDBCStatementReader extends SusceptibleRunnable {
                 lineData = new RowWithMetaData(new String[1], rownum);
 
                 try {
+                    long parseStart = System.nanoTime();
                     for (int i = 0; i < columnCount; ++i) {
                         columnValues[i] = acceptors[i].convert();
                         stringValues[i] = acceptors[i].format(columnValues[i]);
@@ -159,6 +175,7 @@ class JDBCStatementReader extends SusceptibleRunnable {
                     csw.writeNext(stringValues);
                     ((String[])lineData.rawLine)[0] = sb.toString();
                     sb.setLength(0);
+                    m_parsingTime += System.nanoTime() - parseStart;
 
                     m_loader.insertRow(lineData, columnValues);
 
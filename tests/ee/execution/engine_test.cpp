@@ -73,6 +73,8 @@
 #include <cstdlib>
 #include <ctime>
 #include <unistd.h>
+#include <sys/time.h>
+#include <vector>
 #include <boost/shared_ptr.hpp>
 
 #define NUM_OF_COLUMNS 4
@@ -392,6 +394,10 @@ public:
     }
 
 protected:
+    std::vector<int32_t> executeBatch(std::vector<fragmentId_t> &fragmentIds,
+                                      std::vector<int32_t> &runLengths,
+                                      int64_t txnId);
+
     voltdb::PersistentTable* m_partitioned_customer_table;
     int m_partitioned_customer_table_id;
 
@@ -586,6 +592,136 @@ TEST_F(ExecutionEngineTest, Execute_PlanFragmentInfo) {
     }
 }
 
+/*
+ * Run a read only batch of fragments, all without parameters, and
+ * return the row count of each fragment's result.  With run lengths the
+ * batch is given as runs, each fragment id once with the number of times
+ * it runs, otherwise every fragment id runs once.  Each fragment's result
+ * is a dependency count, a dependency id and a table, after a batch
+ * header of a length and a dirty byte.
+ */
+std::vector<int32_t> ExecutionEngineTest::executeBatch(std::vector<fragmentId_t> &fragmentIds,
+                                                       std::vector<int32_t> &runLengths,
+                                                       int64_t txnId) {
+    char *parameterBuffer = m_parameter_buffer.get();
+    char *resultBuffer = m_result_buffer.get();
+    voltdb::VoltDBEngine *engine = m_engine.get();
+    memset(parameterBuffer, 0, 4 * 1024);
+    voltdb::ReferenceSerializeInputBE emptyParams(parameterBuffer, 4 * 1024);
+    engine->resetReusedResultOutputBuffer();
+    int failures;
+    size_t numResults = 0;
+    if (runLengths.empty()) {
+        numResults = fragmentIds.size();
+        failures = engine->executePlanFragments(static_cast<int32_t>(fragmentIds.size()),
+                                                &fragmentIds[0], NULL, emptyParams,
+                                                txnId, txnId, txnId - 1, txnId, INT64_MAX);
+    }
+    else {
+        for (size_t run = 0; run < runLengths.size(); run += 1) {
+            numResults += runLengths[run];
+        }
+        failures = engine->executeRepeatedPlanFragments(static_cast<int32_t>(fragmentIds.size()),
+                                                        &fragmentIds[0], &runLengths[0], emptyParams,
+                                                        txnId, txnId, txnId - 1, txnId, INT64_MAX);
+    }
+    EXPECT_EQ(0, failures);
+
+    std::vector<int32_t> rowCounts;
+    size_t resultSize = engine->getResultsSize();
+    voltdb::ReferenceSerializeInputBE results(resultBuffer, resultSize);
+    results.readInt();
+    results.readByte();
+    for (size_t idx = 0; idx < numResults; idx += 1) {
+        // loadTableFrom skips a length and a status byte ahead of the
+        // dependency count, so start it five bytes before this result.
+        const char *start = results.getRawPointer() - 5;
+        EXPECT_EQ(1, results.readInt());
+        results.readInt();
+        int32_t tableSize = results.readInt();
+        results.getRawPointer(tableSize);
+
+        boost::scoped_ptr<voltdb::TempTable> result(voltdb::loadTableFrom(start, 5 + 12 + tableSize));
+        voltdb::TableTuple tuple(result->schema());
+        boost::scoped_ptr<voltdb::TableIterator> iter(result->makeIterator());
+        int32_t count;
+        for (count = 0; iter->next(tuple); count += 1) {
+            int64_t v0 = voltdb::ValuePeeker::peekAsBigInt(tuple.getNValue(0));
+            int64_t v1 = voltdb::ValuePeeker::peekAsBigInt(tuple.getNValue(1));
+            EXPECT_EQ(2*v0, v1);
+        }
+        rowCounts.push_back(count);
+    }
+    EXPECT_EQ(resultSize, static_cast<size_t>(results.getRawPointer() - resultBuffer));
+    return rowCounts;
+}
+
+/*
+ * A run of the same fragment is looked up once and executed for each of
+ * its parameter sets.  Every execution of a run, including runs of a
+ * fragment that came before, must still produce its own full result.
+ */
+TEST_F(ExecutionEngineTest, RepeatedFragmentBatch) {
+    initialize(catalog_string, random_seed);
+    m_topend->addPlan(100, plan);
+    m_topend->addPlan(101, plan);
+
+    std::vector<fragmentId_t> single(1, 100);
+    std::vector<int32_t> once;
+    std::vector<int32_t> expected = executeBatch(single, once, 1000);
+    ASSERT_EQ(1, static_cast<int>(expected.size()));
+    ASSERT_EQ(NUM_OF_TUPLES, expected[0]);
+
+    fragmentId_t ids[] = { 100, 101, 100, 101 };
+    int32_t lengths[] = { 3, 1, 2, 2 };
+    std::vector<fragmentId_t> runs(ids, ids + sizeof(ids) / sizeof(ids[0]));
+    std::vector<int32_t> runLengths(lengths, lengths + sizeof(lengths) / sizeof(lengths[0]));
+    std::vector<int32_t> counts = executeBatch(runs, runLengths, 1001);
+    ASSERT_EQ(8, static_cast<int>(counts.size()));
+    for (size_t idx = 0; idx < counts.size(); idx += 1) {
+        EXPECT_EQ(expected[0], counts[idx]);
+    }
+}
+
+/*
+ * Measures a batch of the same fragment given as one run against the
+ * same batch with the fragment id repeated for every entry, which looks
+ * the plan up for every entry.  It only reports the times, set
+ * print_timings to see them.
+ */
+TEST_F(ExecutionEngineTest, RepeatedFragmentBatchTiming) {
+    const bool print_timings = false;
+    const int BATCH_SIZE = 1000;
+    const int ITERATIONS = 100;
+    initialize(catalog_string, random_seed);
+    m_topend->addPlan(100, plan);
+
+    std::vector<fragmentId_t> run(1, 100);
+    std::vector<int32_t> runLength(1, BATCH_SIZE);
+    std::vector<fragmentId_t> repeated(BATCH_SIZE, 100);
+    std::vector<int32_t> noRuns;
+
+    int64_t txnId = 2000;
+    double elapsed[2] = { 0, 0 };
+    std::vector<fragmentId_t> *batches[2] = { &run, &repeated };
+    std::vector<int32_t> *lengths[2] = { &runLength, &noRuns };
+    for (int iteration = 0; iteration < ITERATIONS; iteration += 1) {
+        for (int which = 0; which < 2; which += 1) {
+            timeval start, end;
+            gettimeofday(&start, NULL);
+            std::vector<int32_t> counts = executeBatch(*batches[which], *lengths[which],
+                                                                    txnId++);
+            gettimeofday(&end, NULL);
+            ASSERT_EQ(BATCH_SIZE, static_cast<int>(counts.size()));
+            elapsed[which] += (end.tv_sec - start.tv_sec) * 1000000.0 + (end.tv_usec - start.tv_usec);
+        }
+    }
+    if (print_timings) {
+        printf("One run of the fragment:    %.3f us per fragment\n", elapsed[0] / (ITERATIONS * BATCH_SIZE));
+        printf("Fragment id per entry:      %.3f us per fragment\n", elapsed[1] / (ITERATIONS * BATCH_SIZE));
+    }
+}
+
 int main() {
      return TestSuite::globalInstance()->runAll();
 }
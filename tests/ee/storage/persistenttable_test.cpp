@@ -21,6 +21,7 @@
  * OTHER DEALINGS IN THE SOFTWARE.
  */
 
+#include <cstring>
 #include <vector>
 #include <string>
 
@@ -34,16 +35,19 @@
 #include "common/TupleSchemaBuilder.h"
 #include "common/ValueFactory.hpp"
 #include "execution/VoltDBEngine.h"
+#include "indexes/tableindex.h"
 #include "storage/table.h"
 #include "storage/persistenttable.h"
 #include "storage/tablefactory.h"
 #include "storage/tableutil.h"
 
 using voltdb::ExecutorContext;
+using voltdb::IndexCursor;
 using voltdb::NValue;
 using voltdb::PersistentTable;
 using voltdb::Table;
 using voltdb::TableFactory;
+using voltdb::TableIndex;
 using voltdb::TableIterator;
 using voltdb::TableTuple;
 using voltdb::TupleSchemaBuilder;
@@ -166,6 +170,20 @@ protected:
         return payload;
     }
 
+    // The same catalog with DR turned off, for tests that load more rows
+    // than a DR stream without a topend can hold.
+    static std::string catalogPayloadWithoutDR() {
+        std::string payload(catalogPayload());
+        const char* drLines[] = { "set $PREV isActiveActiveDRed true\n",
+                                  "set $PREV isDRed true\n" };
+        for (int i = 0; i < 2; ++i) {
+            size_t pos = payload.find(drLines[i]);
+            assert(pos != std::string::npos);
+            payload.erase(pos, strlen(drLines[i]));
+        }
+        return payload;
+    }
+
 private:
     boost::scoped_ptr<VoltDBEngine> m_engine;
     int64_t m_undoToken;
@@ -312,6 +330,55 @@ TEST_F(PersistentTableTest, TruncateTableTest) {
     ASSERT_EQ(1, table->allocatedBlockCount());
 }
 
+TEST_F(PersistentTableTest, DeferredIndexBuildOverSeveralChunks) {
+    VoltDBEngine* engine = getEngine();
+    engine->loadCatalog(0, catalogPayloadWithoutDR());
+    PersistentTable *table = dynamic_cast<PersistentTable*>(engine->getTable("T"));
+    ASSERT_NE(NULL, table);
+    ASSERT_TRUE(table->deferIndexBuild());
+
+    // More rows than the build hands to the indexes at once, inserted out
+    // of key order so that every chunk holds keys from the whole range.
+    const int64_t rowCount = 600 * 1024;
+    const int64_t stride = 7919;  // a prime that does not divide rowCount
+    voltdb::StandAloneTupleStorage storage(table->schema());
+    TableTuple &srcTuple = const_cast<TableTuple&>(storage.tuple());
+    beginWork();
+    for (int64_t i = 0; i < rowCount; ++i) {
+        srcTuple.setNValue(0, ValueFactory::getBigIntValue((i * stride) % rowCount));
+        srcTuple.setNValue(1, ValueFactory::getNullStringValue());
+        table->insertPersistentTuple(srcTuple, false);
+    }
+    commit();
+
+    TableIndex *pkIndex = table->primaryKeyIndex();
+    ASSERT_NE(NULL, pkIndex);
+    ASSERT_EQ(0, pkIndex->getSize());
+
+    table->buildDeferredIndexes();
+    ASSERT_FALSE(table->isIndexBuildDeferred());
+    ASSERT_EQ(rowCount, pkIndex->getSize());
+
+    // The index returns every key once and in order.
+    IndexCursor cursor(pkIndex->getTupleSchema());
+    pkIndex->moveToEnd(true, cursor);
+    int64_t expected = 0;
+    TableTuple tuple(table->schema());
+    while (!(tuple = pkIndex->nextValue(cursor)).isNullTuple()) {
+        ASSERT_EQ(0, tuple.getNValue(0).compare(ValueFactory::getBigIntValue(expected)));
+        ++expected;
+    }
+    ASSERT_EQ(rowCount, expected);
+
+    // Indexes are maintained again once the build is done.
+    beginWork();
+    srcTuple.setNValue(0, ValueFactory::getBigIntValue(rowCount));
+    table->insertTuple(srcTuple);
+    commit();
+    ASSERT_EQ(rowCount + 1, pkIndex->getSize());
+    ASSERT_TRUE(pkIndex->exists(&srcTuple));
+}
+
 int main() {
     return TestSuite::globalInstance()->runAll();
 }
@@ -560,6 +560,91 @@ TEST_F(CompactingMapTest, RandomUnique) {
     ASSERT_TRUE(volt.verify());
 }
 
+TEST_F(CompactingMapTest, BulkInsert) {
+    srand(0);
+    for (int size = 0; size < 300; size++) {
+        std::vector<int> keys;
+        std::vector<int> values;
+        for (int i = 0; i < size; i++) {
+            keys.push_back(i);
+        }
+        std::random_shuffle(keys.begin(), keys.end());
+        values = keys;
+
+        voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator> volt(true, IntComparator());
+        ASSERT_TRUE(volt.bulkInsert(keys, values) == NULL);
+        ASSERT_TRUE(volt.verify());
+        ASSERT_EQ(size, volt.size());
+
+        voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator>::iterator volti = volt.begin();
+        for (int i = 0; i < size; i++) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_EQ(i, volti.key());
+            ASSERT_EQ(i, volti.value());
+            volti.moveNext();
+        }
+        ASSERT_TRUE(volti.isEnd());
+
+        // The bulk built tree has to keep working with regular inserts and deletes
+        for (int i = 0; i < size; i += 3) {
+            ASSERT_TRUE(volt.erase(i));
+            ASSERT_TRUE(volt.insert(std::pair<int,int>(size + i, size + i)));
+        }
+        ASSERT_TRUE(volt.verify());
+    }
+
+    // Duplicates are kept in their original order in a multimap
+    std::vector<int> multiKeys;
+    std::vector<int> multiValues;
+    for (int i = 0; i < 100; i++) {
+        multiKeys.push_back(i % 7);
+        multiValues.push_back(i);
+    }
+    voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator> multi(false, IntComparator());
+    ASSERT_TRUE(multi.bulkInsert(multiKeys, multiValues) == NULL);
+    ASSERT_TRUE(multi.verify());
+    int lastKey = -1;
+    int lastValue = -1;
+    for (voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator>::iterator volti = multi.begin();
+         !volti.isEnd(); volti.moveNext()) {
+        ASSERT_TRUE(volti.key() >= lastKey);
+        if (volti.key() == lastKey) {
+            ASSERT_TRUE(volti.value() > lastValue);
+        }
+        lastKey = volti.key();
+        lastValue = volti.value();
+    }
+
+    // A collision in a unique map inserts nothing
+    std::vector<int> dupKeys;
+    dupKeys.push_back(5);
+    dupKeys.push_back(3);
+    dupKeys.push_back(5);
+    std::vector<int> dupValues = dupKeys;
+    voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator> unique(true, IntComparator());
+    const int *collision = unique.bulkInsert(dupKeys, dupValues);
+    ASSERT_TRUE(collision != NULL);
+    ASSERT_EQ(5, *collision);
+    ASSERT_EQ(0, unique.size());
+    ASSERT_TRUE(unique.verify());
+}
+
+TEST_F(CompactingMapTest, BulkInsertRank) {
+    std::vector<int> keys;
+    for (int i = 0; i < 1000; i++) {
+        keys.push_back(i);
+    }
+    std::random_shuffle(keys.begin(), keys.end());
+    std::vector<int> values = keys;
+    voltdb::CompactingMap<NormalKeyValuePair<int, int>, IntComparator, true> volt(true, IntComparator());
+    ASSERT_TRUE(volt.bulkInsert(keys, values) == NULL);
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.verifyRank());
+    for (int i = 0; i < 1000; i += 37) {
+        ASSERT_EQ(i + 1, volt.rankAsc(i));
+    }
+}
+
 TEST_F(CompactingMapTest, RandomMulti) {
     const int ITERATIONS  = 1001;
     const int BIGGEST_VAL = 100;
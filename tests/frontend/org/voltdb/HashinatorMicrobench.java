@@ -0,0 +1,131 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Random;
+
+import org.voltdb.TheHashinator.HashinatorType;
+import org.voltdb.client.HashinatorLite;
+import org.voltdb.client.HashinatorLite.HashinatorLiteType;
+
+/**
+ * Measures partition routing throughput of the elastic hashinator, both the
+ * raw token lookup and the full parameter hashing path used by the client
+ * interface and the client library.
+ *
+ * Usage: HashinatorMicrobench [partition counts]
+ */
+public class HashinatorMicrobench {
+
+    static abstract class Runner {
+        public abstract int run(int ii);
+    };
+
+    private static final int VALUE_COUNT = 1 << 16;
+    private static final long DURATION_MS = 2000;
+
+    private static void measure(String name, Runner runner) {
+        // warm up
+        int sink = 0;
+        for (int ii = 0; ii < 1000000; ii++) {
+            sink += runner.run(ii);
+        }
+
+        long count = 0;
+        final long startTime = System.currentTimeMillis();
+        final long stopTime = startTime + DURATION_MS;
+        long now = startTime;
+        while (now < stopTime) {
+            for (int ii = 0; ii < 100000; ii++) {
+                sink += runner.run(ii);
+            }
+            count += 100000;
+            now = System.currentTimeMillis();
+        }
+
+        double time = now - startTime;
+        System.out.println(name + ": " + count + " hashes in " + time + " ms => "
+                + (long) ((count / time) * 1000) + " hashes/sec (" + sink + ")");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] partitionCounts = new int[] { 8, 64 };
+        if (args.length >= 1 && !args[0].equals("${partitions}")) {
+            String[] partitionCountString = args[0].split("\\s+");
+            partitionCounts = new int[partitionCountString.length];
+            for (int i = 0; i < partitionCountString.length; i++) {
+                partitionCounts[i] = Integer.parseInt(partitionCountString[i]);
+            }
+        }
+
+        Random r = new Random(0);
+        final int[] hashes = new int[VALUE_COUNT];
+        final Long[] longs = new Long[VALUE_COUNT];
+        final String[] strings = new String[VALUE_COUNT];
+        for (int ii = 0; ii < VALUE_COUNT; ii++) {
+            hashes[ii] = r.nextInt();
+            longs[ii] = r.nextLong();
+            strings[ii] = Long.toHexString(longs[ii]);
+        }
+        final int mask = VALUE_COUNT - 1;
+
+        for (int partitionCount : partitionCounts) {
+            byte[] config = ElasticHashinator.getConfigureBytes(partitionCount,
+                    ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+            final ElasticHashinator hashinator = (ElasticHashinator) TheHashinator.getHashinator(
+                    HashinatorType.ELASTIC.hashinatorClass, config, false);
+            final HashinatorLite lite = new HashinatorLite(HashinatorLiteType.ELASTIC, config, false);
+            final String suffix = " with " + partitionCount + " partitions";
+
+            measure("ElasticHashinator.partitionForToken" + suffix, new Runner() {
+                @Override
+                public int run(int ii) {
+                    return hashinator.partitionForToken(hashes[ii & mask]);
+                }
+            });
+            measure("ElasticHashinator BIGINT parameter" + suffix, new Runner() {
+                @Override
+                public int run(int ii) {
+                    return hashinator.getHashedPartitionForParameter(VoltType.BIGINT, longs[ii & mask]);
+                }
+            });
+            measure("ElasticHashinator VARCHAR parameter" + suffix, new Runner() {
+                @Override
+                public int run(int ii) {
+                    return hashinator.getHashedPartitionForParameter(VoltType.STRING, strings[ii & mask]);
+                }
+            });
+            measure("HashinatorLite BIGINT parameter" + suffix, new Runner() {
+                @Override
+                public int run(int ii) {
+                    try {
+                        return lite.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), longs[ii & mask]);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+
+/**
+ * Measures the cost of calling the run method of empty procedures through
+ * reflection and through the generated invoker used by ProcedureRunner, without
+ * the client, network and transaction overhead measured by ProcedureCallMicrobench.
+ *
+ * Usage: ProcedureInvokerMicrobench
+ */
+public class ProcedureInvokerMicrobench {
+
+    static abstract class Runner {
+        public abstract int run(int ii) throws Throwable;
+    };
+
+    private static final long DURATION_MS = 2000;
+
+    private static void measure(String name, Runner runner) throws Throwable {
+        // warm up
+        int sink = 0;
+        for (int ii = 0; ii < 1000000; ii++) {
+            sink += runner.run(ii);
+        }
+
+        long count = 0;
+        final long startTime = System.currentTimeMillis();
+        final long stopTime = startTime + DURATION_MS;
+        long now = startTime;
+        while (now < stopTime) {
+            for (int ii = 0; ii < 100000; ii++) {
+                sink += runner.run(ii);
+            }
+            count += 100000;
+            now = System.currentTimeMillis();
+        }
+
+        double time = now - startTime;
+        System.out.println(name + ": " + count + " calls in " + time + " ms => "
+                + (long) ((count / time) * 1000) + " calls/sec (" + sink + ")");
+    }
+
+    private static Method runMethod(Class<?> procClass) {
+        for (Method m : procClass.getDeclaredMethods()) {
+            if (m.getName().equals("run")) {
+                return m;
+            }
+        }
+        throw new RuntimeException("No run method in " + procClass.getName());
+    }
+
+    private static void measureProcedure(String name, Method method, final Object[] params) throws Throwable {
+        final ProcedureInvoker reflective = ProcedureInvoker.createReflective(method);
+        final ProcedureInvoker generated = ProcedureInvoker.create(method);
+
+        measure(name + " via reflection", new Runner() {
+            @Override
+            public int run(int ii) throws Throwable {
+                return ((VoltTable[]) reflective.invoke(null, params)).length;
+            }
+        });
+        measure(name + " via generated invoker", new Runner() {
+            @Override
+            public int run(int ii) throws Throwable {
+                return ((VoltTable[]) generated.invoke(null, params)).length;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Throwable {
+        measureProcedure("EmptyProcedure", runMethod(EmptyProcedure.class), new Object[] { 0L });
+        measureProcedure("MultivariateEmptyProcedure", runMethod(MultivariateEmptyProcedure.class),
+                new Object[] { 0L, 0L, 0L,
+                               "String c_first", "String c_middle",
+                               "String c_last", "String c_street_1",
+                               "String c_street_2", "String d_city",
+                               "String d_state", "String d_zip",
+                               "String c_phone", new Date(), "String c_credit", 0.0,
+                               0.0, 0.0, 0.0, 0L, 0L, "String c_data" });
+    }
+}
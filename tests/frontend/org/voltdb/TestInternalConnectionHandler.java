@@ -0,0 +1,108 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+
+public class TestInternalConnectionHandler extends TestCase
+{
+    private static class RecordingCallback implements ProcedureCallback
+    {
+        final List<ClientResponse> m_responses = new ArrayList<ClientResponse>();
+
+        @Override
+        public void clientCallback(ClientResponse response)
+        {
+            m_responses.add(response);
+        }
+    }
+
+    private static ClientResponse response(byte status)
+    {
+        return new ClientResponseImpl(status, new VoltTable[0], null);
+    }
+
+    @Test
+    public void testPartiallyFailedBatch() throws Exception
+    {
+        RecordingCallback callback = new RecordingCallback();
+        InternalConnectionHandler.BatchCallback batch = new InternalConnectionHandler.BatchCallback(callback, 5);
+
+        // a group of rows succeeds, a single row fails and the last ones succeed after it
+        batch.complete(response(ClientResponse.SUCCESS), 2);
+        batch.clientCallback(response(ClientResponse.GRACEFUL_FAILURE));
+        batch.clientCallback(response(ClientResponse.SUCCESS));
+        assertTrue(callback.m_responses.isEmpty());
+        batch.clientCallback(response(ClientResponse.SUCCESS));
+
+        assertEquals(1, callback.m_responses.size());
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, callback.m_responses.get(0).getStatus());
+    }
+
+    @Test
+    public void testRowsThatNeverRanWin() throws Exception
+    {
+        RecordingCallback callback = new RecordingCallback();
+        InternalConnectionHandler.BatchCallback batch = new InternalConnectionHandler.BatchCallback(callback, 4);
+
+        // a row that never ran is reported even if other rows fail later
+        batch.clientCallback(response(ClientResponse.SUCCESS));
+        batch.failed(ClientResponse.SERVER_UNAVAILABLE, 1);
+        batch.clientCallback(response(ClientResponse.USER_ABORT));
+        batch.failed(ClientResponse.GRACEFUL_FAILURE, 1);
+
+        assertEquals(1, callback.m_responses.size());
+        assertEquals(ClientResponse.SERVER_UNAVAILABLE, callback.m_responses.get(0).getStatus());
+    }
+
+    @Test
+    public void testBatchNotQueued() throws Exception
+    {
+        RecordingCallback callback = new RecordingCallback();
+        InternalConnectionHandler.BatchCallback batch = new InternalConnectionHandler.BatchCallback(callback, 3);
+
+        // no row could be queued, the callback still gets exactly one response
+        batch.failed(ClientResponse.SERVER_UNAVAILABLE, 3);
+        assertEquals(1, callback.m_responses.size());
+        assertEquals(ClientResponse.SERVER_UNAVAILABLE, callback.m_responses.get(0).getStatus());
+    }
+
+    @Test
+    public void testAllRowsSucceed() throws Exception
+    {
+        RecordingCallback callback = new RecordingCallback();
+        InternalConnectionHandler.BatchCallback batch = new InternalConnectionHandler.BatchCallback(callback, 3);
+
+        batch.complete(response(ClientResponse.SUCCESS), 3);
+        assertEquals(1, callback.m_responses.size());
+        assertEquals(ClientResponse.SUCCESS, callback.m_responses.get(0).getStatus());
+    }
+}
@@ -537,4 +537,87 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    private static ByteBuffer serialize(Object... params) throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(params);
+        // trailing bytes that are not part of the parameters
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize() + 3);
+        pset.flattenToBuffer(buf);
+        buf.put(new byte[] { 1, 2, 3 });
+        buf.flip();
+        return buf;
+    }
+
+    public void testPassThroughSize() throws IOException {
+        final byte[] types = new byte[] {
+                VoltType.BIGINT.getValue(),
+                VoltType.STRING.getValue(),
+                VoltType.VARBINARY.getValue(),
+                VoltType.TIMESTAMP.getValue(),
+                VoltType.FLOAT.getValue(),
+                VoltType.INTEGER.getValue() };
+        final Object[] values = new Object[] {
+                5L, "foo", new byte[] { 'b', 'a', 'r' }, new TimestampType(1000), 1.5, 7 };
+
+        ByteBuffer buf = serialize(values);
+        final int size = ParameterSet.fromArrayNoCopy(values).getSerializedSize();
+        assertEquals(size, ParameterSet.getPassThroughSize(buf.duplicate(), types));
+
+        // the EE widens narrower integer types
+        buf = serialize(5, "foo", new byte[0], new TimestampType(1000), 1.5, (short) 7);
+        assertTrue(ParameterSet.getPassThroughSize(buf.duplicate(), types) > 0);
+        buf = serialize((byte) 5, "foo", new byte[0], new TimestampType(1000), 1.5, VoltType.NULL_TINYINT);
+        assertTrue(ParameterSet.getPassThroughSize(buf.duplicate(), types) > 0);
+
+        // wider integer types need a range check
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, "foo", new byte[0], new TimestampType(1000), 1.5, 7L), types));
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, (short) 1), new byte[] { VoltType.BIGINT.getValue(), VoltType.TINYINT.getValue() }));
+
+        // null strings have the string type
+        buf = serialize(5L, VoltType.NULL_STRING_OR_VARBINARY, new byte[0], new TimestampType(1000), 1.5, 7);
+        assertTrue(ParameterSet.getPassThroughSize(buf.duplicate(), types) > 0);
+
+        // anything that needs converting goes the usual way
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize("5", "foo", new byte[0], new TimestampType(1000), 1.5, 7), types));
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, null, new byte[0], new TimestampType(1000), 1.5, 7), types));
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, "foo", new byte[0], new TimestampType(1000), 1, 7), types));
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, "foo", new byte[0], new TimestampType(1000), 1.5, new int[] { 7 }), types));
+        assertEquals(-1, ParameterSet.getPassThroughSize(
+                serialize(5L, "foo", new byte[0], new TimestampType(1000), 1.5), types));
+
+        // truncated parameters
+        buf = serialize(values);
+        buf.limit(size - 1);
+        assertEquals(-1, ParameterSet.getPassThroughSize(buf, types));
+    }
+
+    public void testInvocationPassThroughParams() throws IOException {
+        final byte[] types = new byte[] { VoltType.BIGINT.getValue(), VoltType.STRING.getValue() };
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("proc");
+        invocation.setParams(5L, "foo");
+        // parameters that were never serialized
+        assertNull(invocation.getPassThroughParams(types));
+
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(5L, "foo");
+        ByteBuffer expected = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(expected);
+        expected.flip();
+
+        ByteBuffer serialized = serialize(5L, "foo");
+        serialized.position(0);
+        invocation.setSerializedParams(serialized);
+        ByteBuffer params = invocation.getPassThroughParams(types);
+        assertEquals(0, params.position());
+        assertEquals(expected, params);
+        // a fresh view every time
+        assertEquals(expected, invocation.getPassThroughParams(types));
+        assertNull(invocation.getPassThroughParams(new byte[] { VoltType.STRING.getValue() }));
+    }
 }
@@ -0,0 +1,112 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * Checks that the generated procedure invoker passes typed parameters and
+ * return values the same way as reflection.
+ */
+public class TestProcedureInvoker extends TestCase {
+
+    public static class TypedProcedure extends VoltProcedure {
+        public long run(long l, int i, short s, byte b, double d, String str, long[] ls, byte[][] bs) {
+            return l + i + s + b + (long) d + str.length() + ls.length + bs.length;
+        }
+    }
+
+    public static class VoidProcedure extends VoltProcedure {
+        public static int m_calls = 0;
+        public void run() {
+            m_calls++;
+        }
+    }
+
+    public static class ThrowingProcedure extends VoltProcedure {
+        public VoltTable[] run(String message) {
+            throw new VoltAbortException(message);
+        }
+    }
+
+    private static Method runMethod(Class<?> procClass) {
+        for (Method m : procClass.getDeclaredMethods()) {
+            if (m.getName().equals("run")) {
+                return m;
+            }
+        }
+        throw new RuntimeException("No run method in " + procClass.getName());
+    }
+
+    // A failed generation falls back to reflection silently, which would pass
+    // every other check here.
+    private static void assertGenerated(ProcedureInvoker invoker, Class<?> procClass) {
+        assertTrue(ProcedureInvoker.CODEGEN_ENABLED);
+        assertTrue(invoker.getClass().getName(),
+                invoker.getClass().getName().startsWith(procClass.getName() + "$$VoltInvoker"));
+        assertSame(procClass.getClassLoader(), invoker.getClass().getClassLoader());
+    }
+
+    @Test
+    public void testTypedParameters() throws Throwable {
+        Method method = runMethod(TypedProcedure.class);
+        ProcedureInvoker invoker = ProcedureInvoker.forMethod(method);
+        assertGenerated(invoker, TypedProcedure.class);
+        assertSame(invoker, ProcedureInvoker.forMethod(method));
+
+        Object[] params = new Object[] { 1L, 2, (short) 3, (byte) 4, 5.0, "abc", new long[2], new byte[3][] };
+        Object expected = ProcedureInvoker.createReflective(method).invoke(new TypedProcedure(), params);
+        assertEquals(23L, expected);
+        assertEquals(expected, invoker.invoke(new TypedProcedure(), params));
+    }
+
+    @Test
+    public void testVoidReturn() throws Throwable {
+        ProcedureInvoker invoker = ProcedureInvoker.forMethod(runMethod(VoidProcedure.class));
+        assertGenerated(invoker, VoidProcedure.class);
+        int calls = VoidProcedure.m_calls;
+        assertNull(invoker.invoke(new VoidProcedure(), new Object[0]));
+        assertEquals(calls + 1, VoidProcedure.m_calls);
+    }
+
+    @Test
+    public void testExceptionsAreNotWrapped() throws Throwable {
+        Method method = runMethod(ThrowingProcedure.class);
+        assertGenerated(ProcedureInvoker.forMethod(method), ThrowingProcedure.class);
+        for (ProcedureInvoker invoker : new ProcedureInvoker[] {
+                ProcedureInvoker.forMethod(method), ProcedureInvoker.createReflective(method) }) {
+            try {
+                invoker.invoke(new ThrowingProcedure(), new Object[] { "boom" });
+                fail();
+            } catch (VoltProcedure.VoltAbortException e) {
+                assertEquals("boom", e.getMessage());
+            }
+        }
+    }
+}
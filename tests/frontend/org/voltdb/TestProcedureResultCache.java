@@ -0,0 +1,123 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestProcedureResultCache extends TestCase
+{
+    private static VoltTable getStats(ProcedureResultCache cache, boolean interval)
+    {
+        ArrayList<ColumnInfo> columns = cache.getColumnSchema();
+        VoltTable table = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        for (Object[] row : cache.getStatsRows(interval, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static ByteBuffer params(Object... params) throws Exception
+    {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(params);
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+        return buf;
+    }
+
+    private static VoltTable[] results(long value)
+    {
+        VoltTable table = new VoltTable(new ColumnInfo("C", VoltType.BIGINT));
+        table.addRow(value);
+        return new VoltTable[] { table };
+    }
+
+    @Test
+    public void testHitUntilTablesChange() throws Exception
+    {
+        ProcedureResultCache cache = new ProcedureResultCache(0, 0, "P", new long[] { 1, 2 }, 10);
+        assertEquals(0, getStats(cache, false).getRowCount());
+
+        assertNull(cache.get(params(1L, "a"), new long[] { 5, 7 }));
+        VoltTable[] results = results(1);
+        cache.put(params(1L, "a"), new long[] { 5, 7 }, results);
+        assertSame(results, cache.get(params(1L, "a"), new long[] { 5, 7 }));
+        assertNull(cache.get(params(2L, "a"), new long[] { 5, 7 }));
+
+        // a write to either table invalidates the entry
+        assertNull(cache.get(params(1L, "a"), new long[] { 5, 8 }));
+        assertEquals(0, cache.size());
+
+        VoltTable stats = getStats(cache, false);
+        assertTrue(stats.advanceRow());
+        assertEquals("P", stats.getString("PROCEDURE"));
+        assertEquals(1, stats.getLong("HITS"));
+        assertEquals(3, stats.getLong("MISSES"));
+        assertEquals(1, stats.getLong("INVALIDATIONS"));
+        assertEquals(0.25, stats.getDouble("HIT_RATE"), 0.001);
+
+        getStats(cache, true);
+        assertEquals(0, getStats(cache, true).getRowCount());
+    }
+
+    @Test
+    public void testKeyIsCopied() throws Exception
+    {
+        ProcedureResultCache cache = new ProcedureResultCache(0, 0, "P", new long[] { 1 }, 10);
+        ByteBuffer key = params(1L);
+        cache.put(key, new long[] { 1 }, results(1));
+        key.put(key.limit() - 1, (byte) 2);
+        assertNull(cache.get(key, new long[] { 1 }));
+        assertNotNull(cache.get(params(1L), new long[] { 1 }));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception
+    {
+        ProcedureResultCache cache = new ProcedureResultCache(0, 0, "P", new long[] { 1 }, 2);
+        final long[] versions = new long[] { 3 };
+        cache.put(params(1L), versions, results(1));
+        cache.put(params(2L), versions, results(2));
+        assertNotNull(cache.get(params(1L), versions));
+        cache.put(params(3L), versions, results(3));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(params(1L), versions));
+        assertNull(cache.get(params(2L), versions));
+        assertNotNull(cache.get(params(3L), versions));
+    }
+
+    @Test
+    public void testUnversionedTableIsNotCached() throws Exception
+    {
+        ProcedureResultCache cache = new ProcedureResultCache(0, 0, "P", new long[] { 1, 2 }, 10);
+        cache.put(params(1L), new long[] { 3, -1 }, results(1));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,128 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltcore.utils.Bits;
+
+/**
+ * Checks that the lookup table routes every hash to the same partition as
+ * a binary search of the token ring.
+ */
+public class TestHashRingLookupTable extends TestCase {
+    Random r = new Random();
+
+    private static long allocateRing(int tokens[], int partitions[]) {
+        long ptr = Bits.unsafe.allocateMemory(8L * tokens.length);
+        for (int ii = 0; ii < tokens.length; ii++) {
+            Bits.unsafe.putInt(ptr + (8L * ii), tokens[ii]);
+            Bits.unsafe.putInt(ptr + (8L * ii) + 4, partitions[ii]);
+        }
+        return ptr;
+    }
+
+    private static int binarySearchPartition(int tokens[], int partitions[], int hash) {
+        int min = 0;
+        int max = tokens.length - 1;
+        while (min <= max) {
+            int mid = (min + max) >>> 1;
+            if (tokens[mid] < hash) {
+                min = mid + 1;
+            } else if (tokens[mid] > hash) {
+                max = mid - 1;
+            } else {
+                return partitions[mid];
+            }
+        }
+        return partitions[min == 0 ? tokens.length - 1 : min - 1];
+    }
+
+    private void checkRing(int tokens[], int bits) {
+        int partitions[] = new int[tokens.length];
+        for (int ii = 0; ii < partitions.length; ii++) {
+            partitions[ii] = r.nextInt(64);
+        }
+        long ptr = allocateRing(tokens, partitions);
+        try {
+            HashRingLookupTable table = new HashRingLookupTable(ptr, tokens.length, bits);
+            // every token boundary and its neighbours
+            for (int token : tokens) {
+                for (int hash : new int[] { token - 1, token, token + 1 }) {
+                    assertEquals(binarySearchPartition(tokens, partitions, hash), table.partitionForToken(hash));
+                }
+            }
+            for (int hash : new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1 }) {
+                assertEquals(binarySearchPartition(tokens, partitions, hash), table.partitionForToken(hash));
+            }
+            for (int ii = 0; ii < 100000; ii++) {
+                int hash = r.nextInt();
+                assertEquals(binarySearchPartition(tokens, partitions, hash), table.partitionForToken(hash));
+            }
+        } finally {
+            Bits.unsafe.freeMemory(ptr);
+        }
+    }
+
+    private int[] randomTokens(int count, boolean startAtMin) {
+        int tokens[] = new int[count];
+        for (int ii = 0; ii < count; ii++) {
+            tokens[ii] = r.nextInt();
+        }
+        if (startAtMin) {
+            tokens[0] = Integer.MIN_VALUE;
+        }
+        Arrays.sort(tokens);
+        return tokens;
+    }
+
+    @Test
+    public void testEvenlySpacedTokens() {
+        int tokens[] = new int[16384];
+        for (int ii = 0; ii < tokens.length; ii++) {
+            tokens[ii] = Integer.MIN_VALUE + ii * (1 << 18);
+        }
+        checkRing(tokens, HashRingLookupTable.DEFAULT_BITS);
+        checkRing(tokens, 10);
+    }
+
+    @Test
+    public void testRandomTokens() {
+        checkRing(randomTokens(16384, true), HashRingLookupTable.DEFAULT_BITS);
+        checkRing(randomTokens(1000, true), 4);
+        checkRing(randomTokens(3, true), 20);
+    }
+
+    @Test
+    public void testWrapAround() {
+        // hashes below the first token belong to the last token
+        checkRing(randomTokens(100, false), 8);
+        checkRing(new int[] { 0 }, 1);
+        checkRing(new int[] { Integer.MAX_VALUE }, 16);
+    }
+}
@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client.VoltBulkLoader;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+public class TestPerPartitionTable extends TestCase
+{
+    static {
+        // read by PerPartitionTable when the class loads
+        System.setProperty("BULKLOADER_ADAPTIVE_BATCH", "true");
+    }
+
+    private static final long FAST = PerPartitionTable.TARGET_LATENCY_NANOS / 2;
+    private static final long SLOW = PerPartitionTable.TARGET_LATENCY_NANOS * 3;
+
+    private PerPartitionTable m_table;
+
+    private static PerPartitionTable makeTable(int batchSize)
+    {
+        VoltBulkLoader loader = mock(VoltBulkLoader.class);
+        loader.m_colInfo = new VoltTable.ColumnInfo[] { new VoltTable.ColumnInfo("ID", VoltType.BIGINT) };
+        // the client is only used to submit batches
+        return new PerPartitionTable(null, "T", 0, false, loader, batchSize);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        if (m_table != null) {
+            m_table.m_es.shutdownNow();
+            m_table.m_es.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void completeBatches(int count, long latencyNanos)
+    {
+        for (int i = 0; i < count; i++) {
+            m_table.adaptBatchSize(m_table.getBatchSize(), latencyNanos);
+        }
+    }
+
+    @Test
+    public void testGrowth()
+    {
+        m_table = makeTable(100);
+        assertEquals(100, m_table.getBatchSize());
+        completeBatches(1, FAST);
+        assertEquals(125, m_table.getBatchSize());
+
+        // batches that were not full don't grow the size
+        m_table.adaptBatchSize(10, FAST);
+        assertEquals(125, m_table.getBatchSize());
+
+        // and neither do batches within the target latency range
+        m_table.adaptBatchSize(125, PerPartitionTable.TARGET_LATENCY_NANOS * 3 / 2);
+        assertEquals(125, m_table.getBatchSize());
+
+        completeBatches(100, FAST);
+        assertEquals(100 * PerPartitionTable.BATCH_SIZE_RANGE, m_table.getBatchSize());
+    }
+
+    @Test
+    public void testShrink()
+    {
+        m_table = makeTable(100);
+        completeBatches(1, SLOW);
+        assertEquals(50, m_table.getBatchSize());
+
+        completeBatches(100, SLOW);
+        assertEquals(100 / PerPartitionTable.BATCH_SIZE_RANGE, m_table.getBatchSize());
+
+        // a small batch size never reaches 0
+        m_table.m_es.shutdown();
+        m_table = makeTable(4);
+        completeBatches(100, SLOW);
+        assertEquals(1, m_table.getBatchSize());
+    }
+
+    @Test
+    public void testClampWhenSmallerLoaderJoins()
+    {
+        m_table = makeTable(100);
+        completeBatches(100, FAST);
+        assertEquals(800, m_table.getBatchSize());
+
+        // a loader with a larger batch size doesn't change anything
+        assertFalse(m_table.updateMinBatchTriggerSize(200));
+        assertEquals(800, m_table.getBatchSize());
+
+        // a smaller one restarts the adaptation from its size
+        assertTrue(m_table.updateMinBatchTriggerSize(10));
+        assertEquals(10, m_table.m_batchSize);
+        assertEquals(10, m_table.getBatchSize());
+        completeBatches(1, FAST);
+        assertEquals(12, m_table.getBatchSize());
+        completeBatches(100, FAST);
+        assertEquals(10 * PerPartitionTable.BATCH_SIZE_RANGE, m_table.getBatchSize());
+        completeBatches(100, SLOW);
+        assertEquals(1, m_table.getBatchSize());
+
+        // the same size keeps the adapted one
+        assertTrue(m_table.updateMinBatchTriggerSize(10));
+        assertEquals(1, m_table.getBatchSize());
+    }
+}
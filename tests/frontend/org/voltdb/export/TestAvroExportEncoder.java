@@ -0,0 +1,173 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.junit.Test;
+import org.voltdb.VoltType;
+
+import com.google_voltpatches.common.base.Charsets;
+
+public class TestAvroExportEncoder extends TestCase {
+
+    private static final List<String> NAMES = Arrays.asList(
+            "TI", "SI", "I", "BI", "F", "TS", "S", "VB", "D", "P");
+    private static final List<VoltType> TYPES = Arrays.asList(
+            VoltType.TINYINT, VoltType.SMALLINT, VoltType.INTEGER, VoltType.BIGINT,
+            VoltType.FLOAT, VoltType.TIMESTAMP, VoltType.STRING, VoltType.VARBINARY,
+            VoltType.DECIMAL, VoltType.GEOGRAPHY_POINT);
+
+    /**
+     * Serialize a row the way the EE's ExportTupleStream does
+     */
+    private static void writeRow(ByteBuffer buf, Object... values) {
+        final int lengthOffset = buf.position();
+        buf.putInt(0);
+        final int nullArrayOffset = buf.position();
+        final byte nullArray[] = new byte[(values.length + 7) / 8];
+        buf.put(nullArray);
+        for (int ii = 0; ii < values.length; ii++) {
+            final Object value = values[ii];
+            if (value == null) {
+                nullArray[ii >> 3] |= (byte) (0x80 >>> (ii & 7));
+                continue;
+            }
+            switch (TYPES.get(ii)) {
+            case TINYINT: buf.put((Byte) value); break;
+            case SMALLINT: buf.putShort((Short) value); break;
+            case INTEGER: buf.putInt((Integer) value); break;
+            case BIGINT:
+            case TIMESTAMP: buf.putLong((Long) value); break;
+            case FLOAT: buf.putDouble((Double) value); break;
+            case STRING: {
+                byte bytes[] = ((String) value).getBytes(Charsets.UTF_8);
+                buf.putInt(bytes.length);
+                buf.put(bytes);
+                break;
+            }
+            case VARBINARY:
+                buf.putInt(((byte[]) value).length);
+                buf.put((byte[]) value);
+                break;
+            case DECIMAL: {
+                byte unscaled[] = ((BigDecimal) value).setScale(12).unscaledValue().toByteArray();
+                byte bytes[] = new byte[16];
+                Arrays.fill(bytes, unscaled[0] < 0 ? (byte) -1 : 0);
+                System.arraycopy(unscaled, 0, bytes, 16 - unscaled.length, unscaled.length);
+                buf.put((byte) 12);
+                buf.put((byte) 16);
+                buf.put(bytes);
+                break;
+            }
+            case GEOGRAPHY_POINT:
+                buf.putDouble(((double[]) value)[0]);
+                buf.putDouble(((double[]) value)[1]);
+                break;
+            default:
+                fail();
+            }
+        }
+        for (int ii = 0; ii < nullArray.length; ii++) {
+            buf.put(nullArrayOffset + ii, nullArray[ii]);
+        }
+        buf.putInt(lengthOffset, buf.position() - nullArrayOffset);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteBuffer block = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+        writeRow(block, (byte) 1, (short) -2, 3, 4L, 5.5, 6000000L, "seven é", new byte[] { 8, 9 },
+                new BigDecimal("-10.25"), new double[] { 11.5, -12.5 });
+        writeRow(block, null, null, null, null, null, null, null, null, null, null);
+        writeRow(block, Byte.MIN_VALUE, Short.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, -0.0, 0L, "", new byte[0],
+                new BigDecimal("12345678901234567890.123456789012"), null);
+        block.flip();
+
+        AvroExportEncoder encoder = new AvroExportEncoder("T", NAMES, TYPES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, encoder.encode(block, out));
+        assertFalse(block.hasRemaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, block.order());
+
+        GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>(encoder.getSchema());
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(out.toByteArray(), null);
+
+        GenericRecord row = reader.read(null, decoder);
+        assertEquals(1, row.get("TI"));
+        assertEquals(-2, row.get("SI"));
+        assertEquals(3, row.get("I"));
+        assertEquals(4L, row.get("BI"));
+        assertEquals(5.5, row.get("F"));
+        assertEquals(6000000L, row.get("TS"));
+        assertEquals("seven é", row.get("S").toString());
+        assertEquals(ByteBuffer.wrap(new byte[] { 8, 9 }), row.get("VB"));
+        ByteBuffer decimal = (ByteBuffer) row.get("D");
+        byte decimalBytes[] = new byte[decimal.remaining()];
+        decimal.get(decimalBytes);
+        assertEquals(new BigDecimal("-10.25").setScale(12), new BigDecimal(new BigInteger(decimalBytes), 12));
+        GenericRecord point = (GenericRecord) row.get("P");
+        assertEquals(11.5, point.get("LONGITUDE"));
+        assertEquals(-12.5, point.get("LATITUDE"));
+
+        row = reader.read(row, decoder);
+        for (String name : NAMES) {
+            assertNull(row.get(name));
+        }
+
+        row = reader.read(row, decoder);
+        assertEquals((int) Byte.MIN_VALUE, row.get("TI"));
+        assertEquals((int) Short.MAX_VALUE, row.get("SI"));
+        assertEquals(Integer.MIN_VALUE, row.get("I"));
+        assertEquals(Long.MAX_VALUE, row.get("BI"));
+        assertEquals("", row.get("S").toString());
+        decimal = (ByteBuffer) row.get("D");
+        decimalBytes = new byte[decimal.remaining()];
+        decimal.get(decimalBytes);
+        assertEquals(new BigDecimal("12345678901234567890.123456789012"),
+                new BigDecimal(new BigInteger(decimalBytes), 12));
+        assertNull(row.get("P"));
+        assertTrue(decoder.isEnd());
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        try {
+            AvroExportEncoder.schemaFor("T", Arrays.asList("B"), Arrays.asList(VoltType.BOOLEAN));
+            fail();
+        } catch (IllegalArgumentException expected) {}
+    }
+}
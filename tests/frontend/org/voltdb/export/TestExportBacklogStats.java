@@ -0,0 +1,118 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
+import org.voltdb.VoltTable;
+
+public class TestExportBacklogStats extends TestCase {
+
+    private static StreamBlockQueue mockQueue(long written, long read) {
+        StreamBlockQueue queue = mock(StreamBlockQueue.class);
+        when(queue.getDiskBytesWritten()).thenReturn(written);
+        when(queue.getDiskBytesRead()).thenReturn(read);
+        return queue;
+    }
+
+    private static VoltTable getStats(ExportBacklogStats stats) {
+        VoltTable table = new VoltTable(stats.getColumnSchema().toArray(new VoltTable.ColumnInfo[0]));
+        for (Object[] row : stats.getStatsRows(false, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    // total count from AbstractHistogram.toUncompressedBytes(), after the two bounds and the precision
+    private static long histogramCount(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong(8 + 8 + 4);
+    }
+
+    @Test
+    public void testAppendAndRelease() throws Exception {
+        ExportBacklogStats stats = new ExportBacklogStats(7, 3, "S", mockQueue(300, 200));
+        stats.appended(100, 100);
+        stats.appended(250, 150);
+        stats.setBacklogBytes(250);
+        Thread.sleep(5);
+
+        // releasing part of the second block completes only the first
+        stats.released(180, 180);
+        stats.setBacklogBytes(70);
+
+        VoltTable table = getStats(stats);
+        assertEquals(1, table.getRowCount());
+        table.advanceRow();
+        assertEquals(7, table.getLong("GENERATION"));
+        assertEquals(3, table.getLong("PARTITION_ID"));
+        assertEquals("S", table.getString("SOURCE_NAME"));
+        assertEquals(70, table.getLong("BACKLOG_BYTES"));
+        assertEquals(250, table.getLong("BYTES_APPENDED"));
+        assertEquals(180, table.getLong("BYTES_DRAINED"));
+        assertEquals(300, table.getLong("DISK_BYTES_WRITTEN"));
+        assertEquals(200, table.getLong("DISK_BYTES_READ"));
+        assertEquals(250 / ExportBacklogStats.RATE_WINDOW_SECONDS, table.getLong("APPEND_RATE"));
+        assertEquals(180 / ExportBacklogStats.RATE_WINDOW_SECONDS, table.getLong("DRAIN_RATE"));
+        // from append to release, in microseconds
+        assertTrue(table.getLong("ACK_LATENCY_MAX") >= 5000);
+        assertEquals(1, histogramCount(table.getVarbinary("HISTOGRAM")));
+
+        stats.released(250, 70);
+        table = getStats(stats);
+        table.advanceRow();
+        assertEquals(250, table.getLong("BYTES_DRAINED"));
+        assertEquals(2, histogramCount(table.getVarbinary("HISTOGRAM")));
+    }
+
+    @Test
+    public void testOneRowPerRegisteredStream() throws Exception {
+        StatsAgent agent = new StatsAgent();
+        agent.registerStatsSource(StatsSelector.EXPORTBACKLOG, 0,
+                new ExportBacklogStats(1, 0, "S1", mockQueue(0, 0)));
+        agent.registerStatsSource(StatsSelector.EXPORTBACKLOG, 1,
+                new ExportBacklogStats(1, 0, "S2", mockQueue(0, 0)));
+
+        VoltTable table = agent.getStatsAggregate(StatsSelector.EXPORTBACKLOG, false, System.currentTimeMillis());
+        assertEquals(2, table.getRowCount());
+
+        // a closed stream drops out without touching the others
+        agent.deregisterStatsSourcesFor(StatsSelector.EXPORTBACKLOG, 0);
+        table = agent.getStatsAggregate(StatsSelector.EXPORTBACKLOG, false, System.currentTimeMillis());
+        assertEquals(1, table.getRowCount());
+        table.advanceRow();
+        assertEquals("S2", table.getString("SOURCE_NAME"));
+
+        agent.deregisterStatsSourcesFor(StatsSelector.EXPORTBACKLOG, 1);
+        assertNull(agent.getStatsAggregate(StatsSelector.EXPORTBACKLOG, false, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,187 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.MockVoltDB;
+import org.voltdb.StatsSelector;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.io.Files;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestExportDataSource extends TestCase {
+
+    private static final String TABLE_NAME = "TABLE_NAME";
+    // data bytes in each pushed block, after the 8 byte header
+    private static final int BLOCK_SIZE = 20;
+    // polled blocks the master may have awaiting acknowledgement
+    private static final int MAX_INFLIGHT_BLOCKS = 3;
+
+    private MockVoltDB m_mockVoltDB;
+    private File m_overflowDir;
+
+    @Override
+    public void setUp() throws Exception {
+        m_mockVoltDB = new MockVoltDB();
+        m_mockVoltDB.addTable(TABLE_NAME, false);
+        m_mockVoltDB.addColumnToTable(TABLE_NAME, "COL1", VoltType.INTEGER, false, null, VoltType.INTEGER);
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        m_overflowDir = Files.createTempDir();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_mockVoltDB.shutdown(null);
+        VoltFile.recursivelyDelete(m_overflowDir);
+    }
+
+    private ExportDataSource createSource(boolean isMaster) throws Exception {
+        ExportDataSource source = new ExportDataSource(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                },
+                "database", TABLE_NAME, 1, "signature", 1,
+                m_mockVoltDB.getTable(TABLE_NAME).getColumns(), null,
+                m_overflowDir.getPath(), MAX_INFLIGHT_BLOCKS);
+        if (isMaster) {
+            source.setMaster();
+        }
+        return source;
+    }
+
+    private static void pushBlock(ExportDataSource source, long uso) {
+        source.pushExportBuffer(uso, ByteBuffer.allocateDirect(8 + BLOCK_SIZE), false, false);
+    }
+
+    private static ExportDataSource.AckingContainer pollBlock(ExportDataSource source) throws Exception {
+        return (ExportDataSource.AckingContainer) source.poll().get(10, TimeUnit.SECONDS);
+    }
+
+    // bytes released so far, read once the source has run the tasks queued before
+    private long drainedBytes(ExportDataSource source) {
+        source.sizeInBytes();
+        VoltTable stats = m_mockVoltDB.getStatsAgent().getStatsAggregate(
+                StatsSelector.EXPORTBACKLOG, false, System.currentTimeMillis());
+        assertEquals(1, stats.getRowCount());
+        stats.advanceRow();
+        return stats.getLong("BYTES_DRAINED");
+    }
+
+    public void testPollsUpToTheInFlightWindow() throws Exception {
+        ExportDataSource source = createSource(true);
+        for (int ii = 0; ii < 4; ii++) {
+            pushBlock(source, ii * BLOCK_SIZE);
+        }
+
+        ExportDataSource.AckingContainer first = pollBlock(source);
+        ExportDataSource.AckingContainer second = pollBlock(source);
+        ExportDataSource.AckingContainer third = pollBlock(source);
+        assertEquals(BLOCK_SIZE, first.m_uso);
+        assertEquals(2 * BLOCK_SIZE, second.m_uso);
+        assertEquals(3 * BLOCK_SIZE, third.m_uso);
+
+        // the window is full, so the next poll waits for an ack
+        ListenableFuture<BBContainer> fourth = source.poll();
+        assertEquals(0, drainedBytes(source));
+        assertFalse(fourth.isDone());
+
+        // an ack behind an unacked block releases nothing and opens no slot
+        second.discard();
+        assertEquals(0, drainedBytes(source));
+        assertFalse(fourth.isDone());
+
+        // acking the first block releases both and hands out the waiting poll
+        first.discard();
+        assertEquals(2 * BLOCK_SIZE, drainedBytes(source));
+        ExportDataSource.AckingContainer last =
+                (ExportDataSource.AckingContainer) fourth.get(10, TimeUnit.SECONDS);
+        assertEquals(4 * BLOCK_SIZE, last.m_uso);
+
+        third.discard();
+        last.discard();
+        assertEquals(4 * BLOCK_SIZE, drainedBytes(source));
+
+        source.closeAndDelete().get();
+    }
+
+    public void testExternalAckClearsInFlightBlocks() throws Exception {
+        ExportDataSource source = createSource(true);
+        for (int ii = 0; ii < 4; ii++) {
+            pushBlock(source, ii * BLOCK_SIZE);
+        }
+        ExportDataSource.AckingContainer first = pollBlock(source);
+        ExportDataSource.AckingContainer second = pollBlock(source);
+        pollBlock(source);
+        ListenableFuture<BBContainer> fourth = source.poll();
+
+        // an ack from another replica releases the first two blocks
+        source.ack(2 * BLOCK_SIZE, false);
+        assertEquals(2 * BLOCK_SIZE, drainedBytes(source));
+        assertTrue(fourth.isDone());
+
+        // the local acks of those blocks are then ignored
+        second.discard();
+        first.discard();
+        assertEquals(2 * BLOCK_SIZE, drainedBytes(source));
+
+        // the released blocks left the window, so the waiting poll got the last block
+        ExportDataSource.AckingContainer last =
+                (ExportDataSource.AckingContainer) fourth.get(10, TimeUnit.SECONDS);
+        assertEquals(4 * BLOCK_SIZE, last.m_uso);
+
+        source.closeAndDelete().get();
+    }
+
+    public void testReplicaKeepsOneBlockInFlight() throws Exception {
+        ExportDataSource source = createSource(false);
+        for (int ii = 0; ii < 2; ii++) {
+            pushBlock(source, ii * BLOCK_SIZE);
+        }
+
+        // a replica polls from the master's ack point, so it waits for each ack
+        ExportDataSource.AckingContainer first = pollBlock(source);
+        assertEquals(BLOCK_SIZE, first.m_uso);
+        ListenableFuture<BBContainer> second = source.poll();
+        assertEquals(0, drainedBytes(source));
+        assertFalse(second.isDone());
+
+        first.discard();
+        ExportDataSource.AckingContainer last =
+                (ExportDataSource.AckingContainer) second.get(10, TimeUnit.SECONDS);
+        assertEquals(2 * BLOCK_SIZE, last.m_uso);
+
+        source.closeAndDelete().get();
+    }
+}
@@ -0,0 +1,388 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.importclient.kafka;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterServerAdapter;
+import org.voltdb.importer.formatter.ByteBufferFormatter;
+import org.voltdb.importer.formatter.FormatterBuilder;
+
+import kafka.api.FetchRequest;
+import kafka.common.ErrorMapping;
+import kafka.common.TopicAndPartition;
+import kafka.javaapi.FetchResponse;
+import kafka.javaapi.consumer.SimpleConsumer;
+import kafka.javaapi.message.ByteBufferMessageSet;
+import kafka.message.Message;
+
+public class TestKafkaTopicPartitionImporter extends TestCase
+{
+    private static final String TOPIC = "importer_test";
+    private static final int PARTITION = 0;
+    private static final TopicAndPartition TOPIC_PARTITION = new TopicAndPartition(TOPIC, PARTITION);
+    private static final int MESSAGES_PER_FETCH = 2;
+
+    //Partition log of the stubbed broker, messages are "<generation>:<offset>".
+    static class StubbedLog {
+        volatile long m_start = 0;
+        volatile long m_end = 0;
+        volatile int m_generation = 0;
+        volatile long m_lastFetchOffset = -1;
+        final AtomicInteger m_fetches = new AtomicInteger(0);
+
+        FetchResponse fetch(FetchRequest req) {
+            m_fetches.incrementAndGet();
+            final long offset = req.requestInfo().get(TOPIC_PARTITION).get().offset();
+            m_lastFetchOffset = offset;
+            if (offset < m_start || offset > m_end) {
+                return response(ErrorMapping.OffsetOutOfRangeCode(), null);
+            }
+            final long end = Math.min(m_end, offset + MESSAGES_PER_FETCH);
+            ByteBuffer buf = ByteBuffer.allocate(1024);
+            for (long o = offset; o < end; o++) {
+                Message message = new Message((m_generation + ":" + o).getBytes(StandardCharsets.UTF_8));
+                buf.putLong(o);
+                buf.putInt(message.size());
+                buf.put(message.buffer().duplicate());
+            }
+            buf.flip();
+            return response(ErrorMapping.NoError(), new ByteBufferMessageSet(buf));
+        }
+
+        private static FetchResponse response(final short code, final ByteBufferMessageSet messages) {
+            return new FetchResponse(null) {
+                @Override
+                public boolean hasError() {
+                    return code != ErrorMapping.NoError();
+                }
+                @Override
+                public short errorCode(String topic, int partition) {
+                    return code;
+                }
+                @Override
+                public ByteBufferMessageSet messageSet(String topic, int partition) {
+                    return messages;
+                }
+            };
+        }
+    }
+
+    //Importer connected to the stubbed log that records the offsets it commits.
+    static class StubbedImporter extends KafkaTopicPartitionImporter {
+        final StubbedLog m_log;
+        final SimpleConsumer m_consumer;
+        final List<Long> m_commits = new CopyOnWriteArrayList<>();
+        final AtomicInteger m_offsetResets = new AtomicInteger(0);
+        //When set the invoker waits on it after taking messages off the prefetch queue.
+        volatile CountDownLatch m_invokerHold = null;
+        volatile boolean m_invokerHeld = false;
+
+        StubbedImporter(KafkaStreamImporterConfig config, StubbedLog log, SimpleConsumer consumer) {
+            super(config);
+            m_log = log;
+            m_consumer = consumer;
+        }
+
+        @Override
+        SimpleConsumer connectToLeader() {
+            return m_consumer;
+        }
+
+        @Override
+        long findStartingOffset() {
+            m_offsetResets.incrementAndGet();
+            return m_log.m_start;
+        }
+
+        @Override
+        FetchedMessages nextFetched() throws InterruptedException {
+            FetchedMessages fetched = super.nextFetched();
+            CountDownLatch hold = m_invokerHold;
+            if (fetched != null && hold != null) {
+                m_invokerHeld = true;
+                hold.await();
+            }
+            return fetched;
+        }
+
+        @Override
+        boolean sendOffsetCommit(long safe) {
+            m_commits.add(safe);
+            return true;
+        }
+    }
+
+    //One batch of messages the importer invoked the procedure for.
+    static class Call {
+        final List<String> m_messages = new ArrayList<>();
+        final ProcedureCallback m_callback;
+
+        Call(ProcedureCallback callback) {
+            m_callback = callback;
+        }
+
+        void ack() throws Exception {
+            ClientResponse response = mock(ClientResponse.class);
+            when(response.getStatus()).thenReturn(ClientResponse.SUCCESS);
+            m_callback.clientCallback(response);
+        }
+    }
+
+    //Server adapter whose procedure calls wait for the gate to open.
+    static class GatedAdapter implements ImporterServerAdapter {
+        final List<Call> m_calls = new CopyOnWriteArrayList<>();
+        final CountDownLatch m_gate;
+
+        GatedAdapter(boolean open) {
+            m_gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        List<String> invoked() {
+            List<String> messages = new ArrayList<>();
+            for (Call call : m_calls) {
+                messages.addAll(call.m_messages);
+            }
+            return messages;
+        }
+
+        @Override
+        public boolean callProcedure(AbstractImporter importer, String proc, Object... fieldList) {
+            return callProcedure(importer, null, proc, fieldList);
+        }
+
+        @Override
+        public boolean callProcedure(AbstractImporter importer, ProcedureCallback callback, String proc, Object... fieldList) {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(fieldList);
+            return callProcedures(importer, callback, proc, rows) == 1;
+        }
+
+        @Override
+        public int callProcedures(AbstractImporter importer, ProcedureCallback callback, String proc, List<Object[]> rows) {
+            Call call = new Call(callback);
+            for (Object[] row : rows) {
+                call.m_messages.add((String) row[0]);
+            }
+            m_calls.add(call);
+            try {
+                m_gate.await();
+            } catch (InterruptedException e) {
+                return 0;
+            }
+            return rows.size();
+        }
+
+        @Override
+        public void reportFailure(String importerName, String procName, boolean decrementPending) {
+        }
+
+        @Override
+        public void reportQueued(String importerName, String procName) {
+        }
+    }
+
+    private StubbedLog m_log;
+    private SimpleConsumer m_consumer;
+    private GatedAdapter m_adapter;
+    private StubbedImporter m_importer;
+    private Thread m_fetcher;
+
+    private void startImporter(int prefetchDepth, boolean gateOpen, long logEnd) throws Exception {
+        m_log = new StubbedLog();
+        m_log.m_end = logEnd;
+        m_consumer = mock(SimpleConsumer.class);
+        when(m_consumer.fetch(any(FetchRequest.class))).thenAnswer(
+                invocation -> m_log.fetch((FetchRequest) invocation.getArguments()[0]));
+
+        ByteBufferFormatter formatter = payload -> new Object[] {
+                StandardCharsets.UTF_8.decode(payload.duplicate()).toString() };
+        @SuppressWarnings("rawtypes")
+        FormatterBuilder formatterBuilder = mock(FormatterBuilder.class);
+        when(formatterBuilder.createByteBufferFormatter()).thenReturn(formatter);
+        KafkaStreamImporterConfig config = mock(KafkaStreamImporterConfig.class);
+        when(config.getTopic()).thenReturn(TOPIC);
+        when(config.getPartition()).thenReturn(PARTITION);
+        when(config.getProcedure()).thenReturn("TestProc");
+        when(config.getFetchSize()).thenReturn(65536);
+        when(config.getCommitPolicy()).thenReturn(KafkaImporterCommitPolicy.NONE);
+        when(config.getFormatterBuilder()).thenReturn(formatterBuilder);
+        when(config.getResourceID()).thenReturn(new URI("kafka", "test", TOPIC + "/partition/" + PARTITION));
+
+        System.setProperty("KAFKA_IMPORT_PREFETCH_DEPTH", Integer.toString(prefetchDepth));
+        try {
+            m_importer = new StubbedImporter(config, m_log, m_consumer);
+        } finally {
+            System.clearProperty("KAFKA_IMPORT_PREFETCH_DEPTH");
+        }
+        m_adapter = new GatedAdapter(gateOpen);
+        m_importer.setImportServerAdapter(m_adapter);
+        m_fetcher = new Thread(() -> m_importer.accept(), "Test Kafka fetcher");
+        m_fetcher.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (m_importer != null) {
+            m_importer.stopImporter();
+            m_adapter.m_gate.countDown();
+            m_fetcher.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<String> messages(int generation, long from, long to) {
+        List<String> messages = new ArrayList<>();
+        for (long o = from; o < to; o++) {
+            messages.add(generation + ":" + o);
+        }
+        return messages;
+    }
+
+    private boolean invokerAlive() {
+        final String name = m_importer.getTaskThreadName() + " - Invoker";
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testPrefetchDepthAppliesBackpressure() throws Exception {
+        startImporter(2, false, 40);
+
+        //One fetch is being invoked, two are queued and the fetcher holds the next one.
+        waitFor("the fetcher to fill the queue", () -> m_log.m_fetches.get() == 4);
+        Thread.sleep(300);
+        assertEquals(4, m_log.m_fetches.get());
+        assertEquals(1, m_adapter.m_calls.size());
+        assertEquals(messages(0, 0, 2), m_adapter.invoked());
+
+        m_adapter.m_gate.countDown();
+        waitFor("all messages to be invoked", () -> m_adapter.invoked().size() == 40);
+        assertEquals(messages(0, 0, 40), m_adapter.invoked());
+    }
+
+    @Test
+    public void testStalePrefetchedMessagesDroppedAfterReset() throws Exception {
+        startImporter(4, false, 8);
+        waitFor("the fetcher to reach the end of the log", () -> m_log.m_fetches.get() >= 5);
+        assertEquals(messages(0, 0, 2), m_adapter.invoked());
+
+        //The invoker takes the next prefetched messages, from 2 to 3, and waits with them.
+        m_importer.m_invokerHold = new CountDownLatch(1);
+        m_adapter.m_gate.countDown();
+        waitFor("the invoker to take prefetched messages", () -> m_importer.m_invokerHeld);
+
+        //The log is truncated to 2 and rewritten, what was prefetched from 2 on is stale.
+        m_log.m_start = 2;
+        m_log.m_generation = 1;
+        m_log.m_end = 2;
+        waitFor("the fetch offset to be reset", () -> m_log.m_lastFetchOffset == 2);
+        assertEquals(2, m_importer.m_offsetResets.get());
+        m_log.m_end = 12;
+        CountDownLatch hold = m_importer.m_invokerHold;
+        m_importer.m_invokerHold = null;
+        hold.countDown();
+        waitFor("the rewritten messages to be invoked", () -> m_adapter.invoked().contains("1:11"));
+
+        List<String> expected = messages(0, 0, 2);
+        expected.addAll(messages(1, 2, 12));
+        assertEquals(expected, m_adapter.invoked());
+    }
+
+    @Test
+    public void testCommitStopsAtUnackedMessages() throws Exception {
+        startImporter(4, true, 6);
+        waitFor("all messages to be invoked", () -> m_adapter.invoked().size() == 6);
+        assertEquals(3, m_adapter.m_calls.size());
+
+        //Later batches are done but the first one is not.
+        m_adapter.m_calls.get(2).ack();
+        m_adapter.m_calls.get(1).ack();
+        Thread.sleep(300);
+        assertTrue(m_importer.m_commits.toString(), m_importer.m_commits.isEmpty());
+
+        m_adapter.m_calls.get(0).ack();
+        waitFor("the offsets to be committed", () -> m_importer.m_commits.contains(6L));
+
+        m_importer.stopImporter();
+        m_fetcher.join(TimeUnit.SECONDS.toMillis(30));
+        long last = 0;
+        for (long committed : m_importer.m_commits) {
+            assertTrue(m_importer.m_commits.toString(), committed > last && committed <= 6);
+            last = committed;
+        }
+    }
+
+    @Test
+    public void testStopEndsFetcherAndInvoker() throws Exception {
+        startImporter(2, false, 40);
+        waitFor("the fetcher to fill the queue", () -> m_log.m_fetches.get() == 4);
+        assertTrue(invokerAlive());
+
+        m_importer.stopImporter();
+        m_adapter.m_gate.countDown();
+        m_fetcher.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(m_fetcher.isAlive());
+        assertFalse(invokerAlive());
+
+        //Nothing queued was invoked once stopped and the consumer was closed.
+        assertEquals(messages(0, 0, 2), m_adapter.invoked());
+        assertEquals(4, m_log.m_fetches.get());
+        verify(m_consumer, atLeastOnce()).close();
+    }
+}
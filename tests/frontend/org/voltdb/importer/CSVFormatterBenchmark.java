@@ -0,0 +1,130 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.importer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Random;
+
+import org.voltdb.importer.formatter.builtin.CSVRow;
+import org.voltdb.importer.formatter.builtin.VoltCSVByteBufferFormatter;
+import org.voltdb.importer.formatter.builtin.VoltCSVFormatter;
+
+/**
+ * Measures the throughput and allocation rate of the importer CSV formatters on
+ * records as they arrive from Kafka, comparing the String based formatter with
+ * the typed formatter that parses the record bytes.
+ *
+ * Usage: CSVFormatterBenchmark [duration in seconds]
+ */
+public class CSVFormatterBenchmark {
+
+    static abstract class Runner {
+        public abstract int run(ByteBuffer record);
+    };
+
+    private static final int RECORD_COUNT = 1 << 12;
+    private static final String COLUMN_TYPES = "bigint,integer,float,varchar,timestamp,decimal";
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void measure(String name, ByteBuffer[] records, long durationMs, Runner runner) {
+        // warm up
+        int sink = 0;
+        for (int ii = 0; ii < 1000000; ii++) {
+            sink += runner.run(records[ii & (RECORD_COUNT - 1)]);
+        }
+
+        long count = 0;
+        final long startBytes = allocatedBytes();
+        final long startTime = System.currentTimeMillis();
+        final long stopTime = startTime + durationMs;
+        long now = startTime;
+        while (now < stopTime) {
+            for (int ii = 0; ii < 100000; ii++) {
+                sink += runner.run(records[ii & (RECORD_COUNT - 1)]);
+            }
+            count += 100000;
+            now = System.currentTimeMillis();
+        }
+        final long bytes = allocatedBytes() - startBytes;
+
+        double time = now - startTime;
+        System.out.println(name + ": " + count + " records in " + time + " ms => "
+                + (long) ((count / time) * 1000) + " records/sec, "
+                + (bytes / count) + " bytes allocated/record (" + sink + ")");
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMs = 5000;
+        if (args.length >= 1) {
+            durationMs = Long.parseLong(args[0]) * 1000;
+        }
+
+        Random r = new Random(0);
+        final ByteBuffer[] records = new ByteBuffer[RECORD_COUNT];
+        for (int ii = 0; ii < RECORD_COUNT; ii++) {
+            String record = r.nextLong() + "," + r.nextInt() + "," + (r.nextInt(10000000) / 100.0) + ",\"name " + ii
+                    + "\",2016-03-01 12:34:" + String.format("%02d", r.nextInt(60)) + ".123456,"
+                    + r.nextInt(1000000) + "." + r.nextInt(1000);
+            records[ii] = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final VoltCSVFormatter stringFormatter = new VoltCSVFormatter("csv", new Properties());
+        Properties props = new Properties();
+        props.setProperty("columntypes", COLUMN_TYPES);
+        final VoltCSVByteBufferFormatter bufferFormatter = new VoltCSVByteBufferFormatter("csv", props);
+        final CSVRow row = new CSVRow(bufferFormatter.getColumnTypes());
+
+        measure("VoltCSVFormatter.transform", records, durationMs, new Runner() {
+            @Override
+            public int run(ByteBuffer record) {
+                String line = new String(record.array(), record.arrayOffset(), record.limit(), StandardCharsets.UTF_8);
+                return stringFormatter.transform(line).length;
+            }
+        });
+        measure("VoltCSVByteBufferFormatter.transform", records, durationMs, new Runner() {
+            @Override
+            public int run(ByteBuffer record) {
+                return bufferFormatter.transform(record).length;
+            }
+        });
+        measure("VoltCSVByteBufferFormatter.parse", records, durationMs, new Runner() {
+            @Override
+            public int run(ByteBuffer record) {
+                bufferFormatter.parse(record, row);
+                return (int) row.getLong(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.importer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.importer.formatter.ByteBufferFormatter;
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.Formatter;
+import org.voltdb.importer.formatter.builtin.CSVRow;
+import org.voltdb.importer.formatter.builtin.VoltCSVByteBufferFormatter;
+import org.voltdb.importer.formatter.builtin.VoltCSVFormatterFactory;
+import org.voltdb.types.TimestampType;
+
+public class TestVoltCSVByteBufferFormatter extends TestCase {
+
+    private static VoltCSVByteBufferFormatter create(String format, String types) {
+        Properties props = new Properties();
+        props.setProperty("columntypes", types);
+        return new VoltCSVByteBufferFormatter(format, props);
+    }
+
+    private static ByteBuffer bytes(String record) {
+        return ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        VoltCSVByteBufferFormatter formatter = create("csv",
+                "tinyint,smallint,integer,bigint,float,decimal,varchar,varbinary,timestamp");
+        Object[] results = formatter.transform(bytes(
+                "-12,300,70000,-9223372036854775808,10.05,-1234567890123.000000000001,test,0aFF,2016-03-01 12:34:56.789012\n"));
+        assertEquals(9, results.length);
+        assertEquals((byte) -12, results[0]);
+        assertEquals((short) 300, results[1]);
+        assertEquals(70000, results[2]);
+        assertEquals(Long.MIN_VALUE, results[3]);
+        assertEquals(10.05, results[4]);
+        assertEquals(new BigDecimal("-1234567890123.000000000001"), results[5]);
+        assertEquals("test", results[6]);
+        assertEquals(2, ((byte[]) results[7]).length);
+        assertEquals((byte) 0x0a, ((byte[]) results[7])[0]);
+        assertEquals((byte) 0xff, ((byte[]) results[7])[1]);
+        // 2016-03-01 is 16861 days after the epoch
+        assertEquals(new TimestampType(((16861L * 86400L) + (12 * 3600) + (34 * 60) + 56) * 1000000L + 789012),
+                     results[8]);
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        VoltCSVByteBufferFormatter formatter = create("csv", "float");
+        for (String value : new String[] { "0", "-0.5", "1e10", "1.7976931348623157E308", "4.9E-324",
+                                           "123456789012345678901234", "0.1", "3.141592653589793", "NaN" }) {
+            assertEquals(value, Double.parseDouble(value), formatter.transform(bytes(value))[0]);
+        }
+    }
+
+    @Test
+    public void testQuotesAndNulls() throws Exception {
+        VoltCSVByteBufferFormatter formatter = create("csv", "varchar,varchar,bigint,varchar,integer,varchar");
+        Object[] results = formatter.transform(bytes("\"a,\"\"b\"\"\",\\N,NULL,\"\\N\", 7 ,"));
+        assertEquals("a,\"b\"", results[0]);
+        assertNull(results[1]);
+        assertNull(results[2]);
+        assertNull(results[3]);
+        assertEquals(7, results[4]);
+        assertEquals("", results[5]);
+
+        formatter = create("tsv", "varchar,bigint");
+        results = formatter.transform(bytes("x y\t42"));
+        assertEquals("x y", results[0]);
+        assertEquals(42L, results[1]);
+    }
+
+    @Test
+    public void testReusedRow() throws Exception {
+        VoltCSVByteBufferFormatter formatter = create("csv", "bigint,varchar,timestamp");
+        CSVRow row = new CSVRow(formatter.getColumnTypes());
+        ByteBuffer buf = bytes("xx5,abc,1000000");
+        buf.position(2);
+        formatter.parse(buf, row);
+        assertEquals(2, buf.position());
+        assertEquals(5, row.getLong(0));
+        assertEquals("abc", row.getString(1));
+        assertEquals(1000000, row.getLong(2));
+
+        formatter.parse(bytes("6,\\N,1970-01-02"), row);
+        assertEquals(6, row.getLong(0));
+        assertTrue(row.isNull(1));
+        assertEquals(86400L * 1000000L, row.getLong(2));
+    }
+
+    @Test
+    public void testBadRecords() throws Exception {
+        VoltCSVByteBufferFormatter formatter = create("csv", "tinyint,varchar");
+        for (String record : new String[] { "128,a", "1", "1,a,b", "x,a", "1,\"a", "1,\"a\"b" }) {
+            try {
+                formatter.transform(bytes(record));
+                fail("Expected record " + record + " to be rejected");
+            } catch (FormatException expected) {
+            }
+        }
+        try {
+            create("csv", "bigint,nosuchtype");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testFactoryReturnsBufferFormatterOnlyOnRequest() throws Exception {
+        VoltCSVFormatterFactory factory = new VoltCSVFormatterFactory();
+        Properties props = new Properties();
+        props.setProperty("columntypes", "bigint,varchar");
+
+        // importers that read Strings keep getting a String formatter
+        Formatter<?> formatter = factory.create("csv", props);
+        assertFalse(formatter instanceof ByteBufferFormatter);
+        @SuppressWarnings("unchecked")
+        Object[] results = ((Formatter<String>) formatter).transform("1,a");
+        assertEquals(2, results.length);
+
+        ByteBufferFormatter bufferFormatter = factory.createByteBufferFormatter("csv", props);
+        assertTrue(bufferFormatter instanceof VoltCSVByteBufferFormatter);
+        results = bufferFormatter.transform(bytes("1,a"));
+        assertEquals(1L, results[0]);
+        assertEquals("a", results[1]);
+
+        assertNull(factory.createByteBufferFormatter("csv", new Properties()));
+    }
+}
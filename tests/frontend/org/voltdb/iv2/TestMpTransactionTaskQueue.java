@@ -35,11 +35,17 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
 
 public class TestMpTransactionTaskQueue extends TestCase
 {
@@ -53,6 +59,13 @@ public class TestMpTransactionTaskQueue extends TestCase
         return task;
     }
 
+    MpProcedureTask makeTransactionTask(long txnid, boolean readOnly, String procName)
+    {
+        MpProcedureTask task = makeTransactionTask(txnid, readOnly);
+        when(task.getProcedureName()).thenReturn(procName);
+        return task;
+    }
+
     SiteTaskerQueue m_writeQueue;
     MpRoSitePool m_MPpool;
     MpTransactionTaskQueue m_dut;
@@ -150,4 +163,75 @@ public class TestMpTransactionTaskQueue extends TestCase
         verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
         verify(m_MPpool).doWork(eq(readtxnid2), any(TransactionTask.class));
     }
+
+    // Reads that don't read the tables a blocked write updates may start ahead of it
+    @Test
+    public void testReadBypassesBlockedWrite()
+    {
+        Map<String, MpTableAccess.Access> procs = new HashMap<String, MpTableAccess.Access>();
+        procs.put("ReadA", new MpTableAccess.Access(ImmutableSet.of("A"), ImmutableSet.<String>of()));
+        procs.put("ReadB", new MpTableAccess.Access(ImmutableSet.of("B"), ImmutableSet.<String>of()));
+        procs.put("WriteA", new MpTableAccess.Access(ImmutableSet.of("A"), ImmutableSet.of("A")));
+        m_dut.setTableAccessForTestOnly(new MpTableAccess(procs), 2);
+
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID).makeNext();
+        long firstRead = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(firstRead, true, "ReadB"));
+        verify(m_MPpool).doWork(eq(firstRead), any(TransactionTask.class));
+
+        // The write waits for the first read
+        txnId = txnId.makeNext();
+        long write = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(write, false, "WriteA"));
+        verify(m_writeQueue, never()).offer(any(TransactionTask.class));
+
+        // A read of the written table stays behind the write
+        txnId = txnId.makeNext();
+        long conflicted = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(conflicted, true, "ReadA"));
+        verify(m_MPpool, never()).doWork(eq(conflicted), any(TransactionTask.class));
+
+        // Reads of other tables go ahead, but only up to the limit
+        List<Long> bypassing = new ArrayList<Long>();
+        for (int i = 0; i < 3; i++) {
+            txnId = txnId.makeNext();
+            bypassing.add(txnId.getTxnId());
+            m_dut.offer(makeTransactionTask(txnId.getTxnId(), true, "ReadB"));
+        }
+        verify(m_MPpool).doWork(eq(bypassing.get(0)), any(TransactionTask.class));
+        verify(m_MPpool).doWork(eq(bypassing.get(1)), any(TransactionTask.class));
+        verify(m_MPpool, never()).doWork(eq(bypassing.get(2)), any(TransactionTask.class));
+        assertEquals(2, m_dut.getBypassedReads());
+        assertEquals(1, m_dut.getConflictedReads());
+
+        // The write starts once every read in flight is done
+        m_dut.flush(firstRead);
+        m_dut.flush(bypassing.get(0));
+        verify(m_writeQueue, never()).offer(any(TransactionTask.class));
+        m_dut.flush(bypassing.get(1));
+        verify(m_writeQueue).offer(any(TransactionTask.class));
+        verify(m_MPpool, never()).doWork(eq(conflicted), any(TransactionTask.class));
+        assertEquals(1, m_dut.getBlockedWrites());
+
+        // and the held reads follow it in order
+        m_dut.flush(write);
+        verify(m_MPpool).doWork(eq(conflicted), any(TransactionTask.class));
+        verify(m_MPpool).doWork(eq(bypassing.get(2)), any(TransactionTask.class));
+
+        // @Statistics MPQUEUE reports the same counters
+        MpQueueStats stats = new MpQueueStats(0, m_dut);
+        List<ColumnInfo> columns = stats.getColumnSchema();
+        VoltTable table = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        for (Object[] row : stats.getStatsRows(false, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        assertEquals(1, table.getRowCount());
+        table.advanceRow();
+        assertEquals(2, table.getLong(MpQueueStats.StatName.READ_BYPASS_LIMIT.name()));
+        assertEquals(2, table.getLong(MpQueueStats.StatName.BYPASSED_READS.name()));
+        assertEquals(1, table.getLong(MpQueueStats.StatName.CONFLICTED_READS.name()));
+        assertEquals(1, table.getLong(MpQueueStats.StatName.BLOCKED_WRITES.name()));
+        assertEquals(m_dut.getAverageWriteWaitMicros(),
+                table.getLong(MpQueueStats.StatName.AVG_WRITE_WAIT.name()));
+    }
 }
@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.StarvationTracker;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestSiteTaskerQueue extends TestCase
+{
+    static class NoopTask extends SiteTasker.SiteTaskerRunnable {
+        @Override
+        void run() {}
+    }
+
+    private static VoltTable getStats(StarvationTracker tracker, boolean interval)
+    {
+        ArrayList<ColumnInfo> columns = tracker.getColumnSchema();
+        VoltTable table = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        for (Object[] row : tracker.getStatsRows(interval, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        assertEquals(1, table.getRowCount());
+        table.advanceRow();
+        return table;
+    }
+
+    @Test
+    public void testQueueStats() throws Exception
+    {
+        SiteTaskerQueue queue = new SiteTaskerQueue();
+        StarvationTracker tracker = new StarvationTracker(0);
+        queue.setStarvationTracker(tracker);
+
+        // fill the queue deep enough to take a depth sample
+        for (int i = 0; i < 128; i++) {
+            queue.offer(new NoopTask());
+        }
+        Thread.sleep(2);
+        for (int i = 0; i < 64; i++) {
+            assertNotNull(queue.take());
+        }
+        for (int i = 0; i < 64; i++) {
+            assertNotNull(queue.poll());
+        }
+        assertNull(queue.poll());
+
+        VoltTable stats = getStats(tracker, false);
+        // the first sample is taken after 64 dequeues
+        assertEquals(65, stats.getLong("QUEUE_DEPTH_MAX"));
+        // every task waited at least the 2ms sleep
+        assertTrue(stats.getLong("QUEUE_LATENCY_P50") >= 2000);
+
+        // interval stats start over
+        getStats(tracker, true);
+        stats = getStats(tracker, true);
+        assertEquals(0, stats.getLong("QUEUE_LATENCY_MAX"));
+        assertTrue(getStats(tracker, false).getLong("QUEUE_LATENCY_MAX") >= 2000);
+    }
+
+    @Test
+    public void testTakeWaitsForOffer() throws Exception
+    {
+        final SiteTaskerQueue queue = new SiteTaskerQueue();
+        queue.setStarvationTracker(new StarvationTracker(0));
+        final SiteTasker task = new NoopTask();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignore) {}
+                queue.offer(task);
+            }
+        };
+        producer.start();
+        assertSame(task, queue.take());
+        producer.join();
+    }
+}
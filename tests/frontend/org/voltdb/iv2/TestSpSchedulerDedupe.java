@@ -60,6 +60,7 @@ import org.voltdb.messaging.FragmentResponseMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.RepairLogTruncationMessage;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
 
@@ -187,6 +188,31 @@ public class TestSpSchedulerDedupe extends TestCase
         m_readLevel = Consistency.ReadLevel.SAFE;
     }
 
+    @Test
+    public void testReplicaInitiateTaskResponseSafeRead() throws Exception
+    {
+        TxnEgo writeEgo = TxnEgo.makeZero(0).makeNext();
+        long writeTxnId = writeEgo.getTxnId();
+        long readTxnId = writeEgo.makeNext().getTxnId();
+        long primary_hsid = 1111l;
+
+        createObjs();
+        // a replicated write, then a SAFE read served by the replica
+        Iv2InitiateTaskMessage writeTask = createMsg(writeTxnId, false, true, primary_hsid);
+        dut.deliver(writeTask);
+        Iv2InitiateTaskMessage readTask = createMsg(readTxnId, true, true, dut_hsid);
+        dut.deliver(readTask);
+        // the replica orders the read after the last write it scheduled
+        readTask.setSpHandle(writeTxnId);
+        InitiateResponseMessage resp = new InitiateResponseMessage(readTask);
+        dut.deliver(resp);
+        // the read may have seen the write, hold it until the write commits everywhere
+        verify(mbox, times(0)).send(eq(dut_hsid), eq(resp));
+
+        dut.deliver(new RepairLogTruncationMessage(writeTxnId));
+        verify(mbox, times(1)).send(eq(dut_hsid), eq(resp));
+    }
+
     @Test
     public void testReplicaFragmentTaskResponse() throws Exception
     {
@@ -0,0 +1,255 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.json_voltpatches.JSONObject;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.voltcore.messaging.Mailbox;
+import org.voltcore.messaging.VoltMessage;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.zk.MapCache;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.CommandLog;
+import org.voltdb.ParameterSet;
+import org.voltdb.SnapshotCompletionMonitor;
+import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.InitiateResponseMessage;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.Iv2ReplicationBatchMessage;
+import org.voltdb.messaging.RepairLogTruncationMessage;
+
+import com.google_voltpatches.common.collect.ImmutableMap;
+
+public class TestSpSchedulerReplicationBatch extends TestCase
+{
+    static {
+        // Long enough that only the tests waiting for the timer see it fire
+        System.setProperty("SP_REPLICATION_BATCH_SIZE", "4");
+        System.setProperty("SP_REPLICATION_BATCH_DELAY_US", "2000000");
+    }
+
+    static final String MockSPName = "MOCKSP";
+    static final long leader_hsid = 11223344l;
+    static final long replica_hsid = 2l;
+    static final long client_hsid = 1111l;
+
+    Mailbox mbox;
+    SiteTaskerQueue tasks;
+    SpScheduler dut;
+
+    private SpScheduler createScheduler(Mailbox mailbox, SiteTaskerQueue queue) throws Exception
+    {
+        MapCache iv2masters = mock(MapCache.class);
+        HashMap<String,JSONObject> fakecache = new HashMap<String, JSONObject>();
+        fakecache.put("0", new JSONObject("{hsid:0}"));
+        when(iv2masters.pointInTimeCache()).thenReturn(ImmutableMap.copyOf(fakecache));
+
+        final CommandLog cl = mock(CommandLog.class);
+        doReturn(CoreUtils.COMPLETED_FUTURE).when(cl).log(any(Iv2InitiateTaskMessage.class), anyLong(), any(int[].class),
+                                                          any(CommandLog.DurabilityListener.class),
+                                                          any(TransactionTask.class));
+
+        SpScheduler scheduler = new SpScheduler(0, queue, mock(SnapshotCompletionMonitor.class));
+        scheduler.setMailbox(mailbox);
+        scheduler.setCommandLog(cl);
+        scheduler.setLock(mailbox);
+        return scheduler;
+    }
+
+    private static SiteTaskerQueue getSiteTaskerQueue() {
+        SiteTaskerQueue queue = new SiteTaskerQueue();
+        queue.setStarvationTracker(new StarvationTracker(0));
+        return queue;
+    }
+
+    private void createLeader(Long... replicas) throws Exception
+    {
+        mbox = mock(Mailbox.class);
+        when(mbox.getHSId()).thenReturn(leader_hsid);
+        tasks = getSiteTaskerQueue();
+        dut = createScheduler(mbox, tasks);
+        dut.setLeaderState(true);
+        dut.updateReplicas(Arrays.asList(replicas), null);
+    }
+
+    private Iv2InitiateTaskMessage createMsg(long txnId)
+    {
+        StoredProcedureInvocation spi = mock(StoredProcedureInvocation.class);
+        when(spi.getProcName()).thenReturn(MockSPName);
+        when(spi.getParams()).thenReturn(mock(ParameterSet.class));
+        Iv2InitiateTaskMessage task =
+            new Iv2InitiateTaskMessage(client_hsid, // initHSID
+                                       Long.MIN_VALUE, // coordHSID
+                                       txnId - 1, // truncationHandle
+                                       txnId,     // txnId
+                                       UniqueIdGenerator.makeIdFromComponents(System.currentTimeMillis(), 0, 0), // uniqueID
+                                       false, // readonly
+                                       true, // single-part
+                                       spi, // invocation
+                                       Long.MAX_VALUE, // client interface handle
+                                       Long.MAX_VALUE, // connectionId
+                                       false); // isForReplay
+        task.setTxnId(txnId);
+        task.setSpHandle(txnId);
+        return task;
+    }
+
+    private InitiateResponseMessage createResponse(Iv2InitiateTaskMessage task, long sourceHSId)
+    {
+        InitiateResponseMessage resp = new InitiateResponseMessage(task);
+        resp.setResults(mock(ClientResponseImpl.class));
+        resp.m_sourceHSId = sourceHSId;
+        return resp;
+    }
+
+    /**
+     * Replicate a full batch of writes and return the tasks the replica got.
+     */
+    private List<VoltMessage> replicateFullBatch()
+    {
+        long txnid = TxnEgo.makeZero(0).getTxnId();
+        for (int i = 0; i < SpScheduler.REPLICATION_BATCH_SIZE; i++) {
+            dut.deliver(createMsg(txnid + i));
+        }
+        ArgumentCaptor<Iv2ReplicationBatchMessage> batch = ArgumentCaptor.forClass(Iv2ReplicationBatchMessage.class);
+        verify(mbox, times(1)).send(eq(new long[] {replica_hsid}), batch.capture());
+        assertEquals(SpScheduler.REPLICATION_BATCH_SIZE, batch.getValue().size());
+        return batch.getValue().getMessages();
+    }
+
+    public void testPartialBatchFlushedOnTimer() throws Exception
+    {
+        createLeader(leader_hsid, replica_hsid);
+        dut.deliver(createMsg(TxnEgo.makeZero(0).getTxnId()));
+        verify(mbox, never()).send(any(long[].class), any(VoltMessage.class));
+        // Nothing needs to run on the site for the batch to go out
+        verify(mbox, timeout(10000)).send(eq(new long[] {replica_hsid}), isA(Iv2InitiateTaskMessage.class));
+    }
+
+    public void testBatchFlushedBeforeFragment() throws Exception
+    {
+        createLeader(leader_hsid, replica_hsid);
+        long txnid = TxnEgo.makeZero(0).getTxnId();
+        dut.deliver(createMsg(txnid));
+        verify(mbox, never()).send(any(long[].class), any(VoltMessage.class));
+
+        FragmentTaskMessage frag = new FragmentTaskMessage(client_hsid, client_hsid, txnid + 1,
+                System.currentTimeMillis(), false, false, false);
+        frag.setSpHandle(TxnEgo.makeZero(0).getTxnId());
+        dut.deliver(frag);
+
+        InOrder order = inOrder(mbox);
+        order.verify(mbox).send(eq(new long[] {replica_hsid}), isA(Iv2InitiateTaskMessage.class));
+        order.verify(mbox).send(eq(new long[] {replica_hsid}), isA(FragmentTaskMessage.class));
+    }
+
+    public void testBatchFlushedBeforeTruncation() throws Exception
+    {
+        createLeader(leader_hsid, replica_hsid);
+        List<VoltMessage> replicated = replicateFullBatch();
+        // Buffered with the truncation handle from before the batch completes
+        dut.deliver(createMsg(TxnEgo.makeZero(0).getTxnId() + replicated.size()));
+        // Completing the batch schedules a truncation message on the site
+        for (VoltMessage task : replicated) {
+            dut.deliver(createResponse((Iv2InitiateTaskMessage) task, leader_hsid));
+            dut.deliver(createResponse((Iv2InitiateTaskMessage) task, replica_hsid));
+        }
+        SiteTasker task;
+        while ((task = tasks.poll()) != null) {
+            if (task instanceof SiteTasker.SiteTaskerRunnable) {
+                ((SiteTasker.SiteTaskerRunnable) task).run();
+            }
+        }
+
+        InOrder order = inOrder(mbox);
+        order.verify(mbox).send(eq(new long[] {replica_hsid}), isA(Iv2InitiateTaskMessage.class));
+        order.verify(mbox).send(eq(new long[] {replica_hsid}), isA(RepairLogTruncationMessage.class));
+    }
+
+    public void testBatchFlushedBeforeReplicaSetChange() throws Exception
+    {
+        final long new_replica_hsid = 3l;
+        createLeader(leader_hsid, replica_hsid);
+        dut.deliver(createMsg(TxnEgo.makeZero(0).getTxnId()));
+        verify(mbox, never()).send(any(long[].class), any(VoltMessage.class));
+
+        dut.updateReplicas(Arrays.asList(leader_hsid, new_replica_hsid), null);
+        // The buffered task was sequenced for the old replica set
+        verify(mbox, times(1)).send(eq(new long[] {replica_hsid}), isA(Iv2InitiateTaskMessage.class));
+        verify(mbox, never()).send(eq(new long[] {new_replica_hsid}), any(VoltMessage.class));
+    }
+
+    public void testBatchedAcksCompleteDuplicateCounters() throws Exception
+    {
+        createLeader(leader_hsid, replica_hsid);
+        List<VoltMessage> replicated = replicateFullBatch();
+
+        Mailbox replicaMbox = mock(Mailbox.class);
+        when(replicaMbox.getHSId()).thenReturn(replica_hsid);
+        SpScheduler replica = createScheduler(replicaMbox, getSiteTaskerQueue());
+        for (VoltMessage task : replicated) {
+            replica.deliver(task);
+        }
+        for (VoltMessage task : replicated) {
+            replica.deliver(createResponse((Iv2InitiateTaskMessage) task, replica_hsid));
+        }
+        // The replica acknowledges the whole batch in one message
+        ArgumentCaptor<Iv2ReplicationBatchMessage> acks = ArgumentCaptor.forClass(Iv2ReplicationBatchMessage.class);
+        verify(replicaMbox, times(1)).send(eq(leader_hsid), acks.capture());
+        assertEquals(replicated.size(), acks.getValue().size());
+
+        for (VoltMessage task : replicated) {
+            dut.deliver(createResponse((Iv2InitiateTaskMessage) task, leader_hsid));
+        }
+        verify(mbox, never()).send(eq(client_hsid), any(VoltMessage.class));
+        // InitiatorMailbox hands the scheduler the messages of a batch one at a time
+        for (VoltMessage ack : acks.getValue().getMessages()) {
+            assertEquals(replica_hsid, ack.m_sourceHSId);
+            dut.deliver(ack);
+        }
+        verify(mbox, times(replicated.size())).send(eq(client_hsid), isA(InitiateResponseMessage.class));
+    }
+}
@@ -0,0 +1,260 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcedureRunner;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.TransactionState;
+import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+public class TestSpTransactionBatch {
+    static {
+        // read by SpTransactionBatch.MAX_TRANSACTIONS when the class loads
+        System.setProperty("SITE_SP_TXN_BATCH_SIZE", "4");
+    }
+
+    private static final long FRAGMENT_ID = 42;
+
+    private SiteProcedureConnection m_siteConnection;
+    private ProcedureRunner m_runner;
+    private ExecutionEngine m_ee;
+    private long[] m_lastCommittedSpHandles;
+    private long[] m_undoTokens;
+
+    @Before
+    public void setUp()
+    {
+        m_runner = mock(ProcedureRunner.class);
+        doReturn(true).when(m_runner).isBatchableSingleStatement();
+        doReturn(false).when(m_runner).isReadOnly();
+        doReturn(true).when(m_runner).checkPartition(any(TransactionState.class), any(TheHashinator.class));
+        doReturn(null).when(m_runner).getPassThroughParams(any(StoredProcedureInvocation.class));
+        doReturn(ParameterSet.emptyParameterSet()).when(m_runner).getSingleStatementParams(any(Object[].class));
+        doReturn(FRAGMENT_ID).when(m_runner).getSingleStatementFragmentId();
+        doReturn("INSERT INTO T VALUES (?);").when(m_runner).getSingleStatementText();
+
+        m_siteConnection = mock(SiteProcedureConnection.class);
+        doReturn(m_runner).when(m_siteConnection).getProcedureRunner(anyString());
+
+        m_ee = mock(ExecutionEngine.class);
+        m_lastCommittedSpHandles = null;
+        m_undoTokens = null;
+    }
+
+    private void executeBatchWith(final VoltTable[] results)
+    {
+        doAnswer(new Answer<VoltTable[]>() {
+            @Override
+            public VoltTable[] answer(InvocationOnMock invocation)
+            {
+                Object[] args = invocation.getArguments();
+                int count = (Integer)args[0];
+                m_lastCommittedSpHandles = copy((long[])args[6], count);
+                m_undoTokens = copy((long[])args[8], count);
+                return results;
+            }
+        }).when(m_ee).executeTransactionBatch(anyInt(), any(long[].class), any(Object[].class),
+                any(String[].class), any(long[].class), any(long[].class), any(long[].class),
+                any(long[].class), any(long[].class));
+    }
+
+    private static long[] copy(long[] values, int count)
+    {
+        long[] copy = new long[count];
+        System.arraycopy(values, 0, copy, 0, count);
+        return copy;
+    }
+
+    private static VoltTable makeResult()
+    {
+        VoltTable result = new VoltTable(new VoltTable.ColumnInfo("modified_tuples", VoltType.BIGINT));
+        result.addRow(1);
+        return result;
+    }
+
+    private static SpProcedureTask makeTask(long spHandle)
+    {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("Insert");
+        invocation.setParams(spHandle);
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(0, 0, 0, spHandle, spHandle, false, true,
+                invocation, 0, 0, false);
+        msg.setSpHandle(spHandle);
+        return new SpProcedureTask(null, "Insert", null, msg);
+    }
+
+    private SpTransactionBatch fill(SpTransactionBatch batch, long... spHandles)
+    {
+        for (long spHandle : spHandles) {
+            assertTrue(batch.add(makeTask(spHandle), m_siteConnection, null));
+        }
+        return batch;
+    }
+
+    @Test
+    public void testBatchSeesLastCommittedSpHandleBeforeBatch()
+    {
+        VoltTable[] results = new VoltTable[] { makeResult(), makeResult(), makeResult() };
+        executeBatchWith(results);
+
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501, 502, 503);
+        assertTrue(batch.execute(m_ee));
+
+        // none of the transactions commits before the batch has executed
+        assertArrayEquals(new long[] { 500, 500, 500 }, m_lastCommittedSpHandles);
+        assertArrayEquals(new long[] { 11, 12, 13 }, m_undoTokens);
+
+        long[] fragmentIds = new long[] { FRAGMENT_ID };
+        for (int i = 0; i < 3; i++) {
+            assertTrue(batch.isResultPending(i));
+            assertFalse(batch.hasResultFor(502 + i, 1, fragmentIds));
+            assertTrue(batch.hasResultFor(501 + i, 1, fragmentIds));
+            assertSame(results[i], batch.takeResult(11 + i));
+            assertFalse(batch.isResultPending(i));
+        }
+        assertFalse(batch.hasResultFor(504, 1, fragmentIds));
+    }
+
+    @Test
+    public void testFailedBatchHandsOutNoResults()
+    {
+        executeBatchWith(null);
+
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501, 502);
+        assertFalse(batch.execute(m_ee));
+
+        assertFalse(batch.hasResultFor(501, 1, new long[] { FRAGMENT_ID }));
+        assertFalse(batch.isResultPending(0));
+        assertFalse(batch.isResultPending(1));
+    }
+
+    @Test
+    public void testRollbackDiscardsLaterResults()
+    {
+        executeBatchWith(new VoltTable[] { makeResult(), makeResult(), makeResult() });
+
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501, 502, 503);
+        assertTrue(batch.execute(m_ee));
+
+        long[] fragmentIds = new long[] { FRAGMENT_ID };
+        batch.takeResult(11);
+        // the first transaction rolls back, undoing the work of the two after it
+        batch.discardResults();
+        assertFalse(batch.hasResultFor(502, 1, fragmentIds));
+        assertFalse(batch.isResultPending(1));
+        assertFalse(batch.isResultPending(2));
+
+        // the batch is usable again once cleared
+        batch.clear();
+        batch.begin(10, 500);
+        fill(batch, 502, 503);
+        assertTrue(batch.execute(m_ee));
+        assertTrue(batch.hasResultFor(502, 1, fragmentIds));
+        assertArrayEquals(new long[] { 11, 12 }, m_undoTokens);
+    }
+
+    @Test
+    public void testRollbackAfterLastResultKeepsNothingPending()
+    {
+        executeBatchWith(new VoltTable[] { makeResult(), makeResult() });
+
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501, 502);
+        assertTrue(batch.execute(m_ee));
+        batch.takeResult(11);
+        batch.takeResult(12);
+        batch.discardResults();
+        assertFalse(batch.isResultPending(0));
+        assertFalse(batch.isResultPending(1));
+    }
+
+    @Test
+    public void testUnbatchableStatementNotAdded()
+    {
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        doReturn(false).when(m_runner).isBatchableSingleStatement();
+        assertFalse(batch.add(makeTask(501), m_siteConnection, null));
+        assertEquals(0, batch.size());
+
+        // the statement doesn't match the read only-ness of the transaction
+        doReturn(true).when(m_runner).isBatchableSingleStatement();
+        doReturn(true).when(m_runner).isReadOnly();
+        assertFalse(batch.add(makeTask(501), m_siteConnection, null));
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void testBatchBoundedBySize()
+    {
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501, 502, 503, 504);
+        assertTrue(batch.isFull());
+        assertFalse(batch.add(makeTask(505), m_siteConnection, null));
+        assertEquals(4, batch.size());
+    }
+
+    @Test
+    public void testPassThroughParamsPreferred()
+    {
+        ByteBuffer passThrough = ByteBuffer.allocate(4);
+        doReturn(passThrough).when(m_runner).getPassThroughParams(any(StoredProcedureInvocation.class));
+        SpTransactionBatch batch = new SpTransactionBatch();
+        batch.begin(10, 500);
+        fill(batch, 501);
+        assertEquals(1, batch.size());
+    }
+}
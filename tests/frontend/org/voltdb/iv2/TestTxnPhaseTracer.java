@@ -0,0 +1,152 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestTxnPhaseTracer extends TestCase
+{
+    private static VoltTable getStats(TxnPhaseTracer tracer, boolean interval)
+    {
+        ArrayList<ColumnInfo> columns = tracer.getColumnSchema();
+        VoltTable table = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        for (Object[] row : tracer.getStatsRows(interval, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static long trace(TxnPhaseTracer tracer, String procName, long dispatchNanos) throws Exception
+    {
+        final long traceId = tracer.begin(procName, dispatchNanos);
+        if (traceId < 0) {
+            return traceId;
+        }
+        final long queued = System.nanoTime();
+        Thread.sleep(2);
+        tracer.startRun(traceId, queued);
+        assertTrue(tracer.isRunning());
+        tracer.recordEe(3000000);
+        Thread.sleep(4);
+        tracer.endRun(traceId);
+        assertFalse(tracer.isRunning());
+        tracer.complete(traceId);
+        return traceId;
+    }
+
+    @Test
+    public void testDisabled() throws Exception
+    {
+        TxnPhaseTracer tracer = new TxnPhaseTracer(0, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(-1, trace(tracer, "proc", 0));
+        }
+        assertEquals(0, getStats(tracer, false).getRowCount());
+    }
+
+    @Test
+    public void testSampledPhases() throws Exception
+    {
+        TxnPhaseTracer tracer = new TxnPhaseTracer(0, 4, 16);
+        int sampled = 0;
+        for (int i = 0; i < 16; i++) {
+            if (trace(tracer, i % 2 == 0 ? "even" : "odd", System.nanoTime() - 1000000) >= 0) {
+                sampled++;
+            }
+        }
+        // one in four, which always lands on the same procedure
+        assertEquals(4, sampled);
+
+        VoltTable stats = getStats(tracer, false);
+        assertEquals(1, stats.getRowCount());
+        stats.advanceRow();
+        assertEquals("odd", stats.getString("PROCEDURE"));
+        assertEquals(4, stats.getLong("SAMPLED"));
+        assertTrue(stats.getLong("CI_QUEUE_AVG") >= 1000);
+        assertTrue(stats.getLong("SITE_QUEUE_P99") >= 2000);
+        assertTrue(stats.getLong("EE_MAX") >= 3000);
+        // the EE time is taken out of the 4ms the procedure ran
+        assertTrue(stats.getLong("JAVA_MAX") >= 1000);
+        assertTrue(stats.getLong("JAVA_MAX") < 3900);
+
+        // interval stats start over, totals are kept
+        getStats(tracer, true);
+        stats = getStats(tracer, true);
+        stats.advanceRow();
+        assertEquals(0, stats.getLong("SAMPLED"));
+        stats = getStats(tracer, false);
+        stats.advanceRow();
+        assertEquals(4, stats.getLong("SAMPLED"));
+    }
+
+    @Test
+    public void testBatchedEe() throws Exception
+    {
+        TxnPhaseTracer tracer = new TxnPhaseTracer(0, 1, 1);
+        final long traceId = tracer.begin("proc", 0);
+        final long queued = System.nanoTime();
+        Thread.sleep(5);
+        tracer.startRun(traceId, queued);
+        // the batch ran its statement while the task was queued
+        tracer.recordBatchedEe(3000000);
+        tracer.endRun(traceId);
+        tracer.complete(traceId);
+
+        VoltTable stats = getStats(tracer, false);
+        stats.advanceRow();
+        assertTrue(stats.getLong("EE_MAX") >= 3000);
+        assertTrue(stats.getLong("SITE_QUEUE_MAX") >= 2000);
+        assertTrue(stats.getLong("SITE_QUEUE_MAX") < 4900);
+        assertTrue(stats.getLong("JAVA_MAX") < 1000);
+    }
+
+    @Test
+    public void testReusedSlotIsDropped() throws Exception
+    {
+        TxnPhaseTracer tracer = new TxnPhaseTracer(0, 1, 1);
+        final long first = tracer.begin("proc", 0);
+        tracer.startRun(first, System.nanoTime());
+        tracer.endRun(first);
+        // a second sample takes over the only slot before the first completes
+        final long second = tracer.begin("proc", 0);
+        tracer.complete(first);
+        assertEquals(0, getStats(tracer, false).getRowCount());
+
+        tracer.startRun(second, System.nanoTime());
+        tracer.endRun(second);
+        tracer.complete(second);
+        tracer.complete(second);
+        VoltTable stats = getStats(tracer, false);
+        stats.advanceRow();
+        assertEquals(1, stats.getLong("SAMPLED"));
+        // no dispatch stamp, so the client interface phase is unknown
+        assertEquals(0, stats.getLong("CI_QUEUE_MAX"));
+    }
+}
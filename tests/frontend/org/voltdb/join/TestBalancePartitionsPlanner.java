@@ -0,0 +1,89 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.join;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.sysprocs.BalancePartitionsRequest.PartitionPair;
+
+import com.google_voltpatches.common.collect.ImmutableList;
+
+public class TestBalancePartitionsPlanner extends TestCase {
+
+    @Test
+    public void testSelectDisjointPairs() {
+        BalancePartitionsStatistics stats = new BalancePartitionsStatistics(100);
+        BalancePartitionsPlanner planner = new BalancePartitionsPlanner(stats, 100, 10, 1, 1000, 3);
+        List<PartitionPair> pairs = planner.selectPairs(ImmutableList.of(
+                new PartitionPair(0, 4, 0, 10),
+                new PartitionPair(0, 5, 10, 20),   // shares the source
+                new PartitionPair(1, 4, 20, 30),   // shares the destination
+                new PartitionPair(1, 5, 30, 40),
+                new PartitionPair(2, 6, 40, 50),
+                new PartitionPair(3, 7, 50, 60))); // over the limit
+        assertEquals(3, pairs.size());
+        assertEquals(0, pairs.get(0).srcPartition);
+        assertEquals(1, pairs.get(1).srcPartition);
+        assertEquals(5, pairs.get(1).destPartition);
+        assertEquals(2, pairs.get(2).srcPartition);
+    }
+
+    @Test
+    public void testRangeSizeAdapts() {
+        BalancePartitionsPlanner planner = new BalancePartitionsPlanner(null, 100, 10, 1, 1000, 1);
+        // fast calls grow the range at most twofold per call
+        planner.logCallCompleted(10, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(20, planner.getRangeSize());
+        for (int i = 0; i < 10; i++) {
+            planner.logCallCompleted(planner.getRangeSize(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(1000, planner.getRangeSize());
+
+        // a slow call halves it
+        planner.logCallCompleted(1000, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(500, planner.getRangeSize());
+
+        // sustained slow calls settle at the minimum
+        for (int i = 0; i < 20; i++) {
+            planner.logCallCompleted(planner.getRangeSize(), TimeUnit.SECONDS.toNanos(10));
+        }
+        assertEquals(1, planner.getRangeSize());
+    }
+
+    @Test
+    public void testRangeSizeConvergesOnTarget() {
+        BalancePartitionsPlanner planner = new BalancePartitionsPlanner(null, 100, 1, 1, 1000000, 1);
+        // sites move 1000 units of range per millisecond
+        for (int i = 0; i < 50; i++) {
+            long size = planner.getRangeSize();
+            planner.logCallCompleted(size, TimeUnit.MILLISECONDS.toNanos(Math.max(1, size / 1000)));
+        }
+        long size = planner.getRangeSize();
+        assertTrue("range size " + size, size >= 90000 && size <= 110000);
+    }
+}
@@ -25,6 +25,7 @@ package org.voltdb.messaging;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -458,6 +459,46 @@ public class TestVoltMessageSerialization extends TestCase {
         assertEquals(r1.getHashinatorVersionedConfig().getFirst(),new Long(2));
     }
 
+    public void testIv2ReplicationBatchMessage() throws Exception
+    {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(25);
+        spi.setProcName("johnisgreat");
+        spi.setParams(57, "gooniestoo", "dudemandude");
+
+        Iv2InitiateTaskMessage itask1 =
+                new Iv2InitiateTaskMessage(23, 23, 100044, 100045, 99, false, true, spi, 2101, 3101, false);
+        itask1.setSpHandle(31337);
+        Iv2InitiateTaskMessage itask2 =
+                new Iv2InitiateTaskMessage(23, 23, 100044, 100046, 100, false, true, spi, 2102, 3101, false);
+        itask2.setSpHandle(31338);
+
+        Iv2ReplicationBatchMessage batch = new Iv2ReplicationBatchMessage(
+                Arrays.<VoltMessage>asList(itask1, itask2));
+        Iv2ReplicationBatchMessage batch2 = (Iv2ReplicationBatchMessage) checkVoltMessage(batch);
+        assertEquals(2, batch2.size());
+        Iv2InitiateTaskMessage first = (Iv2InitiateTaskMessage) batch2.getMessages().get(0);
+        Iv2InitiateTaskMessage second = (Iv2InitiateTaskMessage) batch2.getMessages().get(1);
+        assertEquals(100045, first.getTxnId());
+        assertEquals(31337, first.getSpHandle());
+        assertEquals(100046, second.getTxnId());
+        assertEquals(31338, second.getSpHandle());
+        assertEquals(itask1.getStoredProcedureName(), second.getStoredProcedureName());
+        assertEquals(2102, second.getClientInterfaceHandle());
+
+        // replicas acknowledge a batch with a batch of responses
+        InitiateResponseMessage r1 = new InitiateResponseMessage(itask1);
+        r1.setResults(new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[0], null));
+        InitiateResponseMessage r2 = new InitiateResponseMessage(itask2);
+        r2.setResults(new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[0], null));
+        Iv2ReplicationBatchMessage acks = new Iv2ReplicationBatchMessage(
+                Arrays.<VoltMessage>asList(r1, r2));
+        Iv2ReplicationBatchMessage acks2 = (Iv2ReplicationBatchMessage) checkVoltMessage(acks);
+        assertEquals(2, acks2.size());
+        assertEquals(31337, ((InitiateResponseMessage) acks2.getMessages().get(0)).getSpHandle());
+        assertEquals(31338, ((InitiateResponseMessage) acks2.getMessages().get(1)).getSpHandle());
+    }
+
     public void testInvalidTableCount() throws Exception
     {
         int size = 1 // version
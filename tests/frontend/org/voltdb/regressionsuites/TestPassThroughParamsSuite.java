@@ -0,0 +1,153 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.client.Client;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * Single statement procedures called with parameters that go to the EE as the
+ * client serialized them and with parameters that are converted first. The
+ * suite runs with the pass through path on and off, and both must accept and
+ * reject the same parameters and store the same values.
+ */
+public class TestPassThroughParamsSuite extends RegressionSuite {
+
+    public TestPassThroughParamsSuite(String name) {
+        super(name);
+    }
+
+    private static VoltTable select(Client client, long id) throws Exception {
+        VoltTable result = client.callProcedure("SelectN", id).getResults()[0];
+        assertTrue(result.advanceRow());
+        return result;
+    }
+
+    private static void assertRejected(Client client, Object... params) throws IOException {
+        try {
+            client.callProcedure("InsertN", params);
+            fail("Expected parameters to be rejected");
+        } catch (ProcCallException expected) {
+        }
+    }
+
+    public void testExactTypes() throws Exception {
+        final Client client = getClient();
+        client.callProcedure("InsertN", 1L, (byte) 1, (short) 2, 3, 4L, 1.5, "a");
+        VoltTable row = select(client, 1);
+        assertEquals(1, row.getLong("TI"));
+        assertEquals(2, row.getLong("SI"));
+        assertEquals(3, row.getLong("I"));
+        assertEquals(4, row.getLong("B"));
+        assertEquals(1.5, row.getDouble("F"), 0.0);
+        assertEquals("a", row.getString("S"));
+    }
+
+    public void testWideningIntegers() throws Exception {
+        final Client client = getClient();
+        client.callProcedure("InsertN", (byte) 2, (byte) -1, (byte) -2, (short) -3, 4, 1.5, "b");
+        VoltTable row = select(client, 2);
+        assertEquals(-1, row.getLong("TI"));
+        assertEquals(-2, row.getLong("SI"));
+        assertEquals(-3, row.getLong("I"));
+        assertEquals(4, row.getLong("B"));
+
+        // the null of a narrower type is the null of the column
+        client.callProcedure("InsertN", 3L, VoltType.NULL_TINYINT, VoltType.NULL_TINYINT,
+                VoltType.NULL_SMALLINT, VoltType.NULL_INTEGER, 1.5, "c");
+        row = select(client, 3);
+        row.getLong("TI");
+        assertTrue(row.wasNull());
+        row.getLong("SI");
+        assertTrue(row.wasNull());
+        row.getLong("I");
+        assertTrue(row.wasNull());
+        row.getLong("B");
+        assertTrue(row.wasNull());
+    }
+
+    public void testNarrowingIntegers() throws Exception {
+        final Client client = getClient();
+        // wider types in range are converted
+        client.callProcedure("InsertN", 4, 5L, 6L, 7L, 8L, 1.5, "d");
+        VoltTable row = select(client, 4);
+        assertEquals(5, row.getLong("TI"));
+        assertEquals(6, row.getLong("SI"));
+        assertEquals(7, row.getLong("I"));
+
+        // and rejected out of range
+        assertRejected(client, 5L, 128, (short) 1, 1, 1L, 1.5, "e");
+        assertRejected(client, 5L, (byte) 1, 40000, 1, 1L, 1.5, "e");
+        assertRejected(client, 5L, (byte) 1, (short) 1, 1L << 40, 1L, 1.5, "e");
+        assertRejected(client, 5L, (short) -129, (short) 1, 1, 1L, 1.5, "e");
+        // a value that the narrower column stores as its null
+        assertRejected(client, 5L, (short) -128, (short) 1, 1, 1L, 1.5, "e");
+        assertEquals(0, client.callProcedure("SelectN", 5L).getResults()[0].getRowCount());
+    }
+
+    public void testConvertedTypes() throws Exception {
+        final Client client = getClient();
+        client.callProcedure("InsertN", "6", "1", "2", "3", "4", 2, "f");
+        VoltTable row = select(client, 6);
+        assertEquals(1, row.getLong("TI"));
+        assertEquals(4, row.getLong("B"));
+        assertEquals(2.0, row.getDouble("F"), 0.0);
+        assertEquals("f", row.getString("S"));
+    }
+
+    private static LocalCluster makeConfig(VoltProjectBuilder project, boolean passThrough) {
+        Map<String, String> env = new HashMap<String, String>();
+        env.put("PASS_THROUGH_PARAMS", Boolean.toString(passThrough));
+        LocalCluster config = new LocalCluster("pass-through-" + passThrough + ".jar", 2, 1, 0,
+                BackendTarget.NATIVE_EE_JNI, LocalCluster.FailureState.ALL_RUNNING, false, false, env);
+        config.setHasLocalServer(false);
+        assertTrue(config.compile(project));
+        return config;
+    }
+
+    static public junit.framework.Test suite() throws Exception {
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestPassThroughParamsSuite.class);
+        VoltProjectBuilder project = new VoltProjectBuilder();
+        project.addLiteralSchema(
+                "CREATE TABLE N (ID BIGINT NOT NULL, TI TINYINT, SI SMALLINT, I INTEGER, B BIGINT, " +
+                "F FLOAT, S VARCHAR(16), PRIMARY KEY (ID));" +
+                "PARTITION TABLE N ON COLUMN ID;" +
+                "CREATE PROCEDURE InsertN PARTITION ON TABLE N COLUMN ID AS " +
+                "INSERT INTO N VALUES (?, ?, ?, ?, ?, ?, ?);" +
+                "CREATE PROCEDURE SelectN PARTITION ON TABLE N COLUMN ID AS " +
+                "SELECT * FROM N WHERE ID = ?;");
+
+        builder.addServerConfig(makeConfig(project, true));
+        builder.addServerConfig(makeConfig(project, false));
+        return builder;
+    }
+}
@@ -0,0 +1,147 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * Read-only procedure result caching with SP transaction batching also on, so
+ * that cached reads are queued at the sites right behind the writes that
+ * invalidate them.
+ */
+public class TestResultCacheSuite extends RegressionSuite {
+
+    private static final int ROWS = 10;
+
+    public TestResultCacheSuite(String name) {
+        super(name);
+    }
+
+    private static class CheckCallback implements ProcedureCallback {
+        final AtomicReference<String> m_failure;
+        final long m_expected;
+
+        CheckCallback(AtomicReference<String> failure, long expected) {
+            m_failure = failure;
+            m_expected = expected;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse response) throws Exception {
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_failure.compareAndSet(null, response.getStatusString());
+                return;
+            }
+            if (m_expected < 0) {
+                return;
+            }
+            VoltTable result = response.getResults()[0];
+            if (!result.advanceRow() || result.getLong(0) != m_expected) {
+                m_failure.compareAndSet(null, "expected " + m_expected + " but read " + result);
+            }
+        }
+    }
+
+    private static long getCacheStat(Client client, String column) throws Exception {
+        VoltTable stats = client.callProcedure("@Statistics", "RESULTCACHE", 0).getResults()[0];
+        long total = 0;
+        while (stats.advanceRow()) {
+            if (stats.getString("PROCEDURE").equals("GetVal")) {
+                total += stats.getLong(column);
+            }
+        }
+        return total;
+    }
+
+    public void testReadsSeeQueuedWrites() throws Exception {
+        final Client client = getClient();
+        for (int id = 0; id < ROWS; id++) {
+            client.callProcedure("T.insert", id, -1);
+        }
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        for (int round = 0; round < 50; round++) {
+            for (int id = 0; id < ROWS; id++) {
+                // the reads are queued behind the write and the ones after
+                // the first should be served from the cache
+                client.callProcedure(new CheckCallback(failure, -1), "SetVal", round, id);
+                for (int i = 0; i < 5; i++) {
+                    client.callProcedure(new CheckCallback(failure, round), "GetVal", id);
+                }
+            }
+        }
+        client.drain();
+        assertNull(failure.get(), failure.get());
+
+        assertTrue(getCacheStat(client, "HITS") > 0);
+        assertTrue(getCacheStat(client, "INVALIDATIONS") > 0);
+    }
+
+    public void testRepeatedReadsHit() throws Exception {
+        final Client client = getClient();
+        client.callProcedure("T.insert", 100, 7);
+        for (int i = 0; i < 10; i++) {
+            VoltTable result = client.callProcedure("GetVal", 100).getResults()[0];
+            assertTrue(result.advanceRow());
+            assertEquals(7, result.getLong(0));
+        }
+        assertTrue(getCacheStat(client, "HITS") >= 9);
+
+        client.callProcedure("SetVal", 8, 100);
+        VoltTable result = client.callProcedure("GetVal", 100).getResults()[0];
+        assertTrue(result.advanceRow());
+        assertEquals(8, result.getLong(0));
+    }
+
+    static public junit.framework.Test suite() throws Exception {
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestResultCacheSuite.class);
+        VoltProjectBuilder project = new VoltProjectBuilder();
+        project.addLiteralSchema(
+                "CREATE TABLE T (ID BIGINT NOT NULL, VAL BIGINT, PRIMARY KEY (ID));" +
+                "PARTITION TABLE T ON COLUMN ID;" +
+                "CREATE PROCEDURE GetVal PARTITION ON TABLE T COLUMN ID AS " +
+                "SELECT VAL FROM T WHERE ID = ?;" +
+                "CREATE PROCEDURE SetVal PARTITION ON TABLE T COLUMN ID PARAMETER 1 AS " +
+                "UPDATE T SET VAL = ? WHERE ID = ?;");
+
+        Map<String, String> env = new HashMap<String, String>();
+        env.put("RESULT_CACHE_SIZE", "100");
+        env.put("SITE_SP_TXN_BATCH_SIZE", "16");
+        LocalCluster config = new LocalCluster("result-cache.jar", 2, 1, 0, BackendTarget.NATIVE_EE_JNI,
+                LocalCluster.FailureState.ALL_RUNNING, false, false, env);
+        config.setHasLocalServer(false);
+        assertTrue(config.compile(project));
+        builder.addServerConfig(config);
+        return builder;
+    }
+}
@@ -0,0 +1,181 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * Single statement SP transactions executed in batches at the sites, with
+ * failing statements and stream writes mixed into the queued work.
+ */
+public class TestSpTransactionBatchSuite extends RegressionSuite {
+
+    private static final int ROWS = 1000;
+
+    public TestSpTransactionBatchSuite(String name) {
+        super(name);
+    }
+
+    private static class StatusCallback implements ProcedureCallback {
+        volatile byte m_status = Byte.MIN_VALUE;
+
+        @Override
+        public void clientCallback(ClientResponse response) throws Exception {
+            m_status = response.getStatus();
+        }
+    }
+
+    private static long countRows(Client client, String table) throws Exception {
+        VoltTable result = client.callProcedure("@AdHoc", "SELECT COUNT(*) FROM " + table).getResults()[0];
+        return result.asScalarLong();
+    }
+
+    private static long countStreamTuples(Client client, String stream) throws Exception {
+        VoltTable stats = client.callProcedure("@Statistics", "TABLE", 0).getResults()[0];
+        long total = 0;
+        while (stats.advanceRow()) {
+            if (stats.getString("TABLE_NAME").equals(stream)) {
+                total += stats.getLong("TUPLE_COUNT");
+            }
+        }
+        return total;
+    }
+
+    public void testBatchedInserts() throws Exception {
+        final Client client = getClient();
+        List<StatusCallback> callbacks = new ArrayList<StatusCallback>();
+        for (int id = 0; id < ROWS; id++) {
+            StatusCallback callback = new StatusCallback();
+            callbacks.add(callback);
+            client.callProcedure(callback, "InsertT", id, id * 2);
+        }
+        client.drain();
+        for (StatusCallback callback : callbacks) {
+            assertEquals(ClientResponse.SUCCESS, callback.m_status);
+        }
+
+        assertEquals(ROWS, countRows(client, "T"));
+        for (int id = 0; id < ROWS; id += 97) {
+            VoltTable result = client.callProcedure("GetVal", id).getResults()[0];
+            assertEquals(id * 2, result.asScalarLong());
+        }
+    }
+
+    public void testFailedStatementsUndoOnlyThemselves() throws Exception {
+        final Client client = getClient();
+        // every third insert repeats the key of the one before it, failing
+        // the batch it lands in so that the batch is undone and its
+        // transactions run on their own
+        List<StatusCallback> callbacks = new ArrayList<StatusCallback>();
+        List<Byte> expected = new ArrayList<Byte>();
+        int inserted = 0;
+        for (int i = 0; i < ROWS; i++) {
+            StatusCallback callback = new StatusCallback();
+            callbacks.add(callback);
+            if (i % 3 == 2) {
+                client.callProcedure(callback, "InsertT", inserted - 1, -1);
+                expected.add(ClientResponse.GRACEFUL_FAILURE);
+            } else {
+                client.callProcedure(callback, "InsertT", inserted, inserted);
+                expected.add(ClientResponse.SUCCESS);
+                inserted++;
+            }
+        }
+        client.drain();
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals("transaction " + i, (byte)expected.get(i), callbacks.get(i).m_status);
+        }
+
+        assertEquals(inserted, countRows(client, "T"));
+        VoltTable result = client.callProcedure("@AdHoc", "SELECT COUNT(*) FROM T WHERE VAL < 0").getResults()[0];
+        assertEquals(0, result.asScalarLong());
+    }
+
+    public void testStreamWritesWithFailedBatches() throws Exception {
+        final Client client = getClient();
+        // stream writes are queued between batchable inserts, some of which
+        // fail and undo the batch they were executed in
+        List<StatusCallback> callbacks = new ArrayList<StatusCallback>();
+        List<Byte> expected = new ArrayList<Byte>();
+        int inserted = 0;
+        int streamed = 0;
+        for (int i = 0; i < ROWS; i++) {
+            StatusCallback callback = new StatusCallback();
+            callbacks.add(callback);
+            if (i % 4 == 1) {
+                client.callProcedure(callback, "InsertS", inserted, i);
+                expected.add(ClientResponse.SUCCESS);
+                streamed++;
+            } else if (i % 4 == 3) {
+                client.callProcedure(callback, "InsertT", inserted - 1, -1);
+                expected.add(ClientResponse.GRACEFUL_FAILURE);
+            } else {
+                client.callProcedure(callback, "InsertT", inserted, inserted);
+                expected.add(ClientResponse.SUCCESS);
+                inserted++;
+            }
+        }
+        client.drain();
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals("transaction " + i, (byte)expected.get(i), callbacks.get(i).m_status);
+        }
+
+        assertEquals(inserted, countRows(client, "T"));
+        assertEquals(streamed, countStreamTuples(client, "S"));
+    }
+
+    static public junit.framework.Test suite() throws Exception {
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(TestSpTransactionBatchSuite.class);
+        VoltProjectBuilder project = new VoltProjectBuilder();
+        project.addLiteralSchema(
+                "CREATE TABLE T (ID BIGINT NOT NULL, VAL BIGINT, PRIMARY KEY (ID));" +
+                "PARTITION TABLE T ON COLUMN ID;" +
+                "CREATE STREAM S PARTITION ON COLUMN ID (ID BIGINT NOT NULL, VAL BIGINT);" +
+                "CREATE PROCEDURE InsertT PARTITION ON TABLE T COLUMN ID AS " +
+                "INSERT INTO T VALUES (?, ?);" +
+                "CREATE PROCEDURE InsertS PARTITION ON TABLE S COLUMN ID AS " +
+                "INSERT INTO S VALUES (?, ?);" +
+                "CREATE PROCEDURE GetVal PARTITION ON TABLE T COLUMN ID AS " +
+                "SELECT VAL FROM T WHERE ID = ?;");
+
+        Map<String, String> env = new HashMap<String, String>();
+        env.put("SITE_SP_TXN_BATCH_SIZE", "16");
+        LocalCluster config = new LocalCluster("sp-txn-batch.jar", 2, 1, 0, BackendTarget.NATIVE_EE_JNI,
+                LocalCluster.FailureState.ALL_RUNNING, false, false, env);
+        config.setHasLocalServer(false);
+        assertTrue(config.compile(project));
+        builder.addServerConfig(config);
+        return builder;
+    }
+}
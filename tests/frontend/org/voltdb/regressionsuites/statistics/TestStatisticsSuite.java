@@ -459,7 +459,7 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         System.out.println("\n\nTESTING STARVATION STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[10];
+        ColumnInfo[] expectedSchema = new ColumnInfo[16];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -470,6 +470,12 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[7] = new ColumnInfo("MIN", VoltType.BIGINT);
         expectedSchema[8] = new ColumnInfo("MAX", VoltType.BIGINT);
         expectedSchema[9] = new ColumnInfo("STDDEV", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("QUEUE_DEPTH_AVG", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("QUEUE_DEPTH_MAX", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("QUEUE_LATENCY_AVG", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("QUEUE_LATENCY_P50", VoltType.BIGINT);
+        expectedSchema[14] = new ColumnInfo("QUEUE_LATENCY_P99", VoltType.BIGINT);
+        expectedSchema[15] = new ColumnInfo("QUEUE_LATENCY_MAX", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
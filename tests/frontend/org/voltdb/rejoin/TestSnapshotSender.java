@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.rejoin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltcore.messaging.Mailbox;
+import org.voltcore.messaging.VoltMessage;
+import org.voltcore.utils.DBBPool;
+import org.voltdb.rejoin.StreamSnapshotBase.DefaultMessageFactory;
+import org.voltdb.rejoin.StreamSnapshotDataTarget.SendWindow;
+import org.voltdb.rejoin.StreamSnapshotDataTarget.SendWork;
+import org.voltdb.rejoin.StreamSnapshotDataTarget.SnapshotSender;
+import org.voltdb.utils.CompressionService;
+
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+public class TestSnapshotSender {
+    private static final long SLOW_TARGET = 1;
+    private static final long FAST_TARGET = 2;
+
+    // target id and first byte of the block of each message sent
+    private final LinkedBlockingQueue<long[]> m_sent = new LinkedBlockingQueue<long[]>();
+    private SnapshotSender m_sender;
+
+    @Before
+    public void setUp()
+    {
+        Mailbox mb = mock(Mailbox.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                RejoinDataMessage msg = (RejoinDataMessage) invocation.getArguments()[1];
+                m_sent.add(new long[] { msg.getTargetId(), decompressFirstByte(msg.getData()) });
+                return null;
+            }
+        }).when(mb).send(anyLong(), any(VoltMessage.class));
+
+        // one thread shared by both targets
+        m_sender = new SnapshotSender(mb, new DefaultMessageFactory(), 1);
+        m_sender.registerDataTarget(SLOW_TARGET);
+        m_sender.registerDataTarget(FAST_TARGET);
+    }
+
+    private static long decompressFirstByte(byte[] data)
+    {
+        try {
+            return CompressionService.decompressBytes(data)[0];
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static SendWork makeWork(long targetId, int block, SendWindow window)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        buf.put(0, (byte) block);
+        return new SendWork(targetId, 0, DBBPool.wrapBB(buf), SettableFuture.<Boolean>create(), window);
+    }
+
+    private List<long[]> takeSent(int count) throws InterruptedException
+    {
+        List<long[]> sent = new ArrayList<long[]>();
+        for (int i = 0; i < count; i++) {
+            long[] msg = m_sent.poll(30, TimeUnit.SECONDS);
+            assertTrue("Timed out waiting for sent block " + i, msg != null);
+            sent.add(msg);
+        }
+        return sent;
+    }
+
+    @Test
+    public void testFullWindowDoesNotBlockOtherTarget() throws Exception
+    {
+        SendWindow slowWindow = new SendWindow(1, 1);
+        SendWindow fastWindow = new SendWindow(4, 4);
+        m_sender.start();
+
+        // the first block fills the window of the slow target, which holds
+        // the next ones until it is acked
+        for (int block = 0; block < 3; block++) {
+            m_sender.offer(makeWork(SLOW_TARGET, block, slowWindow));
+        }
+        List<long[]> sent = takeSent(1);
+        assertEquals(SLOW_TARGET, sent.get(0)[0]);
+        assertEquals(0, sent.get(0)[1]);
+
+        // the other target's blocks go out meanwhile
+        for (int block = 0; block < 3; block++) {
+            m_sender.offer(makeWork(FAST_TARGET, block, fastWindow));
+        }
+        sent = takeSent(3);
+        for (int block = 0; block < 3; block++) {
+            assertEquals(FAST_TARGET, sent.get(block)[0]);
+            assertEquals(block, sent.get(block)[1]);
+        }
+        assertNull(m_sent.poll(50, TimeUnit.MILLISECONDS));
+
+        // each ack lets one more block of the slow target go, in order
+        for (int block = 1; block < 3; block++) {
+            slowWindow.release(TimeUnit.MILLISECONDS.toNanos(1000));
+            sent = takeSent(1);
+            assertEquals(SLOW_TARGET, sent.get(0)[0]);
+            assertEquals(block, sent.get(0)[1]);
+        }
+        assertNull(m_sent.poll(50, TimeUnit.MILLISECONDS));
+
+        m_sender.offer(new SendWork(SLOW_TARGET));
+        m_sender.offer(new SendWork(FAST_TARGET));
+    }
+
+    @Test
+    public void testHeldBlocksSentBeforeExit() throws Exception
+    {
+        SendWindow slowWindow = new SendWindow(1, 1);
+        m_sender.start();
+
+        m_sender.offer(makeWork(SLOW_TARGET, 0, slowWindow));
+        m_sender.offer(makeWork(SLOW_TARGET, 1, slowWindow));
+        m_sender.offer(new SendWork(SLOW_TARGET));
+        m_sender.offer(new SendWork(FAST_TARGET));
+        takeSent(1);
+        assertNull(m_sent.poll(50, TimeUnit.MILLISECONDS));
+
+        // a failed stream aborts the window, and what is held is still sent
+        slowWindow.abort();
+        List<long[]> sent = takeSent(1);
+        assertEquals(1, sent.get(0)[1]);
+        assertNull(m_sender.m_lastException);
+    }
+}
@@ -0,0 +1,253 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.io.Files;
+import com.google_voltpatches.common.util.concurrent.Callables;
+
+public class TestTableSaveFile {
+
+    private static final int CHUNKS = 20;
+    private static final int ROWS_PER_CHUNK = 10;
+    private static final int PARTITIONS = 2;
+
+    private File m_dir;
+    private File m_file;
+
+    @Before
+    public void setUp() throws Exception {
+        m_dir = Files.createTempDir();
+        m_file = new File(m_dir, "TABLE-host_0.vpt");
+        writeSaveFile(m_file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private static VoltTable newTable() {
+        return new VoltTable(new VoltTable.ColumnInfo("CHUNK", VoltType.INTEGER),
+                             new VoltTable.ColumnInfo("ROW", VoltType.INTEGER));
+    }
+
+    /*
+     * Write a version 2 save file the way a snapshot does. Chunk i holds the rows
+     * of partition i % PARTITIONS.
+     */
+    private static void writeSaveFile(File file) throws Exception {
+        List<Integer> partitionIds = new ArrayList<Integer>();
+        for (int ii = 0; ii < PARTITIONS; ii++) {
+            partitionIds.add(ii);
+        }
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(
+                file, 0, "cluster", "database", "TABLE", PARTITIONS, false, partitionIds,
+                newTable(), 1, System.currentTimeMillis());
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            VoltTable table = newTable();
+            for (int row = 0; row < ROWS_PER_CHUNK; row++) {
+                table.addRow(chunk, row);
+            }
+            // the chunk is the partition id followed by the row count and rows, without the table header
+            ByteBuffer data = PrivateVoltTableFactory.getTableDataReference(table);
+            data.position(4 + data.getInt(0));
+            ByteBuffer chunkData = ByteBuffer.allocateDirect(4 + data.remaining());
+            chunkData.putInt(chunk % PARTITIONS);
+            chunkData.put(data);
+            chunkData.flip();
+            target.write(Callables.returning(DBBPool.wrapBB(chunkData)), 0).get();
+        }
+        target.close();
+    }
+
+    /*
+     * Read every chunk and return the chunk numbers in the order they arrived,
+     * checking that the rows of each chunk are intact.
+     */
+    private static List<Integer> readChunks(TableSaveFile saveFile) throws IOException {
+        List<Integer> chunks = new ArrayList<Integer>();
+        BBContainer c;
+        while ((c = saveFile.getNextChunk()) != null) {
+            try {
+                VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                assertEquals(ROWS_PER_CHUNK, table.getRowCount());
+                int row = 0;
+                while (table.advanceRow()) {
+                    assertEquals(row++, table.getLong("ROW"));
+                }
+                final int chunk = (int) table.fetchRow(0).getLong("CHUNK");
+                assertEquals(chunk % PARTITIONS, ((TableSaveFile.Container) c).partitionId);
+                chunks.add(chunk);
+            } finally {
+                c.discard();
+            }
+        }
+        return chunks;
+    }
+
+    private static List<Integer> range(int start, int step) {
+        List<Integer> chunks = new ArrayList<Integer>();
+        for (int ii = start; ii < CHUNKS; ii += step) {
+            chunks.add(ii);
+        }
+        return chunks;
+    }
+
+    private static List<Integer> sorted(List<Integer> chunks) {
+        List<Integer> copy = new ArrayList<Integer>(chunks);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private TableSaveFile open(Integer[] relevantPartitionIds,
+                               boolean continueOnCorruptedChunk,
+                               int decoderThreads) throws IOException {
+        return new TableSaveFile(new FileInputStream(m_file), 1, relevantPartitionIds,
+                continueOnCorruptedChunk, decoderThreads);
+    }
+
+    @Test
+    public void testSingleDecoderKeepsFileOrder() throws Exception {
+        TableSaveFile saveFile = open(null, false, 1);
+        try {
+            assertTrue(saveFile.getCompleted());
+            assertEquals(range(0, 1), readChunks(saveFile));
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    @Test
+    public void testParallelDecodeReturnsEveryChunk() throws Exception {
+        TableSaveFile saveFile = open(null, false, 4);
+        try {
+            // chunks may arrive out of file order, but each exactly once
+            assertEquals(range(0, 1), sorted(readChunks(saveFile)));
+            assertTrue(saveFile.getCorruptedPartitionIds().isEmpty());
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    @Test
+    public void testParallelDecodeSkipsIrrelevantPartitions() throws Exception {
+        TableSaveFile saveFile = open(new Integer[] { 1 }, false, 4);
+        try {
+            assertEquals(range(1, PARTITIONS), sorted(readChunks(saveFile)));
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    private void corruptLastByte() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            final int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testParallelDecodeReportsCorruptChunk() throws Exception {
+        corruptLastByte();
+        TableSaveFile saveFile = open(null, false, 4);
+        try {
+            readChunks(saveFile);
+            fail("Expected the CRC mismatch of the last chunk");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("CRC mismatch"));
+        } finally {
+            saveFile.close();
+        }
+        assertEquals(Collections.singleton((CHUNKS - 1) % PARTITIONS), saveFile.getCorruptedPartitionIds());
+    }
+
+    @Test
+    public void testParallelDecodeContinuesPastCorruptChunk() throws Exception {
+        corruptLastByte();
+        TableSaveFile saveFile = open(null, true, 4);
+        try {
+            assertEquals(range(0, 1).subList(0, CHUNKS - 1), sorted(readChunks(saveFile)));
+            assertEquals(Collections.singleton((CHUNKS - 1) % PARTITIONS), saveFile.getCorruptedPartitionIds());
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    @Test
+    public void testParallelDecodeReportsTruncatedFile() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        } finally {
+            raf.close();
+        }
+        TableSaveFile saveFile = open(null, false, 4);
+        try {
+            readChunks(saveFile);
+            fail("Expected the truncated last chunk to be reported");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("end of file"));
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testParallelDecodeCloseBeforeDrained() throws Exception {
+        TableSaveFile saveFile = open(null, false, 4);
+        BBContainer c = saveFile.getNextChunk();
+        c.discard();
+        // closing with chunks still being read and decoded waits for the decoders without hanging
+        saveFile.close();
+    }
+}
@@ -0,0 +1,167 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.supercsv.prefs.CsvPreference;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+
+public class TestCSVParallelFileReader {
+
+    static {
+        // read once when CSVParallelFileReader is loaded, every record starts a new chunk
+        System.setProperty("CSVLOADER_CHUNK_SIZE", "1");
+    }
+
+    // Collects the rows inserted by all parser threads
+    private static class RowCollector implements CSVDataLoader {
+        final Map<String, Object[]> m_rows = new TreeMap<String, Object[]>();
+
+        @Override
+        public VoltType[] getColumnTypes() {
+            return new VoltType[] { VoltType.INTEGER, VoltType.STRING };
+        }
+
+        @Override
+        public synchronized void insertRow(RowWithMetaData metaData, Object[] values) {
+            m_rows.put((String) values[0], values);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public long getProcessedRows() {
+            return m_rows.size();
+        }
+
+        @Override
+        public long getFailedRows() {
+            return 0;
+        }
+
+        @Override
+        public void setFlushInterval(int delay, int seconds) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Map<Integer, String> getColumnNames() {
+            return null;
+        }
+    }
+
+    // Collects the line number of each rejected row
+    private static class ErrorCollector implements BulkLoaderErrorHandler {
+        final List<Long> m_errorLines = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public boolean handleError(RowWithMetaData metaData, ClientResponse response, String error) {
+            m_errorLines.add(metaData.lineNumber);
+            return false;
+        }
+
+        @Override
+        public boolean hasReachedErrorLimit() {
+            return false;
+        }
+    }
+
+    private CSVLoader.CSVConfig m_config;
+
+    @Before
+    public void setUp() {
+        m_config = new CSVLoader.CSVConfig();
+        CSVFileReader.initializeReader(m_config, null, null);
+        CSVFileReader.m_totalRowCount.set(0);
+        CSVFileReader.m_totalLineCount.set(0);
+    }
+
+    private void load(String input, RowCollector loader, ErrorCollector errors) {
+        CsvPreference preference = new CsvPreference.Builder(m_config.quotechar, m_config.separator, "\n").build();
+        CSVFileReader validator = new CSVFileReader(loader, errors);
+        new CSVParallelFileReader(validator, loader, errors,
+                new BufferedReader(new StringReader(input)), preference, 3).run();
+    }
+
+    @Test
+    public void testQuotedNewlinesStayInOneChunk() {
+        assertEquals(1, CSVParallelFileReader.CHUNK_SIZE);
+        String input = "1,\"first line\n"
+                + "second line\"\n"
+                + "2,plain\n"
+                + "3,\"quote \"\" and\n"
+                + "\n"
+                + "newline\"\n"
+                + "4,\"a, b\"\n"
+                + "5\n"
+                + "6,last\n";
+        RowCollector loader = new RowCollector();
+        ErrorCollector errors = new ErrorCollector();
+        load(input, loader, errors);
+
+        assertEquals(5, loader.m_rows.size());
+        assertArrayEquals(new Object[] { "1", "first line\nsecond line" }, loader.m_rows.get("1"));
+        assertArrayEquals(new Object[] { "2", "plain" }, loader.m_rows.get("2"));
+        assertArrayEquals(new Object[] { "3", "quote \" and\n\nnewline" }, loader.m_rows.get("3"));
+        assertArrayEquals(new Object[] { "4", "a, b" }, loader.m_rows.get("4"));
+        assertArrayEquals(new Object[] { "6", "last" }, loader.m_rows.get("6"));
+
+        // line numbers stay absolute across chunks
+        assertEquals(Collections.singletonList(8L), errors.m_errorLines);
+        assertEquals(9, CSVFileReader.m_totalLineCount.get());
+        assertEquals(6, CSVFileReader.m_totalRowCount.get());
+    }
+
+    @Test
+    public void testEscapedQuoteDoesNotOpenAValue() {
+        // an escaped quote outside a quoted value leaves the next line a record of its own
+        String input = "1,a\\\"b\n"
+                + "2,\"c\"\n";
+        RowCollector loader = new RowCollector();
+        ErrorCollector errors = new ErrorCollector();
+        load(input, loader, errors);
+
+        assertEquals(Collections.<Long>emptyList(), errors.m_errorLines);
+        assertEquals(2, loader.m_rows.size());
+        assertArrayEquals(new Object[] { "2", "c" }, loader.m_rows.get("2"));
+    }
+}
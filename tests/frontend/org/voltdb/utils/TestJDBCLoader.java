@@ -25,6 +25,10 @@ package org.voltdb.utils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -32,12 +36,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.ServerThread;
 import org.voltdb.VoltDB.Configuration;
@@ -246,6 +255,83 @@ public class TestJDBCLoader {
         test_Interface(myOptions, jdbcOptions, myData, invalidLineCnt, validLineCnt);
     }
 
+    @Test
+    public void testParallelReaders() throws Exception
+    {
+        String []myOptions = {
+            "-f" + path_csv,
+            "--reportdir=" + reportDir,
+            "--maxerrors=50",
+            "--user=",
+            "--password=",
+            "--port=",
+            "--separator=,",
+            "--quotechar=\"",
+            "--escape=\\",
+            "BlAh"
+        };
+
+        String[] jdbcOptions = {
+            "--jdbcdriver=" + driver_class,
+            "--jdbcurl=" + jdbc_url,
+            "--jdbctable=" + "BlAh",
+            "--readers=3",
+            "--reportdir=" + reportDir,
+            "--maxerrors=50",
+            "--user=",
+            "--password=",
+            "--port=",
+            "JBlAh"
+        };
+
+        String currentTime = new TimestampType().toString();
+        String []myData = new String[100];
+        for (int i = 0; i < myData.length; i++) {
+            myData[i] = i + ",1,1,11111111,row" + i + ",1.10,1.11," + currentTime;
+        }
+        test_Interface(myOptions, jdbcOptions, myData, 0, myData.length);
+    }
+
+    @Test
+    public void testPartitionedReaderParsingTime() throws Exception
+    {
+        final int rowCount = 100;
+        for (int i = 0; i < rowCount; i++) {
+            client.callProcedure("BLAH.insert", i, 1, 1, 11111111, "row" + i, 1.10, 1.11, null);
+        }
+
+        Class.forName(driver_class);
+        JDBCLoader.JDBCLoaderConfig config = new JDBCLoader.JDBCLoaderConfig();
+        config.jdbcurl = jdbc_url;
+        config.jdbctable = "BLAH";
+        JDBCStatementReader.initializeReader(config, client);
+
+        //Rows of each reader thread
+        final Map<String, AtomicInteger> rowsByThread = new ConcurrentHashMap<String, AtomicInteger>();
+        CSVDataLoader loader = mock(CSVDataLoader.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                String name = Thread.currentThread().getName();
+                rowsByThread.putIfAbsent(name, new AtomicInteger());
+                rowsByThread.get(name).incrementAndGet();
+                return null;
+            }
+        }).when(loader).insertRow(any(RowWithMetaData.class), any(Object[].class));
+
+        JDBCPartitionedReader reader = new JDBCPartitionedReader(loader, new JDBCLoader(), 4);
+        reader.susceptibleRun();
+
+        assertEquals(4, rowsByThread.size());
+        int loadedRows = 0;
+        for (AtomicInteger rows : rowsByThread.values()) {
+            loadedRows += rows.get();
+        }
+        assertEquals(rowCount, loadedRows);
+        assertTrue(reader.getParsingTime() > 0);
+        verify(loader).close();
+    }
+
     public void test_Interface(String[] csv_options, String[] jdbc_options, String[] my_data, int invalidLineCnt,
             int validLineCnt) throws Exception {
         try{